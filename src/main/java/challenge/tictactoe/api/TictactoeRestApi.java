@@ -1,12 +1,18 @@
 package challenge.tictactoe.api;
 
+import challenge.tictactoe.dto.AnalysisDto;
 import challenge.tictactoe.dto.GameDto;
+import challenge.tictactoe.dto.GameUpdateDto;
+import challenge.tictactoe.dto.HintDto;
 import challenge.tictactoe.dto.MoveDto;
+import challenge.tictactoe.dto.PositionDto;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Api(value = "REST API v1 for Tictactoe challenge", tags = {"description"})
@@ -19,19 +25,25 @@ public interface TictactoeRestApi {
      * Sample usage:
      * <p>
      * curl -X GET $HOST:$PORT/api/v1/tictactoe/ai
+     * <p>
+     * curl -X GET "$HOST:$PORT/api/v1/tictactoe/ai?boardSize=15&winLength=5"
      *
+     * @param boardSize optional number of rows and columns, 3 by default
+     * @param winLength optional number of aligned markers which wins the game
      * @return body
      */
     @ApiOperation(
             value = "${api.tictactoe.get-new-game.description}",
             notes = "${api.tictactoe.get-new-game.notes}")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Game was created.")
+            @ApiResponse(code = 200, message = "Game was created."),
+            @ApiResponse(code = 400, message = "Bad Request, invalid board size or win length.")
     })
     @GetMapping(
             value = "/ai",
             produces = "application/json")
-    Mono<GameDto> createNewGameWithAi();
+    Mono<GameDto> createNewGameWithAi(@RequestParam(required = false) Integer boardSize,
+                                      @RequestParam(required = false) Integer winLength);
 
     /**
      * Creates a new game between two persons
@@ -39,30 +51,45 @@ public interface TictactoeRestApi {
      * Sample usage:
      * <p>
      * curl -X GET $HOST:$PORT/api/v1/tictactoe/person
+     * <p>
+     * curl -X GET "$HOST:$PORT/api/v1/tictactoe/person?boardSize=7&winLength=4"
      *
+     * @param boardSize optional number of rows and columns, 3 by default
+     * @param winLength optional number of aligned markers which wins the game
      * @return body
      */
     @ApiOperation(
             value = "${api.tictactoe.get-new-game.description}",
             notes = "${api.tictactoe.get-new-game.notes}")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Game was successfully created.")
+            @ApiResponse(code = 200, message = "Game was successfully created."),
+            @ApiResponse(code = 400, message = "Bad Request, invalid board size or win length.")
     })
     @GetMapping(
             value = "/person",
             produces = "application/json")
-    Mono<GameDto> createNewGameWithTwoPlayers();
+    Mono<GameDto> createNewGameWithTwoPlayers(@RequestParam(required = false) Integer boardSize,
+                                              @RequestParam(required = false) Integer winLength);
 
     /**
-     * Make a Tictactoe move in existing game on 3x3 board
+     * Make a Tictactoe move in existing game
      * <p>
      * Sample usage:
      * <p>
      * curl -X POST $HOST:$PORT/api/v1/tictactoe?gameId=6356705f775641388748dd46 \
      * -H "Content-Type: application/json" --data \
      * '{"x":1, "y":1}'
+     * <p>
+     * curl -X POST $HOST:$PORT/api/v1/tictactoe?gameId=6356705f775641388748dd46 \
+     * -H "Content-Type: application/json" --data \
+     * '{"x":1, "y":1, "expectedMoveNumber":3}'
+     * <p>
+     * curl -X POST "$HOST:$PORT/api/v1/tictactoe?gameId=6356705f775641388748dd46&async=true" \
+     * -H "Content-Type: application/json" --data \
+     * '{"x":1, "y":1}'
      *
      * @param gameId URL encoded parameter of Game ID
+     * @param async  answer a move against AI before AI has replied
      * @return
      */
     @ApiOperation(
@@ -73,10 +100,16 @@ public interface TictactoeRestApi {
             @ApiResponse(code = 400,
                     message = "Bad Request, invalid format of the request. " +
                             "See response message for more information."),
-            @ApiResponse(code = 404, message = "Game doesn't exists.")
+            @ApiResponse(code = 404, message = "Game doesn't exists."),
+            @ApiResponse(code = 409, message = "Game was changed by another move or AI hasn't replied yet, " +
+                    "the move was not saved."),
+            @ApiResponse(code = 429, message = "Too many moves of the game are waiting, the move was not saved."),
+            @ApiResponse(code = 503, message = "AI engine is overloaded, the move was not saved.")
     })
     @PostMapping(consumes = "application/json")
-    Mono<GameDto> makeMove(@RequestParam String gameId, @RequestBody MoveDto body);
+    Mono<GameDto> makeMove(@RequestParam String gameId,
+                           @RequestBody MoveDto body,
+                           @RequestParam(required = false, defaultValue = "false") boolean async);
 
     /**
      * Get existing Tictactoe game object
@@ -98,6 +131,126 @@ public interface TictactoeRestApi {
     @GetMapping(produces = "application/json")
     Mono<GameDto> getGameObject(@RequestParam String gameId);
 
+    /**
+     * Follow a Tictactoe game, every move and status change is pushed as it's saved
+     * <p>
+     * Sample usage:
+     * <p>
+     * curl -N $HOST:$PORT/api/v1/tictactoe/stream?gameId=6356705f775641388748dd46
+     * <p>
+     * curl -N $HOST:$PORT/api/v1/tictactoe/stream?gameId=6356705f775641388748dd46 -H "Last-Event-ID: 3"
+     *
+     * @param gameId      URL encoded parameter of Game ID
+     * @param lastEventId number of moves the client has seen, sent by reconnecting clients
+     * @return stream of updates, the first one has what the client hasn't seen yet
+     */
+    @ApiOperation(
+            value = "${api.tictactoe.stream-game.description}",
+            notes = "${api.tictactoe.stream-game.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Updates of the game are streamed."),
+            @ApiResponse(code = 404, message = "Game doesn't exists.")
+    })
+    @GetMapping(
+            value = "/stream",
+            produces = "text/event-stream")
+    Flux<ServerSentEvent<GameUpdateDto>> streamGame(@RequestParam String gameId,
+                                                    @RequestHeader(value = "Last-Event-ID", required = false)
+                                                    Integer lastEventId);
+
+    /**
+     * Wait for the next move of a Tictactoe game and get the game
+     * <p>
+     * Sample usage:
+     * <p>
+     * curl -X GET "$HOST:$PORT/api/v1/tictactoe/next?gameId=6356705f775641388748dd46&moveNumber=1"
+     *
+     * @param gameId     URL encoded parameter of Game ID
+     * @param moveNumber number of moves the client has seen
+     * @return game with more moves than moveNumber, or as it is if no move came in time
+     */
+    @ApiOperation(
+            value = "${api.tictactoe.wait-for-move.description}",
+            notes = "${api.tictactoe.wait-for-move.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Game was found."),
+            @ApiResponse(code = 404, message = "Game doesn't exists.")
+    })
+    @GetMapping(
+            value = "/next",
+            produces = "application/json")
+    Mono<GameDto> waitForMove(@RequestParam String gameId, @RequestParam int moveNumber);
+
+    /**
+     * Watch a Tictactoe game together with other spectators
+     * <p>
+     * Sample usage:
+     * <p>
+     * curl -N $HOST:$PORT/api/v1/tictactoe/watch?gameId=6356705f775641388748dd46
+     *
+     * @param gameId URL encoded parameter of Game ID
+     * @return server sent events with snapshots of the game, the first one is the current snapshot
+     */
+    @ApiOperation(
+            value = "${api.tictactoe.watch-game.description}",
+            notes = "${api.tictactoe.watch-game.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Snapshots of the game are streamed."),
+            @ApiResponse(code = 404, message = "Game doesn't exists.")
+    })
+    @GetMapping(
+            value = "/watch",
+            produces = "text/event-stream")
+    Flux<byte[]> watchGame(@RequestParam String gameId);
+
+    /**
+     * Get Tictactoe game object as it was after the given number of moves
+     * <p>
+     * Sample usage:
+     * <p>
+     * curl -X GET "$HOST:$PORT/api/v1/tictactoe/history?gameId=6356705f775641388748dd46&moveNumber=3"
+     *
+     * @param gameId     URL encoded parameter of Game ID
+     * @param moveNumber number of moves played, 0 for the game before the first move
+     * @return
+     */
+    @ApiOperation(
+            value = "${api.tictactoe.get-game-at-move.description}",
+            notes = "${api.tictactoe.get-game-at-move.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Game was found."),
+            @ApiResponse(code = 400, message = "Game doesn't have this number of moves."),
+            @ApiResponse(code = 404, message = "Game doesn't exists.")
+    })
+    @GetMapping(
+            value = "/history",
+            produces = "application/json")
+    Mono<GameDto> getGameAtMove(@RequestParam String gameId, @RequestParam int moveNumber);
+
+    /**
+     * Get scores of every possible move of the active player
+     * <p>
+     * Sample usage:
+     * <p>
+     * curl -X GET $HOST:$PORT/api/v1/tictactoe/hint?gameId=6356705f775641388748dd46
+     *
+     * @param gameId URL encoded parameter of Game ID
+     * @return
+     */
+    @ApiOperation(
+            value = "${api.tictactoe.get-hint.description}",
+            notes = "${api.tictactoe.get-hint.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Moves were scored."),
+            @ApiResponse(code = 400, message = "Game is already finished."),
+            @ApiResponse(code = 404, message = "Game doesn't exists."),
+            @ApiResponse(code = 503, message = "AI engine is overloaded, try again later.")
+    })
+    @GetMapping(
+            value = "/hint",
+            produces = "application/json")
+    Mono<HintDto> getHint(@RequestParam String gameId);
+
     /**
      * Delete existing Tictactoe game object
      * <p>
@@ -116,4 +269,28 @@ public interface TictactoeRestApi {
     })
     @DeleteMapping
     Mono<Void> deleteGame(@RequestParam String gameId);
+
+    /**
+     * Analyze a batch of board positions without creating games
+     * <p>
+     * Sample usage:
+     * <p>
+     * curl -X POST $HOST:$PORT/api/v1/tictactoe/analysis \
+     * -H "Content-Type: application/x-ndjson" -H "Accept: application/x-ndjson" --data-binary \
+     * $'{"id":"1", "board":"X../.O./..X"}\n{"id":"2", "board":"XX./OO./...", "toMove":"X"}\n'
+     *
+     * @param positions JSON array or newline delimited JSON stream of positions
+     * @return stream of results in the order of the positions
+     */
+    @ApiOperation(
+            value = "${api.tictactoe.analyze-positions.description}",
+            notes = "${api.tictactoe.analyze-positions.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Positions were analyzed, invalid ones have an error message.")
+    })
+    @PostMapping(
+            value = "/analysis",
+            consumes = {"application/json", "application/x-ndjson"},
+            produces = {"application/x-ndjson", "application/json"})
+    Flux<AnalysisDto> analyzePositions(@RequestBody Flux<PositionDto> positions);
 }
@@ -0,0 +1,25 @@
+package challenge.tictactoe.config;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameDocuments;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.repository.config.EnableReactiveMongoRepositories;
+
+import java.util.List;
+
+@Configuration
+@Profile(StoreProfiles.MONGO)
+@EnableReactiveMongoRepositories(basePackages = "challenge.tictactoe.persistance")
+public class MongoConfig {
+
+    /**
+     * Games are stored in the compact layout of {@link GameDocuments}
+     */
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(List.of(GameDocuments.Writer.INSTANCE, GameDocuments.Reader.INSTANCE));
+    }
+}
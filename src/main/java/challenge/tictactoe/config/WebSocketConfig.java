@@ -0,0 +1,21 @@
+package challenge.tictactoe.config;
+
+import challenge.tictactoe.controller.TictactoePlaySocket;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+@Configuration
+public class WebSocketConfig {
+
+    /**
+     * Ahead of the annotated controllers, so the path isn't taken by the REST API
+     */
+    @Bean
+    public HandlerMapping playSocketMapping(TictactoePlaySocket playSocket) {
+        return new SimpleUrlHandlerMapping(Map.of(TictactoePlaySocket.PATH, playSocket), -1);
+    }
+}
@@ -0,0 +1,19 @@
+package challenge.tictactoe.constant;
+
+public class BoardSize {
+    public final static int DEFAULT_SIZE = 3;
+    public final static int MIN_SIZE = 3;
+    public final static int MAX_SIZE = 15;
+    public final static int MIN_WIN_LENGTH = 3;
+
+    /**
+     * Win length used when a game is created without one:
+     * 3 in a row on 3x3, 4 in a row up to 8x8, 5 in a row (gomoku) on bigger boards
+     *
+     * @param size number of rows and columns of the board
+     * @return number of aligned markers which wins the game
+     */
+    public static int defaultWinLength(int size) {
+        return size <= 3 ? 3 : size <= 8 ? 4 : 5;
+    }
+}
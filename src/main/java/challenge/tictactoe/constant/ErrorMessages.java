@@ -1,9 +1,22 @@
 package challenge.tictactoe.constant;
 
 public class ErrorMessages {
-    public final static String OUT_OF_RANGE = "Incorrect input data. Coordinates should be between 0 and 2.";
+    public final static String OUT_OF_RANGE = "Incorrect input data. Coordinates should be between 0 and %s.";
+    public final static String INVALID_BOARD = "Incorrect board. Board size should be between %s and %s " +
+            "and win length between %s and board size.";
     public final static String CELL_X_Y_IS_USED = "Cell x:%s, y: %s was used.";
     public final static String GAME_NOT_FOUND = "Game %s was not found";
     public final static String GAME_IS_CLOSED = "Game you are trying to play is already finished. " +
             "Try to create a new one";
+    public final static String INVALID_POSITION = "Incorrect position. Board should be a square of %s to %s " +
+            "rows of X, O and . cells with win length between %s and board size.";
+    public final static String INVALID_TURN = "Incorrect position. Numbers of X and O markers don't allow %s to move.";
+    public final static String GAME_WAS_CHANGED = "Game %s was changed by another move. Reload it and try again.";
+    public final static String UNEXPECTED_MOVE_NUMBER = "Move %s was expected, but the next move of the game is %s. " +
+            "Reload the game and try again.";
+    public final static String NO_SUCH_MOVE = "Game %s has %s moves, move number should be between 0 and %s.";
+    public final static String GAME_IS_BUSY = "Too many moves of game %s are waiting. Try again later.";
+    public final static String AI_REPLY_PENDING = "AI hasn't replied to the last move of game %s yet. " +
+            "Wait for its move and try again.";
+    public final static String ENGINE_IS_BUSY = "AI engine is overloaded. Try again later.";
 }
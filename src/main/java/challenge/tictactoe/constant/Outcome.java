@@ -0,0 +1,11 @@
+package challenge.tictactoe.constant;
+
+/**
+ * Expected result of a position for the player to move
+ */
+public class Outcome {
+    public final static String WIN = "WIN";
+    public final static String LOSS = "LOSS";
+    public final static String DRAW = "DRAW";
+    public final static String UNKNOWN = "UNKNOWN";
+}
@@ -0,0 +1,11 @@
+package challenge.tictactoe.constant;
+
+/**
+ * Spring profiles selecting where games are stored, MongoDb unless another store is active
+ */
+public class StoreProfiles {
+    public final static String MEMORY = "store-memory";
+    public final static String LOG = "store-log";
+    public final static String EVENTS = "store-events";
+    public final static String MONGO = "!" + MEMORY + " & !" + LOG + " & !" + EVENTS;
+}
@@ -0,0 +1,40 @@
+package challenge.tictactoe.controller;
+
+import challenge.tictactoe.service.GamePlayService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+/**
+ * WebSocket of bots playing many games over one connection, every text message is one frame
+ * of {@link GamePlayService}
+ * <p>
+ * Sample usage:
+ * <p>
+ * websocat ws://$HOST:$PORT/api/v1/tictactoe/play
+ */
+@Component
+@Slf4j
+public class TictactoePlaySocket implements WebSocketHandler {
+
+    public static final String PATH = "/api/v1/tictactoe/play";
+
+    private final GamePlayService gamePlayService;
+
+    @Autowired
+    public TictactoePlaySocket(GamePlayService gamePlayService) {
+        this.gamePlayService = gamePlayService;
+    }
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        log.debug("Play connection {} opened", session.getId());
+        return session.send(gamePlayService.play(session.receive().map(WebSocketMessage::getPayloadAsText))
+                        .map(session::textMessage))
+                .doFinally(signal -> log.debug("Play connection {} closed", session.getId()));
+    }
+}
@@ -3,12 +3,22 @@ package challenge.tictactoe.controller;
 import challenge.tictactoe.api.TictactoeRestApi;
 import challenge.tictactoe.constant.GameType;
 import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.dto.AnalysisDto;
 import challenge.tictactoe.dto.GameDto;
+import challenge.tictactoe.dto.GameUpdateDto;
+import challenge.tictactoe.dto.HintDto;
 import challenge.tictactoe.dto.MoveDto;
+import challenge.tictactoe.dto.PositionDto;
+import challenge.tictactoe.service.GameSpectators;
+import challenge.tictactoe.service.GameStreamService;
+import challenge.tictactoe.service.HintService;
+import challenge.tictactoe.service.PositionAnalysisService;
 import challenge.tictactoe.service.TictactoeService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -16,10 +26,22 @@ import reactor.core.publisher.Mono;
 public class TictactoeRestApiImpl implements TictactoeRestApi {
 
     private final TictactoeService tictactoeService;
+    private final PositionAnalysisService positionAnalysisService;
+    private final HintService hintService;
+    private final GameStreamService gameStreamService;
+    private final GameSpectators gameSpectators;
 
     @Autowired
-    public TictactoeRestApiImpl(TictactoeService tictactoeService) {
+    public TictactoeRestApiImpl(TictactoeService tictactoeService,
+                                PositionAnalysisService positionAnalysisService,
+                                HintService hintService,
+                                GameStreamService gameStreamService,
+                                GameSpectators gameSpectators) {
         this.tictactoeService = tictactoeService;
+        this.positionAnalysisService = positionAnalysisService;
+        this.hintService = hintService;
+        this.gameStreamService = gameStreamService;
+        this.gameSpectators = gameSpectators;
     }
 
     /**
@@ -27,32 +49,37 @@ public class TictactoeRestApiImpl implements TictactoeRestApi {
      *
      * @param gameId String
      * @param body   MoveDto
+     * @param async  boolean
      * @return GameDto
      */
     @Override
-    public Mono<GameDto> makeMove(String gameId, MoveDto body) {
-        return tictactoeService.makeTictactoeMove(gameId, body);
+    public Mono<GameDto> makeMove(String gameId, MoveDto body, boolean async) {
+        return tictactoeService.makeTictactoeMove(gameId, body, async);
     }
 
     /**
      * Create new Tictactoe game between two persons: player_1 and player_2
      *
+     * @param boardSize Integer
+     * @param winLength Integer
      * @return GameDto
      */
     @Override
-    public Mono<GameDto> createNewGameWithTwoPlayers() {
+    public Mono<GameDto> createNewGameWithTwoPlayers(Integer boardSize, Integer winLength) {
 
-        return tictactoeService.createNewGame(GameWinner.PLAYER_1, GameType.AGAINST_HUMAN);
+        return tictactoeService.createNewGame(GameWinner.PLAYER_1, GameType.AGAINST_HUMAN, boardSize, winLength);
     }
 
     /**
      * Create new Tictactoe game between person and AI
      *
+     * @param boardSize Integer
+     * @param winLength Integer
      * @return Mono<GameEntity>
      */
     @Override
-    public Mono<GameDto> createNewGameWithAi() {
-        return tictactoeService.createNewGame(GameWinner.PLAYER, GameType.AGAINST_AI);
+    public Mono<GameDto> createNewGameWithAi(Integer boardSize, Integer winLength) {
+        return tictactoeService.createNewGame(GameWinner.PLAYER, GameType.AGAINST_AI, boardSize, winLength);
     }
 
     /**
@@ -66,6 +93,65 @@ public class TictactoeRestApiImpl implements TictactoeRestApi {
         return tictactoeService.getGame(gameId);
     }
 
+    /**
+     * Stream updates of the game as server sent events
+     *
+     * @param gameId      String
+     * @param lastEventId Integer
+     * @return ServerSentEvent<GameUpdateDto>
+     */
+    @Override
+    public Flux<ServerSentEvent<GameUpdateDto>> streamGame(String gameId, Integer lastEventId) {
+        return gameStreamService.stream(gameId, lastEventId);
+    }
+
+    /**
+     * Wait for the next move of the game, then get it
+     *
+     * @param gameId     String
+     * @param moveNumber int
+     * @return GameDto
+     */
+    @Override
+    public Mono<GameDto> waitForMove(String gameId, int moveNumber) {
+        return gameStreamService.awaitMove(gameId, moveNumber)
+                .then(tictactoeService.getGame(gameId));
+    }
+
+    /**
+     * Stream snapshots of the game shared with its other spectators
+     *
+     * @param gameId String
+     * @return server sent events
+     */
+    @Override
+    public Flux<byte[]> watchGame(String gameId) {
+        return gameSpectators.watch(gameId);
+    }
+
+    /**
+     * Fetch game object as it was after the given number of moves
+     *
+     * @param gameId     String
+     * @param moveNumber int
+     * @return GameDto
+     */
+    @Override
+    public Mono<GameDto> getGameAtMove(String gameId, int moveNumber) {
+        return tictactoeService.getGameAt(gameId, moveNumber);
+    }
+
+    /**
+     * Score every possible move of the active player
+     *
+     * @param gameId String
+     * @return HintDto
+     */
+    @Override
+    public Mono<HintDto> getHint(String gameId) {
+        return hintService.getHint(gameId);
+    }
+
     /**
      * Delete game from DB
      *
@@ -76,4 +162,15 @@ public class TictactoeRestApiImpl implements TictactoeRestApi {
     public Mono<Void> deleteGame(String gameId) {
         return tictactoeService.deleteGame(gameId);
     }
+
+    /**
+     * Analyze positions without touching the DB
+     *
+     * @param positions Flux<PositionDto>
+     * @return Flux<AnalysisDto>
+     */
+    @Override
+    public Flux<AnalysisDto> analyzePositions(Flux<PositionDto> positions) {
+        return positionAnalysisService.analyze(positions);
+    }
 }
@@ -0,0 +1,142 @@
+package challenge.tictactoe.db;
+
+import java.util.Arrays;
+
+/**
+ * Compact board of one game: a bitmask of the cells of every player and the cells in
+ * the order they were played.
+ * <p>
+ * Cell x, y is bit x * size + y. Checking a cell is one bit test, and a 15x15 board takes
+ * two masks of 29 bytes and one byte per move.
+ */
+public final class GameBoard {
+
+    private final int size;
+    private final long[] first;
+    private final long[] second;
+    private final byte[] order;
+    private int moveCount;
+
+    /**
+     * @param size number of rows and columns, at most 16 so a cell fits into one byte
+     */
+    public GameBoard(int size) {
+        if (size <= 0 || size * size > 256)
+            throw new IllegalArgumentException("Board size should be from 1 to 16");
+        this.size = size;
+        int words = (size * size + 63) / 64;
+        this.first = new long[words];
+        this.second = new long[words];
+        this.order = new byte[size * size];
+    }
+
+    /**
+     * Restore a board from its encoding
+     *
+     * @param first  mask of the cells of the first player
+     * @param second mask of the cells of the second player
+     * @param order  cells in the order they were played
+     */
+    public static GameBoard decode(int size, byte[] first, byte[] second, byte[] order) {
+        GameBoard board = new GameBoard(size);
+        if (order.length > board.order.length)
+            throw new IllegalArgumentException("More moves than cells");
+        for (byte cell : order) {
+            int index = cell & 0xFF;
+            boolean byFirst = isSet(first, index);
+            if (byFirst == isSet(second, index))
+                throw new IllegalArgumentException("Cell " + index + " should belong to exactly one player");
+            board.play(index, byFirst);
+        }
+        return board;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public boolean isUsed(int x, int y) {
+        int cell = cellOf(x, y);
+        return isSet(first, cell) || isSet(second, cell);
+    }
+
+    /**
+     * Mark a cell as played
+     *
+     * @param byFirst true if the first player of the game played it
+     */
+    public void play(int x, int y, boolean byFirst) {
+        if (x < 0 || x >= size || y < 0 || y >= size)
+            throw new IllegalArgumentException("Cell " + x + ", " + y + " is out of the board");
+        play(cellOf(x, y), byFirst);
+    }
+
+    /**
+     * @param move number of the move starting from 0
+     * @return row of the cell played by the move
+     */
+    public int xOf(int move) {
+        return (order[move] & 0xFF) / size;
+    }
+
+    /**
+     * @param move number of the move starting from 0
+     * @return column of the cell played by the move
+     */
+    public int yOf(int move) {
+        return (order[move] & 0xFF) % size;
+    }
+
+    /**
+     * @param move number of the move starting from 0
+     * @return true if the first player played the move
+     */
+    public boolean isFirst(int move) {
+        return isSet(first, order[move] & 0xFF);
+    }
+
+    public byte[] encodeFirst() {
+        return toBytes(first);
+    }
+
+    public byte[] encodeSecond() {
+        return toBytes(second);
+    }
+
+    public byte[] encodeOrder() {
+        return Arrays.copyOf(order, moveCount);
+    }
+
+    private void play(int cell, boolean byFirst) {
+        if (isSet(first, cell) || isSet(second, cell))
+            throw new IllegalArgumentException("Cell " + cell + " is already used");
+        long[] mask = byFirst ? first : second;
+        mask[cell >>> 6] |= 1L << (cell & 63);
+        order[moveCount++] = (byte) cell;
+    }
+
+    private int cellOf(int x, int y) {
+        return x * size + y;
+    }
+
+    private byte[] toBytes(long[] mask) {
+        byte[] bytes = new byte[(size * size + 7) / 8];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (mask[i >>> 3] >>> ((i & 7) * 8));
+        }
+        return bytes;
+    }
+
+    private static boolean isSet(long[] mask, int cell) {
+        return (mask[cell >>> 6] & 1L << (cell & 63)) != 0;
+    }
+
+    private static boolean isSet(byte[] mask, int cell) {
+        int index = cell >>> 3;
+        return index < mask.length && (mask[index] & 1 << (cell & 7)) != 0;
+    }
+}
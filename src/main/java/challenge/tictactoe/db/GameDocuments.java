@@ -0,0 +1,301 @@
+package challenge.tictactoe.db;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import org.bson.BsonBinaryReader;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Compact layout of game documents.
+ * <p>
+ * A game is stored with short field names, small integer codes instead of status, winner,
+ * turn and type names, and its moves as a {@link GameBoard}: a bitmask of the cells of each
+ * player and the cells in play order. The player of a move is told by the mask holding its
+ * cell, and the game id and the move number aren't stored with every move.
+ * <p>
+ * Games stored before with the field names of {@link GameEntity} are still read, the next
+ * move of such a game rewrites it in the compact layout.
+ */
+public final class GameDocuments {
+
+    public static final String ID = "_id";
+    public static final String STATUS = "s";
+    public static final String WINNER = "w";
+    public static final String TURN = "t";
+    public static final String TYPE = "g";
+    public static final String BOARD_SIZE = "n";
+    public static final String WIN_LENGTH = "k";
+    public static final String FIRST = "p1";
+    public static final String SECOND = "p2";
+    public static final String ORDER = "o";
+    public static final String VERSION = "v";
+    public static final String CREATED_AT = "c";
+    public static final String UPDATED_AT = "u";
+    /**
+     * Time of the last move of a finished game, only finished games have it
+     */
+    public static final String FINISHED_AT = "f";
+
+    /**
+     * Codes are positions in these lists, new names may only be appended
+     */
+    static final List<String> STATUSES = List.of(
+            GameStatus.CREATED, GameStatus.IN_PROGRESS, GameStatus.FINISHED);
+    static final List<String> PLAYERS = List.of(
+            GameWinner.NOT_DEFINED_YET, GameWinner.PLAYER, GameWinner.AI,
+            GameWinner.PLAYER_1, GameWinner.PLAYER_2, GameWinner.DRAW);
+    static final List<String> TYPES = List.of(
+            GameType.AGAINST_AI, GameType.AGAINST_HUMAN);
+
+    /**
+     * Field names of games stored before the compact layout
+     */
+    private static final List<String> VERBOSE_FIELDS = List.of(
+            "status", "winner", "activeTurn", "gameType", "boardSize", "winLength", "moves", "version", "_class");
+
+    private GameDocuments() {
+    }
+
+    public static Document write(GameEntity game) {
+        Document document = new Document();
+        if (game.getId() != null)
+            document.put(ID, ObjectId.isValid(game.getId()) ? new ObjectId(game.getId()) : game.getId());
+        putState(document, game);
+        if (game.getVersion() != null)
+            document.put(VERSION, game.getVersion());
+        return document;
+    }
+
+    public static GameEntity read(Document document) {
+        if (!document.containsKey(TYPE))
+            return readVerbose(document);
+        String gameType = decode(TYPES, document.getInteger(TYPE));
+        int boardSize = document.getInteger(BOARD_SIZE);
+        GameBoard board = GameBoard.decode(boardSize,
+                bytesOf(document.get(FIRST)), bytesOf(document.get(SECOND)), bytesOf(document.get(ORDER)));
+        String id = idOf(document.get(ID));
+        List<MoveEntity> moves = new ArrayList<>(board.getMoveCount());
+        for (int i = 0; i < board.getMoveCount(); i++) {
+            moves.add(MoveEntity.builder()
+                    .number(i + 1)
+                    .gameId(id)
+                    .playedBy(board.isFirst(i) ? firstPlayer(gameType) : secondPlayer(gameType))
+                    .x(board.xOf(i))
+                    .y(board.yOf(i))
+                    .build());
+        }
+        Number version = (Number) document.get(VERSION);
+        return GameEntity.builder()
+                .id(id)
+                .status(decode(STATUSES, document.getInteger(STATUS)))
+                .winner(decode(PLAYERS, document.getInteger(WINNER)))
+                .activeTurn(document.containsKey(TURN) ? decode(PLAYERS, document.getInteger(TURN)) : null)
+                .gameType(gameType)
+                .boardSize(boardSize)
+                .winLength(document.getInteger(WIN_LENGTH))
+                .moves(moves)
+                .version(version != null ? version.longValue() : null)
+                .createdAt(instantOf(document.getDate(CREATED_AT)))
+                .updatedAt(instantOf(document.getDate(UPDATED_AT)))
+                .build();
+    }
+
+    /**
+     * Game in the compact layout as BSON bytes, for storage outside of the DB
+     */
+    public static byte[] toBytes(GameEntity game) {
+        ByteBuffer buffer = new RawBsonDocument(write(game), new DocumentCodec()).getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    public static GameEntity fromBytes(byte[] bytes) {
+        return read(new DocumentCodec().decode(
+                new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build()));
+    }
+
+    /**
+     * Code of the status as stored
+     */
+    public static int statusCode(String status) {
+        return encode(STATUSES, status);
+    }
+
+    /**
+     * Board of the moves of the game
+     */
+    public static GameBoard boardOf(GameEntity game) {
+        GameBoard board = new GameBoard(game.getBoardSize() != null ? game.getBoardSize() : 3);
+        String first = firstPlayer(game.getGameType());
+        if (game.getMoves() != null) {
+            for (MoveEntity move : game.getMoves()) {
+                board.play(move.getX(), move.getY(), first.equals(move.getPlayedBy()));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Query of the game in the given version
+     */
+    public static Query versionOf(String id, Long version) {
+        return query(where(ID).is(id).orOperator(
+                where(VERSION).is(version),
+                // Stored before the compact layout
+                Criteria.where(VERSION).exists(false).and("version").is(version)));
+    }
+
+    /**
+     * Update storing the whole state of the game in the compact layout and the next version
+     */
+    public static Update updateOf(GameEntity game) {
+        Document state = new Document();
+        putState(state, game);
+        Update update = new Update();
+        state.forEach(update::set);
+        if (game.getActiveTurn() == null)
+            update.unset(TURN);
+        update.set(VERSION, game.getVersion() + 1);
+        VERBOSE_FIELDS.forEach(update::unset);
+        return update;
+    }
+
+    /**
+     * Version of a stored game, null if not known
+     */
+    public static Long versionOf(Document document) {
+        Object version = document.containsKey(VERSION) ? document.get(VERSION) : document.get("version");
+        return version instanceof Number ? ((Number) version).longValue() : null;
+    }
+
+    private static void putState(Document document, GameEntity game) {
+        document.put(STATUS, encode(STATUSES, game.getStatus()));
+        document.put(WINNER, encode(PLAYERS, game.getWinner()));
+        if (game.getActiveTurn() != null)
+            document.put(TURN, encode(PLAYERS, game.getActiveTurn()));
+        document.put(TYPE, encode(TYPES, game.getGameType()));
+        GameBoard board = boardOf(game);
+        document.put(BOARD_SIZE, board.getSize());
+        if (game.getWinLength() != null)
+            document.put(WIN_LENGTH, game.getWinLength());
+        document.put(FIRST, new Binary(board.encodeFirst()));
+        document.put(SECOND, new Binary(board.encodeSecond()));
+        document.put(ORDER, new Binary(board.encodeOrder()));
+        if (game.getCreatedAt() != null)
+            document.put(CREATED_AT, Date.from(game.getCreatedAt()));
+        if (game.getUpdatedAt() != null) {
+            document.put(UPDATED_AT, Date.from(game.getUpdatedAt()));
+            if (GameStatus.FINISHED.equals(game.getStatus()))
+                document.put(FINISHED_AT, Date.from(game.getUpdatedAt()));
+        }
+    }
+
+    private static GameEntity readVerbose(Document document) {
+        String id = idOf(document.get(ID));
+        List<MoveEntity> moves = new ArrayList<>();
+        List<Document> stored = document.getList("moves", Document.class);
+        if (stored != null) {
+            for (Document move : stored) {
+                moves.add(MoveEntity.builder()
+                        .number(move.getInteger("number", moves.size() + 1))
+                        .gameId(id)
+                        .playedBy(move.getString("playedBy"))
+                        .x(move.getInteger("x"))
+                        .y(move.getInteger("y"))
+                        .build());
+            }
+        }
+        return GameEntity.builder()
+                .id(id)
+                .status(document.getString("status"))
+                .winner(document.getString("winner"))
+                .activeTurn(document.getString("activeTurn"))
+                .gameType(document.getString("gameType"))
+                .boardSize(document.getInteger("boardSize"))
+                .winLength(document.getInteger("winLength"))
+                .moves(moves)
+                .version(versionOf(document))
+                .build();
+    }
+
+    private static String firstPlayer(String gameType) {
+        return GameType.AGAINST_AI.equals(gameType) ? GameWinner.PLAYER : GameWinner.PLAYER_1;
+    }
+
+    private static String secondPlayer(String gameType) {
+        return GameType.AGAINST_AI.equals(gameType) ? GameWinner.AI : GameWinner.PLAYER_2;
+    }
+
+    static int encode(List<String> names, String name) {
+        int code = names.indexOf(name);
+        if (code < 0)
+            throw new IllegalArgumentException("Unknown value " + name);
+        return code;
+    }
+
+    static String decode(List<String> names, Integer code) {
+        if (code == null || code < 0 || code >= names.size())
+            throw new IllegalArgumentException("Unknown code " + code);
+        return names.get(code);
+    }
+
+    private static Instant instantOf(Date date) {
+        return date != null ? date.toInstant() : null;
+    }
+
+    private static String idOf(Object id) {
+        if (id instanceof ObjectId)
+            return ((ObjectId) id).toHexString();
+        return id != null ? id.toString() : null;
+    }
+
+    private static byte[] bytesOf(Object value) {
+        if (value instanceof Binary)
+            return ((Binary) value).getData();
+        if (value instanceof byte[])
+            return (byte[]) value;
+        return new byte[0];
+    }
+
+    @WritingConverter
+    public enum Writer implements Converter<GameEntity, Document> {
+        INSTANCE;
+
+        @Override
+        public Document convert(GameEntity game) {
+            return write(game);
+        }
+    }
+
+    @ReadingConverter
+    public enum Reader implements Converter<Document, GameEntity> {
+        INSTANCE;
+
+        @Override
+        public GameEntity convert(Document document) {
+            return read(document);
+        }
+    }
+}
@@ -2,12 +2,21 @@ package challenge.tictactoe.db;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-@Document(collection = "moves")
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Game aggregate, the game and all its moves are stored in one document,
+ * so a move is one read and one conditional update
+ */
+@Document(collection = "games")
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class GameEntity {
@@ -18,5 +27,30 @@ public class GameEntity {
     private String winner;
     private String activeTurn;
     private String gameType;
+    private Integer boardSize;
+    private Integer winLength;
+    /**
+     * Moves in the order they were played
+     */
+    private List<MoveEntity> moves;
+    /**
+     * Times of creation and of the last move, games idle or finished for long are removed
+     */
+    private Instant createdAt;
+    private Instant updatedAt;
+    /**
+     * Incremented by every update, an update is only applied to the version it was computed from
+     */
+    @Version
+    private Long version;
+
+    /**
+     * Copy of the game with its own list of moves, saved moves aren't changed so they are shared
+     */
+    public GameEntity copy() {
+        return toBuilder()
+                .moves(moves != null ? new ArrayList<>(moves) : null)
+                .build();
+    }
 
 }
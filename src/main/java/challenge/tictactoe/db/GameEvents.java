@@ -0,0 +1,170 @@
+package challenge.tictactoe.db;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Layout of event sourced games.
+ * <p>
+ * Every saved update of a game is one event holding the moves it added and the state of
+ * the game after them. Events are keyed by the number of moves the update was computed
+ * from, so of two updates of the same state only one can be stored. Every few moves the
+ * whole game is stored as a snapshot in the compact layout of {@link GameDocuments}, a
+ * game is read from its latest snapshot and the events after it.
+ * <p>
+ * Events and snapshots have ids of the game id and the number of moves, padded to sort
+ * in the order of the moves, so they are found by ranges of ids without other indexes.
+ */
+public final class GameEvents {
+
+    public static final String EVENTS = "game_events";
+    public static final String SNAPSHOTS = "game_snapshots";
+
+    /**
+     * Number of moves of the game before the event
+     */
+    public static final String BASE = "b";
+    /**
+     * Number of moves of the game in the snapshot
+     */
+    public static final String NUMBER = "n";
+    public static final String MOVES = "m";
+    public static final String STATE = "state";
+    /**
+     * Highest number of moves which can be keyed, far more than the cells of the biggest board
+     */
+    public static final int MAX_NUMBER = 9999;
+    private static final String X = "x";
+    private static final String Y = "y";
+    private static final String PLAYER = "p";
+    private static final String AT = "at";
+
+    private GameEvents() {
+    }
+
+    /**
+     * Id of the event or the snapshot of the game at the given number of moves
+     */
+    public static String key(String gameId, int number) {
+        return String.format("%s:%04d", gameId, number);
+    }
+
+    /**
+     * Id after the ids of all events or snapshots of the game
+     */
+    public static String endKey(String gameId) {
+        return gameId + ";";
+    }
+
+    /**
+     * Event of the moves added to the game since it had base moves
+     */
+    public static Document eventOf(GameEntity game, int base) {
+        List<Document> moves = new ArrayList<>();
+        for (MoveEntity move : game.getMoves().subList(base, game.getMoves().size())) {
+            moves.add(new Document(X, move.getX())
+                    .append(Y, move.getY())
+                    .append(PLAYER, GameDocuments.encode(GameDocuments.PLAYERS, move.getPlayedBy())));
+        }
+        Document event = new Document(GameDocuments.ID, key(game.getId(), base))
+                .append(BASE, base)
+                .append(MOVES, moves)
+                .append(GameDocuments.STATUS, GameDocuments.encode(GameDocuments.STATUSES, game.getStatus()))
+                .append(GameDocuments.WINNER, GameDocuments.encode(GameDocuments.PLAYERS, game.getWinner()));
+        if (game.getActiveTurn() != null)
+            event.append(GameDocuments.TURN, GameDocuments.encode(GameDocuments.PLAYERS, game.getActiveTurn()));
+        if (game.getUpdatedAt() != null)
+            event.append(AT, Date.from(game.getUpdatedAt()));
+        return event;
+    }
+
+    public static Document snapshotOf(GameEntity game) {
+        GameEntity state = game.toBuilder().id(null).version(null).build();
+        return new Document(GameDocuments.ID, key(game.getId(), game.getMoves().size()))
+                .append(NUMBER, game.getMoves().size())
+                .append(STATE, GameDocuments.write(state));
+    }
+
+    /**
+     * Game from its snapshot and the events after it, up to the given number of moves.
+     * The version of the game is its number of moves.
+     *
+     * @param events events of the game sorted by base, events before the snapshot are skipped
+     */
+    public static GameEntity replay(String id, Document snapshot, List<Document> events, int upTo) {
+        GameEntity game = GameDocuments.read(snapshot.get(STATE, Document.class));
+        game.setId(id);
+        game.getMoves().forEach(move -> move.setGameId(id));
+        for (Document event : events) {
+            int base = event.getInteger(BASE);
+            List<Document> moves = event.getList(MOVES, Document.class);
+            if (base < game.getMoves().size())
+                continue;
+            if (base > game.getMoves().size() || base >= upTo)
+                break;
+            for (Document move : moves) {
+                if (game.getMoves().size() == upTo)
+                    break;
+                game.getMoves().add(MoveEntity.builder()
+                        .number(game.getMoves().size() + 1)
+                        .gameId(id)
+                        .playedBy(GameDocuments.decode(GameDocuments.PLAYERS, move.getInteger(PLAYER)))
+                        .x(move.getInteger(X))
+                        .y(move.getInteger(Y))
+                        .build());
+            }
+            if (game.getMoves().size() == base + moves.size()) {
+                game.setStatus(GameDocuments.decode(GameDocuments.STATUSES, event.getInteger(GameDocuments.STATUS)));
+                game.setWinner(GameDocuments.decode(GameDocuments.PLAYERS, event.getInteger(GameDocuments.WINNER)));
+                game.setActiveTurn(event.containsKey(GameDocuments.TURN)
+                        ? GameDocuments.decode(GameDocuments.PLAYERS, event.getInteger(GameDocuments.TURN)) : null);
+            } else {
+                setStateBetweenMoves(game);
+            }
+            Date at = event.getDate(AT);
+            if (at != null)
+                game.setUpdatedAt(at.toInstant());
+        }
+        game.setVersion((long) game.getMoves().size());
+        return game;
+    }
+
+    /**
+     * Game as it was after the given number of moves, the game itself if it has no more moves
+     */
+    public static GameEntity atMove(GameEntity game, int number) {
+        if (number >= game.getMoves().size())
+            return game;
+        GameEntity past = game.copy();
+        past.setMoves(new ArrayList<>(game.getMoves().subList(0, number)));
+        setStateBetweenMoves(past);
+        return past;
+    }
+
+    /**
+     * State of a game which didn't end with its last move: a game without moves is created,
+     * otherwise it's in progress and the other player has the turn
+     */
+    private static void setStateBetweenMoves(GameEntity game) {
+        List<MoveEntity> moves = game.getMoves();
+        boolean againstAi = GameType.AGAINST_AI.equals(game.getGameType());
+        game.setWinner(GameWinner.NOT_DEFINED_YET);
+        if (moves.isEmpty()) {
+            game.setStatus(GameStatus.CREATED);
+            game.setActiveTurn(againstAi ? GameWinner.PLAYER : GameWinner.PLAYER_1);
+            return;
+        }
+        game.setStatus(GameStatus.IN_PROGRESS);
+        String last = moves.get(moves.size() - 1).getPlayedBy();
+        if (againstAi)
+            game.setActiveTurn(GameWinner.PLAYER.equals(last) ? GameWinner.AI : GameWinner.PLAYER);
+        else
+            game.setActiveTurn(GameWinner.PLAYER_1.equals(last) ? GameWinner.PLAYER_2 : GameWinner.PLAYER_1);
+    }
+}
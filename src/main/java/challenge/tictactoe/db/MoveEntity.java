@@ -2,12 +2,15 @@ package challenge.tictactoe.db;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.CompoundIndex;
-import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+/**
+ * Move of a game, embedded into {@link GameEntity}.
+ * <p>
+ * Games created before moves were embedded have their moves and the game itself
+ * in the 'moves' collection until they are migrated.
+ */
 @Document(collection = "moves")
-@CompoundIndex(name = "gameXY", unique = true, def = "{'gameId': 1, 'x' : 1, 'y': 1}")
 @Getter
 @Setter
 @Builder
@@ -19,7 +22,6 @@ public class MoveEntity {
     private String id;
     private int number;
     private String playedBy;
-    @Indexed
     private String gameId;
     private int x;
     private int y;
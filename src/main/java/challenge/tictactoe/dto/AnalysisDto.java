@@ -0,0 +1,37 @@
+package challenge.tictactoe.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+/**
+ * Data Transfer Object of a position analysis result
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AnalysisDto {
+
+    String id;
+    Integer boardSize;
+    String toMove;
+    /**
+     * Best move, absent if the game is over
+     */
+    Integer x;
+    Integer y;
+    /**
+     * Engine specific score, positive is good for the player to move
+     */
+    Integer score;
+    /**
+     * WIN, LOSS, DRAW or UNKNOWN for the player to move
+     */
+    String outcome;
+    /**
+     * Why the position could not be analyzed
+     */
+    String error;
+}
@@ -22,4 +22,6 @@ public class GameDto {
     String winner;
     String activeTurn;
     String gameType;
+    Integer boardSize;
+    Integer winLength;
 }
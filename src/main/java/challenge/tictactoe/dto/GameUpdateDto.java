@@ -0,0 +1,33 @@
+package challenge.tictactoe.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Change of a game pushed to clients following it: the moves added since the previous update
+ * and the state after them. An update starting at the first move carries the whole game
+ * including type and board.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GameUpdateDto {
+
+    String gameId;
+    /**
+     * Number of moves of the game after this update
+     */
+    int number;
+    List<MoveDto> moves;
+    String status;
+    String winner;
+    String activeTurn;
+    String gameType;
+    Integer boardSize;
+    Integer winLength;
+}
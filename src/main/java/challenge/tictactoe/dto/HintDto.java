@@ -0,0 +1,33 @@
+package challenge.tictactoe.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+/**
+ * Data Transfer Object of the move scores (hint heatmap) of a game
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HintDto {
+
+    String gameId;
+    /**
+     * Player the scores are computed for
+     */
+    String activeTurn;
+    Integer boardSize;
+    /**
+     * Score of every cell as scores[x][y], positive is good for the active player,
+     * null for occupied cells and cells the engine doesn't consider
+     */
+    Integer[][] scores;
+    /**
+     * Cell with the best score
+     */
+    Integer x;
+    Integer y;
+}
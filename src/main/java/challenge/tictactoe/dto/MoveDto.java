@@ -2,8 +2,8 @@ package challenge.tictactoe.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.sun.istack.NotNull;
 import lombok.*;
+import org.springframework.lang.NonNull;
 
 /**
  * Data Transfer Object for handling Move JSON objects via HTTP requests/response
@@ -16,12 +16,18 @@ import lombok.*;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class MoveDto {
 
-    @NotNull
+    @NonNull
     int x;
-    @NotNull
+    @NonNull
     int y;
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     int number;
     @JsonProperty(access = JsonProperty.Access.READ_ONLY)
     String playedBy;
+    /**
+     * Optional number this move should get, the move is rejected with 409 Conflict
+     * if the game has moved on since the client has seen it
+     */
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    Integer expectedMoveNumber;
 }
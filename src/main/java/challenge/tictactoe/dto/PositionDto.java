@@ -0,0 +1,33 @@
+package challenge.tictactoe.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+/**
+ * Data Transfer Object of a board position sent for analysis
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PositionDto {
+
+    /**
+     * Optional client reference, returned with the result
+     */
+    String id;
+    /**
+     * Cells row by row: X, O and . (or -) for an empty cell, rows may be separated by /
+     */
+    String board;
+    /**
+     * Markers in a row to win, derived from the board size if not set
+     */
+    Integer winLength;
+    /**
+     * X or O, by default X if both have the same number of markers, O otherwise
+     */
+    String toMove;
+}
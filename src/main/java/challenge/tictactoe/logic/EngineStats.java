@@ -0,0 +1,39 @@
+package challenge.tictactoe.logic;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Snapshot of the search statistics of a game engine
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class EngineStats {
+
+    /**
+     * Positions which were found in the transposition table
+     */
+    private final long hits;
+    /**
+     * Positions which had to be searched
+     */
+    private final long misses;
+    /**
+     * Positions currently stored in the transposition table
+     */
+    private final int entries;
+    /**
+     * Number of search calls
+     */
+    private final long searches;
+    /**
+     * Nodes visited by all search calls
+     */
+    private final long nodes;
+    /**
+     * Alpha-beta cutoffs of all search calls
+     */
+    private final long cutoffs;
+}
@@ -0,0 +1,53 @@
+package challenge.tictactoe.logic;
+
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+
+import java.util.List;
+
+/**
+ * Tictactoe game engine which validates moves and plays for the AI
+ */
+public interface GameEngine {
+
+    /**
+     * Process new move in Person 1 vs Person 2 game and
+     * check if it leads to the end of the game.
+     *
+     * @param game
+     * @param moves
+     */
+    void validateNextMove(GameEntity game, List<MoveEntity> moves);
+
+    /**
+     * Process new move from Person in the game with AI,
+     * generate next move from AI and check if it leads to the end of the game.
+     *
+     * @param game
+     * @param moves
+     */
+    void processAndGenerareteNextMove(GameEntity game, List<MoveEntity> moves);
+
+    /**
+     * Find the best move and the expected outcome of a position without changing anything.
+     *
+     * @param cells row-major board: {@link PositionAnalysis#EMPTY}, {@link PositionAnalysis#OPPONENT}
+     *              or {@link PositionAnalysis#TO_MOVE}
+     */
+    PositionAnalysis analyze(byte[] cells);
+
+    /**
+     * Score every move of the player to move in one search, scores are comparable with
+     * each other and with {@link PositionAnalysis#getScore}.
+     *
+     * @param cells row-major board, see {@link #analyze}
+     * @return score per cell, {@link PositionAnalysis#NO_SCORE} for occupied cells, cells
+     * the engine doesn't consider and all cells of a finished game
+     */
+    int[] evaluateMoves(byte[] cells);
+
+    /**
+     * Search statistics of this engine, accumulated over all searches
+     */
+    EngineStats getStats();
+}
@@ -0,0 +1,779 @@
+package challenge.tictactoe.logic;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.constant.Outcome;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Game engine for N x N boards where a player wins by aligning K markers,
+ * e.g. 7x7 with 4 in a row or 15x15 with 5 in a row (gomoku).
+ * <p>
+ * Such boards are far too big for a full minimax, so the engine runs an alpha-beta
+ * search (negamax form) with iterative deepening: it searches 1 move ahead, then 2,
+ * and so on until the time budget of the request is spent, and plays the best move
+ * of the deepest completed iteration. Positions which are not decided within the
+ * search depth are scored by a heuristic evaluation.
+ * <p>
+ * Evaluation counts every line of K cells on the board which is still open for one
+ * player only, weighting it by 10^(markers - 1). The counts are updated incrementally
+ * on every move, so evaluation and win detection cost O(K) per node instead of a board
+ * scan. Only empty cells next to existing markers are considered as moves, the first
+ * marker on an empty board goes to the center.
+ * <p>
+ * Searched positions are stored in a {@link TranspositionTable} under Zobrist keys
+ * together with the best move, which is tried first by the next iteration.
+ * <p>
+ * With a {@link SearchPool} the root moves are split across its worker threads: the
+ * first, most promising move is searched alone, the rest are dealt to the workers
+ * which share the best score found so far as alpha bound and the transposition table.
+ * When the pool is busy with other searches the engine searches sequentially.
+ */
+@Slf4j
+public class HeuristicGameEngine implements GameEngine {
+
+    static final int WIN_SCORE = 1_000_000;
+    private static final int WIN_THRESHOLD = WIN_SCORE - 10_000;
+    private static final int INFINITY = WIN_SCORE + 1;
+    private static final int MAX_PLY = 64;
+    private static final int NO_MOVE = -1;
+    private static final int TRANSPOSITION_TABLE_SIZE = 1 << 20;
+    /**
+     * Cutoff history of a cell is capped, so its move ordering key can't overflow
+     */
+    private static final int MAX_HISTORY = Integer.MAX_VALUE / 32;
+    private static final int TIME_CHECK_INTERVAL = 1024;
+
+    private static final int EXACT = 0;
+    private static final int LOWER_BOUND = 1;
+    private static final int UPPER_BOUND = 2;
+
+    private static final byte EMPTY = 0;
+    private static final byte FIRST = 1;
+    private static final byte SECOND = 2;
+
+    private final int boardSize;
+    private final int winLength;
+    private final int cellsCount;
+    private final long timeBudgetNanos;
+    private final String FIRST_PLAYER;
+    private final String SECOND_PLAYER;
+
+    /**
+     * Cells of every line of winLength cells on the board
+     */
+    private final int[][] windows;
+    /**
+     * Windows which contain the cell
+     */
+    private final int[][] cellWindows;
+    /**
+     * Cells within the candidate radius of the cell
+     */
+    private final int[][] neighbours;
+    private final int[] weights;
+    private final int[] centerBonus;
+    private final long[][] zobrist;
+    private final long emptyBoardKey;
+    private final long secondToMoveKey;
+
+    private final TranspositionTable transpositionTable;
+    private final SearchPool searchPool;
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder cutoffs = new LongAdder();
+
+    /**
+     * Constructor for Human vs AI game
+     *
+     * @param boardSize       number of rows and columns of the board
+     * @param winLength       number of aligned markers which wins the game
+     * @param timeBudgetMillis maximum search time per move
+     */
+    public HeuristicGameEngine(int boardSize, int winLength, long timeBudgetMillis) {
+        this(boardSize, winLength, timeBudgetMillis, null, GameWinner.PLAYER, GameWinner.AI);
+    }
+
+    /**
+     * Constructor for Human vs AI game with parallel search
+     *
+     * @param boardSize        number of rows and columns of the board
+     * @param winLength        number of aligned markers which wins the game
+     * @param timeBudgetMillis maximum search time per move
+     * @param searchPool       worker threads for the root moves, may be shared by engines
+     */
+    public HeuristicGameEngine(int boardSize, int winLength, long timeBudgetMillis, SearchPool searchPool) {
+        this(boardSize, winLength, timeBudgetMillis, searchPool, GameWinner.PLAYER, GameWinner.AI);
+    }
+
+    /**
+     * Constructor for Person 1 vs Person 2 game
+     *
+     * @param boardSize number of rows and columns of the board
+     * @param winLength number of aligned markers which wins the game
+     */
+    public HeuristicGameEngine(int boardSize, int winLength, boolean twoPlayers) {
+        this(boardSize, winLength, 0, null, GameWinner.PLAYER_1, GameWinner.PLAYER_2);
+    }
+
+    private HeuristicGameEngine(int boardSize,
+                                int winLength,
+                                long timeBudgetMillis,
+                                SearchPool searchPool,
+                                String firstPlayer,
+                                String secondPlayer) {
+        if (winLength < 1 || winLength > boardSize)
+            throw new IllegalArgumentException("Win length should be between 1 and board size");
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.cellsCount = boardSize * boardSize;
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000;
+        this.FIRST_PLAYER = firstPlayer;
+        this.SECOND_PLAYER = secondPlayer;
+        this.windows = buildWindows();
+        this.cellWindows = buildCellWindows();
+        this.neighbours = buildNeighbours(boardSize > 9 ? 1 : 2);
+        this.weights = new int[winLength + 1];
+        for (int i = 1; i <= winLength; i++) {
+            weights[i] = i == 1 ? 1 : weights[i - 1] * 10;
+        }
+        this.centerBonus = new int[cellsCount];
+        for (int cell = 0; cell < cellsCount; cell++) {
+            int dx = Math.abs(cell / boardSize - boardSize / 2);
+            int dy = Math.abs(cell % boardSize - boardSize / 2);
+            centerBonus[cell] = boardSize - Math.max(dx, dy);
+        }
+        SplittableRandom random = new SplittableRandom(boardSize * 31L + winLength);
+        this.zobrist = new long[3][cellsCount];
+        for (int cell = 0; cell < cellsCount; cell++) {
+            zobrist[FIRST][cell] = random.nextLong();
+            zobrist[SECOND][cell] = random.nextLong();
+        }
+        // Table keys should never be zero, the empty board gets a key of its own
+        this.emptyBoardKey = random.nextLong() | 1;
+        this.secondToMoveKey = random.nextLong() << 1;
+        this.transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE);
+        this.searchPool = searchPool;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    @Override
+    public void validateNextMove(GameEntity game, List<MoveEntity> moves) {
+        processMove(game, moves, false);
+    }
+
+    @Override
+    public void processAndGenerareteNextMove(GameEntity game, List<MoveEntity> moves) {
+        processMove(game, moves, true);
+    }
+
+    @Override
+    public EngineStats getStats() {
+        return new EngineStats(
+                transpositionTable.hits(),
+                transpositionTable.misses(),
+                transpositionTable.entries(),
+                searches.sum(),
+                nodes.sum(),
+                cutoffs.sum());
+    }
+
+    /**
+     * Scores are heuristic evaluations, forced wins and losses are close to +/-{@link #WIN_SCORE}.
+     * A draw is only reported when the search reached the end of the game.
+     */
+    @Override
+    public PositionAnalysis analyze(byte[] cells) {
+        // The engine searches for the second player, so the player to move plays second
+        Search position = new Search(0);
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (cells[cell] != PositionAnalysis.EMPTY)
+                position.play(cell, cells[cell] == PositionAnalysis.TO_MOVE ? SECOND : FIRST);
+        }
+        String winner = getWinner(position);
+        if (winner != null) {
+            return winner.equals(SECOND_PLAYER) ?
+                    new PositionAnalysis(PositionAnalysis.NO_MOVE, WIN_SCORE, Outcome.WIN) :
+                    winner.equals(FIRST_PLAYER) ?
+                            new PositionAnalysis(PositionAnalysis.NO_MOVE, -WIN_SCORE, Outcome.LOSS) :
+                            new PositionAnalysis(PositionAnalysis.NO_MOVE, 0, Outcome.DRAW);
+        }
+        int cell = findBestMove(position);
+        int score = position.rootScore;
+        String outcome = score >= WIN_THRESHOLD ?
+                Outcome.WIN :
+                score <= -WIN_THRESHOLD ?
+                        Outcome.LOSS :
+                        score == 0 && position.rootDepth == cellsCount - position.stones ?
+                                Outcome.DRAW :
+                                Outcome.UNKNOWN;
+        return new PositionAnalysis(cell, score, outcome);
+    }
+
+    /**
+     * Iterative deepening over all empty cells, each searched with a full window,
+     * scores of the deepest iteration completed within the time budget are returned
+     */
+    @Override
+    public int[] evaluateMoves(byte[] cells) {
+        Search search = new Search(System.nanoTime() + timeBudgetNanos);
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (cells[cell] != PositionAnalysis.EMPTY)
+                search.play(cell, cells[cell] == PositionAnalysis.TO_MOVE ? SECOND : FIRST);
+        }
+        int[] scores = new int[cellsCount];
+        Arrays.fill(scores, PositionAnalysis.NO_SCORE);
+        if (getWinner(search) != null)
+            return scores;
+
+        int[] iterationScores = new int[cellsCount];
+        int maxDepth = Math.min(cellsCount - search.stones, MAX_PLY - 1);
+        for (int depth = 1; depth <= maxDepth && !search.aborted; depth++) {
+            search.ageHistory();
+            boolean decided = true;
+            Arrays.fill(iterationScores, PositionAnalysis.NO_SCORE);
+            for (int cell = 0; cell < cellsCount && !search.aborted; cell++) {
+                if (search.cells[cell] != EMPTY)
+                    continue;
+                int score = searchRootMove(search, cell, depth, -INFINITY);
+                if (search.aborted)
+                    break;
+                iterationScores[cell] = score;
+                decided &= Math.abs(score) >= WIN_THRESHOLD;
+            }
+            // An incomplete iteration is only better than nothing on the first one
+            if (search.aborted && depth > 1)
+                break;
+            System.arraycopy(iterationScores, 0, scores, 0, cellsCount);
+            // Deeper iterations can't change scores of forced wins and losses
+            if (decided)
+                break;
+        }
+
+        searches.increment();
+        nodes.add(search.nodes);
+        cutoffs.add(search.cutoffs);
+        return scores;
+    }
+
+    private void processMove(GameEntity game, List<MoveEntity> moves, boolean process) {
+        if (game.getStatus().equals(GameStatus.FINISHED))
+            return;
+
+        game.setStatus(GameStatus.IN_PROGRESS);
+        game.setWinner(GameWinner.NOT_DEFINED_YET);
+
+        Search search = positionOf(moves);
+        if (process) {
+            game.setActiveTurn(SECOND_PLAYER);
+            if (getWinner(search) == null) {
+                int cell = findBestMove(search);
+                search.play(cell, SECOND);
+                moves.add(createNextMove(cell, moves, game.getId()));
+            }
+            game.setActiveTurn(FIRST_PLAYER);
+        }
+
+        String winner = getWinner(search);
+        if (winner != null) {
+            game.setStatus(GameStatus.FINISHED);
+            game.setWinner(winner);
+            game.setActiveTurn(null);
+        }
+    }
+
+    Search positionOf(List<MoveEntity> moves) {
+        Search search = new Search(0);
+        for (MoveEntity move : moves) {
+            search.play(move.getX() * boardSize + move.getY(),
+                    move.getPlayedBy().equals(FIRST_PLAYER) ? FIRST : SECOND);
+        }
+        return search;
+    }
+
+    /**
+     * Iterative deepening search for the second player
+     *
+     * @return best cell found within the time budget
+     */
+    int findBestMove(Search position) {
+        // The center is the strongest opening on any board, no need to search for it
+        if (position.stones == 0)
+            return (boardSize / 2) * boardSize + boardSize / 2;
+
+        return findBestMove(position, System.nanoTime() + timeBudgetNanos, MAX_PLY - 1);
+    }
+
+    /**
+     * Iterative deepening search for the second player, the score and depth
+     * of the deepest completed iteration are left in the position
+     *
+     * @param deadline   System.nanoTime() when the search has to stop
+     * @param depthLimit maximum depth to search
+     * @return best cell found within the deadline
+     */
+    int findBestMove(Search position, long deadline, int depthLimit) {
+        Search search = position.copy(deadline);
+        Search[] workers = new Search[0];
+        boolean parallel = searchPool != null && searchPool.tryAcquire();
+        int bestMove = NO_MOVE;
+        int bestScore = -INFINITY;
+        int completedDepth = 0;
+        try {
+            if (parallel) {
+                workers = new Search[searchPool.getWorkersPerSearch()];
+                for (int i = 0; i < workers.length; i++) {
+                    workers[i] = position.copy(deadline);
+                }
+            }
+            int maxDepth = Math.min(Math.min(cellsCount - search.stones, MAX_PLY - 1), depthLimit);
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                search.ageHistory();
+                for (Search worker : workers) {
+                    worker.ageHistory();
+                }
+                int score = parallel ?
+                        searchRootParallel(search, workers, depth, bestMove) :
+                        searchRoot(search, depth, bestMove);
+                if (search.aborted)
+                    break;
+                bestMove = search.rootBestMove;
+                bestScore = score;
+                completedDepth = depth;
+                if (Math.abs(bestScore) >= WIN_THRESHOLD)
+                    break;
+            }
+        } finally {
+            if (parallel) searchPool.release();
+        }
+        if (bestMove == NO_MOVE) {
+            // Not even the first iteration has completed, play the most promising candidate
+            orderMoves(search, 0, NO_MOVE);
+            bestMove = search.moves[0][0];
+        }
+
+        position.rootScore = bestScore;
+        position.rootDepth = completedDepth;
+        for (Search worker : workers) {
+            search.nodes += worker.nodes;
+            search.cutoffs += worker.cutoffs;
+        }
+        searches.increment();
+        nodes.add(search.nodes);
+        cutoffs.add(search.cutoffs);
+        log.debug("{}x{} {} search finished on depth {}: score {}, {} nodes, {} cutoffs",
+                boardSize, boardSize, parallel ? "parallel" : "sequential",
+                completedDepth, bestScore, search.nodes, search.cutoffs);
+        return bestMove;
+    }
+
+    private int searchRoot(Search search, int depth, int previousBest) {
+        int alpha = -INFINITY;
+        int bestScore = -INFINITY;
+        int bestMove = NO_MOVE;
+        int movesCount = orderMoves(search, 0, previousBest);
+        for (int i = 0; i < movesCount; i++) {
+            int cell = search.moves[0][i];
+            int score = searchRootMove(search, cell, depth, alpha);
+            if (search.aborted)
+                return bestScore;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = cell;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        search.rootBestMove = bestMove;
+        return bestScore;
+    }
+
+    /**
+     * Root search split across the pool. The first move is searched alone to get
+     * an alpha bound, then every worker takes every n-th of the remaining moves.
+     * A move whose score doesn't exceed the bound it was searched with is only
+     * known to be not better, so it can't become the best move.
+     */
+    private int searchRootParallel(Search search, Search[] workers, int depth, int previousBest) {
+        int movesCount = orderMoves(search, 0, previousBest);
+        int[] rootMoves = Arrays.copyOf(search.moves[0], movesCount);
+        int[] scores = new int[movesCount];
+        scores[0] = searchRootMove(search, rootMoves[0], depth, -INFINITY);
+        if (search.aborted)
+            return scores[0];
+
+        AtomicInteger alpha = new AtomicInteger(scores[0]);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(workers.length);
+        for (int w = 0; w < workers.length; w++) {
+            Search worker = workers[w];
+            int firstIndex = w + 1;
+            tasks.add(searchPool.pool().submit(() -> {
+                for (int i = firstIndex; i < movesCount && !worker.aborted; i += workers.length) {
+                    int bound = alpha.get();
+                    int score = searchRootMove(worker, rootMoves[i], depth, bound);
+                    scores[i] = score > bound ? score : -INFINITY;
+                    alpha.accumulateAndGet(score, Math::max);
+                }
+            }));
+        }
+        tasks.forEach(ForkJoinTask::join);
+        for (Search worker : workers) {
+            search.aborted |= worker.aborted;
+        }
+        if (search.aborted)
+            return scores[0];
+
+        int bestIndex = 0;
+        for (int i = 1; i < movesCount; i++) {
+            if (scores[i] > scores[bestIndex]) bestIndex = i;
+        }
+        search.rootBestMove = rootMoves[bestIndex];
+        return scores[bestIndex];
+    }
+
+    private int searchRootMove(Search search, int cell, int depth, int alpha) {
+        int score;
+        if (search.play(cell, SECOND)) {
+            score = WIN_SCORE - 1;
+        } else {
+            score = -negamax(search, FIRST, depth - 1, -INFINITY, -alpha, 1);
+        }
+        search.undo(cell, SECOND);
+        return score;
+    }
+
+    private int negamax(Search search, byte player, int depth, int alpha, int beta, int ply) {
+        search.nodes++;
+        if ((search.nodes & (TIME_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() > search.deadline) {
+            search.aborted = true;
+        }
+        if (search.aborted)
+            return 0;
+        if (search.stones == cellsCount)
+            return 0;
+        if (depth == 0)
+            return player == SECOND ? search.score : -search.score;
+
+        long key = player == SECOND ? search.key ^ secondToMoveKey : search.key;
+        long stored = transpositionTable.probe(key);
+        int ttMove = NO_MOVE;
+        if (stored != TranspositionTable.NOT_FOUND) {
+            ttMove = moveOfEntry(stored);
+            if (depthOfEntry(stored) >= depth) {
+                int score = fromTableScore(scoreOfEntry(stored), ply);
+                int bound = boundOf(stored);
+                if (bound == EXACT
+                        || (bound == LOWER_BOUND && score >= beta)
+                        || (bound == UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = NO_MOVE;
+        byte opponent = player == FIRST ? SECOND : FIRST;
+        int movesCount = orderMoves(search, ply, ttMove);
+        for (int i = 0; i < movesCount; i++) {
+            int cell = search.moves[ply][i];
+            int score;
+            if (search.play(cell, player)) {
+                score = WIN_SCORE - (ply + 1);
+            } else {
+                score = -negamax(search, opponent, depth - 1, -beta, -alpha, ply + 1);
+            }
+            search.undo(cell, player);
+            if (search.aborted)
+                return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = cell;
+            }
+            alpha = Math.max(alpha, score);
+            if (alpha >= beta) {
+                search.cutoffs++;
+                search.killers[ply] = cell;
+                search.history[cell] = Math.min(search.history[cell] + depth * depth, MAX_HISTORY);
+                break;
+            }
+        }
+
+        int bound = bestScore <= originalAlpha ?
+                UPPER_BOUND :
+                bestScore >= beta ? LOWER_BOUND : EXACT;
+        transpositionTable.store(key, toEntry(toTableScore(bestScore, ply), depth, bound, bestMove));
+        return bestScore;
+    }
+
+    /**
+     * Fill the moves buffer of the ply with candidate cells: the table move first,
+     * then the killer move, then the rest by cutoff history and distance to the center.
+     *
+     * @return number of moves
+     */
+    private int orderMoves(Search search, int ply, int preferredMove) {
+        int[] moves = search.moves[ply];
+        int[] keys = search.orderKeys[ply];
+        int killer = search.killers[ply];
+        int count = 0;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (search.cells[cell] != EMPTY)
+                continue;
+            if (search.near[cell] == 0 && search.stones > 0)
+                continue;
+            int key = cell == preferredMove ?
+                    Integer.MAX_VALUE :
+                    cell == killer ?
+                            Integer.MAX_VALUE - 1 :
+                            search.history[cell] * 16 + centerBonus[cell];
+            int i = count++;
+            while (i > 0 && keys[i - 1] < key) {
+                moves[i] = moves[i - 1];
+                keys[i] = keys[i - 1];
+                i--;
+            }
+            moves[i] = cell;
+            keys[i] = key;
+        }
+        return count;
+    }
+
+    private String getWinner(Search search) {
+        boolean firstWon = false;
+        for (int w = 0; w < windows.length; w++) {
+            if (search.secondInWindow[w] == winLength)
+                return SECOND_PLAYER;
+            if (search.firstInWindow[w] == winLength)
+                firstWon = true;
+        }
+        if (firstWon)
+            return FIRST_PLAYER;
+        if (search.stones == cellsCount)
+            return GameWinner.DRAW;
+        return null;
+    }
+
+    private MoveEntity createNextMove(int cell,
+                                      List<MoveEntity> moves,
+                                      String gameId) {
+        return MoveEntity.builder()
+                .x(cell / boardSize)
+                .y(cell % boardSize)
+                .number(moves.size() + 1)
+                .gameId(gameId)
+                .playedBy(SECOND_PLAYER)
+                .build();
+    }
+
+    /**
+     * Win scores are stored relative to the stored node, so they stay correct
+     * when the same position is reached on another ply
+     */
+    private static int toTableScore(int score, int ply) {
+        return score >= WIN_THRESHOLD ? score + ply : score <= -WIN_THRESHOLD ? score - ply : score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        return score >= WIN_THRESHOLD ? score - ply : score <= -WIN_THRESHOLD ? score + ply : score;
+    }
+
+    private static long toEntry(int score, int depth, int bound, int move) {
+        return (long) score << 32 | (long) depth << 24 | (long) bound << 16 | (move & 0xFFFF);
+    }
+
+    private static int scoreOfEntry(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    private static int depthOfEntry(long entry) {
+        return (int) (entry >>> 24) & 0xFF;
+    }
+
+    private static int boundOf(long entry) {
+        return (int) (entry >>> 16) & 0xFF;
+    }
+
+    private static int moveOfEntry(long entry) {
+        int move = (int) entry & 0xFFFF;
+        return move == 0xFFFF ? NO_MOVE : move;
+    }
+
+    private int[][] buildWindows() {
+        List<int[]> result = new ArrayList<>();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int x = 0; x < boardSize; x++) {
+            for (int y = 0; y < boardSize; y++) {
+                for (int[] direction : directions) {
+                    int endX = x + direction[0] * (winLength - 1);
+                    int endY = y + direction[1] * (winLength - 1);
+                    if (endX < 0 || endX >= boardSize || endY < 0 || endY >= boardSize)
+                        continue;
+                    int[] window = new int[winLength];
+                    for (int i = 0; i < winLength; i++) {
+                        window[i] = (x + direction[0] * i) * boardSize + y + direction[1] * i;
+                    }
+                    result.add(window);
+                }
+            }
+        }
+        return result.toArray(new int[0][]);
+    }
+
+    private int[][] buildCellWindows() {
+        int[] counts = new int[cellsCount];
+        for (int[] window : windows) {
+            for (int cell : window) counts[cell]++;
+        }
+        int[][] result = new int[cellsCount][];
+        for (int cell = 0; cell < cellsCount; cell++) {
+            result[cell] = new int[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int w = 0; w < windows.length; w++) {
+            for (int cell : windows[w]) result[cell][counts[cell]++] = w;
+        }
+        return result;
+    }
+
+    private int[][] buildNeighbours(int radius) {
+        int[][] result = new int[cellsCount][];
+        for (int cell = 0; cell < cellsCount; cell++) {
+            List<Integer> cells = new ArrayList<>();
+            int x = cell / boardSize;
+            int y = cell % boardSize;
+            for (int nx = Math.max(0, x - radius); nx <= Math.min(boardSize - 1, x + radius); nx++) {
+                for (int ny = Math.max(0, y - radius); ny <= Math.min(boardSize - 1, y + radius); ny++) {
+                    if (nx != x || ny != y) cells.add(nx * boardSize + ny);
+                }
+            }
+            result[cell] = cells.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return result;
+    }
+
+    /**
+     * Mutable position and counters of one search call. Everything a node needs is
+     * allocated here once, so the search itself doesn't allocate.
+     */
+    final class Search {
+
+        final byte[] cells = new byte[cellsCount];
+        final int[] firstInWindow = new int[windows.length];
+        final int[] secondInWindow = new int[windows.length];
+        /**
+         * Number of markers around each cell, empty cells with none are not searched
+         */
+        final int[] near = new int[cellsCount];
+        final int[][] moves;
+        final int[][] orderKeys;
+        final int[] killers = new int[MAX_PLY];
+        final int[] history = new int[cellsCount];
+        /**
+         * Evaluation of the position from the second player's point of view
+         */
+        int score;
+        long key;
+        int stones;
+        long nodes;
+        long cutoffs;
+        long deadline;
+        boolean aborted;
+        int rootBestMove = NO_MOVE;
+        int rootScore;
+        int rootDepth;
+
+        Search(long deadline) {
+            this.deadline = deadline;
+            this.key = emptyBoardKey;
+            int plies = Math.min(cellsCount, MAX_PLY) + 1;
+            this.moves = new int[plies][cellsCount];
+            this.orderKeys = new int[plies][cellsCount];
+            Arrays.fill(killers, NO_MOVE);
+        }
+
+        /**
+         * Halve the cutoff history before the next iteration, cutoffs of the deeper search
+         * outweigh the older ones and the history stays bounded however long the search runs
+         */
+        void ageHistory() {
+            for (int cell = 0; cell < cellsCount; cell++) {
+                history[cell] >>= 1;
+            }
+        }
+
+        /**
+         * Copy of the position with fresh counters
+         */
+        Search copy(long deadline) {
+            Search copy = new Search(deadline);
+            for (int cell = 0; cell < cellsCount; cell++) {
+                if (cells[cell] != EMPTY) copy.play(cell, cells[cell]);
+            }
+            return copy;
+        }
+
+        /**
+         * Place a marker and update evaluation, key and candidate cells
+         *
+         * @return true if the move completes a line of winLength markers
+         */
+        boolean play(int cell, byte player) {
+            boolean won = false;
+            cells[cell] = player;
+            stones++;
+            key ^= zobrist[player][cell];
+            for (int w : cellWindows[cell]) {
+                score -= windowValue(w);
+                if (player == FIRST) {
+                    won |= ++firstInWindow[w] == winLength;
+                } else {
+                    won |= ++secondInWindow[w] == winLength;
+                }
+                score += windowValue(w);
+            }
+            for (int neighbour : neighbours[cell]) near[neighbour]++;
+            return won;
+        }
+
+        void undo(int cell, byte player) {
+            cells[cell] = EMPTY;
+            stones--;
+            key ^= zobrist[player][cell];
+            for (int w : cellWindows[cell]) {
+                score -= windowValue(w);
+                if (player == FIRST) {
+                    firstInWindow[w]--;
+                } else {
+                    secondInWindow[w]--;
+                }
+                score += windowValue(w);
+            }
+            for (int neighbour : neighbours[cell]) near[neighbour]--;
+        }
+
+        private int windowValue(int w) {
+            if (firstInWindow[w] == 0)
+                return weights[secondInWindow[w]];
+            if (secondInWindow[w] == 0)
+                return -weights[firstInWindow[w]];
+            return 0;
+        }
+    }
+}
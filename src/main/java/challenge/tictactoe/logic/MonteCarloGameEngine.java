@@ -0,0 +1,566 @@
+package challenge.tictactoe.logic;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.constant.Outcome;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monte Carlo tree search engine for big N x N boards where K aligned markers win.
+ * <p>
+ * Instead of searching all replies to a fixed depth, the engine repeats playouts:
+ * it walks down the tree of already explored moves choosing children by UCT, adds
+ * the children of the reached node once it was visited often enough, finishes the
+ * game with random moves next to existing markers and credits the result to every
+ * node on the path. The move visited most often is played. The cost of a move is
+ * bounded by a time budget and optionally by a number of playouts, whatever comes
+ * first, and doesn't depend on the board size.
+ * <p>
+ * With a {@link SearchPool} the search's share of its worker threads run playouts on the same tree.
+ * The tree is lock-free: visits and results are atomic counters and children are
+ * published with a compare-and-set. A visit is counted when a worker descends
+ * into a node and its result only when the playout ends (virtual loss), so workers
+ * are steered away from the paths other workers are exploring. Playouts reuse the
+ * arrays of their worker and don't allocate.
+ * <p>
+ * Winning in one move and blocking the opponent's win in one move are checked before
+ * the tree search, random playouts are too noisy to be trusted with them.
+ */
+@Slf4j
+public class MonteCarloGameEngine implements GameEngine {
+
+    private static final double EXPLORATION = 1.0;
+    private static final int EXPAND_AFTER_VISITS = 2;
+    private static final int RANDOM_MOVE_ATTEMPTS = 4;
+
+    private static final byte EMPTY = 0;
+    private static final byte FIRST = 1;
+    private static final byte SECOND = 2;
+    private static final byte DRAW = 3;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int boardSize;
+    private final int winLength;
+    private final int cellsCount;
+    private final int radius;
+    private final long timeBudgetNanos;
+    private final long maxPlayouts;
+    private final SearchPool searchPool;
+    private final String FIRST_PLAYER;
+    private final String SECOND_PLAYER;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder playouts = new LongAdder();
+    private final LongAdder treeNodes = new LongAdder();
+
+    /**
+     * Constructor for Human vs AI game
+     *
+     * @param boardSize        number of rows and columns of the board
+     * @param winLength        number of aligned markers which wins the game
+     * @param timeBudgetMillis maximum search time per move
+     * @param maxPlayouts      maximum playouts per move, 0 for no limit
+     * @param searchPool       worker threads for tree-parallel playouts, null to run on the caller thread
+     */
+    public MonteCarloGameEngine(int boardSize,
+                                int winLength,
+                                long timeBudgetMillis,
+                                long maxPlayouts,
+                                SearchPool searchPool) {
+        if (winLength < 1 || winLength > boardSize)
+            throw new IllegalArgumentException("Win length should be between 1 and board size");
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.cellsCount = boardSize * boardSize;
+        this.radius = boardSize > 9 ? 1 : 2;
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000;
+        this.maxPlayouts = maxPlayouts > 0 ? maxPlayouts : Long.MAX_VALUE;
+        this.searchPool = searchPool;
+        this.FIRST_PLAYER = GameWinner.PLAYER;
+        this.SECOND_PLAYER = GameWinner.AI;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    @Override
+    public void validateNextMove(GameEntity game, List<MoveEntity> moves) {
+        processMove(game, moves, false);
+    }
+
+    @Override
+    public void processAndGenerareteNextMove(GameEntity game, List<MoveEntity> moves) {
+        processMove(game, moves, true);
+    }
+
+    /**
+     * Monte Carlo search has no transposition table: nodes are playouts and
+     * entries are tree nodes created by all searches
+     */
+    @Override
+    public EngineStats getStats() {
+        return new EngineStats(0, 0, (int) Math.min(Integer.MAX_VALUE, treeNodes.sum()),
+                searches.sum(), playouts.sum(), 0);
+    }
+
+    /**
+     * Scores are the share of playouts won by the best move in percent, draws count as half.
+     * Monte Carlo search proves nothing, so only a win in one move is reported as outcome.
+     */
+    @Override
+    public PositionAnalysis analyze(byte[] cells) {
+        // The engine searches for the second player, so the player to move plays second
+        byte[] board = new byte[cellsCount];
+        for (int cell = 0; cell < cellsCount; cell++) {
+            board[cell] = cells[cell] == PositionAnalysis.TO_MOVE ?
+                    SECOND :
+                    cells[cell] == PositionAnalysis.OPPONENT ? FIRST : EMPTY;
+        }
+        String winner = getWinner(board);
+        if (winner != null) {
+            return winner.equals(SECOND_PLAYER) ?
+                    new PositionAnalysis(PositionAnalysis.NO_MOVE, 100, Outcome.WIN) :
+                    winner.equals(FIRST_PLAYER) ?
+                            new PositionAnalysis(PositionAnalysis.NO_MOVE, 0, Outcome.LOSS) :
+                            new PositionAnalysis(PositionAnalysis.NO_MOVE, 50, Outcome.DRAW);
+        }
+        Playout root = new Playout(board);
+        if (root.stones == 0)
+            return new PositionAnalysis(findBestMove(board), 50, Outcome.UNKNOWN);
+        int forcedMove = findForcedMove(root);
+        if (forcedMove >= 0) {
+            return completesLine(board, forcedMove, SECOND) ?
+                    new PositionAnalysis(forcedMove, 100, Outcome.WIN) :
+                    new PositionAnalysis(forcedMove, 50, Outcome.UNKNOWN);
+        }
+        Node best = mostVisited(search(root));
+        if (best == null)
+            return new PositionAnalysis(root.randomMove(ThreadLocalRandom.current()), 50, Outcome.UNKNOWN);
+        return new PositionAnalysis(best.move, winRate(best), Outcome.UNKNOWN);
+    }
+
+    /**
+     * Win rates of the moves next to existing markers, other cells aren't searched
+     */
+    @Override
+    public int[] evaluateMoves(byte[] cells) {
+        byte[] board = new byte[cellsCount];
+        for (int cell = 0; cell < cellsCount; cell++) {
+            board[cell] = cells[cell] == PositionAnalysis.TO_MOVE ?
+                    SECOND :
+                    cells[cell] == PositionAnalysis.OPPONENT ? FIRST : EMPTY;
+        }
+        int[] scores = new int[cellsCount];
+        Arrays.fill(scores, PositionAnalysis.NO_SCORE);
+        if (getWinner(board) != null)
+            return scores;
+
+        Playout root = new Playout(board);
+        if (root.stones == 0) {
+            scores[findBestMove(board)] = 50;
+            return scores;
+        }
+        Node[] children = search(root).children;
+        if (children != null) {
+            for (Node child : children) {
+                scores[child.move] = winRate(child);
+            }
+        }
+        return scores;
+    }
+
+    private void processMove(GameEntity game, List<MoveEntity> moves, boolean process) {
+        if (game.getStatus().equals(GameStatus.FINISHED))
+            return;
+
+        game.setStatus(GameStatus.IN_PROGRESS);
+        game.setWinner(GameWinner.NOT_DEFINED_YET);
+
+        byte[] cells = new byte[cellsCount];
+        for (MoveEntity move : moves) {
+            cells[move.getX() * boardSize + move.getY()] =
+                    move.getPlayedBy().equals(FIRST_PLAYER) ? FIRST : SECOND;
+        }
+
+        if (process) {
+            game.setActiveTurn(SECOND_PLAYER);
+            if (getWinner(cells) == null) {
+                int cell = findBestMove(cells);
+                cells[cell] = SECOND;
+                moves.add(createNextMove(cell, moves, game.getId()));
+            }
+            game.setActiveTurn(FIRST_PLAYER);
+        }
+
+        String winner = getWinner(cells);
+        if (winner != null) {
+            game.setStatus(GameStatus.FINISHED);
+            game.setWinner(winner);
+            game.setActiveTurn(null);
+        }
+    }
+
+    /**
+     * Best move of the second player
+     */
+    int findBestMove(byte[] cells) {
+        Playout root = new Playout(cells);
+        if (root.stones == 0)
+            return (boardSize / 2) * boardSize + boardSize / 2;
+        int forcedMove = findForcedMove(root);
+        if (forcedMove >= 0)
+            return forcedMove;
+
+        Node best = mostVisited(search(root));
+        return best != null ? best.move : root.randomMove(ThreadLocalRandom.current());
+    }
+
+    /**
+     * Run playouts from the position until the budget is spent
+     *
+     * @return root of the search tree, its children are the moves of the second player
+     */
+    private Node search(Playout root) {
+        Node rootNode = new Node(-1, FIRST);
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        AtomicLong searchPlayouts = new AtomicLong();
+        boolean parallel = searchPool != null && searchPool.tryAcquire();
+        try {
+            if (parallel) {
+                List<ForkJoinTask<?>> workers = new ArrayList<>();
+                for (int i = 0; i < searchPool.getWorkersPerSearch(); i++) {
+                    workers.add(searchPool.pool().submit(() ->
+                            runPlayouts(rootNode, root, deadline, searchPlayouts)));
+                }
+                workers.forEach(ForkJoinTask::join);
+            } else {
+                runPlayouts(rootNode, root, deadline, searchPlayouts);
+            }
+        } finally {
+            if (parallel) searchPool.release();
+        }
+
+        // Every worker counts one playout over the limit before it stops
+        long playoutsCount = Math.min(searchPlayouts.get(), maxPlayouts);
+        searches.increment();
+        playouts.add(playoutsCount);
+        log.debug("{}x{} {} Monte Carlo search finished: {} playouts",
+                boardSize, boardSize, parallel ? "parallel" : "sequential", playoutsCount);
+        return rootNode;
+    }
+
+    /**
+     * @return the most visited child or null if the node was never expanded
+     */
+    private static Node mostVisited(Node node) {
+        Node best = null;
+        Node[] children = node.children;
+        if (children != null) {
+            for (Node child : children) {
+                if (best == null || child.visits > best.visits) best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Share of won playouts in percent, draws count as half
+     */
+    private static int winRate(Node node) {
+        return (int) (node.results * 50 / Math.max(1, node.visits));
+    }
+
+    /**
+     * Win in one move if possible, otherwise block the opponent's win in one move
+     *
+     * @return cell or -1 if there is no forced move
+     */
+    private int findForcedMove(Playout position) {
+        int block = -1;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (position.cells[cell] != EMPTY)
+                continue;
+            if (completesLine(position.cells, cell, SECOND))
+                return cell;
+            if (block < 0 && completesLine(position.cells, cell, FIRST))
+                block = cell;
+        }
+        return block;
+    }
+
+    /**
+     * Playout loop of one worker thread
+     */
+    private void runPlayouts(Node rootNode, Playout root, long deadline, AtomicLong searchPlayouts) {
+        Playout playout = new Playout(root.cells);
+        Node[] path = new Node[cellsCount + 1];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline && searchPlayouts.incrementAndGet() <= maxPlayouts) {
+            playout.reset(root);
+            Node node = rootNode;
+            Node.VISITS.incrementAndGet(node);
+            path[0] = node;
+            int length = 1;
+            byte toMove = SECOND;
+            byte winner = EMPTY;
+            while (true) {
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node.visits < EXPAND_AFTER_VISITS)
+                        break;
+                    children = expand(node, playout, toMove);
+                }
+                if (children.length == 0)
+                    break;
+                node = select(node, children);
+                // Virtual loss: the visit is counted now, the result only after the playout
+                Node.VISITS.incrementAndGet(node);
+                path[length++] = node;
+                if (playout.play(node.move, toMove)) {
+                    winner = toMove;
+                    break;
+                }
+                toMove = toMove == FIRST ? SECOND : FIRST;
+                if (playout.emptiesCount == 0) {
+                    winner = DRAW;
+                    break;
+                }
+            }
+            if (winner == EMPTY) {
+                winner = playout.playRandomGame(toMove, random);
+            }
+            for (int i = 0; i < length; i++) {
+                Node.RESULTS.addAndGet(path[i], winner == DRAW ? 1 : winner == path[i].player ? 2 : 0);
+            }
+        }
+    }
+
+    /**
+     * UCT selection, results are counted in half points: win 2, draw 1, loss 0
+     */
+    private static Node select(Node parent, Node[] children) {
+        double logVisits = Math.log(Math.max(1, parent.visits));
+        Node best = children[0];
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (Node child : children) {
+            int visits = child.visits;
+            if (visits == 0)
+                return child;
+            double value = child.results / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Create children for the empty cells next to existing markers. When several
+     * workers expand the same node only the first published array is used.
+     */
+    private Node[] expand(Node node, Playout playout, byte toMove) {
+        int count = 0;
+        int[] candidates = new int[playout.emptiesCount];
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (playout.cells[cell] == EMPTY && hasNeighbour(playout.cells, cell))
+                candidates[count++] = cell;
+        }
+        Node[] children = new Node[count];
+        for (int i = 0; i < count; i++) {
+            children[i] = new Node(candidates[i], toMove);
+        }
+        if (Node.CHILDREN.compareAndSet(node, null, children)) {
+            treeNodes.add(count);
+            return children;
+        }
+        return node.children;
+    }
+
+    private boolean hasNeighbour(byte[] cells, int cell) {
+        int x = cell / boardSize;
+        int y = cell % boardSize;
+        for (int nx = Math.max(0, x - radius); nx <= Math.min(boardSize - 1, x + radius); nx++) {
+            for (int ny = Math.max(0, y - radius); ny <= Math.min(boardSize - 1, y + radius); ny++) {
+                if (cells[nx * boardSize + ny] != EMPTY) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a marker of the player on the cell makes a line of winLength
+     */
+    private boolean completesLine(byte[] cells, int cell, byte player) {
+        int x = cell / boardSize;
+        int y = cell % boardSize;
+        for (int[] direction : DIRECTIONS) {
+            int count = 1;
+            for (int sign = -1; sign <= 1; sign += 2) {
+                int nx = x + sign * direction[0];
+                int ny = y + sign * direction[1];
+                while (nx >= 0 && nx < boardSize && ny >= 0 && ny < boardSize
+                        && cells[nx * boardSize + ny] == player) {
+                    count++;
+                    nx += sign * direction[0];
+                    ny += sign * direction[1];
+                }
+            }
+            if (count >= winLength)
+                return true;
+        }
+        return false;
+    }
+
+    private String getWinner(byte[] cells) {
+        boolean firstWon = false;
+        int stones = 0;
+        for (int cell = 0; cell < cellsCount; cell++) {
+            if (cells[cell] == EMPTY)
+                continue;
+            stones++;
+            if (completesLine(cells, cell, cells[cell])) {
+                if (cells[cell] == SECOND)
+                    return SECOND_PLAYER;
+                firstWon = true;
+            }
+        }
+        if (firstWon)
+            return FIRST_PLAYER;
+        if (stones == cellsCount)
+            return GameWinner.DRAW;
+        return null;
+    }
+
+    private MoveEntity createNextMove(int cell,
+                                      List<MoveEntity> moves,
+                                      String gameId) {
+        return MoveEntity.builder()
+                .x(cell / boardSize)
+                .y(cell % boardSize)
+                .number(moves.size() + 1)
+                .gameId(gameId)
+                .playedBy(SECOND_PLAYER)
+                .build();
+    }
+
+    /**
+     * Node of the shared search tree
+     */
+    static final class Node {
+
+        static final AtomicIntegerFieldUpdater<Node> VISITS =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        static final AtomicLongFieldUpdater<Node> RESULTS =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "results");
+        static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+        /**
+         * Cell played to reach the node
+         */
+        final int move;
+        /**
+         * Player who played the move, results are counted for this player
+         */
+        final byte player;
+        volatile int visits;
+        volatile long results;
+        volatile Node[] children;
+
+        Node(int move, byte player) {
+            this.move = move;
+            this.player = player;
+        }
+    }
+
+    /**
+     * Board of one worker. Empty cells are kept in an array with the position of every
+     * cell in it, so a random empty cell is picked and removed in constant time.
+     */
+    final class Playout {
+
+        final byte[] cells = new byte[cellsCount];
+        final int[] empties = new int[cellsCount];
+        final int[] emptyIndex = new int[cellsCount];
+        int emptiesCount;
+        int stones;
+
+        Playout(byte[] position) {
+            for (int cell = 0; cell < cellsCount; cell++) {
+                cells[cell] = position[cell];
+                if (position[cell] == EMPTY) {
+                    emptyIndex[cell] = emptiesCount;
+                    empties[emptiesCount++] = cell;
+                } else {
+                    stones++;
+                }
+            }
+        }
+
+        void reset(Playout root) {
+            System.arraycopy(root.cells, 0, cells, 0, cellsCount);
+            System.arraycopy(root.empties, 0, empties, 0, cellsCount);
+            System.arraycopy(root.emptyIndex, 0, emptyIndex, 0, cellsCount);
+            emptiesCount = root.emptiesCount;
+            stones = root.stones;
+        }
+
+        /**
+         * @return true if the move completes a line of winLength markers
+         */
+        boolean play(int cell, byte player) {
+            cells[cell] = player;
+            stones++;
+            int index = emptyIndex[cell];
+            int last = empties[--emptiesCount];
+            empties[index] = last;
+            emptyIndex[last] = index;
+            return completesLine(cells, cell, player);
+        }
+
+        /**
+         * Random empty cell, preferably next to an existing marker
+         */
+        int randomMove(ThreadLocalRandom random) {
+            int cell = empties[random.nextInt(emptiesCount)];
+            for (int i = 1; i < RANDOM_MOVE_ATTEMPTS && !hasNeighbour(cells, cell); i++) {
+                cell = empties[random.nextInt(emptiesCount)];
+            }
+            return cell;
+        }
+
+        /**
+         * Finish the game with random moves
+         *
+         * @return FIRST, SECOND or DRAW
+         */
+        byte playRandomGame(byte toMove, ThreadLocalRandom random) {
+            while (emptiesCount > 0) {
+                if (play(randomMove(random), toMove))
+                    return toMove;
+                toMove = toMove == FIRST ? SECOND : FIRST;
+            }
+            return DRAW;
+        }
+    }
+}
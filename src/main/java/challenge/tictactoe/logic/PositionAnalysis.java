@@ -0,0 +1,36 @@
+package challenge.tictactoe.logic;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Evaluation of a position for the player to move, see {@link GameEngine#analyze}
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class PositionAnalysis {
+
+    public static final byte EMPTY = 0;
+    public static final byte OPPONENT = 1;
+    public static final byte TO_MOVE = 2;
+    public static final int NO_MOVE = -1;
+    /**
+     * Score of a cell which is occupied or wasn't evaluated, see {@link GameEngine#evaluateMoves}
+     */
+    public static final int NO_SCORE = Integer.MIN_VALUE;
+
+    /**
+     * Best cell, x * board size + y, or {@link #NO_MOVE} if the game is over
+     */
+    private final int cell;
+    /**
+     * Engine specific score, positive is good for the player to move
+     */
+    private final int score;
+    /**
+     * One of {@link challenge.tictactoe.constant.Outcome}
+     */
+    private final String outcome;
+}
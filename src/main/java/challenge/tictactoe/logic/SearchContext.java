@@ -0,0 +1,32 @@
+package challenge.tictactoe.logic;
+
+import java.util.Arrays;
+
+/**
+ * State of a single search call: node and cutoff counters plus the move ordering
+ * heuristics. It's created once per call, so the search itself stays allocation-free
+ * and concurrent searches of one engine don't share mutable state.
+ */
+final class SearchContext {
+
+    private static final int MAX_DEPTH = 10;
+
+    long nodes;
+    long cutoffs;
+    /**
+     * Last move which caused a cutoff on each depth
+     */
+    final int[] killers = new int[MAX_DEPTH];
+    /**
+     * Cutoff history per cell, weighted by the remaining depth
+     */
+    final int[] history = new int[TictactoeGameEngine.CELLS_COUNT];
+    /**
+     * Ordered moves buffer per depth
+     */
+    final int[][] moves = new int[MAX_DEPTH][TictactoeGameEngine.CELLS_COUNT];
+
+    SearchContext() {
+        Arrays.fill(killers, TictactoeGameEngine.NO_MOVE);
+    }
+}
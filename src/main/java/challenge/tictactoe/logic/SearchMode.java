@@ -0,0 +1,15 @@
+package challenge.tictactoe.logic;
+
+/**
+ * Search algorithm used by a game engine
+ */
+public enum SearchMode {
+    /**
+     * Full minimax, every child of every node is searched
+     */
+    MINIMAX,
+    /**
+     * Minimax with alpha-beta pruning and move ordering
+     */
+    ALPHA_BETA
+}
@@ -0,0 +1,81 @@
+package challenge.tictactoe.logic;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Size-bounded pool of worker threads for parallel searches.
+ * <p>
+ * Up to max-searches searches at a time may split their work across the pool, each of them
+ * across its share of the worker threads. A search which can't get the pool immediately,
+ * because as many hard positions are being searched already, runs sequentially on its own
+ * thread, so under load every request costs one core and the pool only speeds searches up
+ * while the node has spare threads.
+ */
+public final class SearchPool {
+
+    private final ForkJoinPool pool;
+    private final Semaphore permits;
+    private final int maxSearches;
+    private final int workersPerSearch;
+
+    /**
+     * @param parallelism number of worker threads, shared by half as many searches
+     */
+    public SearchPool(int parallelism) {
+        this(parallelism, 0);
+    }
+
+    /**
+     * @param parallelism number of worker threads
+     * @param maxSearches searches which may use the pool at the same time, 0 - half of the threads
+     */
+    public SearchPool(int parallelism, int maxSearches) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism should be positive");
+        if (maxSearches < 0)
+            throw new IllegalArgumentException("Number of searches shouldn't be negative");
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxSearches = maxSearches > 0 ?
+                Math.min(maxSearches, parallelism) :
+                Math.max(1, parallelism / 2);
+        this.workersPerSearch = Math.min(parallelism, Math.max(2, parallelism / this.maxSearches));
+        this.permits = new Semaphore(this.maxSearches);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public int getMaxSearches() {
+        return maxSearches;
+    }
+
+    /**
+     * Number of tasks a search splits its work into
+     */
+    public int getWorkersPerSearch() {
+        return workersPerSearch;
+    }
+
+    ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * Take a share of the pool for one search without waiting
+     *
+     * @return false if the pool is busy and the search should run sequentially
+     */
+    boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
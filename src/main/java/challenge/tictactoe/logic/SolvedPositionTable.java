@@ -0,0 +1,131 @@
+package challenge.tictactoe.logic;
+
+import java.util.Arrays;
+
+import static challenge.tictactoe.logic.TictactoeGameEngine.*;
+
+/**
+ * Pre-solved 3x3 game tree.
+ * <p>
+ * A 3x3 board has only a few thousand reachable positions, so instead of running
+ * minimax on every AI request the best reply of the second player is computed once
+ * for every reachable position where it's the second player's turn, whoever started
+ * the game. The table is solved once per JVM, on first use, and shared by all engines.
+ * The root search of a private engine fills it, so the selected moves and their
+ * depth-adjusted scores are exactly the ones the live search would return, and the
+ * search and node counters of engines serving requests don't include the solving.
+ * <p>
+ * Positions are indexed in base 3, cell (x, y) is digit x * 3 + y with 0 for an empty
+ * cell, 1 for the first player and 2 for the second one.
+ */
+final class SolvedPositionTable {
+
+    private static final int POSITIONS_COUNT = 19683; // 3^9
+    private static final int[] POW_3 = new int[CELLS_COUNT];
+    private static final int NOT_SOLVED = Integer.MIN_VALUE;
+
+    static {
+        POW_3[0] = 1;
+        for (int i = 1; i < CELLS_COUNT; i++) {
+            POW_3[i] = POW_3[i - 1] * 3;
+        }
+    }
+
+    /**
+     * Engine searching the positions the table doesn't cover
+     */
+    private final TictactoeGameEngine engine;
+
+    SolvedPositionTable(TictactoeGameEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Find the best move of the second player
+     *
+     * @param first  board mask of the first player
+     * @param second board mask of the second player
+     * @return packed best move, see {@link TictactoeGameEngine#packMove}
+     */
+    int lookup(int first, int second) {
+        int packedMove = Solved.BEST_MOVES[indexOf(first, second)];
+        // Positions which can't be reached by alternating turns are searched live
+        return packedMove != NOT_SOLVED ?
+                packedMove :
+                engine.searchBestMove(first, second);
+    }
+
+    /**
+     * Number of positions with a pre-solved reply
+     */
+    int size() {
+        int size = 0;
+        for (int packedMove : Solved.BEST_MOVES) {
+            if (packedMove != NOT_SOLVED) size++;
+        }
+        return size;
+    }
+
+    boolean isSolved(int first, int second) {
+        return Solved.BEST_MOVES[indexOf(first, second)] != NOT_SOLVED;
+    }
+
+    private static void solve(TictactoeGameEngine solver, int[] bestMoves,
+                              int first, int second, boolean firstToMove) {
+        if (getWinner(first, second) != NOT_DEFINED_YET)
+            return;
+
+        if (!firstToMove) {
+            int index = indexOf(first, second);
+            if (bestMoves[index] != NOT_SOLVED)
+                return;
+            // A search context of its own, the solver engine doesn't count it
+            bestMoves[index] = solver.searchBestMove(first, second, new SearchContext());
+        }
+
+        int free = ~(first | second) & FULL_BOARD;
+        while (free != 0) {
+            int bit = free & -free;
+            free ^= bit;
+            if (firstToMove) {
+                solve(solver, bestMoves, first | bit, second, false);
+            } else {
+                solve(solver, bestMoves, first, second | bit, true);
+            }
+        }
+    }
+
+    private static int indexOf(int first, int second) {
+        int index = 0;
+        for (int cell = 0; cell < CELLS_COUNT; cell++) {
+            int bit = 1 << cell;
+            if ((first & bit) != 0) {
+                index += POW_3[cell];
+            } else if ((second & bit) != 0) {
+                index += 2 * POW_3[cell];
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Holder of the table, solved when it's looked up for the first time
+     */
+    private static final class Solved {
+
+        /**
+         * Packed best moves, {@link #NOT_SOLVED} for positions the table doesn't cover
+         */
+        static final int[] BEST_MOVES = solveAll();
+
+        private static int[] solveAll() {
+            int[] bestMoves = new int[POSITIONS_COUNT];
+            Arrays.fill(bestMoves, NOT_SOLVED);
+            // Results don't depend on the players or the search mode, see TictactoeGameEngineTest
+            TictactoeGameEngine solver = new TictactoeGameEngine();
+            solve(solver, bestMoves, 0, 0, true);
+            solve(solver, bestMoves, 0, 0, false);
+            return bestMoves;
+        }
+    }
+}
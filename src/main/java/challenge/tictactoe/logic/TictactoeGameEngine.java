@@ -2,12 +2,15 @@ package challenge.tictactoe.logic;
 
 import challenge.tictactoe.constant.GameStatus;
 import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.constant.Outcome;
 import challenge.tictactoe.db.GameEntity;
 import challenge.tictactoe.db.MoveEntity;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * NOTE: This should be a separate module and packages as Java library, but
@@ -29,55 +32,205 @@ import java.util.List;
  * <p>
  * The algorithm is recursive using BFS, and the calculation is performed for each of the players in
  * turn until the final payoff is calculated.
+ * <p>
+ * Board representation:
+ * <p>
+ * The board is kept as two 9-bit masks, one per player, where cell (x, y) is bit x * 3 + y.
+ * Win detection is a comparison against precomputed line masks, so the search itself works
+ * on primitives only and allocates nothing per node. {@link MoveEntity} objects are only
+ * read and created at the boundary of {@link #processAndGenerareteNextMove}.
+ * <p>
+ * The whole 3x3 game tree is solved once per JVM and shared by all engines, see
+ * {@link SolvedPositionTable}, so an AI reply is a table lookup instead of a search.
+ * <p>
+ * The search keeps scores of visited positions in a {@link TranspositionTable} shared by all
+ * searches of the engine. Rotated and mirrored boards have the same minimax value, so the key
+ * of a position is the smallest of its 8 dihedral images. Scores are stored relative to the
+ * stored position and shifted by the depth on every hit, which keeps the depth-adjusted scoring
+ * and therefore the selected moves exactly the same as without the table.
+ * <p>
+ * In {@link SearchMode#ALPHA_BETA} mode branches which can't change the result are pruned.
+ * Moves are tried center first, then corners, then edges, and within each group killer moves
+ * and moves with a rich cutoff history go first. The root still prefers the lowest cell among
+ * equally scored moves, so both modes select the same move in every position.
  */
-public class TictactoeGameEngine {
+@Slf4j
+public class TictactoeGameEngine implements GameEngine {
+
+    static final int MATRIX_SIZE = 3;
+    static final int CELLS_COUNT = MATRIX_SIZE * MATRIX_SIZE;
+    static final int FULL_BOARD = (1 << CELLS_COUNT) - 1;
+    static final int NO_MOVE = 0xF;
+    private static final int TRANSPOSITION_TABLE_SIZE = 1 << 16;
+
+    /**
+     * Rows, columns, diagonal and anti-diagonal of the 3x3 board
+     */
+    private static final int[] WIN_LINES = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,
+            0b001_001_001, 0b010_010_010, 0b100_100_100,
+            0b100_010_001, 0b001_010_100
+    };
+
+    static final int NOT_DEFINED_YET = 0;
+    private static final int FIRST_PLAYER_WON = 1;
+    private static final int SECOND_PLAYER_WON = 2;
+    private static final int DRAW = 3;
+
+    private static final int EXACT = 0;
+    private static final int LOWER_BOUND = 1;
+    private static final int UPPER_BOUND = 2;
+
+    /**
+     * Move ordering groups: center first, then corners, then edges
+     */
+    private static final int[] CELL_GROUPS = {
+            1, 2, 1,
+            2, 0, 2,
+            1, 2, 1
+    };
+
+    /**
+     * Images of every 9-bit board mask under the 8 rotations and reflections of the board
+     */
+    private static final int[][] SYMMETRIES = buildSymmetries();
 
-    private final int PLAYER_1 = 1;
-    private final int PLAYER_2 = 2;
-    private final int MATRIX_SIZE = 3;
     private final String FIRST_PLAYER;
     private final String SECOND_PLAYER;
+    private final SearchMode searchMode;
+    private final TranspositionTable transpositionTable;
+    private final SolvedPositionTable solvedPositions;
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder cutoffs = new LongAdder();
 
     /**
      * Constructor for Human vs AI Tictactoe game
      */
     public TictactoeGameEngine() {
-        this.FIRST_PLAYER = GameWinner.PLAYER;
-        this.SECOND_PLAYER = GameWinner.AI;
+        this(GameWinner.PLAYER, GameWinner.AI, SearchMode.ALPHA_BETA, TRANSPOSITION_TABLE_SIZE);
     }
 
     /**
      * Constructor for Person 1 vs Person 2 Tictactoe game
      */
     public TictactoeGameEngine(boolean twoPlayers) {
-        this.FIRST_PLAYER = GameWinner.PLAYER_1;
-        this.SECOND_PLAYER = GameWinner.PLAYER_2;
+        this(GameWinner.PLAYER_1, GameWinner.PLAYER_2, SearchMode.ALPHA_BETA, TRANSPOSITION_TABLE_SIZE);
     }
 
     /**
-     * Process new move in Person 1 vs Person 2 game and
-     * check if it leads to the end of the game.
-     *
-     * @param game
-     * @param moves
+     * Constructor for Human vs AI Tictactoe game with custom transposition table capacity
      */
+    public TictactoeGameEngine(int transpositionTableSize) {
+        this(GameWinner.PLAYER, GameWinner.AI, SearchMode.ALPHA_BETA, transpositionTableSize);
+    }
+
+    /**
+     * Constructor for Human vs AI Tictactoe game with custom search mode
+     */
+    public TictactoeGameEngine(SearchMode searchMode, int transpositionTableSize) {
+        this(GameWinner.PLAYER, GameWinner.AI, searchMode, transpositionTableSize);
+    }
+
+    private TictactoeGameEngine(String firstPlayer,
+                                String secondPlayer,
+                                SearchMode searchMode,
+                                int transpositionTableSize) {
+        this.FIRST_PLAYER = firstPlayer;
+        this.SECOND_PLAYER = secondPlayer;
+        this.searchMode = searchMode;
+        this.transpositionTable = new TranspositionTable(transpositionTableSize);
+        this.solvedPositions = new SolvedPositionTable(this);
+    }
+
+    @Override
+    public EngineStats getStats() {
+        return new EngineStats(
+                transpositionTable.hits(),
+                transpositionTable.misses(),
+                transpositionTable.entries(),
+                searches.sum(),
+                nodes.sum(),
+                cutoffs.sum());
+    }
+
+    @Override
     public void validateNextMove(GameEntity game,
                                  List<MoveEntity> moves) {
         processMove(game, moves, false);
     }
 
-    /**
-     * Process new move from Person in the game with AI,
-     * generate next move from AI and check if it leads to the end of the game.
-     *
-     * @param game
-     * @param moves
-     */
+    @Override
     public void processAndGenerareteNextMove(GameEntity game,
                                              List<MoveEntity> moves) {
         processMove(game, moves, true);
     }
 
+    /**
+     * Scores are exact: 10 - depth of the forced win, depth - 10 of the forced loss, 0 for a draw
+     */
+    @Override
+    public PositionAnalysis analyze(byte[] cells) {
+        // The engine searches for the second player, so the player to move plays second
+        int first = 0;
+        int second = 0;
+        for (int cell = 0; cell < CELLS_COUNT; cell++) {
+            if (cells[cell] == PositionAnalysis.OPPONENT) {
+                first |= 1 << cell;
+            } else if (cells[cell] == PositionAnalysis.TO_MOVE) {
+                second |= 1 << cell;
+            }
+        }
+        switch (getWinner(first, second)) {
+            case SECOND_PLAYER_WON:
+                return new PositionAnalysis(PositionAnalysis.NO_MOVE, 10, Outcome.WIN);
+            case FIRST_PLAYER_WON:
+                return new PositionAnalysis(PositionAnalysis.NO_MOVE, -10, Outcome.LOSS);
+            case DRAW:
+                return new PositionAnalysis(PositionAnalysis.NO_MOVE, 0, Outcome.DRAW);
+            default:
+                int packedMove = solvedPositions.lookup(first, second);
+                int score = scoreOf(packedMove);
+                return new PositionAnalysis(cellOf(packedMove), score,
+                        score > 0 ? Outcome.WIN : score < 0 ? Outcome.LOSS : Outcome.DRAW);
+        }
+    }
+
+    /**
+     * Every move is searched with a full window, so all scores are exact
+     */
+    @Override
+    public int[] evaluateMoves(byte[] cells) {
+        int first = 0;
+        int second = 0;
+        for (int cell = 0; cell < CELLS_COUNT; cell++) {
+            if (cells[cell] == PositionAnalysis.OPPONENT) {
+                first |= 1 << cell;
+            } else if (cells[cell] == PositionAnalysis.TO_MOVE) {
+                second |= 1 << cell;
+            }
+        }
+        int[] scores = new int[CELLS_COUNT];
+        Arrays.fill(scores, PositionAnalysis.NO_SCORE);
+        if (getWinner(first, second) != NOT_DEFINED_YET)
+            return scores;
+
+        SearchContext context = new SearchContext();
+        int free = ~(first | second) & FULL_BOARD;
+        while (free != 0) {
+            int cell = Integer.numberOfTrailingZeros(free);
+            free &= free - 1;
+            scores[cell] = searchMode == SearchMode.MINIMAX ?
+                    miniMax(first, second | 1 << cell, false, 1, context) :
+                    alphaBeta(first, second | 1 << cell, false, 1,
+                            Integer.MIN_VALUE, Integer.MAX_VALUE, context);
+        }
+        searches.increment();
+        nodes.add(context.nodes);
+        cutoffs.add(context.cutoffs);
+        return scores;
+    }
+
     private void processMove(GameEntity game, List<MoveEntity> moves, boolean process) {
         if (game.getStatus().equals(GameStatus.FINISHED))
             return;
@@ -85,68 +238,288 @@ public class TictactoeGameEngine {
         game.setStatus(GameStatus.IN_PROGRESS);
         game.setWinner(GameWinner.NOT_DEFINED_YET);
 
+        int first = 0;
+        int second = 0;
+        for (MoveEntity move : moves) {
+            if (move.getPlayedBy().equals(FIRST_PLAYER)) {
+                first |= toBit(move.getX(), move.getY());
+            } else {
+                second |= toBit(move.getX(), move.getY());
+            }
+        }
+
         if (process) {
             game.setActiveTurn(SECOND_PLAYER);
-            miniMax(game.getActiveTurn(), game.getId(), moves, 0);
+            int cell = cellOf(solvedPositions.lookup(first, second));
+            if (cell != NO_MOVE) {
+                second |= 1 << cell;
+                moves.add(createNextMove(cell, moves, game.getId()));
+            }
             game.setActiveTurn(FIRST_PLAYER);
         }
 
-        String winner = getWinner(moves);
-        if (!winner.equals(GameWinner.NOT_DEFINED_YET)) {
+        int winner = getWinner(first, second);
+        if (winner != NOT_DEFINED_YET) {
             game.setStatus(GameStatus.FINISHED);
-            game.setWinner(winner);
+            game.setWinner(toWinnerName(winner));
             game.setActiveTurn(null);
         }
     }
 
+    int searchBestMove(int first, int second) {
+        SearchContext context = new SearchContext();
+        int packedMove = searchBestMove(first, second, context);
+        searches.increment();
+        nodes.add(context.nodes);
+        cutoffs.add(context.cutoffs);
+        log.debug("{} search finished: {} nodes, {} cutoffs", searchMode, context.nodes, context.cutoffs);
+        return packedMove;
+    }
+
     /**
-     * Recursive function for finding the best next move
+     * Root of the search for the second player. Only a strictly better score replaces
+     * the current best one, so with the children visited in ascending cell order ties
+     * resolve to the first cell in row-major order.
+     * <p>
+     * Alpha-beta visits the children in its own order, so a cell below the current best
+     * one is searched with a window one point wider, which tells an equal score apart
+     * from a worse one and keeps the same tie-break.
      *
-     * @param playerName
-     * @param gameId
-     * @param moves
-     * @param depth
+     * @param first   board mask of the first player
+     * @param second  board mask of the second player
+     * @param context counters and move ordering state of this call
+     * @return best cell and its score packed with {@link #packMove}, cell is NO_MOVE
+     * when the game is already decided
+     */
+    int searchBestMove(int first, int second, SearchContext context) {
+        context.nodes++;
+        int winner = getWinner(first, second);
+        if (winner != NOT_DEFINED_YET)
+            return packMove(NO_MOVE, getScore(winner, 0));
+
+        int bestCell = NO_MOVE;
+        int bestScore = Integer.MIN_VALUE;
+        int movesCount = orderMoves(first, second, 0, context);
+        for (int i = 0; i < movesCount; i++) {
+            int cell = context.moves[0][i];
+            int score;
+            if (searchMode == SearchMode.MINIMAX) {
+                score = miniMax(first, second | 1 << cell, false, 1, context);
+            } else {
+                int alpha = bestCell == NO_MOVE ?
+                        Integer.MIN_VALUE :
+                        cell < bestCell ? bestScore - 1 : bestScore;
+                score = alphaBeta(first, second | 1 << cell, false, 1, alpha, Integer.MAX_VALUE, context);
+            }
+            if (score > bestScore || (score == bestScore && cell < bestCell)) {
+                bestScore = score;
+                bestCell = cell;
+            }
+        }
+        return packMove(bestCell, bestScore);
+    }
+
+    /**
+     * Recursive function for finding the best score. Moves are made and unmade
+     * by passing updated masks down the stack, so a node costs no allocations.
+     *
+     * @param first        board mask of the first player
+     * @param second       board mask of the second player
+     * @param secondToMove true if it's the second player's turn
+     * @param depth        distance from the root of the search
+     * @param context      counters of this search call
+     * @return
+     */
+    private int miniMax(int first, int second, boolean secondToMove, int depth, SearchContext context) {
+        context.nodes++;
+        int winner = getWinner(first, second);
+        if (winner != NOT_DEFINED_YET) {
+            return getScore(winner, depth);
+        }
+
+        long key = canonicalKey(first, second, secondToMove);
+        long stored = transpositionTable.probe(key);
+        if (stored != TranspositionTable.NOT_FOUND && boundOf(stored) == EXACT) {
+            return toDepth(scoreOfEntry(stored), depth);
+        }
+
+        int bestScore = secondToMove ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int free = ~(first | second) & FULL_BOARD;
+        while (free != 0) {
+            int bit = free & -free;
+            free ^= bit;
+            if (secondToMove) {
+                bestScore = Math.max(bestScore, miniMax(first, second | bit, false, depth + 1, context));
+            } else {
+                bestScore = Math.min(bestScore, miniMax(first | bit, second, true, depth + 1, context));
+            }
+        }
+        transpositionTable.store(key, toEntry(fromDepth(bestScore, depth), EXACT));
+        return bestScore;
+    }
+
+    /**
+     * Fail-soft alpha-beta search. A returned score above alpha and below beta is exact,
+     * otherwise it's a bound on the exact score, which is what gets stored in the table.
+     *
+     * @param first        board mask of the first player
+     * @param second       board mask of the second player
+     * @param secondToMove true if it's the second player's turn
+     * @param depth        distance from the root of the search
+     * @param alpha        score the second player is already assured of
+     * @param beta         score the first player is already assured of
+     * @param context      counters and move ordering state of this call
      * @return
      */
-    private Integer miniMax(String playerName,
-                            String gameId,
-                            List<MoveEntity> moves,
-                            int depth) {
-        if (!getWinner(moves).equals(GameWinner.NOT_DEFINED_YET)) {
-            return getScore(moves, depth);
+    private int alphaBeta(int first, int second, boolean secondToMove, int depth,
+                          int alpha, int beta, SearchContext context) {
+        context.nodes++;
+        int winner = getWinner(first, second);
+        if (winner != NOT_DEFINED_YET) {
+            return getScore(winner, depth);
         }
 
-        ArrayList<Integer> scores = new ArrayList<>();
-        ArrayList<MoveEntity> nextMoves = new ArrayList<>();
-
-        int finalDepth = depth + 1;
-        getAvailableMoves(playerName, gameId, moves)
-                .forEach(move -> {
-                    String nextPlayer = getOpponentName(playerName);
-                    List<MoveEntity> possibleMoves = createNextMoves(moves, move);
-                    scores.add(miniMax(nextPlayer, gameId, possibleMoves, finalDepth));
-                    nextMoves.add(move);
-                });
-
-        if (scores.size() == 0) return 0;
-
-        if (playerName.equals(SECOND_PLAYER)) {
-            int maxScoreIndex = scores.indexOf(Collections.max(scores));
-            moves.add(nextMoves.get(maxScoreIndex));
-            return scores.get(maxScoreIndex);
-        } else {
-            int minScoreIndex = scores.indexOf(Collections.min(scores));
-            moves.add(nextMoves.get(minScoreIndex));
-            return scores.get(minScoreIndex);
+        long key = canonicalKey(first, second, secondToMove);
+        long stored = transpositionTable.probe(key);
+        if (stored != TranspositionTable.NOT_FOUND) {
+            int score = toDepth(scoreOfEntry(stored), depth);
+            int bound = boundOf(stored);
+            if (bound == EXACT
+                    || (bound == LOWER_BOUND && score >= beta)
+                    || (bound == UPPER_BOUND && score <= alpha)) {
+                return score;
+            }
+        }
+
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        int bestScore = secondToMove ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int movesCount = orderMoves(first, second, depth, context);
+        for (int i = 0; i < movesCount; i++) {
+            int cell = context.moves[depth][i];
+            if (secondToMove) {
+                bestScore = Math.max(bestScore,
+                        alphaBeta(first, second | 1 << cell, false, depth + 1, alpha, beta, context));
+                alpha = Math.max(alpha, bestScore);
+            } else {
+                bestScore = Math.min(bestScore,
+                        alphaBeta(first | 1 << cell, second, true, depth + 1, alpha, beta, context));
+                beta = Math.min(beta, bestScore);
+            }
+            if (alpha >= beta) {
+                context.cutoffs++;
+                context.killers[depth] = cell;
+                int remaining = CELLS_COUNT - depth;
+                context.history[cell] += remaining * remaining;
+                break;
+            }
         }
+
+        int bound = bestScore <= originalAlpha ?
+                UPPER_BOUND :
+                bestScore >= originalBeta ? LOWER_BOUND : EXACT;
+        transpositionTable.store(key, toEntry(fromDepth(bestScore, depth), bound));
+        return bestScore;
     }
 
     /**
-     * Find who turn to make a next move
+     * Fill the moves buffer of the depth with free cells. Minimax keeps the row-major order,
+     * alpha-beta sorts the cells by group, then killer move, then history, then cell index.
+     *
+     * @return number of moves
      */
-    private void setMoveOwner(int[][] mat, MoveEntity move) {
-        mat[move.getX()][move.getY()] = move.getPlayedBy()
-                .equals(FIRST_PLAYER) ? PLAYER_1 : PLAYER_2;
+    private int orderMoves(int first, int second, int depth, SearchContext context) {
+        int[] moves = context.moves[depth];
+        int count = 0;
+        int free = ~(first | second) & FULL_BOARD;
+        while (free != 0) {
+            int cell = Integer.numberOfTrailingZeros(free);
+            free &= free - 1;
+            int i = count++;
+            if (searchMode == SearchMode.ALPHA_BETA) {
+                while (i > 0 && isTriedBefore(cell, moves[i - 1], depth, context)) {
+                    moves[i] = moves[i - 1];
+                    i--;
+                }
+            }
+            moves[i] = cell;
+        }
+        return count;
+    }
+
+    private static boolean isTriedBefore(int cell, int other, int depth, SearchContext context) {
+        if (CELL_GROUPS[cell] != CELL_GROUPS[other])
+            return CELL_GROUPS[cell] < CELL_GROUPS[other];
+        int killer = context.killers[depth];
+        if (cell == killer || other == killer)
+            return cell == killer;
+        if (context.history[cell] != context.history[other])
+            return context.history[cell] > context.history[other];
+        return cell < other;
+    }
+
+    /**
+     * Key of the position shared by all its rotations and reflections
+     */
+    private static long canonicalKey(int first, int second, boolean secondToMove) {
+        int key = Integer.MAX_VALUE;
+        for (int[] symmetry : SYMMETRIES) {
+            key = Math.min(key, symmetry[first] << CELLS_COUNT | symmetry[second]);
+        }
+        // The marker bit keeps keys non-zero, as the transposition table requires
+        return (long) key << 2 | 2 | (secondToMove ? 1 : 0);
+    }
+
+    /**
+     * Convert a score found at the given depth to the score of the same position searched as a root.
+     * A win takes at least one more move than the depth allows, so a non-zero score never reaches zero.
+     */
+    private static long fromDepth(int score, int depth) {
+        return score > 0 ? score + depth : score < 0 ? score - depth : 0;
+    }
+
+    private static long toEntry(long rootScore, int bound) {
+        return rootScore << 2 | bound;
+    }
+
+    private static int scoreOfEntry(long entry) {
+        return (int) (entry >> 2);
+    }
+
+    private static int boundOf(long entry) {
+        return (int) (entry & 3);
+    }
+
+    private static int toDepth(int rootScore, int depth) {
+        return rootScore > 0 ? rootScore - depth : rootScore < 0 ? rootScore + depth : 0;
+    }
+
+    private static int[][] buildSymmetries() {
+        int[][] symmetries = new int[8][1 << CELLS_COUNT];
+        for (int s = 0; s < symmetries.length; s++) {
+            int[] cells = new int[CELLS_COUNT];
+            for (int cell = 0; cell < CELLS_COUNT; cell++) {
+                int x = cell / MATRIX_SIZE;
+                int y = cell % MATRIX_SIZE;
+                if (s >= 4) {
+                    y = MATRIX_SIZE - 1 - y;
+                }
+                for (int r = 0; r < s % 4; r++) {
+                    int rotated = MATRIX_SIZE - 1 - x;
+                    x = y;
+                    y = rotated;
+                }
+                cells[cell] = x * MATRIX_SIZE + y;
+            }
+            for (int board = 0; board < symmetries[s].length; board++) {
+                int image = 0;
+                for (int cell = 0; cell < CELLS_COUNT; cell++) {
+                    if ((board & 1 << cell) != 0) image |= 1 << cells[cell];
+                }
+                symmetries[s][board] = image;
+            }
+        }
+        return symmetries;
     }
 
     /**
@@ -156,121 +529,83 @@ public class TictactoeGameEngine {
      * A player wins if they can align 3 of their
      * markers in a vertical, horizontal or diagonal line
      */
-    private String getWinner(List<MoveEntity> moves) {
-        int[][] tictactoeBoard = new int[MATRIX_SIZE][MATRIX_SIZE];
-        moves.forEach(e -> setMoveOwner(tictactoeBoard, e));
+    static int getWinner(int first, int second) {
+        if (hasLine(second))
+            return SECOND_PLAYER_WON;
 
-        if (checkDiagonal(tictactoeBoard, PLAYER_2)
-                || checkAntiDiagonal(tictactoeBoard, PLAYER_2))
-            return SECOND_PLAYER;
+        if (hasLine(first))
+            return FIRST_PLAYER_WON;
 
-        for (int i = 0; i < tictactoeBoard.length; i++) {
-            if (checkRow(tictactoeBoard, i, PLAYER_2) ||
-                    checkCol(tictactoeBoard, i, PLAYER_2)) {
-                return SECOND_PLAYER;
-            }
-        }
+        if ((first | second) == FULL_BOARD)
+            return DRAW;
 
-        if (checkDiagonal(tictactoeBoard, PLAYER_1)
-                || checkAntiDiagonal(tictactoeBoard, PLAYER_1))
-            return FIRST_PLAYER;
+        return NOT_DEFINED_YET;
+    }
 
-        for (int i = 0; i < tictactoeBoard.length; i++) {
-            if (checkRow(tictactoeBoard, i, PLAYER_1) ||
-                    checkCol(tictactoeBoard, i, PLAYER_1)) {
-                return FIRST_PLAYER;
-            }
+    private static boolean hasLine(int board) {
+        for (int line : WIN_LINES) {
+            if ((board & line) == line) return true;
         }
-
-        if (moves.size() == MATRIX_SIZE * MATRIX_SIZE)
-            return GameWinner.DRAW;
-
-        return GameWinner.NOT_DEFINED_YET;
+        return false;
     }
 
     /**
-     * Find the score of the board based on moves history and depth
+     * Find the score of the board based on the winner and depth
      *
-     * @param moves
+     * @param winner
      * @param depth
      * @return
      */
-    private int getScore(List<MoveEntity> moves, int depth) {
-        if (getWinner(moves).equals(SECOND_PLAYER)) {
+    private static int getScore(int winner, int depth) {
+        if (winner == SECOND_PLAYER_WON) {
             return 10 - depth;
-        } else if (getWinner(moves).equals(FIRST_PLAYER)) {
+        } else if (winner == FIRST_PLAYER_WON) {
             return depth - 10;
         }
         return 0;
     }
 
-    private String getOpponentName(String player) {
-        return player.equals(FIRST_PLAYER) ?
-                SECOND_PLAYER :
-                FIRST_PLAYER;
-    }
-
-    private MoveEntity createNextMove(int x, int y,
-                                      List<MoveEntity> moves,
-                                      String player,
-                                      String gameId) {
-        return MoveEntity.builder()
-                .x(x)
-                .y(y)
-                .number(moves.size() + 1)
-                .gameId(gameId)
-                .playedBy(player)
-                .build();
-    }
-
-    private List<MoveEntity> getAvailableMoves(String player, String gameId,
-                                               List<MoveEntity> moves) {
-        int[][] tictactoeBoard = new int[MATRIX_SIZE][MATRIX_SIZE];
-        moves.forEach(e -> tictactoeBoard[e.getX()][e.getY()] = 1);
-        ArrayList<MoveEntity> newMoves = new ArrayList<>();
-        for (int i = 0; i < tictactoeBoard.length; i++) {
-            for (int j = 0; j < tictactoeBoard[i].length; j++) {
-                if (tictactoeBoard[i][j] == 0) {
-                    newMoves.add(createNextMove(i, j, moves, player, gameId));
-                }
-            }
+    private String toWinnerName(int winner) {
+        switch (winner) {
+            case FIRST_PLAYER_WON:
+                return FIRST_PLAYER;
+            case SECOND_PLAYER_WON:
+                return SECOND_PLAYER;
+            case DRAW:
+                return GameWinner.DRAW;
+            default:
+                return GameWinner.NOT_DEFINED_YET;
         }
-        return newMoves;
     }
 
-    private List<MoveEntity> createNextMoves(List<MoveEntity> moves, MoveEntity move) {
-        List<MoveEntity> movesClone = new ArrayList<>();
-        movesClone.addAll(moves);
-        movesClone.add(move);
-        return movesClone;
+    /**
+     * Pack a cell index and its score into one int, so search results need no holder object
+     */
+    static int packMove(int cell, int score) {
+        return score << 4 | cell;
     }
 
-    private boolean checkRow(int[][] board, int row, int player) {
-        for (int col = 0; col < 3; ++col) {
-            if (board[row][col] != player) return false;
-        }
-        return true;
+    static int cellOf(int packedMove) {
+        return packedMove & 0xF;
     }
 
-    private boolean checkCol(int[][] board, int col, int player) {
-        for (int row = 0; row < 3; ++row) {
-            if (board[row][col] != player) return false;
-        }
-        return true;
+    static int scoreOf(int packedMove) {
+        return packedMove >> 4;
     }
 
-    private boolean checkDiagonal(int[][] board, int player) {
-        for (int row = 0; row < 3; ++row) {
-            if (board[row][row] != player) return false;
-
-        }
-        return true;
+    private static int toBit(int x, int y) {
+        return 1 << (x * MATRIX_SIZE + y);
     }
 
-    private boolean checkAntiDiagonal(int[][] board, int player) {
-        for (int row = 0; row < 3; ++row) {
-            if (board[row][2 - row] != player) return false;
-        }
-        return true;
+    private MoveEntity createNextMove(int cell,
+                                      List<MoveEntity> moves,
+                                      String gameId) {
+        return MoveEntity.builder()
+                .x(cell / MATRIX_SIZE)
+                .y(cell % MATRIX_SIZE)
+                .number(moves.size() + 1)
+                .gameId(gameId)
+                .playedBy(SECOND_PLAYER)
+                .build();
     }
 }
@@ -0,0 +1,98 @@
+package challenge.tictactoe.logic;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, lock-free transposition table shared by all searches of one engine instance.
+ * <p>
+ * The table has a fixed number of slots, a power of two, and every position key maps to
+ * exactly one slot. Eviction policy is "always replace": a store into an occupied slot
+ * overwrites the previous entry, so the most recently searched positions win and the
+ * memory footprint never grows after construction.
+ * <p>
+ * Slots hold the key XOR-ed with the data next to the data itself. A probe only accepts
+ * an entry when both halves match, so concurrent writers to the same slot can never make
+ * a reader return data of another position and no locking is needed.
+ */
+public final class TranspositionTable {
+
+    /**
+     * Returned by {@link #probe} when the position is not stored
+     */
+    public static final long NOT_FOUND = Long.MIN_VALUE;
+
+    private final int mask;
+    private final AtomicLongArray checks;
+    private final AtomicLongArray data;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicInteger entries = new AtomicInteger();
+
+    /**
+     * @param capacity maximum number of stored positions, rounded up to a power of two
+     */
+    public TranspositionTable(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity should be positive");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.mask = size - 1;
+        this.checks = new AtomicLongArray(size);
+        this.data = new AtomicLongArray(size);
+    }
+
+    /**
+     * Find data stored for the position
+     *
+     * @param key non-zero position key
+     * @return stored data or {@link #NOT_FOUND}
+     */
+    public long probe(long key) {
+        int slot = slotOf(key);
+        long value = data.get(slot);
+        if ((checks.get(slot) ^ value) == key) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        return NOT_FOUND;
+    }
+
+    /**
+     * Store data for the position, replacing whatever the slot held before
+     *
+     * @param key   non-zero position key
+     * @param value data, anything except {@link #NOT_FOUND}
+     */
+    public void store(long key, long value) {
+        int slot = slotOf(key);
+        if (checks.get(slot) == 0 && data.get(slot) == 0) {
+            entries.incrementAndGet();
+        }
+        data.set(slot, value);
+        checks.set(slot, key ^ value);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int entries() {
+        return entries.get();
+    }
+
+    private int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ hash >>> 32) & mask;
+    }
+}
@@ -3,14 +3,18 @@ package challenge.tictactoe.mapper;
 import challenge.tictactoe.db.GameEntity;
 import challenge.tictactoe.dto.GameDto;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 /**
  * Game mapper class for mapping objects between
  * DB entry to DTO and vise versa.
  */
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", uses = MoveMapper.class)
 public interface GameMapper {
 
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "createdAt", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
     GameEntity dtoToEntity(GameDto entity);
 
     GameDto dtoToEntity(GameEntity api);
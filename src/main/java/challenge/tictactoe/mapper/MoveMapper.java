@@ -3,6 +3,7 @@ package challenge.tictactoe.mapper;
 import challenge.tictactoe.db.MoveEntity;
 import challenge.tictactoe.dto.MoveDto;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 /**
  * Tictactoe game move mapper class for mapping objects between
@@ -12,5 +13,6 @@ import org.mapstruct.Mapper;
 public interface MoveMapper {
     MoveEntity dtoToEntity(MoveDto entity);
 
+    @Mapping(target = "expectedMoveNumber", ignore = true)
     MoveDto entityToDto(MoveEntity api);
 }
@@ -0,0 +1,138 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.GameEvents;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Event sourced games in MongoDb, see {@link GameEvents}. A move appends one event and
+ * every snapshot-every moves the game is snapshotted, so reading a game costs one snapshot
+ * and less than snapshot-every events however long the game is. Games can be read as they
+ * were after any move.
+ * <p>
+ * The version of a game is its number of moves.
+ * <p>
+ * Metrics: tictactoe.store.events.replayed and tictactoe.store.events.snapshots.
+ */
+@Component
+@Profile(StoreProfiles.EVENTS)
+@Slf4j
+public class EventGameStore implements GameStore {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final int snapshotEvery;
+    private final DistributionSummary replayed;
+    private final Counter snapshots;
+
+    @Autowired
+    public EventGameStore(ReactiveMongoTemplate mongoTemplate,
+                          @Value("${tictactoe.store.events.snapshot-every:32}") int snapshotEvery,
+                          MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.replayed = DistributionSummary.builder("tictactoe.store.events.replayed")
+                .description("Events applied to the snapshot of a game to read it")
+                .register(meterRegistry);
+        this.snapshots = Counter.builder("tictactoe.store.events.snapshots")
+                .description("Snapshots of games written")
+                .register(meterRegistry);
+        log.info("Event sourced games, snapshot every {} moves", this.snapshotEvery);
+    }
+
+    @Override
+    public Mono<GameEntity> insert(GameEntity game) {
+        GameEntity stored = game.toBuilder()
+                .id(game.getId() != null ? game.getId() : ObjectId.get().toHexString())
+                .version(0L)
+                .build()
+                .copy();
+        return mongoTemplate.insert(GameEvents.snapshotOf(stored), GameEvents.SNAPSHOTS)
+                .thenReturn(stored);
+    }
+
+    @Override
+    public Mono<GameEntity> findById(String id) {
+        return findAt(id, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Mono<GameEntity> findAt(String id, int number) {
+        Query latest = query(where(GameDocuments.ID)
+                .gte(GameEvents.key(id, 0))
+                .lte(GameEvents.key(id, Math.min(number, GameEvents.MAX_NUMBER))))
+                .with(Sort.by(Sort.Direction.DESC, GameDocuments.ID))
+                .limit(1);
+        return mongoTemplate.findOne(latest, Document.class, GameEvents.SNAPSHOTS)
+                .flatMap(snapshot -> {
+                    int from = snapshot.getInteger(GameEvents.NUMBER);
+                    Query tail = query(where(GameDocuments.ID)
+                            .gte(GameEvents.key(id, from))
+                            .lt(number < GameEvents.MAX_NUMBER ? GameEvents.key(id, number) : GameEvents.endKey(id)))
+                            .with(Sort.by(Sort.Direction.ASC, GameDocuments.ID));
+                    return mongoTemplate.find(tail, Document.class, GameEvents.EVENTS)
+                            .collectList()
+                            .map(events -> {
+                                replayed.record(events.size());
+                                return GameEvents.replay(id, snapshot, events, number);
+                            });
+                });
+    }
+
+    /**
+     * Append the new moves as one event, the event of another update of the same version
+     * already has its id. A snapshot is written when the moves pass a multiple of snapshot-every.
+     */
+    @Override
+    public Mono<GameEntity> update(GameEntity game) {
+        int base = game.getVersion().intValue();
+        int number = game.getMoves().size();
+        if (number <= base)
+            return Mono.error(new IllegalArgumentException("Game " + game.getId() + " has no new moves"));
+        GameEntity stored = game.copy();
+        stored.setVersion((long) number);
+        return mongoTemplate.insert(GameEvents.eventOf(game, base), GameEvents.EVENTS)
+                .then(number / snapshotEvery > base / snapshotEvery ? snapshot(stored) : Mono.empty())
+                .thenReturn(stored)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        Query all = query(where(GameDocuments.ID).gte(GameEvents.key(id, 0)).lt(GameEvents.endKey(id)));
+        return mongoTemplate.remove(all, GameEvents.SNAPSHOTS)
+                .then(mongoTemplate.remove(all, GameEvents.EVENTS))
+                .then();
+    }
+
+    /**
+     * The event is saved, a snapshot which can't be written only makes reads replay more events
+     */
+    private Mono<Void> snapshot(GameEntity game) {
+        return mongoTemplate.insert(GameEvents.snapshotOf(game), GameEvents.SNAPSHOTS)
+                .doOnNext(e -> snapshots.increment())
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Snapshot of game {} at move {} wasn't written", game.getId(), game.getMoves().size(), e);
+                    return Mono.empty();
+                });
+    }
+}
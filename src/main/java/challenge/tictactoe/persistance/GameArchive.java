@@ -0,0 +1,468 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only archive of finished games on local disk.
+ * <p>
+ * Games are stored in the compact layout of {@link GameDocuments}, deflated, one record
+ * after another in segment files of limited size. A record is the compressed length, the
+ * raw length and the compressed bytes. The index file lists the segment, offset and length
+ * of every record by game id and is appended after the records are forced to disk, so a
+ * crash can only leave records nobody points to. A deleted archived game gets an index
+ * entry without a record, a tombstone. Entries of deleted games and of games archived
+ * again are dropped by rewriting the index when the archiving node opens the archive.
+ * <p>
+ * The index is kept in memory and segments are read through memory mapped buffers.
+ * Nodes serving the same games share the directory of the archive. Only the node with
+ * tictactoe.archive.archiver appends games, it holds a lock on the archive so a second
+ * archiving node fails to start. Every node writes tombstones of the games it deletes,
+ * index entries are appended under a lock of the index, and every node reads the entries
+ * other nodes appended before it looks a game up.
+ * <p>
+ * Metrics: tictactoe.archive.games and tictactoe.archive.read.
+ */
+@Component
+@Slf4j
+public class GameArchive {
+
+    static final String INDEX_FILE = "index.log";
+    private static final String INDEX_LOCK_FILE = "index.lock";
+    private static final String ARCHIVER_LOCK_FILE = "archiver.lock";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int RECORD_HEADER = 8;
+    private static final int DELETED = -1;
+
+    private final boolean enabled;
+    private final boolean archiver;
+    private final Path dir;
+    private final Path indexPath;
+    private final long segmentSize;
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final Map<Integer, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+    private final Timer readTimer;
+    /**
+     * Guards the index file and what was read of it
+     */
+    private final Object indexLock = new Object();
+    private FileChannel segment;
+    private int segmentNumber;
+    private FileChannel archiverLockFile;
+    private volatile Object indexKey;
+    private volatile long indexRead;
+    private long indexEntries;
+
+    @Autowired
+    public GameArchive(@Value("${tictactoe.archive.enabled:false}") boolean enabled,
+                       @Value("${tictactoe.archive.archiver:true}") boolean archiver,
+                       @Value("${tictactoe.archive.dir:archive}") String dir,
+                       @Value("${tictactoe.archive.segment-size-mb:64}") long segmentSizeMb,
+                       MeterRegistry meterRegistry) {
+        this(enabled, archiver, Paths.get(dir), segmentSizeMb * 1024 * 1024, meterRegistry);
+    }
+
+    GameArchive(boolean enabled, boolean archiver, Path dir, long segmentSize, MeterRegistry meterRegistry) {
+        if (segmentSize <= 0)
+            throw new IllegalArgumentException("Segment size should be positive");
+        this.enabled = enabled;
+        this.archiver = archiver;
+        this.dir = dir;
+        this.indexPath = dir.resolve(INDEX_FILE);
+        this.segmentSize = segmentSize;
+        this.readTimer = Timer.builder("tictactoe.archive.read")
+                .description("Reads of archived games")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.archive.games", index, Map::size)
+                .description("Games in the archive")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled)
+            return;
+        Files.createDirectories(dir);
+        if (!archiver) {
+            refresh();
+            log.info("Archive in {} has {} games, it's written by another node", dir.toAbsolutePath(), index.size());
+            return;
+        }
+        lockArchiver();
+        withIndexLock(() -> {
+            truncateIndex();
+            if (indexEntries > index.size()) {
+                compactIndex();
+                log.info("Archive index was compacted to {} entries", index.size());
+            }
+        });
+        segmentNumber = lastSegment();
+        openSegment();
+        log.info("Archive in {} has {} games", dir.toAbsolutePath(), index.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (segment != null)
+            segment.close();
+        if (archiverLockFile != null)
+            archiverLockFile.close();
+        mapped.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if this node appends games to the archive
+     */
+    public boolean isArchiver() {
+        return enabled && archiver;
+    }
+
+    public boolean contains(String gameId) {
+        return index.containsKey(gameId);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Append games, they are durable when this returns
+     */
+    public synchronized void append(List<GameEntity> games) throws IOException {
+        if (!isArchiver())
+            throw new IllegalStateException(enabled ? "Archive is written by another node" : "Archive is disabled");
+        if (segment.size() >= segmentSize) {
+            segment.close();
+            segmentNumber++;
+            openSegment();
+        }
+        ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        DataOutputStream entriesOut = new DataOutputStream(entries);
+        for (GameEntity game : games) {
+            byte[] raw = GameDocuments.toBytes(game);
+            byte[] compressed = compress(raw);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + compressed.length);
+            record.putInt(compressed.length).putInt(raw.length).put(compressed).flip();
+            long offset = segment.size();
+            while (record.hasRemaining()) {
+                segment.write(record, offset + record.position());
+            }
+            writeIndex(entriesOut, game.getId(), new Location(segmentNumber, offset, RECORD_HEADER + compressed.length));
+        }
+        segment.force(false);
+        withIndexLock(() -> appendIndex(entries.toByteArray()));
+    }
+
+    /**
+     * Find an archived game
+     *
+     * @return the game or empty if it isn't archived
+     */
+    public Mono<GameEntity> find(String gameId) {
+        if (!enabled)
+            return Mono.empty();
+        return Mono.fromCallable(() -> {
+                    // Games archived or deleted by other nodes since the last look up
+                    refresh();
+                    return read(gameId);
+                })
+                // A mapped read may fault pages in from disk
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Remove a game from the archive, its record stays in the segment
+     *
+     * @return false if the game wasn't archived
+     */
+    public boolean delete(String gameId) throws IOException {
+        if (!enabled)
+            return false;
+        boolean[] deleted = new boolean[1];
+        withIndexLock(() -> {
+            if (!index.containsKey(gameId))
+                return;
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            writeIndex(new DataOutputStream(entry), gameId, new Location(0, 0, DELETED));
+            appendIndex(entry.toByteArray());
+            deleted[0] = true;
+        });
+        return deleted[0];
+    }
+
+    GameEntity read(String gameId) throws IOException {
+        Location location = index.get(gameId);
+        if (location == null)
+            return null;
+        long start = System.nanoTime();
+        ByteBuffer record = mappedSegment(location).duplicate();
+        record.position((int) location.offset);
+        int compressedLength = record.getInt();
+        byte[] raw = new byte[record.getInt()];
+        byte[] compressed = new byte[compressedLength];
+        record.get(compressed);
+        decompress(compressed, raw);
+        GameEntity game = GameDocuments.fromBytes(raw);
+        readTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return game;
+    }
+
+    private MappedByteBuffer mappedSegment(Location location) throws IOException {
+        MappedByteBuffer buffer = mapped.get(location.segment);
+        if (buffer == null || buffer.capacity() < location.offset + location.length) {
+            // The segment has grown since it was mapped
+            try (FileChannel channel = FileChannel.open(segmentPath(location.segment), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            mapped.put(location.segment, buffer);
+        }
+        return buffer;
+    }
+
+    private void openSegment() throws IOException {
+        segment = FileChannel.open(segmentPath(segmentNumber),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+    }
+
+    private Path segmentPath(int number) {
+        return dir.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private int lastSegment() throws IOException {
+        int last = 0;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : segments) {
+                String name = path.getFileName().toString();
+                last = Math.max(last, Integer.parseInt(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Take the role of the only node which appends games
+     */
+    private void lockArchiver() throws IOException {
+        FileChannel channel = FileChannel.open(dir.resolve(ARCHIVER_LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("Archive in " + dir.toAbsolutePath() + " is written by another node,"
+                    + " only one node may have tictactoe.archive.archiver");
+        }
+        archiverLockFile = channel;
+    }
+
+    /**
+     * Run an index change while no other node changes the index, with the entries of
+     * other nodes read before
+     */
+    private void withIndexLock(IndexChange change) throws IOException {
+        synchronized (indexLock) {
+            try (FileChannel channel = FileChannel.open(dir.resolve(INDEX_LOCK_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock lock = channel.lock()) {
+                refresh();
+                change.run();
+            }
+        }
+    }
+
+    /**
+     * Append entries to the index and apply them, called with the lock of the index
+     */
+    private void appendIndex(byte[] entries) throws IOException {
+        truncateIndex();
+        try (FileChannel channel = FileChannel.open(indexPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(entries);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        refresh();
+    }
+
+    /**
+     * Drop an incomplete entry left by a crash, called with the lock of the index
+     */
+    private void truncateIndex() throws IOException {
+        if (!Files.exists(indexPath))
+            return;
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+            if (channel.size() > indexRead) {
+                log.warn("Archive index ends with an incomplete entry, {} bytes are dropped",
+                        channel.size() - indexRead);
+                channel.truncate(indexRead);
+            }
+        }
+    }
+
+    /**
+     * Read the index entries appended since the last read, all of them if the index was compacted
+     */
+    private void refresh() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(indexPath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        Object key = attributes.fileKey();
+        boolean compacted = key != null ? !key.equals(indexKey) : attributes.size() < indexRead;
+        if (!compacted && attributes.size() == indexRead)
+            return;
+        synchronized (indexLock) {
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                long from = compacted ? 0 : indexRead;
+                ByteBuffer bytes = ByteBuffer.allocate((int) (channel.size() - from));
+                while (bytes.hasRemaining() && channel.read(bytes, from + bytes.position()) >= 0) {
+                    // Read up to the size seen on opening
+                }
+                Map<String, Location> read = compacted ? new HashMap<>() : index;
+                long entries = compacted ? 0 : indexEntries;
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.array(), 0, bytes.position()));
+                long valid = from;
+                try {
+                    while (true) {
+                        String gameId = in.readUTF();
+                        Location location = new Location(in.readInt(), in.readLong(), in.readInt());
+                        if (location.length == DELETED)
+                            read.remove(gameId);
+                        else
+                            read.put(gameId, location);
+                        entries++;
+                        valid += 2 + gameId.getBytes(StandardCharsets.UTF_8).length + 16;
+                    }
+                } catch (EOFException e) {
+                    // End of the complete entries, the next one may still be written
+                }
+                if (compacted) {
+                    index.keySet().retainAll(read.keySet());
+                    index.putAll(read);
+                }
+                indexEntries = entries;
+                indexRead = valid;
+                indexKey = key;
+            }
+        }
+    }
+
+    /**
+     * Rewrite the index with the entries of the archived games only, called with the lock of the index
+     */
+    private void compactIndex() throws IOException {
+        Path compacted = dir.resolve(INDEX_FILE + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(compacted.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            for (Map.Entry<String, Location> entry : index.entrySet()) {
+                writeIndex(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(compacted, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        refresh();
+    }
+
+    private static void writeIndex(DataOutputStream out, String gameId, Location location) throws IOException {
+        out.writeUTF(gameId);
+        out.writeInt(location.segment);
+        out.writeLong(location.offset);
+        out.writeInt(location.length);
+    }
+
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length);
+            byte[] chunk = new byte[512];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void decompress(byte[] compressed, byte[] raw) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            if (inflater.inflate(raw) != raw.length)
+                throw new IOException("Archived record is corrupt");
+        } catch (DataFormatException e) {
+            throw new IOException("Archived record is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private interface IndexChange {
+        void run() throws IOException;
+    }
+
+    private static final class Location {
+
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -12,4 +12,3 @@ import reactor.core.publisher.Mono;
 public interface GameRepository extends ReactiveMongoRepository<GameEntity, String> {
     Mono<GameEntity> findById(String id);
 }
-
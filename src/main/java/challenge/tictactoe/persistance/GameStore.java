@@ -0,0 +1,45 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.GameEvents;
+import reactor.core.publisher.Mono;
+
+/**
+ * Storage of games, one implementation is active depending on the
+ * {@link challenge.tictactoe.constant.StoreProfiles store profile}.
+ * <p>
+ * Games returned by a store belong to the caller, changing them doesn't change the store.
+ */
+public interface GameStore {
+
+    /**
+     * Store a new game, an id is assigned if not set
+     *
+     * @return the stored game with its id and first version
+     */
+    Mono<GameEntity> insert(GameEntity game);
+
+    /**
+     * @return the game or empty if there is no such game
+     */
+    Mono<GameEntity> findById(String id);
+
+    /**
+     * Replace the state of a game if it still has the version the new state was computed from
+     *
+     * @param game new state of the game with the version it was read with
+     * @return the stored game with the next version, empty if the game was changed or deleted meanwhile
+     */
+    Mono<GameEntity> update(GameEntity game);
+
+    Mono<Void> deleteById(String id);
+
+    /**
+     * Game as it was after the given number of moves
+     *
+     * @return the game with at most number moves, empty if there is no such game
+     */
+    default Mono<GameEntity> findAt(String id, int number) {
+        return findById(id).map(game -> GameEvents.atMove(game, number));
+    }
+}
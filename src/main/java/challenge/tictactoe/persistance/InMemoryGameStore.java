@@ -0,0 +1,73 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameEntity;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Games in memory of this node only, for single node deployments without a DB.
+ * Games are lost when the node stops.
+ * <p>
+ * Every game has its own reference to its current state, an update replaces it with
+ * compare-and-set, so reads and updates never lock.
+ */
+@Component
+@Profile(StoreProfiles.MEMORY)
+public class InMemoryGameStore implements GameStore {
+
+    private final Map<String, AtomicReference<GameEntity>> games = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<GameEntity> insert(GameEntity game) {
+        return Mono.fromSupplier(() -> {
+            GameEntity stored = game.toBuilder()
+                    .id(game.getId() != null ? game.getId() : ObjectId.get().toHexString())
+                    .version(0L)
+                    .build()
+                    .copy();
+            if (games.putIfAbsent(stored.getId(), new AtomicReference<>(stored)) != null)
+                throw new DuplicateKeyException("Game " + stored.getId() + " already exists");
+            return stored.copy();
+        });
+    }
+
+    @Override
+    public Mono<GameEntity> findById(String id) {
+        return Mono.fromSupplier(() -> {
+            AtomicReference<GameEntity> game = games.get(id);
+            return game != null ? game.get().copy() : null;
+        });
+    }
+
+    @Override
+    public Mono<GameEntity> update(GameEntity game) {
+        return Mono.fromSupplier(() -> {
+            AtomicReference<GameEntity> reference = games.get(game.getId());
+            if (reference == null)
+                return null;
+            GameEntity current = reference.get();
+            if (!current.getVersion().equals(game.getVersion()))
+                return null;
+            GameEntity next = game.copy();
+            next.setVersion(game.getVersion() + 1);
+            return reference.compareAndSet(current, next) ? next.copy() : null;
+        });
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return Mono.fromRunnable(() -> games.remove(id));
+    }
+
+    public int size() {
+        return games.size();
+    }
+}
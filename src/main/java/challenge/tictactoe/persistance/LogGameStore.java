@@ -0,0 +1,273 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Games in an append-only log file on local disk with all games in memory, for single
+ * node deployments without a DB which keep their games over restarts.
+ * <p>
+ * Every insert and update appends the whole game in the compact layout of
+ * {@link GameDocuments}, a delete appends the game id. On start up the log is replayed,
+ * the last record of a game wins and a record cut by a crash is dropped. When the log
+ * is much bigger than the games it holds, it's rewritten with the current games only.
+ * <p>
+ * Reads are served from memory without locking, writes are appended one at a time.
+ * <p>
+ * Metrics: tictactoe.store.log.append and tictactoe.store.log.bytes.
+ */
+@Component
+@Profile(StoreProfiles.LOG)
+@Slf4j
+public class LogGameStore implements GameStore {
+
+    static final String LOG_FILE = "games.log";
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int RECORD_HEADER = 5;
+
+    private final Path dir;
+    private final boolean sync;
+    private final long compactMinBytes;
+    private final Map<String, GameEntity> games = new ConcurrentHashMap<>();
+    private final Map<String, Integer> recordSizes = new ConcurrentHashMap<>();
+    private final Timer appendTimer;
+    private FileChannel file;
+    private long liveBytes;
+
+    @Autowired
+    public LogGameStore(@Value("${tictactoe.store.log.dir:data}") String dir,
+                        @Value("${tictactoe.store.log.sync:true}") boolean sync,
+                        @Value("${tictactoe.store.log.compact-min-mb:64}") long compactMinMb,
+                        MeterRegistry meterRegistry) {
+        this(Paths.get(dir), sync, compactMinMb * 1024 * 1024, meterRegistry);
+    }
+
+    LogGameStore(Path dir, boolean sync, long compactMinBytes, MeterRegistry meterRegistry) {
+        this.dir = dir;
+        this.sync = sync;
+        this.compactMinBytes = compactMinBytes;
+        this.appendTimer = Timer.builder("tictactoe.store.log.append")
+                .description("Appends to the log of games")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.store.log.bytes", this, LogGameStore::logSize)
+                .description("Size of the log of games")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        file = FileChannel.open(dir.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        replay();
+        compactIfNeeded();
+        log.info("Log of games in {} has {} games", dir.toAbsolutePath(), games.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (file != null)
+            file.close();
+    }
+
+    @Override
+    public Mono<GameEntity> insert(GameEntity game) {
+        return write(() -> {
+            GameEntity stored = game.toBuilder()
+                    .id(game.getId() != null ? game.getId() : ObjectId.get().toHexString())
+                    .version(0L)
+                    .build()
+                    .copy();
+            if (games.containsKey(stored.getId()))
+                throw new DuplicateKeyException("Game " + stored.getId() + " already exists");
+            put(stored);
+            return stored.copy();
+        });
+    }
+
+    @Override
+    public Mono<GameEntity> findById(String id) {
+        return Mono.fromSupplier(() -> {
+            GameEntity game = games.get(id);
+            return game != null ? game.copy() : null;
+        });
+    }
+
+    @Override
+    public Mono<GameEntity> update(GameEntity game) {
+        return write(() -> {
+            GameEntity current = games.get(game.getId());
+            if (current == null || !current.getVersion().equals(game.getVersion()))
+                return null;
+            GameEntity next = game.copy();
+            next.setVersion(game.getVersion() + 1);
+            put(next);
+            return next.copy();
+        });
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return write(() -> {
+            if (games.containsKey(id)) {
+                byte[] key = id.getBytes(StandardCharsets.UTF_8);
+                append(DELETE, key);
+                games.remove(id);
+                liveBytes -= recordSizes.remove(id);
+            }
+            return null;
+        }).then();
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    long logSize() {
+        try {
+            return file != null && file.isOpen() ? file.size() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Run a write on a thread which may block on the file, one write at a time
+     */
+    private <T> Mono<T> write(Supplier<T> write) {
+        return Mono.fromCallable(() -> {
+                    synchronized (this) {
+                        T result = write.get();
+                        compactIfNeeded();
+                        return result;
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private void put(GameEntity game) {
+        byte[] record = GameDocuments.toBytes(game);
+        append(PUT, record);
+        games.put(game.getId(), game);
+        Integer previous = recordSizes.put(game.getId(), RECORD_HEADER + record.length);
+        liveBytes += RECORD_HEADER + record.length - (previous != null ? previous : 0);
+    }
+
+    private void append(byte type, byte[] payload) {
+        long start = System.nanoTime();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+        record.put(type).putInt(payload.length).put(payload).flip();
+        try {
+            long position = file.size();
+            while (record.hasRemaining()) {
+                position += file.write(record, position);
+            }
+            if (sync)
+                file.force(false);
+        } catch (IOException e) {
+            throw new IllegalStateException("Log of games can't be written", e);
+        }
+        appendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void replay() throws IOException {
+        long size = file.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+        while (position + RECORD_HEADER <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            byte type = header.get();
+            int length = header.getInt();
+            if ((type != PUT && type != DELETE) || length < 0 || position + RECORD_HEADER + length > size)
+                break;
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + RECORD_HEADER);
+            if (type == PUT) {
+                GameEntity game = GameDocuments.fromBytes(payload.array());
+                games.put(game.getId(), game);
+                Integer previous = recordSizes.put(game.getId(), RECORD_HEADER + length);
+                liveBytes += RECORD_HEADER + length - (previous != null ? previous : 0);
+            } else {
+                String id = new String(payload.array(), StandardCharsets.UTF_8);
+                games.remove(id);
+                Integer previous = recordSizes.remove(id);
+                liveBytes -= previous != null ? previous : 0;
+            }
+            position += RECORD_HEADER + length;
+        }
+        if (position < size) {
+            log.warn("Log of games ends with an incomplete record, {} bytes are dropped", size - position);
+            file.truncate(position);
+            file.force(true);
+        }
+    }
+
+    /**
+     * Rewrite the log with the current games only, the new log replaces the old one atomically
+     */
+    private void compactIfNeeded() {
+        try {
+            long size = file.size();
+            if (size < compactMinBytes || size < 2 * liveBytes)
+                return;
+            Path compacted = dir.resolve(LOG_FILE + ".compact");
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (GameEntity game : games.values()) {
+                    byte[] payload = GameDocuments.toBytes(game);
+                    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payload.length);
+                    record.put(PUT).putInt(payload.length).put(payload).flip();
+                    while (record.hasRemaining()) {
+                        out.write(record);
+                    }
+                }
+                out.force(true);
+            }
+            file.close();
+            Files.move(compacted, dir.resolve(LOG_FILE), StandardCopyOption.ATOMIC_MOVE);
+            file = FileChannel.open(dir.resolve(LOG_FILE), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            log.info("Log of games compacted from {} to {} bytes", size, file.size());
+        } catch (IOException e) {
+            throw new IllegalStateException("Log of games can't be compacted", e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Unexpected end of the log of games");
+        }
+    }
+}
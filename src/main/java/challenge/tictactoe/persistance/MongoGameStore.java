@@ -0,0 +1,98 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.service.GameMigrationService;
+import challenge.tictactoe.service.GameWriteCoalescer;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+
+/**
+ * Games in the 'games' collection of MongoDb, the default store.
+ * <p>
+ * An update is one findAndModify matching the version the game was read with, or with
+ * write-behind enabled one item of a batched bulk write. A game stored before moves were
+ * embedded is migrated when it's read.
+ */
+@Component
+@Profile(StoreProfiles.MONGO)
+public class MongoGameStore implements GameStore {
+
+    private final GameRepository gameRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GameMigrationService gameMigration;
+    private final GameWriteCoalescer gameWrites;
+
+    @Autowired
+    public MongoGameStore(GameRepository gameRepository,
+                          ReactiveMongoTemplate mongoTemplate,
+                          GameMigrationService gameMigration,
+                          GameWriteCoalescer gameWrites) {
+        this.gameRepository = gameRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.gameMigration = gameMigration;
+        this.gameWrites = gameWrites;
+    }
+
+    @Override
+    public Mono<GameEntity> insert(GameEntity game) {
+        return gameWrites.isEnabled() ? gameWrites.insert(game) : gameRepository.save(game);
+    }
+
+    @Override
+    public Mono<GameEntity> findById(String id) {
+        return gameRepository.findById(id)
+                .switchIfEmpty(Mono.defer(() -> gameMigration.migrate(id)));
+    }
+
+    /**
+     * With write-behind enabled the update is batched with updates of other requests, the
+     * updated game is then built from the saved one instead of being read back.
+     */
+    @Override
+    public Mono<GameEntity> update(GameEntity game) {
+        Query query = GameDocuments.versionOf(game.getId(), game.getVersion());
+        Update update = GameDocuments.updateOf(game);
+        if (!gameWrites.isEnabled())
+            return mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true),
+                    GameEntity.class);
+        byte[] order = GameDocuments.boardOf(game).encodeOrder();
+        return gameWrites.update(query, update, stored -> isSaved(stored, game.getVersion() + 1, order))
+                .filter(applied -> applied)
+                .map(applied -> game.toBuilder().version(game.getVersion() + 1).build());
+    }
+
+    /**
+     * The legacy game goes first, so a migration copying it at the same time either sees
+     * it's gone or has inserted the copy which is deleted next
+     */
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return gameMigration.deleteLegacy(id)
+                .then(gameRepository.deleteById(id));
+    }
+
+    /**
+     * Tell if the stored game has this update applied, moves are only ever appended
+     * so any later version of it starts with the same moves
+     */
+    private static boolean isSaved(Document stored, long version, byte[] order) {
+        Long storedVersion = GameDocuments.versionOf(stored);
+        if (storedVersion == null || storedVersion < version)
+            return false;
+        byte[] storedOrder = GameDocuments.boardOf(GameDocuments.read(stored)).encodeOrder();
+        return storedOrder.length >= order.length
+                && Arrays.equals(order, Arrays.copyOf(storedOrder, order.length));
+    }
+}
@@ -7,7 +7,8 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
- * Reactive MongoDB repository for 'moves' table
+ * Reactive MongoDB repository for legacy 'moves' table, only read by the migration
+ * of games stored before moves were embedded into game documents
  */
 @Repository
 public interface MoveRepository extends ReactiveMongoRepository<MoveEntity, String> {
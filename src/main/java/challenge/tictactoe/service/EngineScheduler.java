@@ -0,0 +1,128 @@
+package challenge.tictactoe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static challenge.tictactoe.constant.ErrorMessages.ENGINE_IS_BUSY;
+
+/**
+ * Bounded thread pool for CPU-bound engine calls.
+ * <p>
+ * Engine searches must not run on Netty event loop threads, every connection served by
+ * the same event loop would wait for them. Calls are queued to a fixed number of threads
+ * instead. A call fails fast with 503 Service Unavailable when the queue is full or when
+ * it has waited in the queue longer than the configured limit, so a burst of AI moves
+ * can't build up an unbounded backlog.
+ * <p>
+ * Metrics: tictactoe.engine.queue.depth, tictactoe.engine.queue.wait,
+ * tictactoe.engine.active and tictactoe.engine.rejected.
+ */
+@Component
+@Slf4j
+public class EngineScheduler {
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public EngineScheduler(@Value("${tictactoe.engine.scheduler.threads:0}") int threads,
+                           @Value("${tictactoe.engine.scheduler.queue-capacity:64}") int queueCapacity,
+                           @Value("${tictactoe.engine.scheduler.max-wait-ms:2000}") long maxWaitMillis,
+                           MeterRegistry meterRegistry) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "engine-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.queueCapacity = queueCapacity;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.waitTimer = Timer.builder("tictactoe.engine.queue.wait")
+                .description("Time engine calls wait for a free thread")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("tictactoe.engine.rejected")
+                .description("Engine calls rejected because the scheduler was overloaded")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.engine.queue.depth", executor, e -> e.getQueue().size())
+                .description("Engine calls waiting for a free thread")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.engine.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Engine calls being computed")
+                .register(meterRegistry);
+        log.info("Engine scheduler: {} threads, queue capacity {}, max wait {} ms",
+                poolSize, queueCapacity, maxWaitMillis);
+    }
+
+    /**
+     * Run the task on an engine thread
+     *
+     * @param task CPU-bound engine call
+     * @return result of the task or 503 error if the scheduler is overloaded
+     */
+    public <T> Mono<T> submit(Callable<T> task) {
+        return Mono.defer(() -> {
+            long queuedAt = System.nanoTime();
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                executor.execute(() -> {
+                    long waited = System.nanoTime() - queuedAt;
+                    waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                    // The caller has most probably given up already, don't waste a search on it
+                    if (waited > maxWaitNanos) {
+                        result.completeExceptionally(overloaded());
+                        return;
+                    }
+                    try {
+                        result.complete(task.call());
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                return Mono.error(overloaded());
+            }
+            return Mono.fromFuture(result);
+        });
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private ResponseStatusException overloaded() {
+        rejected.increment();
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, ENGINE_IS_BUSY);
+    }
+}
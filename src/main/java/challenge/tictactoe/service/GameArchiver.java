@@ -0,0 +1,190 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.persistance.GameArchive;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Moves finished games from the DB into the {@link GameArchive}.
+ * <p>
+ * Finished games don't change anymore. Some time after their last move they are read
+ * in batches, appended to the archive and only then removed from the DB, so a game is
+ * always in one of both. A game of the batch which is gone from the DB once the batch is
+ * appended was deleted meanwhile, maybe before the deleting request could see it in the
+ * archive, so it's deleted from the archive as well. Like the purge, a run stops while many games are played on
+ * this node and continues on the next run. Only the node with tictactoe.archive.archiver runs it.
+ * <p>
+ * Metrics: tictactoe.archive.archived.
+ */
+@Service
+@Profile(StoreProfiles.MONGO)
+@Slf4j
+public class GameArchiver {
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GameArchive gameArchive;
+    private final GameCache gameCache;
+    private final GameLanes gameLanes;
+    private final Duration after;
+    private final Duration interval;
+    private final int batchSize;
+    private final int maxActiveLanes;
+    private final Counter archived;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Disposable archiving;
+
+    @Autowired
+    public GameArchiver(ReactiveMongoTemplate mongoTemplate,
+                        GameArchive gameArchive,
+                        GameCache gameCache,
+                        GameLanes gameLanes,
+                        MeterRegistry meterRegistry,
+                        @Value("${tictactoe.archive.after-ms:3600000}") long afterMillis,
+                        @Value("${tictactoe.archive.interval-ms:60000}") long intervalMillis,
+                        @Value("${tictactoe.archive.batch-size:100}") int batchSize,
+                        @Value("${tictactoe.archive.max-active-lanes:16}") int maxActiveLanes) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Archive batch size should be positive");
+        this.mongoTemplate = mongoTemplate;
+        this.gameArchive = gameArchive;
+        this.gameCache = gameCache;
+        this.gameLanes = gameLanes;
+        this.after = Duration.ofMillis(afterMillis);
+        this.interval = Duration.ofMillis(intervalMillis);
+        this.batchSize = batchSize;
+        this.maxActiveLanes = maxActiveLanes;
+        this.archived = Counter.builder("tictactoe.archive.archived")
+                .description("Finished games moved from the DB into the archive")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!gameArchive.isArchiver())
+            return;
+        archiving = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> archiveFinished()
+                        .onErrorResume(ex -> {
+                            log.warn("Archiving of finished games failed: {}", ex.toString());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (archiving != null)
+            archiving.dispose();
+    }
+
+    /**
+     * Archive finished games batch by batch until none is left or the node gets busy
+     *
+     * @return number of archived games
+     */
+    public Mono<Long> archiveFinished() {
+        if (!running.compareAndSet(false, true))
+            return Mono.just(0L);
+        Query finished = finishedGames(Instant.now());
+        Mono<Long> nextBatch = Mono.defer(() -> gameLanes.activeLanes() > maxActiveLanes ?
+                Mono.empty() : archiveBatch(finished));
+        return nextBatch
+                .expand(count -> count < batchSize ? Mono.empty() : nextBatch)
+                .reduce(0L, Long::sum)
+                .doOnNext(total -> {
+                    if (total > 0)
+                        log.info("{} finished games were archived", total);
+                })
+                .doFinally(signal -> running.set(false));
+    }
+
+    private Mono<Long> archiveBatch(Query finished) {
+        return mongoTemplate.find(Query.of(finished).limit(batchSize), GameEntity.class)
+                .collectList()
+                .flatMap(games -> games.isEmpty() ? Mono.just(0L) :
+                        Mono.fromCallable(() -> {
+                                    gameArchive.append(games);
+                                    return games;
+                                })
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flatMap(this::removeArchived));
+    }
+
+    private Mono<Long> removeArchived(List<GameEntity> games) {
+        List<String> ids = games.stream().map(GameEntity::getId).collect(Collectors.toList());
+        // A game deleted from now on is found in the archive by the delete
+        Query stored = query(where("_id").in(ids));
+        stored.fields().include("_id");
+        return mongoTemplate.find(stored, Document.class, mongoTemplate.getCollectionName(GameEntity.class))
+                .map(document -> document.get("_id").toString())
+                .collect(Collectors.toSet())
+                .flatMap(existing -> deleteFromArchive(ids, existing)
+                        .then(mongoTemplate.remove(query(where("_id").in(existing)), GameEntity.class)))
+                .map(DeleteResult::getDeletedCount)
+                .doOnNext(deleted -> {
+                    archived.increment(deleted);
+                    ids.forEach(id -> gameCache.remove(id, "archived"));
+                });
+    }
+
+    /**
+     * Delete archived games which were deleted from the DB while they were archived
+     */
+    private Mono<Void> deleteFromArchive(List<String> ids, Set<String> existing) {
+        List<String> deleted = ids.stream().filter(id -> !existing.contains(id)).collect(Collectors.toList());
+        if (deleted.isEmpty())
+            return Mono.empty();
+        return Mono.fromCallable(() -> {
+                    for (String id : deleted) {
+                        gameArchive.delete(id);
+                    }
+                    log.info("{} games were deleted while they were archived", deleted.size());
+                    return deleted;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    /**
+     * Games finished before the configured time, or finished before games had timestamps
+     */
+    Query finishedGames(Instant now) {
+        return query(where(GameDocuments.STATUS).is(GameDocuments.statusCode(GameStatus.FINISHED))
+                .orOperator(
+                        where(GameDocuments.FINISHED_AT).lt(Date.from(now.minus(after))),
+                        where(GameDocuments.FINISHED_AT).exists(false)));
+    }
+}
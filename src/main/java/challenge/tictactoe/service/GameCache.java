@@ -0,0 +1,151 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.db.GameEntity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded write-through cache of games in progress.
+ * <p>
+ * The game saved by every move is put into the cache, so a node reads a game it plays
+ * from Mongo at most once. Games leave the cache when they are finished or deleted,
+ * when the cache is full or when they weren't used for the idle time. A move which
+ * fails the version check also removes the game, the game was changed by another node
+ * and the retry has to read it from Mongo.
+ * <p>
+ * The cache never hands out the cached instance, callers get a copy they can modify.
+ * <p>
+ * While the cache is suspended, because changes made by other nodes can't be followed,
+ * it's empty and every read goes to the DB, see {@link GameCacheCoherence}.
+ * <p>
+ * Metrics: cache.* with tag cache=tictactoe.games, tictactoe.games.cache.removals
+ * and tictactoe.games.cache.suspended.
+ */
+@Component
+@Slf4j
+public class GameCache {
+
+    private final Cache<String, GameEntity> games;
+    private final MeterRegistry meterRegistry;
+    private volatile boolean suspended;
+
+    public GameCache(@Value("${tictactoe.cache.enabled:true}") boolean enabled,
+                     @Value("${tictactoe.cache.max-size:10000}") long maxSize,
+                     @Value("${tictactoe.cache.idle-ms:600000}") long idleMillis,
+                     MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        if (enabled) {
+            this.games = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfterAccess(Duration.ofMillis(idleMillis))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, games, "tictactoe.games");
+            Gauge.builder("tictactoe.games.cache.suspended", this, cache -> cache.suspended ? 1 : 0)
+                    .description("1 while every read goes to the DB because remote changes can't be followed")
+                    .register(meterRegistry);
+        } else {
+            this.games = null;
+        }
+        log.info("Game cache: {}", enabled ? "max size " + maxSize + ", idle " + idleMillis + " ms" : "disabled");
+    }
+
+    /**
+     * @return copy of the cached game or null
+     */
+    public GameEntity get(String gameId) {
+        if (games == null || suspended)
+            return null;
+        GameEntity game = games.getIfPresent(gameId);
+        return game != null ? game.copy() : null;
+    }
+
+    /**
+     * Cache the game as it was saved or read, a finished game is removed instead
+     */
+    public void put(GameEntity game) {
+        if (games == null || suspended)
+            return;
+        if (GameStatus.FINISHED.equals(game.getStatus())) {
+            remove(game.getId(), "finished");
+        } else {
+            games.put(game.getId(), game.copy());
+        }
+    }
+
+    /**
+     * @param reason tag of the removal metric
+     */
+    public void remove(String gameId, String reason) {
+        if (games == null)
+            return;
+        if (games.asMap().remove(gameId) != null)
+            countRemoval(reason);
+    }
+
+    /**
+     * Remove the game unless the cached game is the changed version or a newer one,
+     * this node has most probably made the change itself
+     *
+     * @param version version of the game after the change, null if unknown
+     */
+    public void invalidate(String gameId, Long version) {
+        if (games == null)
+            return;
+        boolean[] removed = new boolean[1];
+        games.asMap().computeIfPresent(gameId, (id, game) -> {
+            if (version != null && game.getVersion() != null && game.getVersion() >= version)
+                return game;
+            removed[0] = true;
+            return null;
+        });
+        if (removed[0])
+            countRemoval("remote");
+    }
+
+    /**
+     * Empty the cache and stop caching, every read goes to the DB until {@link #resume()}
+     */
+    public void suspend() {
+        if (games == null)
+            return;
+        suspended = true;
+        games.invalidateAll();
+    }
+
+    /**
+     * Start caching again, anything cached while the cache was being suspended is dropped
+     */
+    public void resume() {
+        if (games == null)
+            return;
+        games.invalidateAll();
+        suspended = false;
+    }
+
+    public boolean isEnabled() {
+        return games != null;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    private void countRemoval(String reason) {
+        Counter.builder("tictactoe.games.cache.removals")
+                .description("Games removed from the cache before eviction")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
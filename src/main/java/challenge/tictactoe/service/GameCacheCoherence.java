@@ -0,0 +1,252 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameDocuments;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * Keeps the {@link GameCache} of this node coherent with changes made by other nodes.
+ * <p>
+ * The node follows the change stream of the 'games' collection. A changed game is
+ * removed from the cache unless the cache already has the changed version, which is
+ * the case for changes made by this node. A deleted game is always removed. Followers of
+ * a changed game on this node are told by {@link GameUpdates} to read it again, followers
+ * of a deleted one are ended, and when the stream is opened every followed game is read
+ * again since changes may have been missed while it was closed.
+ * <p>
+ * The cache is only used while the stream is open. Until it's opened, and whenever it
+ * fails, the cache is suspended: it's emptied and every read goes to the DB. The stream
+ * is reopened with a growing delay, from the last seen event if possible, otherwise from
+ * the operation time of the server read while the cache is suspended. The cache is resumed
+ * empty once the server has returned the first batch of a stream from there, so it never
+ * serves a game changed while the stream was closed or being opened.
+ * Change streams need a replica set, on a standalone server the cache stays suspended
+ * and the stream isn't retried, which is logged once.
+ * <p>
+ * Metrics: tictactoe.games.coherence.lag, time between a change and its invalidation
+ * with the one second resolution of the cluster time, and tictactoe.games.coherence.disconnects.
+ */
+@Component
+@Profile(StoreProfiles.MONGO)
+@Slf4j
+public class GameCacheCoherence {
+
+    static final String COLLECTION = "games";
+    private static final Duration MIN_BACKOFF = Duration.ofMillis(500);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GameCache gameCache;
+    private final GameUpdates gameUpdates;
+    private final boolean enabled;
+    private final Timer lag;
+    private final Counter disconnects;
+    private volatile BsonValue resumeToken;
+    private volatile Disposable subscription;
+
+    @Autowired
+    public GameCacheCoherence(ReactiveMongoTemplate mongoTemplate,
+                              GameCache gameCache,
+                              GameUpdates gameUpdates,
+                              MeterRegistry meterRegistry,
+                              @Value("${tictactoe.cache.coherence.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.gameCache = gameCache;
+        this.gameUpdates = gameUpdates;
+        this.enabled = enabled;
+        this.lag = Timer.builder("tictactoe.games.coherence.lag")
+                .description("Time between a change of a game by any node and its invalidation on this node")
+                .register(meterRegistry);
+        this.disconnects = Counter.builder("tictactoe.games.coherence.disconnects")
+                .description("Failures of the change stream, the cache is suspended until it's reopened")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled && gameCache.isEnabled())
+            gameCache.suspend();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || !gameCache.isEnabled())
+            return;
+        subscription = Flux.defer(this::changes)
+                .doOnNext(this::apply)
+                .doOnError(this::disconnected)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_BACKOFF).maxBackoff(MAX_BACKOFF)
+                        .filter(e -> !(e instanceof NoReplicaSetException)))
+                // The stream ends when the collection is dropped or renamed
+                .repeat()
+                .onErrorResume(NoReplicaSetException.class, e -> {
+                    log.warn("MongoDb is a standalone server, changes of games made by other nodes can't be followed"
+                            + " without a replica set: the game cache is off and every read goes to the DB");
+                    return Flux.empty();
+                })
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null)
+            subscription.dispose();
+    }
+
+    private Flux<ChangeStreamEvent<Document>> changes() {
+        BsonValue token = resumeToken;
+        AtomicBoolean received = new AtomicBoolean();
+        Mono<Document> start = token != null ?
+                Mono.just(new Document("resumeAfter", token)) :
+                operationTime().map(time -> new Document("startAtOperationTime", time));
+        return start
+                .flatMap(this::firstBatch)
+                .flatMapMany(firstBatchToken -> {
+                    // Nothing changed after the first batch was returned is missed, the cache may serve games again
+                    gameCache.resume();
+                    gameUpdates.changedAll();
+                    log.info("Following changes of games{}", token != null ? " from the last seen change" : "");
+                    ChangeStreamOptions options = ChangeStreamOptions.builder()
+                            .filter(Aggregation.newAggregation(Aggregation.match(
+                                    where("operationType").in("update", "replace", "delete"))))
+                            .resumeAfter(firstBatchToken)
+                            .build();
+                    return mongoTemplate.changeStream(COLLECTION, options, Document.class);
+                })
+                .doOnNext(event -> received.set(true))
+                .doOnError(e -> {
+                    // The last seen change may be gone from the oplog, start from now next time
+                    if (!received.get())
+                        resumeToken = null;
+                });
+    }
+
+    void apply(ChangeStreamEvent<Document> event) {
+        ChangeStreamDocument<Document> raw = event.getRaw();
+        String gameId = raw != null ? idOf(raw.getDocumentKey()) : null;
+        if (gameId != null) {
+            if (event.getOperationType() == OperationType.DELETE) {
+                gameCache.invalidate(gameId, null);
+                gameUpdates.close(gameId);
+            } else {
+                gameCache.invalidate(gameId, versionOf(event, raw));
+                // A change saved by this node was published already, its followers drop it as seen
+                gameUpdates.changed(gameId);
+            }
+        }
+        resumeToken = event.getResumeToken();
+        Instant changedAt = event.getTimestamp();
+        if (changedAt != null)
+            lag.record(Math.max(0, System.currentTimeMillis() - changedAt.toEpochMilli()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Operation time of the server, a stream started at it gets every change made after it
+     */
+    private Mono<BsonTimestamp> operationTime() {
+        return mongoTemplate.executeCommand(new Document("hello", 1))
+                .flatMap(hello -> {
+                    if (!hello.containsKey("setName") && !"isdbgrid".equals(hello.get("msg")))
+                        return Mono.error(new NoReplicaSetException());
+                    Object time = hello.get("operationTime");
+                    return time instanceof BsonTimestamp ?
+                            Mono.just((BsonTimestamp) time) :
+                            Mono.error(new IllegalStateException("Server didn't return its operation time"));
+                });
+    }
+
+    /**
+     * Open a change stream cursor, wait for its first batch and close it
+     *
+     * @param changeStream where the stream starts
+     * @return resume token after the first batch, the stream continues from there
+     */
+    private Mono<BsonValue> firstBatch(Document changeStream) {
+        Document command = new Document("aggregate", COLLECTION)
+                .append("pipeline", List.of(new Document("$changeStream", changeStream)))
+                .append("cursor", new Document("batchSize", 0));
+        return mongoTemplate.executeCommand(command)
+                .flatMap(result -> {
+                    Document cursor = result.get("cursor", Document.class);
+                    Document token = cursor.get("postBatchResumeToken", Document.class);
+                    if (token == null)
+                        return Mono.error(new IllegalStateException("Change stream didn't return a resume token"));
+                    long cursorId = cursor.get("id", Number.class).longValue();
+                    Mono<Document> close = cursorId != 0 ?
+                            mongoTemplate.executeCommand(new Document("killCursors", COLLECTION)
+                                    .append("cursors", List.of(cursorId))) :
+                            Mono.empty();
+                    return close.thenReturn(token.toBsonDocument(BsonDocument.class,
+                            MongoClientSettings.getDefaultCodecRegistry()));
+                });
+    }
+
+    private void disconnected(Throwable e) {
+        if (e instanceof NoReplicaSetException)
+            return;
+        disconnects.increment();
+        gameCache.suspend();
+        log.warn("Change stream of games failed, reading games from the DB until it's reopened: {}", e.toString());
+    }
+
+    private static String idOf(BsonDocument key) {
+        if (key == null || !key.containsKey("_id"))
+            return null;
+        BsonValue id = key.get("_id");
+        if (id.isObjectId())
+            return id.asObjectId().getValue().toHexString();
+        return id.isString() ? id.asString().getValue() : null;
+    }
+
+    private static Long versionOf(ChangeStreamEvent<Document> event, ChangeStreamDocument<Document> raw) {
+        if (raw.getUpdateDescription() != null && raw.getUpdateDescription().getUpdatedFields() != null) {
+            BsonValue version = raw.getUpdateDescription().getUpdatedFields().get(GameDocuments.VERSION);
+            return version != null && version.isNumber() ? version.asNumber().longValue() : null;
+        }
+        Document body = event.getBody();
+        return body != null ? GameDocuments.versionOf(body) : null;
+    }
+
+    /**
+     * The server can't open change streams, retrying won't help
+     */
+    private static final class NoReplicaSetException extends IllegalStateException {
+        NoReplicaSetException() {
+            super("MongoDb is not a replica set");
+        }
+    }
+}
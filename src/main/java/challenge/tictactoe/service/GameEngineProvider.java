@@ -0,0 +1,111 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.BoardSize;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.logic.GameEngine;
+import challenge.tictactoe.logic.HeuristicGameEngine;
+import challenge.tictactoe.logic.MonteCarloGameEngine;
+import challenge.tictactoe.logic.SearchPool;
+import challenge.tictactoe.logic.TictactoeGameEngine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selects the game engine for a game by its type and board dimensions.
+ * <p>
+ * Classic 3x3 games are played by the pre-solved {@link TictactoeGameEngine}, bigger boards
+ * by the time-bounded {@link HeuristicGameEngine}. AI games on boards of
+ * tictactoe.engine.mcts.min-board-size and bigger, where alpha-beta can't look deep
+ * enough within the time budget, are played by {@link MonteCarloGameEngine}. Engines keep their transposition tables
+ * between requests, so one instance is created per game type and board and then reused.
+ * <p>
+ * AI engines for big boards share one {@link SearchPool} of tictactoe.engine.parallelism
+ * threads, 0 means one per available processor and 1 disables parallel search. Up to
+ * tictactoe.engine.parallel-searches searches use the pool at the same time, 0 means half
+ * of the threads.
+ */
+@Component
+@Slf4j
+public class GameEngineProvider {
+
+    private final long timeBudgetMillis;
+    private final long analysisTimeBudgetMillis;
+    private final SearchPool searchPool;
+    private final int monteCarloMinBoardSize;
+    private final long monteCarloPlayouts;
+    private final Map<String, GameEngine> engines = new ConcurrentHashMap<>();
+
+    public GameEngineProvider(@Value("${tictactoe.engine.time-budget-ms:1000}") long timeBudgetMillis,
+                              @Value("${tictactoe.engine.parallelism:0}") int parallelism,
+                              @Value("${tictactoe.engine.parallel-searches:0}") int parallelSearches,
+                              @Value("${tictactoe.engine.mcts.min-board-size:10}") int monteCarloMinBoardSize,
+                              @Value("${tictactoe.engine.mcts.playouts:0}") long monteCarloPlayouts,
+                              @Value("${tictactoe.analysis.time-budget-ms:50}") long analysisTimeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.analysisTimeBudgetMillis = analysisTimeBudgetMillis;
+        this.monteCarloMinBoardSize = monteCarloMinBoardSize;
+        this.monteCarloPlayouts = monteCarloPlayouts;
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.searchPool = threads > 1 ? new SearchPool(threads, parallelSearches) : null;
+        log.info("Engine search parallelism: {}, parallel searches: {}",
+                threads, searchPool != null ? searchPool.getMaxSearches() : 0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (searchPool != null) searchPool.shutdown();
+    }
+
+    public GameEngine getEngine(GameEntity game) {
+        int boardSize = boardSizeOf(game);
+        int winLength = winLengthOf(game);
+        String key = game.getGameType() + ":" + boardSize + ":" + winLength;
+        return engines.computeIfAbsent(key, k ->
+                createEngine(game.getGameType(), boardSize, winLength, timeBudgetMillis));
+    }
+
+    /**
+     * Engine for position analysis, big boards are searched with tictactoe.analysis.time-budget-ms
+     * per position. The solved 3x3 engine has no budget and is shared with the games.
+     */
+    public GameEngine getAnalysisEngine(int boardSize, int winLength) {
+        boolean classic = boardSize == BoardSize.DEFAULT_SIZE && winLength == BoardSize.DEFAULT_SIZE;
+        String key = (classic ? GameType.AGAINST_AI : "ANALYSIS") + ":" + boardSize + ":" + winLength;
+        return engines.computeIfAbsent(key, k ->
+                createEngine(GameType.AGAINST_AI, boardSize, winLength, analysisTimeBudgetMillis));
+    }
+
+    /**
+     * Games stored before board dimensions were introduced are 3x3
+     */
+    public static int boardSizeOf(GameEntity game) {
+        return game.getBoardSize() != null ? game.getBoardSize() : BoardSize.DEFAULT_SIZE;
+    }
+
+    public static int winLengthOf(GameEntity game) {
+        return game.getWinLength() != null ?
+                game.getWinLength() :
+                BoardSize.defaultWinLength(boardSizeOf(game));
+    }
+
+    private GameEngine createEngine(String gameType, int boardSize, int winLength, long timeBudgetMillis) {
+        boolean twoPlayers = !gameType.equals(GameType.AGAINST_AI);
+        log.info("Creating {} engine for {}x{} board, {} in a row", gameType, boardSize, boardSize, winLength);
+        if (boardSize == BoardSize.DEFAULT_SIZE && winLength == BoardSize.DEFAULT_SIZE) {
+            return twoPlayers ? new TictactoeGameEngine(true) : new TictactoeGameEngine();
+        }
+        if (twoPlayers) {
+            return new HeuristicGameEngine(boardSize, winLength, true);
+        }
+        return boardSize >= monteCarloMinBoardSize ?
+                new MonteCarloGameEngine(boardSize, winLength, timeBudgetMillis, monteCarloPlayouts, searchPool) :
+                new HeuristicGameEngine(boardSize, winLength, timeBudgetMillis, searchPool);
+    }
+}
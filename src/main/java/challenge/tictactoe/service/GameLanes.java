@@ -0,0 +1,179 @@
+package challenge.tictactoe.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static challenge.tictactoe.constant.ErrorMessages.GAME_IS_BUSY;
+
+/**
+ * Serialized execution lanes, one per game.
+ * <p>
+ * Operations on the same game run one after another in the order they were submitted,
+ * operations on different games run in parallel. A burst of requests for one game
+ * (double clicks, retrying clients) is then applied to the state left by the previous
+ * request instead of racing against it and failing at the version check after an
+ * engine search was wasted.
+ * <p>
+ * Lanes are lock-free: a lane is a queue with two counters, the operation which makes
+ * the lane busy runs it and every finished operation starts the next one. At most
+ * max-depth operations of a game may be waiting or running, further ones are rejected
+ * with 429 Too Many Requests. A lane is torn down as soon as it's idle, which includes
+ * every finished game, so only games with operations in flight take memory.
+ * <p>
+ * Metrics: tictactoe.lanes.active and tictactoe.lanes.rejected.
+ */
+@Component
+@Slf4j
+public class GameLanes {
+
+    /**
+     * Admitted operations of a lane which was torn down
+     */
+    private static final int CLOSED = -1;
+
+    private final ConcurrentHashMap<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final int maxDepth;
+    private final Counter rejected;
+
+    public GameLanes(@Value("${tictactoe.lanes.max-depth:8}") int maxDepth,
+                     MeterRegistry meterRegistry) {
+        if (maxDepth <= 0)
+            throw new IllegalArgumentException("Lane depth should be positive");
+        this.maxDepth = maxDepth;
+        this.rejected = Counter.builder("tictactoe.lanes.rejected")
+                .description("Operations rejected because too many operations of the game were waiting")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.lanes.active", lanes, ConcurrentHashMap::size)
+                .description("Games with operations waiting or running")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run the operation after all operations of the game submitted before it
+     *
+     * @param gameId    lane to run the operation on
+     * @param operation called when it's the turn of the operation
+     * @return result of the operation or 429 error if too many operations of the game are waiting
+     */
+    public <T> Mono<T> submit(String gameId, Supplier<Mono<T>> operation) {
+        return Mono.create(sink -> {
+            Lane lane = admit(gameId);
+            if (lane == null) {
+                rejected.increment();
+                sink.error(new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                        String.format(GAME_IS_BUSY, gameId)));
+                return;
+            }
+            lane.enqueue(() -> {
+                // The lane is released before the result is delivered, so the caller never
+                // sees its own lane still registered, the next operation starts after delivery
+                Disposable running = Mono.defer(operation)
+                        .materialize()
+                        .doOnCancel(() -> lane.done(lane.release()))
+                        .subscribe(signal -> {
+                            boolean next = lane.release();
+                            try {
+                                if (signal.isOnNext())
+                                    sink.success(signal.get());
+                                else if (signal.isOnError())
+                                    sink.error(signal.getThrowable());
+                                else
+                                    sink.success();
+                            } finally {
+                                lane.done(next);
+                            }
+                        });
+                sink.onCancel(running);
+            });
+        });
+    }
+
+    /**
+     * Number of games with operations waiting or running
+     */
+    public int activeLanes() {
+        return lanes.size();
+    }
+
+    private Lane admit(String gameId) {
+        for (; ; ) {
+            Lane lane = lanes.computeIfAbsent(gameId, Lane::new);
+            int admitted = lane.admitted.get();
+            if (admitted == CLOSED) {
+                // Lost the race against the teardown, the next lookup creates a new lane
+                lanes.remove(gameId, lane);
+            } else if (admitted >= maxDepth) {
+                return null;
+            } else if (lane.admitted.compareAndSet(admitted, admitted + 1)) {
+                return lane;
+            }
+        }
+    }
+
+    private final class Lane {
+
+        private final String gameId;
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        /**
+         * Operations waiting or running, {@link #CLOSED} once the lane is torn down
+         */
+        private final AtomicInteger admitted = new AtomicInteger();
+        /**
+         * Operations in the queue plus the running one, the operation which makes it
+         * non-zero has to start the lane
+         */
+        private final AtomicInteger work = new AtomicInteger();
+
+        Lane(String gameId) {
+            this.gameId = gameId;
+        }
+
+        void enqueue(Runnable operation) {
+            queue.offer(operation);
+            if (work.getAndIncrement() == 0)
+                runNext();
+        }
+
+        /**
+         * Called when the running operation terminates, tears the lane down if nothing is waiting
+         *
+         * @return whether an operation is waiting and has to be started with {@link #done(boolean)}
+         */
+        boolean release() {
+            admitted.decrementAndGet();
+            if (work.decrementAndGet() > 0)
+                return true;
+            if (admitted.compareAndSet(0, CLOSED))
+                lanes.remove(gameId, this);
+            return false;
+        }
+
+        /**
+         * Start the waiting operation after the result of the previous one was delivered.
+         * Synchronous operations start the next one on the same stack, its depth is bounded
+         * by the maximum lane depth.
+         */
+        void done(boolean next) {
+            if (next)
+                runNext();
+        }
+
+        private void runNext() {
+            queue.poll().run();
+        }
+    }
+}
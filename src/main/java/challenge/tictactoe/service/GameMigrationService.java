@@ -0,0 +1,212 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.persistance.GameRepository;
+import challenge.tictactoe.persistance.MoveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Online migration of games stored before moves were embedded into game documents.
+ * <p>
+ * Such games and their moves share the 'moves' collection. After the application is
+ * started every legacy game is copied with its moves into the 'games' collection and
+ * removed from 'moves', while requests are being served. A request for a game which
+ * isn't migrated yet migrates it on demand.
+ * <p>
+ * A migration first claims the legacy game with a token, only the claimer copies it and
+ * removes the legacy data, other migrations of the game wait for the copy. A claim older than
+ * claim-timeout is taken over, so a migration interrupted at any step is finished by the next
+ * one. A game deleted while it's copied loses its legacy document, which is removed before
+ * the game in 'games': the claimer checks it's still there after the copy is inserted and
+ * removes the copy otherwise, so a deleted game never comes back.
+ * <p>
+ * Metrics: tictactoe.migration.games.
+ */
+@Service
+@Profile(StoreProfiles.MONGO)
+@Slf4j
+public class GameMigrationService {
+
+    static final String LEGACY_COLLECTION = "moves";
+    private static final String CLAIM = "migrationClaim";
+    private static final String CLAIMED_AT = "migrationClaimedAt";
+    /**
+     * Reads of a game claimed by another migration until its copy is found
+     */
+    private static final int COPY_READS = 10;
+    private static final Duration COPY_READ_DELAY = Duration.ofMillis(20);
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GameRepository gameRepository;
+    private final MoveRepository moveRepository;
+    private final boolean enabled;
+    private final int concurrency;
+    private final Duration claimTimeout;
+    private final Counter migrated;
+
+    @Autowired
+    public GameMigrationService(ReactiveMongoTemplate mongoTemplate,
+                                GameRepository gameRepository,
+                                MoveRepository moveRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${tictactoe.storage.migration.enabled:true}") boolean enabled,
+                                @Value("${tictactoe.storage.migration.concurrency:4}") int concurrency,
+                                @Value("${tictactoe.storage.migration.claim-timeout-ms:60000}") long claimTimeoutMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.gameRepository = gameRepository;
+        this.moveRepository = moveRepository;
+        this.enabled = enabled;
+        this.concurrency = concurrency;
+        this.claimTimeout = Duration.ofMillis(claimTimeoutMillis);
+        this.migrated = Counter.builder("tictactoe.migration.games")
+                .description("Games moved from the shared 'moves' collection into 'games'")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateInBackground() {
+        if (!enabled)
+            return;
+        migrateAll().subscribe(
+                count -> log.info("Migration of legacy games finished, {} games migrated", count),
+                ex -> log.warn("Migration of legacy games failed: {}", ex.toString()));
+    }
+
+    /**
+     * Migrate all legacy games
+     *
+     * @return number of migrated games
+     */
+    public Mono<Long> migrateAll() {
+        return mongoTemplate.find(legacyGames(), GameEntity.class, LEGACY_COLLECTION)
+                .flatMap(this::migrate, concurrency)
+                .count();
+    }
+
+    /**
+     * Migrate one legacy game
+     *
+     * @param gameId
+     * @return migrated game with its moves or empty if there is no such legacy game
+     */
+    public Mono<GameEntity> migrate(String gameId) {
+        return mongoTemplate.findOne(legacyGames().addCriteria(where("_id").is(gameId)),
+                        GameEntity.class, LEGACY_COLLECTION)
+                .flatMap(this::migrate);
+    }
+
+    /**
+     * Remove a legacy game and its moves, if any. A game is deleted from 'moves' before it's
+     * deleted from 'games', a migration copying it at the same time relies on it.
+     *
+     * @param gameId
+     * @return
+     */
+    public Mono<Void> deleteLegacy(String gameId) {
+        return mongoTemplate.remove(legacyGames().addCriteria(where("_id").is(gameId)),
+                        GameEntity.class, LEGACY_COLLECTION)
+                .then(mongoTemplate.remove(query(where("gameId").is(gameId)), MoveEntity.class))
+                .then();
+    }
+
+    private Mono<GameEntity> migrate(GameEntity legacyGame) {
+        String gameId = legacyGame.getId();
+        String token = UUID.randomUUID().toString();
+        return claim(gameId, token)
+                .flatMap(claimed -> claimed ?
+                        copy(legacyGame, token) :
+                        gameRepository.findById(gameId)
+                                .repeatWhenEmpty(COPY_READS, reads -> reads.delayElements(COPY_READ_DELAY)));
+    }
+
+    /**
+     * Take the legacy game for this migration unless another one is copying it
+     *
+     * @return false if the game is claimed by another migration or was deleted
+     */
+    private Mono<Boolean> claim(String gameId, String token) {
+        Date now = new Date();
+        Query unclaimed = legacyGames()
+                .addCriteria(where("_id").is(gameId))
+                .addCriteria(new Criteria().orOperator(
+                        where(CLAIMED_AT).exists(false),
+                        where(CLAIMED_AT).lt(new Date(now.getTime() - claimTimeout.toMillis()))));
+        return mongoTemplate.updateFirst(unclaimed, new Update().set(CLAIM, token).set(CLAIMED_AT, now),
+                        GameEntity.class, LEGACY_COLLECTION)
+                .map(result -> result.getModifiedCount() > 0);
+    }
+
+    private Mono<GameEntity> copy(GameEntity legacyGame, String token) {
+        String gameId = legacyGame.getId();
+        return moveRepository.findByGameId(gameId)
+                .collectSortedList(Comparator.comparing(MoveEntity::getNumber))
+                .flatMap(moves -> {
+                    moves.forEach(move -> move.setId(null));
+                    legacyGame.setMoves(moves);
+                    return mongoTemplate.insert(legacyGame)
+                            .map(game -> Tuples.of(game, true))
+                            // Copied by a migration which was interrupted before it removed the legacy data
+                            .onErrorResume(DuplicateKeyException.class, e -> gameRepository.findById(gameId)
+                                    .map(game -> Tuples.of(game, false)));
+                })
+                .flatMap(copied -> mongoTemplate.exists(legacyGames().addCriteria(where("_id").is(gameId)),
+                                GameEntity.class, LEGACY_COLLECTION)
+                        .flatMap(exists -> {
+                            if (exists)
+                                return removeClaimed(gameId, token)
+                                        .doOnSuccess(e -> {
+                                            if (copied.getT2()) migrated.increment();
+                                            log.info("Legacy game {} was migrated", gameId);
+                                        })
+                                        .thenReturn(copied.getT1());
+                            // Deleted while it was copied, the copy mustn't outlive it
+                            log.info("Legacy game {} was deleted during its migration", gameId);
+                            return copied.getT2() ?
+                                    gameRepository.deleteById(gameId).then(Mono.empty()) :
+                                    Mono.empty();
+                        }));
+    }
+
+    /**
+     * Remove the legacy game and its moves if the claim of this migration wasn't taken over
+     */
+    private Mono<Void> removeClaimed(String gameId, String token) {
+        return mongoTemplate.remove(legacyGames().addCriteria(where("_id").is(gameId).and(CLAIM).is(token)),
+                        GameEntity.class, LEGACY_COLLECTION)
+                .filter(result -> result.getDeletedCount() > 0)
+                .flatMap(result -> mongoTemplate.remove(query(where("gameId").is(gameId)), MoveEntity.class))
+                .then();
+    }
+
+    /**
+     * Games in the shared collection are told apart from moves by the game type
+     */
+    private static Query legacyGames() {
+        return query(where("gameType").exists(true));
+    }
+}
@@ -0,0 +1,286 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.GameDto;
+import challenge.tictactoe.dto.GameUpdateDto;
+import challenge.tictactoe.dto.MoveDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Games played over one connection with short text frames, meant for bots playing many games at once.
+ * <p>
+ * Frames of the client, arguments in brackets are optional:
+ * <pre>
+ * ai TAG [BOARD_SIZE [WIN_LENGTH]]       create a game against AI
+ * person TAG [BOARD_SIZE [WIN_LENGTH]]   create a game between two persons
+ * m GAME_ID X Y [EXPECTED_MOVE_NUMBER]   make a move
+ * f GAME_ID [MOVES_SEEN]                 follow moves of other players until the game is finished
+ * u GAME_ID                              stop following a game
+ * </pre>
+ * Frames of the server:
+ * <pre>
+ * c TAG GAME_ID BOARD_SIZE WIN_LENGTH ACTIVE_TURN       game was created
+ * s GAME_ID NUMBER STATUS WINNER ACTIVE_TURN [X,Y ...]  state of a game after NUMBER moves and the moves
+ *                                                       the client hasn't got yet, the last one is NUMBER
+ * e REF CODE MESSAGE                                    a frame failed, REF is its game ID or tag and CODE
+ *                                                       the HTTP status the REST API would respond with
+ * </pre>
+ * Moves are processed by {@link TictactoeService} like moves of the REST API. The server remembers how many
+ * moves of every game it has sent on the connection, so a state frame only has the moves which are new to
+ * the client, a move against AI is answered with the move of AI. A game is forgotten by the connection once
+ * its finished state was sent. Frames of different games are processed
+ * concurrently, up to max-in-flight of them, their answers may come in any order.
+ * <p>
+ * Metrics: tictactoe.play.connections, tictactoe.play.frames.received and tictactoe.play.frames.sent.
+ */
+@Service
+@Slf4j
+public class GamePlayService {
+
+    private final Games games;
+    private final GameUpdates gameUpdates;
+    private final int maxInFlight;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter received;
+    private final Counter sent;
+
+    @Autowired
+    public GamePlayService(TictactoeService tictactoeService,
+                           GameStreamService gameStreamService,
+                           GameUpdates gameUpdates,
+                           @Value("${tictactoe.play.max-in-flight:256}") int maxInFlight,
+                           MeterRegistry meterRegistry) {
+        this(new Games() {
+            @Override
+            public Mono<GameDto> create(String player, String gameType, Integer boardSize, Integer winLength) {
+                return tictactoeService.createNewGame(player, gameType, boardSize, winLength);
+            }
+
+            @Override
+            public Mono<GameEntity> move(String gameId, MoveDto move) {
+                return tictactoeService.makeMove(gameId, move);
+            }
+
+            @Override
+            public Flux<GameUpdateDto> updates(String gameId, Integer after) {
+                return gameStreamService.updates(gameId, after);
+            }
+        }, gameUpdates, maxInFlight, meterRegistry);
+    }
+
+    GamePlayService(Games games, GameUpdates gameUpdates, int maxInFlight, MeterRegistry meterRegistry) {
+        this.games = games;
+        this.gameUpdates = gameUpdates;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.received = Counter.builder("tictactoe.play.frames.received")
+                .description("Frames received from play connections")
+                .register(meterRegistry);
+        this.sent = Counter.builder("tictactoe.play.frames.sent")
+                .description("Frames sent to play connections")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.play.connections", connections, AtomicInteger::get)
+                .description("Open play connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Answers to the frames of one connection. Follows run until their game is finished, they don't
+     * count against max-in-flight.
+     */
+    public Flux<String> play(Flux<String> frames) {
+        Connection connection = new Connection();
+        return Flux.defer(() -> {
+                    connections.incrementAndGet();
+                    return frames;
+                })
+                .filter(frame -> !frame.isBlank())
+                .doOnNext(frame -> received.increment())
+                .publish(shared -> Flux.merge(
+                        shared.filter(frame -> !frame.startsWith("f ")).flatMap(frame ->
+                                handle(connection, frame), maxInFlight),
+                        shared.filter(frame -> frame.startsWith("f ")).flatMap(frame ->
+                                follow(connection, frame), Integer.MAX_VALUE)))
+                .doOnNext(frame -> sent.increment())
+                .doFinally(signal -> connections.decrementAndGet());
+    }
+
+    private Mono<String> handle(Connection connection, String frame) {
+        String[] args = frame.trim().split("\\s+");
+        String ref = args.length > 1 ? args[1] : "-";
+        Mono<String> answer;
+        try {
+            switch (args[0]) {
+                case "ai":
+                    answer = create(connection, args, GameWinner.PLAYER, GameType.AGAINST_AI);
+                    break;
+                case "person":
+                    answer = create(connection, args, GameWinner.PLAYER_1, GameType.AGAINST_HUMAN);
+                    break;
+                case "m":
+                    answer = move(connection, args);
+                    break;
+                case "u":
+                    Sinks.Empty<Void> stop = connection.follows.remove(args[1]);
+                    if (stop != null)
+                        stop.tryEmitEmpty();
+                    answer = Mono.empty();
+                    break;
+                default:
+                    answer = Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                            "Unknown frame " + args[0]));
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            answer = Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed frame " + frame));
+        }
+        return answer.onErrorResume(e -> Mono.just(errorOf(ref, e)));
+    }
+
+    private Mono<String> create(Connection connection, String[] args, String player, String gameType) {
+        String tag = args[1];
+        return games.create(player, gameType, intArg(args, 2), intArg(args, 3))
+                .map(game -> {
+                    connection.seen.put(game.getId(), 0);
+                    return "c " + tag + " " + game.getId() + " " + game.getBoardSize() + " "
+                            + game.getWinLength() + " " + game.getActiveTurn();
+                });
+    }
+
+    private Mono<String> move(Connection connection, String[] args) {
+        String gameId = args[1];
+        MoveDto move = MoveDto.builder()
+                .x(Integer.parseInt(args[2]))
+                .y(Integer.parseInt(args[3]))
+                .expectedMoveNumber(intArg(args, 4))
+                .build();
+        return games.move(gameId, move)
+                .flatMap(game -> {
+                    Integer known = connection.seen.get(gameId);
+                    int number = game.getMoves().size();
+                    int base = known != null && known <= number ? known : indexOf(game, move);
+                    return advance(connection, gameUpdates.updateOf(game, base));
+                });
+    }
+
+    private Flux<String> follow(Connection connection, String frame) {
+        String[] args = frame.trim().split("\\s+");
+        String gameId = args.length > 1 ? args[1] : "-";
+        Integer after;
+        try {
+            after = intArg(args, 2);
+        } catch (NumberFormatException e) {
+            return Flux.just(errorOf(gameId, new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Malformed frame " + frame)));
+        }
+        if (after != null)
+            connection.seen.put(gameId, after);
+        else
+            after = connection.seen.get(gameId);
+        Sinks.Empty<Void> stop = Sinks.empty();
+        Sinks.Empty<Void> previous = connection.follows.put(gameId, stop);
+        if (previous != null)
+            previous.tryEmitEmpty();
+        return games.updates(gameId, after)
+                .takeUntilOther(stop.asMono())
+                .concatMap(update -> advance(connection, update))
+                .onErrorResume(e -> Mono.just(errorOf(gameId, e)))
+                .doFinally(signal -> connection.follows.remove(gameId, stop));
+    }
+
+    /**
+     * State frame with the moves of the update the connection hasn't sent yet,
+     * nothing if it has sent all of them
+     */
+    private static Mono<String> advance(Connection connection, GameUpdateDto update) {
+        int number = update.getNumber();
+        int[] before = new int[1];
+        connection.seen.compute(update.getGameId(), (id, seen) -> {
+            before[0] = seen != null ? seen : -1;
+            return Math.max(number, before[0]);
+        });
+        if (before[0] >= number)
+            return Mono.empty();
+        List<MoveDto> moves = update.getMoves();
+        int skip = Math.max(0, before[0] - (number - moves.size()));
+        StringBuilder frame = new StringBuilder(48 + 6 * (moves.size() - skip))
+                .append("s ").append(update.getGameId())
+                .append(' ').append(number)
+                .append(' ').append(update.getStatus())
+                .append(' ').append(update.getWinner())
+                .append(' ').append(update.getActiveTurn() != null ? update.getActiveTurn() : "-");
+        for (MoveDto move : moves.subList(skip, moves.size())) {
+            frame.append(' ').append(move.getX()).append(',').append(move.getY());
+        }
+        if (GameStatus.FINISHED.equals(update.getStatus())) {
+            // Nothing is sent for the game anymore, a follow of it ends by itself
+            connection.seen.remove(update.getGameId());
+            connection.follows.remove(update.getGameId());
+        }
+        return Mono.just(frame.toString());
+    }
+
+    /**
+     * Index of the move of the client in the saved game, the moves from there on are new to the client
+     */
+    private static int indexOf(GameEntity game, MoveDto move) {
+        List<MoveEntity> moves = game.getMoves();
+        for (int i = moves.size() - 1; i >= 0; i--) {
+            if (moves.get(i).getX() == move.getX() && moves.get(i).getY() == move.getY())
+                return i;
+        }
+        return 0;
+    }
+
+    private static String errorOf(String ref, Throwable e) {
+        if (e instanceof ResponseStatusException) {
+            ResponseStatusException status = (ResponseStatusException) e;
+            String reason = status.getReason() != null ? status.getReason() : status.getStatus().getReasonPhrase();
+            return "e " + ref + " " + status.getRawStatusCode() + " " + reason;
+        }
+        log.warn("Play frame of {} failed: {}", ref, e.toString());
+        return "e " + ref + " " + HttpStatus.INTERNAL_SERVER_ERROR.value() + " "
+                + HttpStatus.INTERNAL_SERVER_ERROR.getReasonPhrase();
+    }
+
+    private static Integer intArg(String[] args, int index) {
+        return args.length > index ? Integer.valueOf(args[index]) : null;
+    }
+
+    /**
+     * Games as seen by the frames, the services in production
+     */
+    interface Games {
+        Mono<GameDto> create(String player, String gameType, Integer boardSize, Integer winLength);
+
+        Mono<GameEntity> move(String gameId, MoveDto move);
+
+        Flux<GameUpdateDto> updates(String gameId, Integer after);
+    }
+
+    private static class Connection {
+        /**
+         * Number of moves of every game sent on this connection
+         */
+        final Map<String, Integer> seen = new ConcurrentHashMap<>();
+        final Map<String, Sinks.Empty<Void>> follows = new ConcurrentHashMap<>();
+    }
+}
@@ -0,0 +1,251 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameDocuments;
+import com.mongodb.client.result.DeleteResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Removal of finished and abandoned games.
+ * <p>
+ * Finished games are removed some time after their last move, any other game when
+ * it had no move for a longer time. Both are done by TTL indexes of the DB on the
+ * time of the last move, so expired games are removed by the server without any
+ * request of this node. TTL deletes aren't throttled by the server, they can be turned
+ * off and left to the purge.
+ * <p>
+ * The purge runs periodically and removes expired games in small batches, one
+ * deleteMany each, with a pause between batches. It also removes games stored before
+ * games had timestamps, which TTL indexes never match, by the creation time of their id.
+ * A run stops while many games are played on this node and continues on the next run,
+ * so cleanup doesn't compete with live traffic.
+ * <p>
+ * Metrics: tictactoe.purge.games, tictactoe.purge.batch and tictactoe.purge.deferred.
+ */
+@Service
+@Profile(StoreProfiles.MONGO)
+@Slf4j
+public class GameRetentionService {
+
+    static final String COLLECTION = "games";
+    static final String FINISHED_INDEX = "finished_ttl";
+    static final String IDLE_INDEX = "idle_ttl";
+
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final GameCache gameCache;
+    private final GameLanes gameLanes;
+    private final Duration finishedTtl;
+    private final Duration idleTtl;
+    private final boolean ttlIndexes;
+    private final boolean purgeEnabled;
+    private final Duration purgeInterval;
+    private final int batchSize;
+    private final Duration pause;
+    private final int maxActiveLanes;
+    private final Counter purged;
+    private final Counter deferred;
+    private final Timer batchTimer;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Disposable purging;
+
+    @Autowired
+    public GameRetentionService(ReactiveMongoTemplate mongoTemplate,
+                                GameCache gameCache,
+                                GameLanes gameLanes,
+                                MeterRegistry meterRegistry,
+                                @Value("${tictactoe.retention.finished-ttl-hours:168}") long finishedTtlHours,
+                                @Value("${tictactoe.retention.idle-ttl-hours:720}") long idleTtlHours,
+                                @Value("${tictactoe.retention.ttl-indexes:true}") boolean ttlIndexes,
+                                @Value("${tictactoe.retention.purge.enabled:true}") boolean purgeEnabled,
+                                @Value("${tictactoe.retention.purge.interval-ms:600000}") long purgeIntervalMillis,
+                                @Value("${tictactoe.retention.purge.batch-size:100}") int batchSize,
+                                @Value("${tictactoe.retention.purge.pause-ms:1000}") long pauseMillis,
+                                @Value("${tictactoe.retention.purge.max-active-lanes:16}") int maxActiveLanes) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Purge batch size should be positive");
+        this.mongoTemplate = mongoTemplate;
+        this.gameCache = gameCache;
+        this.gameLanes = gameLanes;
+        this.finishedTtl = Duration.ofHours(finishedTtlHours);
+        this.idleTtl = Duration.ofHours(idleTtlHours);
+        this.ttlIndexes = ttlIndexes;
+        this.purgeEnabled = purgeEnabled;
+        this.purgeInterval = Duration.ofMillis(purgeIntervalMillis);
+        this.batchSize = batchSize;
+        this.pause = Duration.ofMillis(pauseMillis);
+        this.maxActiveLanes = maxActiveLanes;
+        this.purged = Counter.builder("tictactoe.purge.games")
+                .description("Expired games removed by the purge")
+                .register(meterRegistry);
+        this.deferred = Counter.builder("tictactoe.purge.deferred")
+                .description("Purge runs stopped early because of live traffic")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("tictactoe.purge.batch")
+                .description("Time of one purge batch, a find of expired ids and one deleteMany")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        ensureIndexes().subscribe(
+                e -> log.info("Indexes of game expiry are ready"),
+                ex -> log.warn("Indexes of game expiry were not created: {}", ex.toString()));
+        if (!purgeEnabled)
+            return;
+        purging = Flux.interval(purgeInterval, purgeInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> purge()
+                        .onErrorResume(ex -> {
+                            log.warn("Purge of expired games failed: {}", ex.toString());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (purging != null)
+            purging.dispose();
+    }
+
+    /**
+     * Create indexes on the times of the last move, with expiry if TTL indexes are on.
+     * An index whose expiry was changed in the configuration is created again.
+     */
+    public Mono<Void> ensureIndexes() {
+        ReactiveIndexOperations indexes = mongoTemplate.indexOps(COLLECTION);
+        return ensureIndex(indexes, new Index(GameDocuments.FINISHED_AT, Sort.Direction.ASC)
+                .named(FINISHED_INDEX).sparse(), finishedTtl)
+                .then(ensureIndex(indexes, new Index(GameDocuments.UPDATED_AT, Sort.Direction.ASC)
+                        .named(IDLE_INDEX), idleTtl));
+    }
+
+    /**
+     * Remove expired games batch by batch until none is left or the node gets busy
+     *
+     * @return number of removed games
+     */
+    public Mono<Long> purge() {
+        if (!running.compareAndSet(false, true))
+            return Mono.just(0L);
+        Instant now = Instant.now();
+        Mono<Long> nextBatch = Mono.defer(() -> isBusy() ? Mono.empty() : purgeBatch(now));
+        return nextBatch
+                .expand(deleted -> deleted < batchSize ? Mono.empty() : Mono.delay(pause).then(nextBatch))
+                .reduce(0L, Long::sum)
+                .doOnNext(total -> {
+                    if (total > 0)
+                        log.info("Purge removed {} expired games", total);
+                })
+                .doFinally(signal -> running.set(false));
+    }
+
+    private Mono<Long> purgeBatch(Instant now) {
+        long start = System.nanoTime();
+        Query batch = expiredGames(now).limit(batchSize);
+        batch.fields().include("_id");
+        return mongoTemplate.find(batch, Document.class, COLLECTION)
+                .map(document -> document.get("_id"))
+                .collectList()
+                .flatMap(ids -> ids.isEmpty() ? Mono.just(0L) :
+                        // A game played since it was found isn't expired any more
+                        mongoTemplate.remove(expiredGames(now, ids), COLLECTION)
+                                .map(DeleteResult::getDeletedCount)
+                                .doOnNext(deleted -> {
+                                    purged.increment(deleted);
+                                    ids.forEach(id -> gameCache.remove(id.toString(), "purged"));
+                                }))
+                .doFinally(signal -> batchTimer.record(Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+    private boolean isBusy() {
+        if (gameLanes.activeLanes() <= maxActiveLanes)
+            return false;
+        deferred.increment();
+        log.info("Purge of expired games deferred, {} games are being played", gameLanes.activeLanes());
+        return true;
+    }
+
+    /**
+     * Games finished or idle longer than configured, a zero time keeps such games
+     */
+    Query expiredGames(Instant now) {
+        return query(expiry(now));
+    }
+
+    /**
+     * Games among the given ones which are still expired
+     */
+    Query expiredGames(Instant now, List<Object> ids) {
+        return query(new Criteria().andOperator(where("_id").in(ids), expiry(now)));
+    }
+
+    private Criteria expiry(Instant now) {
+        List<Criteria> expired = new ArrayList<>();
+        if (!finishedTtl.isZero()) {
+            Date finishedBefore = Date.from(now.minus(finishedTtl));
+            expired.add(where(GameDocuments.FINISHED_AT).lt(finishedBefore));
+            // Stored before games had timestamps
+            expired.add(where(GameDocuments.UPDATED_AT).exists(false)
+                    .and(GameDocuments.STATUS).is(GameDocuments.statusCode(GameStatus.FINISHED))
+                    .and("_id").lt(firstIdAt(finishedBefore)));
+        }
+        if (!idleTtl.isZero()) {
+            Date idleBefore = Date.from(now.minus(idleTtl));
+            expired.add(where(GameDocuments.UPDATED_AT).lt(idleBefore));
+            expired.add(where(GameDocuments.UPDATED_AT).exists(false)
+                    .and("_id").lt(firstIdAt(idleBefore)));
+        }
+        if (expired.isEmpty())
+            return where("_id").exists(false);
+        return new Criteria().orOperator(expired);
+    }
+
+    /**
+     * Smallest id created at the given time, ids of games created before it are smaller
+     */
+    private static ObjectId firstIdAt(Date time) {
+        return new ObjectId(String.format("%08x%016x", time.getTime() / 1000, 0));
+    }
+
+    private Mono<Void> ensureIndex(ReactiveIndexOperations indexes, Index index, Duration ttl) {
+        Index expiring = ttlIndexes && !ttl.isZero() ? index.expire(ttl) : index;
+        String name = (String) expiring.getIndexOptions().get("name");
+        return indexes.ensureIndex(expiring)
+                // Options of an existing index can't be changed by creating it again
+                .onErrorResume(ex -> indexes.dropIndex(name).then(indexes.ensureIndex(expiring)))
+                .then();
+    }
+}
@@ -0,0 +1,212 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.dto.GameUpdateDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Games watched by many clients at once, e.g. showcase AI games and tournaments.
+ * <p>
+ * A watched game is followed once on this node however many spectators it has. Every update
+ * is folded into a snapshot of the whole game which is written once as a server sent event,
+ * the bytes of the event are shared by all spectators. A spectator keeps at most two snapshots
+ * it hasn't taken yet, the next one and the latest: a slow spectator skips snapshots instead of
+ * queueing them, it can't miss a move since every snapshot has the whole game. Heartbeats come
+ * from one timer shared by all spectators and are dropped for spectators which are behind.
+ * <p>
+ * Metrics: tictactoe.spectators.games, tictactoe.spectators.count and tictactoe.spectators.frames.
+ */
+@Service
+@Slf4j
+public class GameSpectators {
+
+    static final byte[] HEARTBEAT = ":heartbeat\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Broadcast> broadcasts = new ConcurrentHashMap<>();
+    private final BiFunction<String, Integer, Flux<GameUpdateDto>> updates;
+    private final ObjectMapper objectMapper;
+    private final Flux<Frame> heartbeats;
+    private final Counter frames;
+
+    @Autowired
+    public GameSpectators(GameStreamService gameStreamService,
+                          ObjectMapper objectMapper,
+                          @Value("${tictactoe.updates.heartbeat-ms:15000}") long heartbeatMillis,
+                          MeterRegistry meterRegistry) {
+        this(gameStreamService::updates, objectMapper, heartbeatMillis, meterRegistry);
+    }
+
+    GameSpectators(BiFunction<String, Integer, Flux<GameUpdateDto>> updates,
+                   ObjectMapper objectMapper,
+                   long heartbeatMillis,
+                   MeterRegistry meterRegistry) {
+        this.updates = updates;
+        this.objectMapper = objectMapper;
+        this.heartbeats = Flux.interval(Duration.ofMillis(heartbeatMillis))
+                .map(i -> Frame.HEARTBEAT)
+                .share();
+        this.frames = Counter.builder("tictactoe.spectators.frames")
+                .description("Snapshots of watched games written for their spectators")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.spectators.games", broadcasts, Map::size)
+                .description("Games watched on this node")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.spectators.count", this, GameSpectators::spectators)
+                .description("Spectators of games on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Snapshots of the game as server sent events, the first one is the current snapshot.
+     * The stream ends when the game is finished or deleted.
+     */
+    public Flux<byte[]> watch(String gameId) {
+        return Flux.using(
+                () -> acquire(gameId),
+                broadcast -> Flux.merge(1,
+                                broadcast.sink.asFlux().onBackpressureLatest(),
+                                heartbeats.onBackpressureDrop())
+                        .takeUntil(frame -> frame.last)
+                        .filter(frame -> frame.bytes.length > 0)
+                        .map(frame -> frame.bytes),
+                broadcast -> release(gameId, broadcast));
+    }
+
+    int spectators() {
+        return broadcasts.values().stream().mapToInt(broadcast -> broadcast.spectators).sum();
+    }
+
+    private Broadcast acquire(String gameId) {
+        Broadcast acquired = broadcasts.compute(gameId, (id, broadcast) -> {
+            Broadcast current = broadcast != null ? broadcast : new Broadcast();
+            current.spectators++;
+            return current;
+        });
+        if (acquired.started.compareAndSet(false, true)) {
+            acquired.upstream = start(gameId, acquired);
+            if (acquired.stopped)
+                acquired.upstream.dispose();
+        }
+        return acquired;
+    }
+
+    private void release(String gameId, Broadcast released) {
+        broadcasts.computeIfPresent(gameId, (id, broadcast) -> {
+            if (broadcast != released || --broadcast.spectators > 0)
+                return broadcast;
+            released.stop();
+            return null;
+        });
+    }
+
+    /**
+     * Follow the game for all spectators, the whole game comes first and then updates chained to it
+     */
+    private Disposable start(String gameId, Broadcast broadcast) {
+        GameUpdateDto snapshot = new GameUpdateDto();
+        return updates.apply(gameId, null)
+                .map(update -> frameOf(fold(snapshot, update)))
+                .doFinally(signal -> broadcasts.remove(gameId, broadcast))
+                .subscribe(
+                        frame -> {
+                            frames.increment();
+                            broadcast.latest = frame;
+                            broadcast.sink.tryEmitNext(frame);
+                        },
+                        error -> broadcast.sink.tryEmitError(error),
+                        () -> {
+                            // Finished games end with their last snapshot, deleted ones with an empty frame
+                            if (broadcast.latest == null || !broadcast.latest.last)
+                                broadcast.sink.tryEmitNext(Frame.END);
+                            broadcast.sink.tryEmitComplete();
+                        });
+    }
+
+    private static GameUpdateDto fold(GameUpdateDto snapshot, GameUpdateDto update) {
+        if (update.getNumber() == update.getMoves().size()) {
+            snapshot.setGameId(update.getGameId());
+            snapshot.setMoves(new ArrayList<>(update.getMoves()));
+            snapshot.setGameType(update.getGameType());
+            snapshot.setBoardSize(update.getBoardSize());
+            snapshot.setWinLength(update.getWinLength());
+        } else {
+            snapshot.getMoves().addAll(update.getMoves());
+        }
+        snapshot.setNumber(update.getNumber());
+        snapshot.setStatus(update.getStatus());
+        snapshot.setWinner(update.getWinner());
+        snapshot.setActiveTurn(update.getActiveTurn());
+        return snapshot;
+    }
+
+    private Frame frameOf(GameUpdateDto snapshot) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 + 48 * snapshot.getMoves().size());
+        try {
+            out.write(("id:" + snapshot.getNumber() + "\nevent:snapshot\ndata:").getBytes(StandardCharsets.UTF_8));
+            objectMapper.writeValue(out, snapshot);
+            out.write('\n');
+            out.write('\n');
+        } catch (IOException e) {
+            throw new IllegalStateException("Snapshot of game " + snapshot.getGameId() + " can't be written", e);
+        }
+        return new Frame(out.toByteArray(), GameStatus.FINISHED.equals(snapshot.getStatus()));
+    }
+
+    private static class Broadcast {
+        /**
+         * Latest snapshot for spectators joining later, emitted only by the single upstream
+         */
+        final Sinks.Many<Frame> sink = Sinks.many().replay().latest();
+        final AtomicBoolean started = new AtomicBoolean();
+        volatile Disposable upstream;
+        volatile boolean stopped;
+        /**
+         * Set only by the upstream
+         */
+        Frame latest;
+        /**
+         * Changed only while the broadcast is computed in the map of broadcasts
+         */
+        volatile int spectators;
+
+        void stop() {
+            stopped = true;
+            Disposable subscription = upstream;
+            if (subscription != null)
+                subscription.dispose();
+        }
+    }
+
+    private static class Frame {
+        static final Frame HEARTBEAT = new Frame(GameSpectators.HEARTBEAT, false);
+        static final Frame END = new Frame(new byte[0], true);
+
+        final byte[] bytes;
+        final boolean last;
+
+        Frame(byte[] bytes, boolean last) {
+            this.bytes = bytes;
+            this.last = last;
+        }
+    }
+}
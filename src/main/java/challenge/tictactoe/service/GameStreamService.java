@@ -0,0 +1,137 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.dto.GameUpdateDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Streams of game updates for clients which would otherwise poll a game.
+ * <p>
+ * A stream starts with what the client hasn't seen of the game yet: the whole game, or
+ * the moves after the number of moves it has seen. Then every update saved on this node
+ * follows. A game changed by another node is signalled by {@link GameCacheCoherence} from
+ * the change stream of games, the game is read again and the moves the client hasn't seen
+ * are sent as one update; without the change stream, e.g. with coherence or the cache off,
+ * such moves only come with the next update saved on this node. The same happens when the
+ * client was too slow to take the replayed updates. A stream ends with the end of the game.
+ * <p>
+ * A client taking updates slower than they come gets buffer-size of them queued, then
+ * the stream stops taking updates and fails once the client has taken the queued ones,
+ * the client reconnects with the number of moves it has seen.
+ */
+@Service
+@Slf4j
+public class GameStreamService {
+
+    private final Function<String, Mono<GameEntity>> findGame;
+    private final GameUpdates gameUpdates;
+    private final Duration heartbeat;
+    private final int bufferSize;
+    private final Duration pollTimeout;
+
+    @Autowired
+    public GameStreamService(TictactoeService tictactoeService,
+                             GameUpdates gameUpdates,
+                             @Value("${tictactoe.updates.heartbeat-ms:15000}") long heartbeatMillis,
+                             @Value("${tictactoe.updates.buffer-size:64}") int bufferSize,
+                             @Value("${tictactoe.updates.poll-timeout-ms:25000}") long pollTimeoutMillis) {
+        this(tictactoeService::findGame, gameUpdates, heartbeatMillis, bufferSize, pollTimeoutMillis);
+    }
+
+    GameStreamService(Function<String, Mono<GameEntity>> findGame,
+                      GameUpdates gameUpdates,
+                      long heartbeatMillis,
+                      int bufferSize,
+                      long pollTimeoutMillis) {
+        this.findGame = findGame;
+        this.gameUpdates = gameUpdates;
+        this.heartbeat = Duration.ofMillis(heartbeatMillis);
+        this.bufferSize = Math.max(1, bufferSize);
+        this.pollTimeout = Duration.ofMillis(pollTimeoutMillis);
+    }
+
+    /**
+     * Updates as server sent events with the number of moves as event id,
+     * a comment is sent every heartbeat-ms so idle connections aren't closed
+     *
+     * @param lastEventId number of moves the client has seen, null for a new client
+     */
+    public Flux<ServerSentEvent<GameUpdateDto>> stream(String gameId, Integer lastEventId) {
+        return updates(gameId, lastEventId)
+                .publish(shared -> Flux.merge(
+                        shared.map(update -> ServerSentEvent.builder(update)
+                                .id(String.valueOf(update.getNumber()))
+                                .event("update")
+                                .build()),
+                        Flux.interval(heartbeat)
+                                .map(i -> ServerSentEvent.<GameUpdateDto>builder().comment("heartbeat").build())
+                                .takeUntilOther(shared.ignoreElements())))
+                .doOnCancel(() -> log.debug("Client stopped following game {}", gameId));
+    }
+
+    /**
+     * Wait until the game has more moves than the client has seen, e.g. the reply of AI to an
+     * acknowledged move. Completes right away if it already has them or is finished, and after
+     * poll-timeout-ms if no move comes.
+     *
+     * @param after number of moves the client has seen
+     */
+    public Mono<Void> awaitMove(String gameId, int after) {
+        return updates(gameId, after)
+                .filter(update -> update.getNumber() > after)
+                .next()
+                .timeout(pollTimeout, Mono.empty())
+                .then();
+    }
+
+    /**
+     * @param after number of moves the client has seen, null for the whole game
+     */
+    public Flux<GameUpdateDto> updates(String gameId, Integer after) {
+        return gameUpdates.follow(gameId, live -> {
+            AtomicInteger seen = new AtomicInteger(-1);
+            return Flux.concat(
+                            sync(gameId, after != null ? after : -1, seen),
+                            live.concatMap(update -> {
+                                int last = seen.get();
+                                if (GameUpdates.isChange(update))
+                                    return sync(gameId, last, seen)
+                                            .filter(synced -> synced.getNumber() > last);
+                                if (update.getNumber() <= last)
+                                    return Mono.empty();
+                                if (update.getNumber() - update.getMoves().size() == last) {
+                                    seen.set(update.getNumber());
+                                    return Mono.just(update);
+                                }
+                                return sync(gameId, last, seen);
+                            }))
+                    .takeUntil(update -> GameStatus.FINISHED.equals(update.getStatus()))
+                    .onBackpressureBuffer(bufferSize);
+        });
+    }
+
+    /**
+     * Moves of the game after the known number of moves, the whole game if none are known
+     */
+    private Mono<GameUpdateDto> sync(String gameId, int known, AtomicInteger seen) {
+        return findGame.apply(gameId)
+                .flatMap(game -> {
+                    int number = game.getMoves().size();
+                    if (number < seen.get())
+                        return Mono.empty();
+                    seen.set(number);
+                    return Mono.just(gameUpdates.updateOf(game, known >= 0 && known <= number ? known : 0));
+                });
+    }
+}
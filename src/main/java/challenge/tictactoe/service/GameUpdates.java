@@ -0,0 +1,184 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.GameUpdateDto;
+import challenge.tictactoe.dto.MoveDto;
+import challenge.tictactoe.mapper.MoveMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Updates of games saved by this node, multicast to everybody following a game on this node.
+ * Games changed by other nodes are only signalled, their followers read them again.
+ * <p>
+ * A game has a channel only while somebody follows it, so publishing an update of a game nobody
+ * follows costs one map lookup. A channel keeps the last replay-size updates, a follower sees
+ * the updates published since it started following even if it subscribes to them later.
+ * <p>
+ * Metrics: tictactoe.updates.channels, tictactoe.updates.followers and tictactoe.updates.published.
+ */
+@Component
+@Slf4j
+public class GameUpdates {
+
+    private static final int CHANGED = -1;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final MoveMapper moveMapper;
+    private final int replaySize;
+    private final Counter published;
+
+    @Autowired
+    public GameUpdates(MoveMapper moveMapper,
+                       @Value("${tictactoe.updates.replay-size:16}") int replaySize,
+                       MeterRegistry meterRegistry) {
+        this.moveMapper = moveMapper;
+        this.replaySize = Math.max(1, replaySize);
+        this.published = Counter.builder("tictactoe.updates.published")
+                .description("Updates of games sent to their channels")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.updates.channels", channels, Map::size)
+                .description("Games followed on this node")
+                .register(meterRegistry);
+        Gauge.builder("tictactoe.updates.followers", this, GameUpdates::followers)
+                .description("Followers of games on this node")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Send the moves the game got after it had base moves to its followers
+     */
+    public void publish(GameEntity game, int base) {
+        Channel channel = channels.get(game.getId());
+        if (channel == null)
+            return;
+        channel.emit(updateOf(game, base));
+        published.increment();
+    }
+
+    /**
+     * Tell the followers of a game that another node changed it, they read it again
+     */
+    public void changed(String gameId) {
+        Channel channel = channels.get(gameId);
+        if (channel != null)
+            channel.emit(GameUpdateDto.builder().gameId(gameId).number(CHANGED).build());
+    }
+
+    /**
+     * Tell the followers of every game that it may have been changed, e.g. while changes of other
+     * nodes weren't followed
+     */
+    public void changedAll() {
+        channels.keySet().forEach(this::changed);
+    }
+
+    /**
+     * @return true if the update is a signal of {@link #changed} without moves
+     */
+    public static boolean isChange(GameUpdateDto update) {
+        return update.getNumber() == CHANGED;
+    }
+
+    /**
+     * End the updates of a game which doesn't exist anymore
+     */
+    public void close(String gameId) {
+        Channel channel = channels.remove(gameId);
+        if (channel != null)
+            channel.complete();
+    }
+
+    /**
+     * Follow the updates of a game while the returned stream is subscribed. The updates are
+     * collected from the subscription on, the body may read the game before it subscribes them.
+     *
+     * @param body stream built from the updates of the game
+     */
+    public <T> Flux<T> follow(String gameId, Function<Flux<GameUpdateDto>, Flux<T>> body) {
+        return Flux.using(
+                () -> acquire(gameId),
+                channel -> body.apply(channel.sink.asFlux()),
+                channel -> release(gameId, channel));
+    }
+
+    /**
+     * Update of the moves the game got after it had base moves, with base 0 the whole game
+     */
+    public GameUpdateDto updateOf(GameEntity game, int base) {
+        List<MoveEntity> moves = game.getMoves();
+        List<MoveDto> added = new ArrayList<>(moves.size() - base);
+        for (MoveEntity move : moves.subList(base, moves.size())) {
+            added.add(moveMapper.entityToDto(move));
+        }
+        GameUpdateDto.GameUpdateDtoBuilder update = GameUpdateDto.builder()
+                .gameId(game.getId())
+                .number(moves.size())
+                .moves(added)
+                .status(game.getStatus())
+                .winner(game.getWinner())
+                .activeTurn(game.getActiveTurn());
+        if (base == 0)
+            update.gameType(game.getGameType())
+                    .boardSize(game.getBoardSize())
+                    .winLength(game.getWinLength());
+        return update.build();
+    }
+
+    int followers() {
+        return channels.values().stream().mapToInt(channel -> channel.followers).sum();
+    }
+
+    private Channel acquire(String gameId) {
+        return channels.compute(gameId, (id, channel) -> {
+            Channel acquired = channel != null ? channel : new Channel(replaySize);
+            acquired.followers++;
+            return acquired;
+        });
+    }
+
+    private void release(String gameId, Channel released) {
+        channels.computeIfPresent(gameId, (id, channel) -> {
+            if (channel != released)
+                return channel;
+            return --channel.followers > 0 ? channel : null;
+        });
+    }
+
+    private static class Channel {
+        final Sinks.Many<GameUpdateDto> sink;
+        /**
+         * Changed only while the channel is computed in the map of channels
+         */
+        volatile int followers;
+
+        Channel(int replaySize) {
+            this.sink = Sinks.many().replay().limit(replaySize);
+        }
+
+        /**
+         * Updates of the same game may be saved by different threads, the sink takes one at a time
+         */
+        synchronized void emit(GameUpdateDto update) {
+            sink.tryEmitNext(update);
+        }
+
+        synchronized void complete() {
+            sink.tryEmitComplete();
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.StoreProfiles;
+import challenge.tictactoe.db.GameEntity;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.support.PersistenceExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.convert.UpdateMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.mongodb.client.model.Filters.in;
+
+/**
+ * Write-behind coalescer of game writes.
+ * <p>
+ * Writes of concurrent requests are gathered for a short window, or until a batch is
+ * full, and sent as one unordered bulk write. At most max-flushes bulk writes are in
+ * flight, further batches wait for them. Every caller still gets the result of its
+ * own write: its Mono completes when the bulk write is acknowledged and fails with the
+ * error of its own item, a failed item doesn't fail the others of the batch.
+ * Nothing is started when write-behind is disabled.
+ * <p>
+ * Bulk write results only count matched documents, so when a conditional update of the
+ * batch didn't match, the games of the batch are read back and every update is checked
+ * against the stored game by the predicate of its caller.
+ * <p>
+ * Metrics: tictactoe.storage.batch.size and tictactoe.storage.batch.flush.
+ */
+@Component
+@Profile(StoreProfiles.MONGO)
+@Slf4j
+public class GameWriteCoalescer {
+
+    private final boolean enabled;
+    private final Function<List<WriteModel<Document>>, Mono<BulkWriteResult>> bulkWrite;
+    private final Function<List<Object>, Flux<Document>> findByIds;
+    private final PersistenceExceptionTranslator exceptionTranslator;
+    private final MongoConverter converter;
+    private final QueryMapper queryMapper;
+    private final UpdateMapper updateMapper;
+    private final MongoPersistentEntity<?> gameEntity;
+    private final DistributionSummary batchSize;
+    private final Timer flushTimer;
+    private final Disposable flushing;
+    private FluxSink<PendingWrite> writes;
+
+    @Autowired
+    public GameWriteCoalescer(ReactiveMongoTemplate mongoTemplate,
+                              @Value("${tictactoe.storage.write-behind.enabled:false}") boolean enabled,
+                              @Value("${tictactoe.storage.write-behind.max-batch:64}") int maxBatch,
+                              @Value("${tictactoe.storage.write-behind.window-ms:2}") long windowMillis,
+                              @Value("${tictactoe.storage.write-behind.max-flushes:4}") int maxFlushes,
+                              MeterRegistry meterRegistry) {
+        this(models -> mongoTemplate.getCollection(mongoTemplate.getCollectionName(GameEntity.class))
+                        .flatMap(collection -> Mono.from(collection.bulkWrite(models,
+                                new BulkWriteOptions().ordered(false)))),
+                ids -> mongoTemplate.getCollection(mongoTemplate.getCollectionName(GameEntity.class))
+                        .flatMapMany(collection -> collection.find(in("_id", ids))),
+                new MongoExceptionTranslator(),
+                mongoTemplate.getConverter(),
+                enabled,
+                maxBatch,
+                windowMillis,
+                maxFlushes,
+                meterRegistry);
+    }
+
+    GameWriteCoalescer(Function<List<WriteModel<Document>>, Mono<BulkWriteResult>> bulkWrite,
+                       Function<List<Object>, Flux<Document>> findByIds,
+                       PersistenceExceptionTranslator exceptionTranslator,
+                       MongoConverter converter,
+                       boolean enabled,
+                       int maxBatch,
+                       long windowMillis,
+                       int maxFlushes,
+                       MeterRegistry meterRegistry) {
+        if (maxBatch <= 0)
+            throw new IllegalArgumentException("Batch size should be positive");
+        if (maxFlushes <= 0)
+            throw new IllegalArgumentException("Concurrent flushes should be positive");
+        this.enabled = enabled;
+        this.bulkWrite = bulkWrite;
+        this.findByIds = findByIds;
+        this.exceptionTranslator = exceptionTranslator;
+        this.converter = converter;
+        this.queryMapper = converter != null ? new QueryMapper(converter) : null;
+        this.updateMapper = converter != null ? new UpdateMapper(converter) : null;
+        this.gameEntity = converter != null ?
+                converter.getMappingContext().getRequiredPersistentEntity(GameEntity.class) : null;
+        this.batchSize = DistributionSummary.builder("tictactoe.storage.batch.size")
+                .description("Writes sent in one bulk write")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("tictactoe.storage.batch.flush")
+                .description("Time of one bulk write including the check of unmatched updates")
+                .register(meterRegistry);
+        this.flushing = enabled ?
+                Flux.<PendingWrite>create(sink -> this.writes = sink)
+                        .bufferTimeout(maxBatch, Duration.ofMillis(windowMillis))
+                        // The window timer emits batches regardless of demand
+                        .onBackpressureBuffer()
+                        .flatMap(this::flush, maxFlushes)
+                        .subscribe() :
+                null;
+    }
+
+    /**
+     * @return true if game writes should go through the coalescer
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Insert a new game, an id and the initial version are assigned if not set
+     *
+     * @return the inserted game
+     */
+    public Mono<GameEntity> insert(GameEntity game) {
+        return Mono.defer(() -> {
+            if (game.getId() == null)
+                game.setId(ObjectId.get().toHexString());
+            if (game.getVersion() == null)
+                game.setVersion(0L);
+            Document document = new Document();
+            converter.write(game, document);
+            return write(document.get("_id"), new InsertOneModel<>(document), null)
+                    .thenReturn(game);
+        });
+    }
+
+    /**
+     * Update one game if it matches the query
+     *
+     * @param query   query of one game by its id and any other conditions
+     * @param update  update of the game
+     * @param applied tells if a stored game has the update applied
+     * @return true if the update was applied, false if the game didn't match
+     */
+    public Mono<Boolean> update(Query query, Update update, Predicate<Document> applied) {
+        return Mono.defer(() -> {
+            Document filter = queryMapper.getMappedObject(query.getQueryObject(), gameEntity);
+            Document mappedUpdate = updateMapper.getMappedObject(update.getUpdateObject(), gameEntity);
+            return write(filter.get("_id"), new UpdateOneModel<>(filter, mappedUpdate), applied);
+        });
+    }
+
+    /**
+     * Add a write to the next batch
+     *
+     * @param id      id of the written game
+     * @param model   insert or update
+     * @param applied check of an update, null for an insert
+     * @return true if the write was applied
+     */
+    Mono<Boolean> write(Object id, WriteModel<Document> model, Predicate<Document> applied) {
+        if (!enabled)
+            return Mono.error(new IllegalStateException("Write-behind is disabled"));
+        return Mono.create(sink -> writes.next(new PendingWrite(id, model, applied, sink)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flushing != null)
+            flushing.dispose();
+    }
+
+    private Mono<Void> flush(List<PendingWrite> batch) {
+        List<WriteModel<Document>> models = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            models.add(write.model);
+        }
+        batchSize.record(batch.size());
+        long start = System.nanoTime();
+        return bulkWrite.apply(models)
+                .map(result -> complete(batch, result, List.of()))
+                .onErrorResume(MongoBulkWriteException.class,
+                        e -> Mono.just(complete(batch, e.getWriteResult(), e.getWriteErrors())))
+                .flatMap(unmatched -> check(unmatched))
+                .doOnError(e -> {
+                    Throwable error = translate(e);
+                    for (PendingWrite write : batch) {
+                        write.sink.error(error);
+                    }
+                })
+                .onErrorResume(e -> Mono.empty())
+                .doFinally(signal -> flushTimer.record(Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+    /**
+     * Complete the writes of the batch whose result is known
+     *
+     * @return updates which may not have matched
+     */
+    private List<PendingWrite> complete(List<PendingWrite> batch, BulkWriteResult result, List<BulkWriteError> errors) {
+        Map<Integer, BulkWriteError> errorsByIndex = new HashMap<>();
+        for (BulkWriteError error : errors) {
+            errorsByIndex.put(error.getIndex(), error);
+        }
+        List<PendingWrite> updates = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingWrite write = batch.get(i);
+            BulkWriteError error = errorsByIndex.get(i);
+            if (error != null) {
+                write.sink.error(translate(new MongoWriteException(
+                        new WriteError(error.getCode(), error.getMessage(), error.getDetails()),
+                        new ServerAddress())));
+            } else if (write.applied == null) {
+                write.sink.success(true);
+            } else {
+                updates.add(write);
+            }
+        }
+        int matched = result.wasAcknowledged() ? result.getMatchedCount() : -1;
+        if (matched == updates.size()) {
+            for (PendingWrite update : updates) {
+                update.sink.success(true);
+            }
+            return List.of();
+        }
+        return updates;
+    }
+
+    /**
+     * Read back the games of updates which may not have matched
+     */
+    private Mono<Void> check(List<PendingWrite> updates) {
+        if (updates.isEmpty())
+            return Mono.empty();
+        List<Object> ids = new ArrayList<>(updates.size());
+        for (PendingWrite update : updates) {
+            ids.add(update.id);
+        }
+        return findByIds.apply(ids)
+                .collectMap(document -> document.get("_id"))
+                .doOnNext(games -> {
+                    for (PendingWrite update : updates) {
+                        Document game = games.get(update.id);
+                        update.sink.success(game != null && update.applied.test(game));
+                    }
+                })
+                .then();
+    }
+
+    private Throwable translate(Throwable e) {
+        if (e instanceof RuntimeException) {
+            Throwable translated = exceptionTranslator.translateExceptionIfPossible((RuntimeException) e);
+            if (translated != null)
+                return translated;
+        }
+        return e;
+    }
+
+    private static final class PendingWrite {
+
+        private final Object id;
+        private final WriteModel<Document> model;
+        private final Predicate<Document> applied;
+        private final MonoSink<Boolean> sink;
+
+        PendingWrite(Object id, WriteModel<Document> model, Predicate<Document> applied, MonoSink<Boolean> sink) {
+            this.id = id;
+            this.model = model;
+            this.applied = applied;
+            this.sink = sink;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.HintDto;
+import challenge.tictactoe.logic.PositionAnalysis;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static challenge.tictactoe.constant.ErrorMessages.GAME_IS_CLOSED;
+
+/**
+ * Scores of every move of the active player of a game, computed by one engine search.
+ * <p>
+ * Hints depend only on the position, so they are cached by board dimensions and cells,
+ * the same position reached in different games or polled again costs one map lookup.
+ * Cache statistics are exported as tictactoe.hints metrics.
+ */
+@Service
+@Slf4j
+public class HintService {
+
+    private final TictactoeService tictactoeService;
+    private final GameEngineProvider engineProvider;
+    private final EngineScheduler engineScheduler;
+    private final Cache<String, int[]> hints;
+
+    @Autowired
+    public HintService(TictactoeService tictactoeService,
+                       GameEngineProvider engineProvider,
+                       EngineScheduler engineScheduler,
+                       MeterRegistry meterRegistry,
+                       @Value("${tictactoe.hint.cache-size:10000}") long cacheSize) {
+        this.tictactoeService = tictactoeService;
+        this.engineProvider = engineProvider;
+        this.engineScheduler = engineScheduler;
+        this.hints = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, hints, "tictactoe.hints");
+    }
+
+    public Mono<HintDto> getHint(String gameId) {
+        return tictactoeService.findGame(gameId)
+                .flatMap(game -> {
+                    if (game.getStatus().equals(GameStatus.FINISHED)) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                GAME_IS_CLOSED));
+                    }
+                    return getHint(game, game.getMoves());
+                })
+                .doOnSuccess(e -> log.info("Hint for game {} was computed", gameId));
+    }
+
+    Mono<HintDto> getHint(GameEntity game, List<MoveEntity> moves) {
+        int boardSize = GameEngineProvider.boardSizeOf(game);
+        int winLength = GameEngineProvider.winLengthOf(game);
+        byte[] cells = new byte[boardSize * boardSize];
+        for (MoveEntity move : moves) {
+            cells[move.getX() * boardSize + move.getY()] = move.getPlayedBy().equals(game.getActiveTurn()) ?
+                    PositionAnalysis.TO_MOVE :
+                    PositionAnalysis.OPPONENT;
+        }
+        String key = boardSize + ":" + winLength + ":" + new String(cells, StandardCharsets.ISO_8859_1);
+        int[] cached = hints.getIfPresent(key);
+        Mono<int[]> scores = cached != null ?
+                Mono.just(cached) :
+                engineScheduler.submit(() -> engineProvider.getAnalysisEngine(boardSize, winLength)
+                                .evaluateMoves(cells))
+                        .doOnNext(computed -> hints.put(key, computed));
+        return scores.map(computed -> toDto(game, boardSize, computed));
+    }
+
+    private static HintDto toDto(GameEntity game, int boardSize, int[] computed) {
+        Integer[][] scores = new Integer[boardSize][boardSize];
+        int best = PositionAnalysis.NO_MOVE;
+        for (int cell = 0; cell < computed.length; cell++) {
+            if (computed[cell] == PositionAnalysis.NO_SCORE)
+                continue;
+            scores[cell / boardSize][cell % boardSize] = computed[cell];
+            if (best == PositionAnalysis.NO_MOVE || computed[cell] > computed[best])
+                best = cell;
+        }
+        return HintDto.builder()
+                .gameId(game.getId())
+                .activeTurn(game.getActiveTurn())
+                .boardSize(boardSize)
+                .scores(scores)
+                .x(best == PositionAnalysis.NO_MOVE ? null : best / boardSize)
+                .y(best == PositionAnalysis.NO_MOVE ? null : best % boardSize)
+                .build();
+    }
+}
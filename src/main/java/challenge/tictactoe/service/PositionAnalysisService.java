@@ -0,0 +1,152 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.BoardSize;
+import challenge.tictactoe.dto.AnalysisDto;
+import challenge.tictactoe.dto.PositionDto;
+import challenge.tictactoe.logic.GameEngine;
+import challenge.tictactoe.logic.PositionAnalysis;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+import static challenge.tictactoe.constant.ErrorMessages.*;
+
+/**
+ * Stateless analysis of arbitrary board positions, nothing is stored in the DB.
+ * <p>
+ * Positions are evaluated on the {@link EngineScheduler}, at most tictactoe.analysis.concurrency
+ * at a time and never more than half of the scheduler's queue, and results are emitted in the
+ * order of the positions as soon as they are ready. Further positions of a batch are only requested
+ * when a result was emitted, so a big batch is paced by the engine instead of overflowing its queue.
+ * A position of a batch which finds the engine busy with other calls is retried up to
+ * tictactoe.analysis.busy-retries times. A position which can't be analyzed produces a result with
+ * an error message instead of failing the whole batch.
+ */
+@Service
+@Slf4j
+public class PositionAnalysisService {
+
+    private static final String X = "X";
+    private static final String O = "O";
+    /**
+     * First delay before a position which found the engine busy is analyzed again
+     */
+    private static final Duration BUSY_BACKOFF = Duration.ofMillis(10);
+    private static final Duration MAX_BUSY_BACKOFF = Duration.ofSeconds(1);
+
+    private final GameEngineProvider engineProvider;
+    private final EngineScheduler engineScheduler;
+    private final int concurrency;
+    private final int busyRetries;
+    private final Counter analyzedPositions;
+
+    @Autowired
+    public PositionAnalysisService(GameEngineProvider engineProvider,
+                                   EngineScheduler engineScheduler,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${tictactoe.analysis.concurrency:0}") int concurrency,
+                                   @Value("${tictactoe.analysis.busy-retries:10}") int busyRetries) {
+        this.engineProvider = engineProvider;
+        this.engineScheduler = engineScheduler;
+        this.concurrency = Math.min(
+                concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors(),
+                Math.max(1, engineScheduler.getQueueCapacity() / 2));
+        this.busyRetries = busyRetries;
+        this.analyzedPositions = Counter.builder("tictactoe.analysis.positions")
+                .description("Analyzed board positions")
+                .register(meterRegistry);
+    }
+
+    public Flux<AnalysisDto> analyze(Flux<PositionDto> positions) {
+        return positions
+                .flatMapSequential(position -> analyze(position, busyRetries), concurrency, 1)
+                .doOnNext(e -> analyzedPositions.increment());
+    }
+
+    /**
+     * Analysis of a single position, fails fast with an error result if the engine is busy
+     */
+    public Mono<AnalysisDto> analyze(PositionDto position) {
+        return analyze(position, 0);
+    }
+
+    private Mono<AnalysisDto> analyze(PositionDto position, int busyRetries) {
+        String board = position.getBoard() == null ?
+                "" :
+                position.getBoard().replace("/", "").replaceAll("\\s", "").toUpperCase();
+        int boardSize = (int) Math.round(Math.sqrt(board.length()));
+        int winLength = position.getWinLength() != null ?
+                position.getWinLength() :
+                BoardSize.defaultWinLength(boardSize);
+        if (boardSize * boardSize != board.length()
+                || boardSize < BoardSize.MIN_SIZE || boardSize > BoardSize.MAX_SIZE
+                || winLength < BoardSize.MIN_WIN_LENGTH || winLength > boardSize
+                || !board.matches("[XO.\\-]*")) {
+            return Mono.just(error(position, String.format(INVALID_POSITION,
+                    BoardSize.MIN_SIZE, BoardSize.MAX_SIZE, BoardSize.MIN_WIN_LENGTH)));
+        }
+
+        int xCount = 0;
+        int oCount = 0;
+        for (int i = 0; i < board.length(); i++) {
+            if (board.charAt(i) == 'X') xCount++;
+            if (board.charAt(i) == 'O') oCount++;
+        }
+        String toMove = position.getToMove() != null ?
+                position.getToMove().toUpperCase() :
+                xCount == oCount ? X : O;
+        int ownCount = toMove.equals(X) ? xCount : oCount;
+        int opponentCount = toMove.equals(X) ? oCount : xCount;
+        if (!(toMove.equals(X) || toMove.equals(O)) || ownCount > opponentCount || ownCount < opponentCount - 1) {
+            return Mono.just(error(position, String.format(INVALID_TURN, toMove)));
+        }
+
+        byte[] cells = new byte[board.length()];
+        char own = toMove.charAt(0);
+        for (int i = 0; i < board.length(); i++) {
+            char c = board.charAt(i);
+            cells[i] = c == own ?
+                    PositionAnalysis.TO_MOVE :
+                    c == 'X' || c == 'O' ? PositionAnalysis.OPPONENT : PositionAnalysis.EMPTY;
+        }
+
+        GameEngine engine = engineProvider.getAnalysisEngine(boardSize, winLength);
+        return engineScheduler.submit(() -> engine.analyze(cells))
+                .retryWhen(Retry.backoff(busyRetries, BUSY_BACKOFF)
+                        .maxBackoff(MAX_BUSY_BACKOFF)
+                        .filter(PositionAnalysisService::isEngineBusy)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .map(analysis -> AnalysisDto.builder()
+                        .id(position.getId())
+                        .boardSize(boardSize)
+                        .toMove(toMove)
+                        .x(analysis.getCell() == PositionAnalysis.NO_MOVE ? null : analysis.getCell() / boardSize)
+                        .y(analysis.getCell() == PositionAnalysis.NO_MOVE ? null : analysis.getCell() % boardSize)
+                        .score(analysis.getScore())
+                        .outcome(analysis.getOutcome())
+                        .build())
+                .onErrorResume(ResponseStatusException.class, e -> Mono.just(error(position, e.getReason())));
+    }
+
+    private static boolean isEngineBusy(Throwable e) {
+        return e instanceof ResponseStatusException
+                && ((ResponseStatusException) e).getStatus() == HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    private static AnalysisDto error(PositionDto position, String message) {
+        return AnalysisDto.builder()
+                .id(position.getId())
+                .error(message)
+                .build();
+    }
+}
@@ -1,128 +1,265 @@
 package challenge.tictactoe.service;
 
+import challenge.tictactoe.constant.BoardSize;
 import challenge.tictactoe.constant.GameStatus;
 import challenge.tictactoe.constant.GameType;
 import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameDocuments;
 import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.GameEvents;
 import challenge.tictactoe.db.MoveEntity;
 import challenge.tictactoe.dto.GameDto;
 import challenge.tictactoe.dto.MoveDto;
-import challenge.tictactoe.logic.TictactoeGameEngine;
 import challenge.tictactoe.mapper.GameMapper;
 import challenge.tictactoe.mapper.MoveMapper;
-import challenge.tictactoe.persistance.GameRepository;
-import challenge.tictactoe.persistance.MoveRepository;
+import challenge.tictactoe.persistance.GameArchive;
+import challenge.tictactoe.persistance.GameStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuple2;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 
 import static challenge.tictactoe.constant.ErrorMessages.*;
-import static java.util.stream.Collectors.toCollection;
 
 @Service
 @Slf4j
 public class TictactoeService {
 
-    private final MoveRepository moveRepository;
-    private final GameRepository gameRepository;
+    /**
+     * First delay before a move which lost the race for a game is retried
+     */
+    private static final Duration CONFLICT_BACKOFF = Duration.ofMillis(5);
+    /**
+     * First delay before a reply of AI which couldn't be saved or computed is retried
+     */
+    private static final Duration REPLY_BACKOFF = Duration.ofMillis(50);
+
+    private final GameStore gameStore;
     private final GameMapper gameMapper;
     private final MoveMapper moveMapper;
-    private final TictactoeGameEngine engineAgainstAi;
-    private final TictactoeGameEngine engineAgainstPerson;
+    private final GameEngineProvider engineProvider;
+    private final EngineScheduler engineScheduler;
+    private final GameLanes gameLanes;
+    private final GameCache gameCache;
+    private final GameArchive gameArchive;
+    private final GameUpdates gameUpdates;
+    private final int conflictRetries;
+    private final int replyRetries;
+    private final Duration replyTimeout;
+    private final Counter conflicts;
+    private final Counter failedReplies;
+    private final Timer replies;
 
     @Autowired
-    public TictactoeService(MoveRepository moveRepository,
-                            GameRepository gameRepository,
+    public TictactoeService(GameStore gameStore,
                             GameMapper gameMapper,
-                            MoveMapper moveMapper) {
-        this.moveRepository = moveRepository;
-        this.gameRepository = gameRepository;
+                            MoveMapper moveMapper,
+                            GameEngineProvider engineProvider,
+                            EngineScheduler engineScheduler,
+                            GameLanes gameLanes,
+                            GameCache gameCache,
+                            GameArchive gameArchive,
+                            GameUpdates gameUpdates,
+                            MeterRegistry meterRegistry,
+                            @Value("${tictactoe.storage.conflict-retries:2}") int conflictRetries,
+                            @Value("${tictactoe.moves.reply-retries:3}") int replyRetries,
+                            @Value("${tictactoe.moves.reply-timeout-ms:10000}") long replyTimeoutMillis) {
+        this.gameStore = gameStore;
         this.gameMapper = gameMapper;
         this.moveMapper = moveMapper;
-        this.engineAgainstAi = new TictactoeGameEngine();
-        this.engineAgainstPerson = new TictactoeGameEngine(true);
+        this.engineProvider = engineProvider;
+        this.engineScheduler = engineScheduler;
+        this.gameLanes = gameLanes;
+        this.gameCache = gameCache;
+        this.gameArchive = gameArchive;
+        this.gameUpdates = gameUpdates;
+        this.conflictRetries = conflictRetries;
+        this.replyRetries = replyRetries;
+        this.replyTimeout = Duration.ofMillis(replyTimeoutMillis);
+        this.conflicts = Counter.builder("tictactoe.move.conflicts")
+                .description("Moves computed from a game which was changed before they were saved")
+                .register(meterRegistry);
+        this.failedReplies = Counter.builder("tictactoe.move.replies.failed")
+                .description("Replies of AI computed after the move was acknowledged which couldn't be saved")
+                .register(meterRegistry);
+        this.replies = Timer.builder("tictactoe.move.replies")
+                .description("Time from an acknowledged move to the saved reply of AI")
+                .register(meterRegistry);
     }
 
     public Mono<GameDto> createNewGame(String player, String gameType) {
-        return gameRepository.save(
-                        GameEntity
-                                .builder()
-                                .activeTurn(player)
-                                .status(GameStatus.CREATED)
-                                .winner(GameWinner.NOT_DEFINED_YET)
-                                .gameType(gameType)
-                                .build())
+        return createNewGame(player, gameType, null, null);
+    }
+
+    /**
+     * Create a game on N x N board where K aligned markers win
+     *
+     * @param boardSize number of rows and columns, 3x3 if not set
+     * @param winLength markers in a row to win, derived from the board size if not set
+     * @return
+     */
+    public Mono<GameDto> createNewGame(String player, String gameType, Integer boardSize, Integer winLength) {
+        int size = boardSize != null ? boardSize : BoardSize.DEFAULT_SIZE;
+        int length = winLength != null ? winLength : BoardSize.defaultWinLength(size);
+        if (size < BoardSize.MIN_SIZE || size > BoardSize.MAX_SIZE
+                || length < BoardSize.MIN_WIN_LENGTH || length > size) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format(INVALID_BOARD, BoardSize.MIN_SIZE, BoardSize.MAX_SIZE, BoardSize.MIN_WIN_LENGTH)));
+        }
+
+        GameEntity game = GameEntity
+                .builder()
+                .activeTurn(player)
+                .status(GameStatus.CREATED)
+                .winner(GameWinner.NOT_DEFINED_YET)
+                .gameType(gameType)
+                .boardSize(size)
+                .winLength(length)
+                .moves(new ArrayList<>())
+                .createdAt(Instant.now())
+                .build();
+        game.setUpdatedAt(game.getCreatedAt());
+        return gameStore.insert(game)
+                .doOnNext(gameCache::put)
                 .map(gameMapper::dtoToEntity)
                 .doOnError(ex -> log.warn("createNewGame failed: {}", ex.toString()))
                 .doOnSuccess(e -> log.info("New game with type {} was created", gameType));
     }
 
     public Mono<Void> deleteGame(String gameId) {
-        gameRepository.deleteById(gameId).subscribe();
-        return moveRepository
-                .findByGameId(gameId)
-                .flatMap(move -> moveRepository.delete(move))
+        return gameStore.deleteById(gameId)
+                // Deleted from the DB first, an archiving run which read the game deletes it from the archive
+                .then(Mono.fromCallable(() -> gameArchive.delete(gameId))
+                        .subscribeOn(Schedulers.boundedElastic()))
                 .then()
-                .doOnSuccess(e -> log.info("Moves from game {} deleted", gameId));
+                .doOnSuccess(e -> gameCache.remove(gameId, "deleted"))
+                .doOnSuccess(e -> gameUpdates.close(gameId))
+                .doOnSuccess(e -> log.info("Game {} deleted", gameId));
     }
 
+    /**
+     * Process a move with one read and one version-checked update of the game document.
+     * <p>
+     * A move which lost the race against another move of the same game is validated and
+     * applied again on the new state of the game, up to the configured number of retries.
+     * A move with an expected move number is never retried, it is meant for the state the
+     * client has seen, so it's rejected with 409 Conflict before any engine call instead.
+     * <p>
+     * Moves of the same game received by this node are applied one by one on the game lane,
+     * so conflicts only happen between nodes.
+     *
+     * @param gameId
+     * @param move
+     * @return
+     */
     public Mono<GameDto> makeTictactoeMove(String gameId, MoveDto move) {
+        return makeTictactoeMove(gameId, move, false);
+    }
 
-        if (move.getX() < 0 || move.getX() > 2 || move.getY() < 0 || move.getY() > 2) {
-            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, OUT_OF_RANGE));
-        }
+    /**
+     * Process a move, with async a move against AI is answered as soon as it is saved. The reply of AI
+     * is computed and saved in the background, until then the active turn of the game is AI and further
+     * moves are rejected with 409 Conflict. Clients get the reply by reading the game again, waiting
+     * for the next move or following the game.
+     *
+     * @param gameId
+     * @param move
+     * @param async  acknowledge a move against AI before AI has replied
+     * @return
+     */
+    public Mono<GameDto> makeTictactoeMove(String gameId, MoveDto move, boolean async) {
+
+        return gameLanes.submit(gameId, () -> applyMove(gameId, move, async))
+                // Generate DTO to send it as HTTP response, before AI starts changing the game
+                .map(game -> {
+                    GameDto dto = gameMapper.dtoToEntity(game);
+                    if (isWaitingForAi(game))
+                        replyInBackground(gameId, game.getUpdatedAt());
+                    return dto;
+                })
+                .doOnSuccess(e -> log.info("Move num: {} was successfully processed ", e.getMoves().size()))
+                .doOnError(e -> log.info("Failed to add next move x: {}, y: {}", move.getX(), move.getY()));
+    }
+
+    /**
+     * Process a move like {@link #makeTictactoeMove} and return the saved game, for callers which
+     * send it in another form than a DTO
+     *
+     * @param gameId
+     * @param move
+     * @return
+     */
+    public Mono<GameEntity> makeMove(String gameId, MoveDto move) {
+        return gameLanes.submit(gameId, () -> applyMove(gameId, move, false));
+    }
+
+    private Mono<GameEntity> applyMove(String gameId, MoveDto move, boolean async) {
 
-        return moveRepository
-                .findByGameId(gameId)
-                .concatMap(m -> {
+        return findGame(gameId)
+                .flatMap(game -> {
+                    List<MoveEntity> moves = game.getMoves();
+                    // If the client has seen another state of the game
+                    if (move.getExpectedMoveNumber() != null && move.getExpectedMoveNumber() != moves.size() + 1) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                String.format(UNEXPECTED_MOVE_NUMBER, move.getExpectedMoveNumber(), moves.size() + 1)));
+                    }
+                    // If AI hasn't saved its reply to an acknowledged move yet
+                    if (isWaitingForAi(game)) {
+                        replyIfLost(game);
+                        return Mono.error(new ResponseStatusException(HttpStatus.CONFLICT,
+                                String.format(AI_REPLY_PENDING, gameId)));
+                    }
+                    // Coordinates are validated against the board of this game
+                    int boardSize = GameEngineProvider.boardSizeOf(game);
+                    boolean onBoard = move.getX() >= 0 && move.getX() < boardSize
+                            && move.getY() >= 0 && move.getY() < boardSize;
                     // If user tries to make a move with used coordinates
-                    if (m.getX() == move.getX() && m.getY() == move.getY()) {
+                    if (onBoard && GameDocuments.boardOf(game).isUsed(move.getX(), move.getY())) {
                         return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                                String.format(CELL_X_Y_IS_USED, m.getX(), m.getY())));
+                                String.format(CELL_X_Y_IS_USED, move.getX(), move.getY())));
                     }
-                    return Mono.just(m);
-                })
-                .collectSortedList(Comparator.comparing(MoveEntity::getNumber))
-                .zipWith(gameRepository.findById(gameId)
-                        .switchIfEmpty(Mono.error(new ResponseStatusException(
-                                HttpStatus.NOT_FOUND,
-                                String.format(GAME_NOT_FOUND, gameId)))))
-                .flatMap(gameWithMoves -> {
-                    GameEntity game = gameWithMoves.getT2();
                     // If the game is over then stop processing the move
                     if (game.getStatus().equals(GameStatus.FINISHED)) {
                         return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
                                 GAME_IS_CLOSED));
                     }
+                    if (!onBoard) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                String.format(OUT_OF_RANGE, boardSize - 1)));
+                    }
                     // Create next move entity, set its properties and add to array of moves
-                    List<MoveEntity> moves = gameWithMoves.getT1();
                     MoveEntity moveEntity = moveMapper.dtoToEntity(move);
                     int size = moves.size();
                     moveEntity.setGameId(gameId);
                     moveEntity.setNumber(size + 1);
                     moves.add(moveEntity);
                     // Process new move differently based on a game type
-                    if (game.getGameType().equals(GameType.AGAINST_AI)) {
-                        return processMoveWithAi(moveEntity, game, moves);
-                    } else {
-                        return processMoveWithOtherPlayer(moveEntity, game, moves, size);
-                    }
-                })
-                .flatMap(gameWithMovesUpdated -> {
-                    // Generate DTO to send it as HTTP response
-                    return createGameDto(gameWithMovesUpdated.getT2(),
-                            gameWithMovesUpdated.getT1());
+                    Mono<GameEntity> saved = !game.getGameType().equals(GameType.AGAINST_AI)
+                            ? processMoveWithOtherPlayer(moveEntity, game, size)
+                            : async ? acceptMoveAgainstAi(moveEntity, game) : processMoveWithAi(moveEntity, game);
+                    // Followers of the game get the new moves
+                    return saved.doOnNext(updated -> gameUpdates.publish(updated, size));
                 })
-                .doOnSuccess(e -> log.info("Move num: {} was successfully processed ", e.getMoves().size()))
-                .doOnError(e -> log.info("Failed to add next move x: {}, y: {}", move.getX(), move.getY()));
+                .retryWhen(Retry.backoff(conflictRetries, CONFLICT_BACKOFF)
+                        // Only a lost version check is retried, a pending reply of AI isn't resolved by retrying
+                        .filter(e -> move.getExpectedMoveNumber() == null && e instanceof LostUpdateException)
+                        .doBeforeRetry(signal -> log.info("Game {} was changed, retrying the move", gameId))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
     }
 
     /**
@@ -132,58 +269,157 @@ public class TictactoeService {
      * @return
      */
     public Mono<GameDto> getGame(String gameId) {
-        return gameRepository.findById(gameId)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND,
-                        String.format(GAME_NOT_FOUND, gameId))))
+        return findGame(gameId)
+                .doOnNext(this::replyIfLost)
                 .map(gameMapper::dtoToEntity)
-                .zipWith(moveRepository
-                        .findByGameId(gameId)
-                        .collectList()
-                        .map(m -> m.stream()
-                                .map(moveMapper::entityToDto)
-                                .sorted(Comparator.comparing(MoveDto::getNumber))
-                                .collect(toCollection(ArrayList::new)))
-                ).map(gameWithMoves -> {
-                    gameWithMoves.getT1().setMoves(gameWithMoves.getT2());
-                    return gameWithMoves.getT1();
-                })
                 .doOnSuccess(e -> log.info("Game was found and fetched"));
     }
 
+    /**
+     * Get game as it was after the given number of moves, 0 is the game before the first move
+     *
+     * @param gameId
+     * @param moveNumber
+     * @return
+     */
+    public Mono<GameDto> getGameAt(String gameId, int moveNumber) {
+        if (moveNumber < 0) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format(NO_SUCH_MOVE, gameId, 0, 0)));
+        }
+        return gameStore.findAt(gameId, moveNumber)
+                .switchIfEmpty(Mono.defer(() -> gameArchive.find(gameId)
+                        .map(game -> GameEvents.atMove(game, moveNumber))))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format(GAME_NOT_FOUND, gameId))))
+                .flatMap(game -> {
+                    int moves = game.getMoves().size();
+                    if (moves < moveNumber) {
+                        return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                                String.format(NO_SUCH_MOVE, gameId, moves, moves)));
+                    }
+                    return Mono.just(gameMapper.dtoToEntity(game));
+                });
+    }
+
+    /**
+     * Load game with its moves from the cache, the store or the archive of finished games
+     *
+     * @param gameId
+     * @return
+     */
+    public Mono<GameEntity> findGame(String gameId) {
+        return Mono.fromSupplier(() -> gameCache.get(gameId))
+                .switchIfEmpty(Mono.defer(() -> gameStore.findById(gameId)
+                        .doOnNext(gameCache::put)))
+                .switchIfEmpty(Mono.defer(() -> gameArchive.find(gameId)))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format(GAME_NOT_FOUND, gameId))));
+    }
+
     /**
      * If this match is against AI then next move has to be processed by AI engine
-     * and automatic answer move has to be produced by machine
+     * and automatic answer move has to be produced by machine.
+     * The engine runs on the engine scheduler before anything is saved,
+     * so an overloaded server rejects the move without changing the game.
      *
      * @param move
      * @param game
-     * @param moves
      * @return
      */
-    private Mono<Tuple2<List<MoveEntity>, GameEntity>> processMoveWithAi(
+    private Mono<GameEntity> processMoveWithAi(
             MoveEntity move,
-            GameEntity game,
-            List<MoveEntity> moves) {
+            GameEntity game) {
 
         move.setPlayedBy(GameWinner.PLAYER);
-        return moveRepository.insert(move)
-                .onErrorStop()
-                .doOnSuccess(e -> {
+        return engineScheduler.submit(() -> {
                     game.setActiveTurn(GameWinner.AI);
-                    engineAgainstAi.processAndGenerareteNextMove(game, moves);
+                    engineProvider.getEngine(game).processAndGenerareteNextMove(game, game.getMoves());
+                    return game;
                 })
-                .flatMap(e -> {
-                    MoveEntity lastMove = moves.get(moves.size() - 1);
-                    if (lastMove.getPlayedBy()
-                            .equals(GameWinner.AI))
-                        return moveRepository
-                                .insert(lastMove)
-                                .onErrorStop();
-                    else
-                        return Mono.just(game.getId());
-                }).flatMap(e -> moveRepository
-                        .findByGameId(game.getId())
-                        .collectList()
-                        .zipWith(gameRepository.save(game)));
+                .flatMap(e -> saveMoves(game));
+    }
+
+    /**
+     * Save the move of the player without the reply of AI, the active turn stays with AI until
+     * the reply is saved. Only the end of the game is checked, no search is run.
+     *
+     * @param move
+     * @param game
+     * @return
+     */
+    private Mono<GameEntity> acceptMoveAgainstAi(
+            MoveEntity move,
+            GameEntity game) {
+
+        move.setPlayedBy(GameWinner.PLAYER);
+        game.setActiveTurn(GameWinner.AI);
+        engineProvider.getEngine(game).validateNextMove(game, game.getMoves());
+        return saveMoves(game);
+    }
+
+    /**
+     * Compute and save the reply of AI to an acknowledged move on the lane of the game. A reply which
+     * lost the race for the game, or found the engine or the lane busy, is retried; a reply which
+     * still fails is picked up again once it's overdue.
+     *
+     * @param gameId
+     * @param acknowledgedAt time the move was saved
+     */
+    private void replyInBackground(String gameId, Instant acknowledgedAt) {
+        Mono.defer(() -> gameLanes.submit(gameId, () -> replyOfAi(gameId)))
+                .retryWhen(Retry.backoff(replyRetries, REPLY_BACKOFF)
+                        .filter(TictactoeService::isTransient)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .subscribe(
+                        game -> {
+                            if (acknowledgedAt != null)
+                                replies.record(Duration.between(acknowledgedAt, game.getUpdatedAt()));
+                        },
+                        e -> {
+                            failedReplies.increment();
+                            log.warn("Reply of AI in game {} failed: {}", gameId, e.toString());
+                        });
+    }
+
+    private Mono<GameEntity> replyOfAi(String gameId) {
+        return findGame(gameId)
+                .filter(TictactoeService::isWaitingForAi)
+                .flatMap(game -> {
+                    int size = game.getMoves().size();
+                    return engineScheduler.submit(() -> {
+                                engineProvider.getEngine(game).processAndGenerareteNextMove(game, game.getMoves());
+                                return game;
+                            })
+                            .flatMap(e -> saveMoves(game))
+                            .doOnNext(updated -> gameUpdates.publish(updated, size));
+                });
+    }
+
+    /**
+     * Start the reply of AI again if the node which acknowledged the move didn't save it in time
+     */
+    private void replyIfLost(GameEntity game) {
+        if (isWaitingForAi(game) && game.getUpdatedAt() != null
+                && game.getUpdatedAt().plus(replyTimeout).isBefore(Instant.now())) {
+            log.info("Reply of AI in game {} is overdue, computing it again", game.getId());
+            replyInBackground(game.getId(), null);
+        }
+    }
+
+    private static boolean isWaitingForAi(GameEntity game) {
+        return GameType.AGAINST_AI.equals(game.getGameType())
+                && !GameStatus.FINISHED.equals(game.getStatus())
+                && GameWinner.AI.equals(game.getActiveTurn());
+    }
+
+    private static boolean isTransient(Throwable e) {
+        if (!(e instanceof ResponseStatusException))
+            return false;
+        HttpStatus status = ((ResponseStatusException) e).getStatus();
+        return status == HttpStatus.CONFLICT
+                || status == HttpStatus.TOO_MANY_REQUESTS
+                || status == HttpStatus.SERVICE_UNAVAILABLE;
     }
 
     /**
@@ -192,15 +428,15 @@ public class TictactoeService {
      *
      * @param move
      * @param game
-     * @param moves
+     * @param size number of moves before this one
      * @return
      */
-    private Mono<Tuple2<List<MoveEntity>, GameEntity>> processMoveWithOtherPlayer(
+    private Mono<GameEntity> processMoveWithOtherPlayer(
             MoveEntity move,
             GameEntity game,
-            List<MoveEntity> moves,
             int size) {
 
+        List<MoveEntity> moves = game.getMoves();
         if (size == 0) {
             move.setPlayedBy(GameWinner.PLAYER_1);
             game.setActiveTurn(GameWinner.PLAYER_2);
@@ -213,22 +449,35 @@ public class TictactoeService {
             game.setActiveTurn(lastPlayedBy);
         }
 
-        engineAgainstPerson.validateNextMove(game, moves);
-        return moveRepository
-                .insert(move)
-                .onErrorStop()
-                .flatMap(e -> moveRepository
-                        .findByGameId(game.getId())
-                        .collectList())
-                .zipWith(gameRepository.save(game));
-    }
-
-    private Mono<GameDto> createGameDto(GameEntity gameEntity, List<MoveEntity> moves) {
-        GameDto game = gameMapper.dtoToEntity(gameEntity);
-        game.setMoves(moves.stream()
-                .map(moveMapper::entityToDto)
-                .sorted(Comparator.comparing(MoveDto::getNumber))
-                .collect(toCollection(ArrayList::new)));
-        return Mono.just(game);
+        engineProvider.getEngine(game).validateNextMove(game, moves);
+        return saveMoves(game);
+    }
+
+    /**
+     * Store the board with the new moves and the game state. The store only applies the update
+     * to the version of the game the moves were computed from, so of two concurrent moves
+     * only one is saved and the other fails with 409 Conflict.
+     *
+     * @param game game with new moves added
+     * @return updated game
+     */
+    private Mono<GameEntity> saveMoves(GameEntity game) {
+        game.setUpdatedAt(Instant.now());
+        return gameStore.update(game)
+                .doOnNext(gameCache::put)
+                .switchIfEmpty(Mono.error(() -> {
+                    conflicts.increment();
+                    gameCache.remove(game.getId(), "conflict");
+                    return new LostUpdateException(game.getId());
+                }));
+    }
+
+    /**
+     * Update of the game which failed the version check, the only conflict a move is retried on
+     */
+    private static final class LostUpdateException extends ResponseStatusException {
+        LostUpdateException(String gameId) {
+            super(HttpStatus.CONFLICT, String.format(GAME_WAS_CHANGED, gameId));
+        }
     }
 }
@@ -3,28 +3,51 @@ package challenge.tictactoe.api;
 import challenge.tictactoe.constant.GameStatus;
 import challenge.tictactoe.constant.GameType;
 import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
 import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.MoveDto;
 import challenge.tictactoe.persistance.GameRepository;
+import challenge.tictactoe.persistance.GameStore;
+import challenge.tictactoe.persistance.InMemoryGameStore;
+import challenge.tictactoe.persistance.LogGameStore;
 import challenge.tictactoe.persistance.MoveRepository;
+import challenge.tictactoe.service.GameWriteCoalescer;
+import challenge.utils.GameStoreBenchmark;
 import challenge.utils.RestApiUtils;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.OK;
 
 @SpringBootTest(
@@ -42,6 +65,14 @@ public class ApiConcurrencyTest {
     private GameRepository gameRepository;
     @Autowired
     private MoveRepository moveRepository;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+    @Autowired
+    private GameWriteCoalescer gameWrites;
+    @Autowired
+    private GameStore gameStore;
 
     @BeforeEach
     public void init() {
@@ -118,6 +149,160 @@ public class ApiConcurrencyTest {
                 });
     }
 
+    /**
+     * Moves for the same turn on different cells, only one of them may be saved
+     */
+    @Test
+    void makeParallelMovesWithExpectedMoveNumberTest() throws Exception {
+        AtomicReference<String> gameId = new AtomicReference<>();
+        restApiUtils.createNewGameWithPerson(OK)
+                .jsonPath("$.id").value(id -> gameId.set(id.toString()));
+        String id = gameId.get();
+        int threads = 8;
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        List<Callable<HttpStatus>> moves = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            MoveDto move = MoveDto.builder()
+                    .x(i / 3)
+                    .y(i % 3)
+                    .expectedMoveNumber(1)
+                    .build();
+            moves.add(() -> restApiUtils.makeMoveAndGetStatus(id, move));
+        }
+        List<HttpStatus> statuses = new ArrayList<>();
+        for (Future<HttpStatus> future : service.invokeAll(moves)) {
+            statuses.add(future.get());
+        }
+        service.shutdown();
+        log.info("Statuses: {}", statuses);
+        assertEquals(1, statuses.stream().filter(OK::equals).count());
+        assertEquals(threads - 1, statuses.stream().filter(CONFLICT::equals).count());
+        assertEquals(1, gameRepository.findById(id).block().getMoves().size());
+        assertEquals(1L, gameRepository.findById(id).block().getVersion());
+    }
+
+    /**
+     * Contention benchmark: every move of an AI game is posted by many clients at once.
+     * Moves of one game are serialized on the game lane, so the duplicates are rejected
+     * from the saved state without an engine search and nothing fails the version check.
+     */
+    @Test
+    void makeDuplicateMovesAgainstAiBenchmark() throws Exception {
+        AtomicReference<String> gameId = new AtomicReference<>();
+        restApiUtils.createNewGameWithAi(OK)
+                .jsonPath("$.id").value(id -> gameId.set(id.toString()));
+        String id = gameId.get();
+        double conflictsBefore = meterRegistry.get("tictactoe.move.conflicts").counter().count();
+        long searchesBefore = meterRegistry.get("tictactoe.engine.queue.wait").timer().count();
+        int threads = 8;
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        List<List<Integer>> moves = List.of(
+                List.of(1, 1),
+                List.of(2, 0),
+                List.of(0, 1),
+                List.of(1, 2));
+        long start = System.nanoTime();
+        int accepted = 0;
+        for (List<Integer> cell : moves) {
+            List<Callable<HttpStatus>> duplicates = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                MoveDto move = MoveDto.builder().x(cell.get(0)).y(cell.get(1)).build();
+                duplicates.add(() -> restApiUtils.makeMoveAndGetStatus(id, move));
+            }
+            for (Future<HttpStatus> future : service.invokeAll(duplicates)) {
+                if (future.get() == OK) accepted++;
+            }
+        }
+        service.shutdown();
+        double conflicts = meterRegistry.get("tictactoe.move.conflicts").counter().count() - conflictsBefore;
+        long searches = meterRegistry.get("tictactoe.engine.queue.wait").timer().count() - searchesBefore;
+        log.info("{} requests in {} ms: {} accepted, {} conflicts, {} engine searches",
+                moves.size() * threads, (System.nanoTime() - start) / 1_000_000, accepted, conflicts, searches);
+        assertEquals(moves.size(), accepted);
+        assertEquals(0.0, conflicts);
+        assertEquals(moves.size(), searches);
+        assertEquals(moves.size() * 2, gameRepository.findById(id).block().getMoves().size());
+    }
+
+    @Test
+    void saveMovesWithWriteBehindBenchmark() {
+        int games = 200;
+        int movesPerGame = 4;
+        int concurrency = 64;
+        List<String> ids = Flux.range(0, games)
+                .flatMap(i -> gameWrites.insert(GameEntity.builder()
+                        .status(GameStatus.IN_PROGRESS)
+                        .winner(GameWinner.NOT_DEFINED_YET)
+                        .gameType(GameType.AGAINST_HUMAN)
+                        .boardSize(3)
+                        .winLength(3)
+                        .moves(new ArrayList<>())
+                        .build()))
+                .map(GameEntity::getId)
+                .collectList()
+                .block();
+
+        long[] direct = saveMoves(ids, 0, movesPerGame, concurrency, (query, update) ->
+                mongoTemplate.findAndModify(query, update, GameEntity.class).hasElement());
+        long[] coalesced = saveMoves(ids, movesPerGame, movesPerGame, concurrency, (query, update) ->
+                gameWrites.update(query, update, game -> true));
+
+        log.info("findAndModify: {} writes/s, p99 {} us; write-behind: {} writes/s, p99 {} us",
+                direct[0], direct[1], coalesced[0], coalesced[1]);
+        GameEntity game = gameRepository.findById(ids.get(0)).block();
+        assertEquals(movesPerGame * 2, game.getMoves().size());
+        assertEquals(movesPerGame * 2, game.getVersion());
+    }
+
+    /**
+     * Append moves to every game, the moves of one game one after another and the games in parallel
+     *
+     * @return writes per second and p99 latency in microseconds
+     */
+    private long[] saveMoves(List<String> ids, int first, int count, int concurrency,
+                             BiFunction<Query, Update, Mono<Boolean>> save) {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        Flux.fromIterable(ids)
+                .flatMap(id -> gameRepository.findById(id)
+                        .flatMapMany(game -> Flux.range(first, count)
+                                .concatMap(number -> {
+                                    long saveStart = System.nanoTime();
+                                    game.getMoves().add(MoveEntity.builder()
+                                            .number(number + 1)
+                                            .playedBy(number % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2)
+                                            .x(number / 3)
+                                            .y(number % 3)
+                                            .build());
+                                    Update update = GameDocuments.updateOf(game);
+                                    Query query = GameDocuments.versionOf(id, game.getVersion());
+                                    game.setVersion(game.getVersion() + 1);
+                                    return save.apply(query, update)
+                                            .doOnNext(saved -> assertTrue(saved))
+                                            .doOnNext(saved -> latencies.add(System.nanoTime() - saveStart));
+                                })), concurrency)
+                .blockLast();
+        long elapsed = System.nanoTime() - start;
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1) / 1_000;
+        return new long[]{sorted.size() * 1_000_000_000L / elapsed, p99};
+    }
+
+    @Test
+    void saveMovesInStoresBenchmark(@TempDir Path dir) throws IOException {
+        LogGameStore logStore = new LogGameStore(dir.toString(), false, 64, meterRegistry);
+        logStore.open();
+        try {
+            long[] mongo = GameStoreBenchmark.run("mongo", gameStore, 200, 8, 64);
+            long[] memory = GameStoreBenchmark.run("in-memory", new InMemoryGameStore(), 200, 8, 64);
+            long[] appended = GameStoreBenchmark.run("log", logStore, 200, 8, 64);
+            assertTrue(mongo[0] > 0 && memory[0] > 0 && appended[0] > 0);
+        } finally {
+            logStore.close();
+        }
+    }
+
     @Test
     void makeMoveInExecutorServiceTest() {
         log.info("Creating service");
@@ -0,0 +1,82 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.controller.TictactoePlaySocket;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static challenge.tictactoe.constant.ErrorMessages.CELL_X_Y_IS_USED;
+import static challenge.tictactoe.constant.ErrorMessages.OUT_OF_RANGE;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.allow-bean-definition-overriding=true"})
+@ActiveProfiles("test")
+@Tag("rest-api-test")
+public class TictactoePlaySocketTest {
+
+    @LocalServerPort
+    int port;
+
+    @Test
+    void testGamesArePlayedOverOneConnection() {
+        List<String> answers = exchange(Flux.just(
+                "person t1",
+                "ai t2 3 3",
+                "ai t3 20",
+                "hello"), 4);
+
+        assertTrue(answers.stream().anyMatch(frame -> frame.startsWith("c t1 ") && frame.endsWith(" 3 3 " + GameWinner.PLAYER_1)), answers.toString());
+        assertTrue(answers.stream().anyMatch(frame -> frame.startsWith("c t2 ") && frame.endsWith(" 3 3 " + GameWinner.PLAYER)), answers.toString());
+        assertTrue(answers.stream().anyMatch(frame -> frame.startsWith("e t3 400 ")), answers.toString());
+        assertTrue(answers.contains("e - 400 Unknown frame hello"), answers.toString());
+    }
+
+    @Test
+    void testGameAgainstAiIsPlayedWithIncrementalStates() {
+        String id = exchange(Flux.just("ai t1"), 1).get(0).split(" ")[2];
+
+        List<String> answers = exchange(Flux.just("m " + id + " 1 1"), 1);
+        String[] state = answers.get(0).split(" ");
+        assertEquals("s", state[0]);
+        assertEquals(id, state[1]);
+        assertEquals("2", state[2]);
+        assertEquals("IN_PROGRESS", state[3]);
+        assertEquals("1,1", state[6]);
+        assertEquals(8, state.length);
+
+        // Moves of the game are followed from the second one, only the new ones come
+        String free = state[7].equals("0,0") ? "2 2" : "0 0";
+        answers = exchange(Flux.just("f " + id + " 2", "m " + id + " 1 1", "m " + id + " 9 9", "m " + id + " " + free), 3);
+        assertTrue(answers.contains("e " + id + " 400 " + String.format(CELL_X_Y_IS_USED, 1, 1)), answers.toString());
+        assertTrue(answers.contains("e " + id + " 400 " + String.format(OUT_OF_RANGE, 2)), answers.toString());
+        assertTrue(answers.stream().anyMatch(frame -> frame.startsWith("s " + id + " 4 ")
+                && frame.split(" ").length == 8 && frame.split(" ")[6].equals(free.replace(' ', ','))), answers.toString());
+    }
+
+    private List<String> exchange(Flux<String> frames, int answers) {
+        List<String> received = new CopyOnWriteArrayList<>();
+        new ReactorNettyWebSocketClient().execute(URI.create("ws://localhost:" + port + TictactoePlaySocket.PATH),
+                        session -> session.send(frames.map(session::textMessage))
+                                .thenMany(session.receive()
+                                        .map(WebSocketMessage::getPayloadAsText)
+                                        .doOnNext(received::add)
+                                        .take(answers))
+                                .then())
+                .block(Duration.ofSeconds(10));
+        return received;
+    }
+}
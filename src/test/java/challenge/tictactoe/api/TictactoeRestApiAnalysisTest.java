@@ -0,0 +1,87 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.Outcome;
+import challenge.tictactoe.dto.AnalysisDto;
+import challenge.tictactoe.persistance.GameRepository;
+import challenge.tictactoe.persistance.MoveRepository;
+import challenge.utils.RestApiUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.allow-bean-definition-overriding=true"})
+@ActiveProfiles("test")
+@Tag("rest-api-test")
+@Slf4j
+class TictactoeRestApiAnalysisTest {
+
+    @Autowired
+    WebTestClient client;
+    RestApiUtils restApiUtils;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private MoveRepository moveRepository;
+
+    @BeforeEach
+    public void clean() {
+        restApiUtils = new RestApiUtils(client);
+        gameRepository.deleteAll().block();
+        moveRepository.deleteAll().block();
+    }
+
+    @Test
+    void analyzeJsonArrayTest() {
+        List<AnalysisDto> results = restApiUtils.analyzePositions(
+                        "[{\"id\":\"1\", \"board\":\"XX./OO./...\"}, {\"id\":\"2\", \"board\":\"XOX/XOO/OXX\"}]",
+                        MediaType.APPLICATION_JSON, MediaType.APPLICATION_JSON)
+                .hasSize(2)
+                .returnResult()
+                .getResponseBody();
+        assertEquals("1", results.get(0).getId());
+        assertEquals(Outcome.WIN, results.get(0).getOutcome());
+        assertEquals(0, results.get(0).getX());
+        assertEquals(2, results.get(0).getY());
+        assertEquals(Outcome.DRAW, results.get(1).getOutcome());
+        assertNull(results.get(1).getX());
+        // Analysis never stores anything
+        assertEquals(0, gameRepository.count().block());
+        assertEquals(0, moveRepository.count().block());
+    }
+
+    @Test
+    void analyzeNdjsonStreamTest() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            body.append("{\"id\":\"").append(i).append("\", \"board\":\"X../.O./..X\"}\n");
+        }
+        body.append("{\"id\":\"invalid\", \"board\":\"XXX\"}\n");
+        long start = System.nanoTime();
+        List<AnalysisDto> results = restApiUtils.analyzePositions(body.toString(),
+                        MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_NDJSON)
+                .hasSize(101)
+                .returnResult()
+                .getResponseBody();
+        log.info("101 positions analyzed over HTTP in {} ms", (System.nanoTime() - start) / 1_000_000);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(String.valueOf(i), results.get(i).getId());
+            assertEquals(Outcome.DRAW, results.get(i).getOutcome());
+        }
+        assertNotNull(results.get(100).getError());
+    }
+}
@@ -0,0 +1,99 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.persistance.GameArchive;
+import challenge.tictactoe.persistance.GameRepository;
+import challenge.tictactoe.service.GameArchiver;
+import challenge.utils.RestApiUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.*;
+
+/**
+ * Finished games are moved into the archive and still served from there
+ */
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.allow-bean-definition-overriding=true",
+                "tictactoe.archive.enabled=true",
+                "tictactoe.archive.dir=target/archive-test",
+                "tictactoe.archive.after-ms=0"})
+@ActiveProfiles("test")
+@Tag("rest-api-test")
+class TictactoeRestApiArchiveTest {
+
+    @Autowired
+    WebTestClient client;
+    RestApiUtils restApiUtils;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private GameArchive gameArchive;
+
+    @Autowired
+    private GameArchiver gameArchiver;
+
+    @BeforeEach
+    public void clean() {
+        restApiUtils = new RestApiUtils(client);
+        gameRepository.deleteAll().block();
+    }
+
+    @Test
+    void finishedGameIsServedFromArchiveTest() {
+        String gameId = finishGame();
+        assertTrue(gameArchiver.archiveFinished().block() >= 1);
+        assertNull(gameRepository.findById(gameId).block());
+        assertTrue(gameArchive.contains(gameId));
+
+        restApiUtils.getAndVerify(gameId, OK)
+                .jsonPath("$.status").isEqualTo(GameStatus.FINISHED)
+                .jsonPath("$.winner").isEqualTo(GameWinner.PLAYER_1)
+                .jsonPath("$.moves.length()").isEqualTo(5)
+                .jsonPath("$.moves[4].x").isEqualTo(0);
+        // Archived games are closed
+        restApiUtils.makeMove(gameId, MoveEntity.builder().x(2).y(2).build(), BAD_REQUEST);
+
+        restApiUtils.deleteGame(gameId, OK);
+        assertFalse(gameArchive.contains(gameId));
+        restApiUtils.getAndVerify(gameId, NOT_FOUND);
+    }
+
+    @Test
+    void gameInProgressIsNotArchivedTest() {
+        AtomicReference<String> gameId = new AtomicReference<>();
+        restApiUtils.createNewGameWithPerson(OK)
+                .jsonPath("$.id").value(id -> gameId.set(id.toString()));
+        restApiUtils.makeMove(gameId.get(), MoveEntity.builder().x(1).y(1).build(), OK);
+        gameArchiver.archiveFinished().block();
+        assertFalse(gameArchive.contains(gameId.get()));
+        assertNotNull(gameRepository.findById(gameId.get()).block());
+    }
+
+    private String finishGame() {
+        AtomicReference<String> gameId = new AtomicReference<>();
+        restApiUtils.createNewGameWithPerson(OK)
+                .jsonPath("$.id").value(id -> gameId.set(id.toString()));
+        int[][] cells = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 2}};
+        for (int[] cell : cells) {
+            restApiUtils.makeMove(gameId.get(), MoveEntity.builder().x(cell[0]).y(cell[1]).build(), OK);
+        }
+        restApiUtils.getAndVerify(gameId.get(), OK)
+                .jsonPath("$.status").isEqualTo(GameStatus.FINISHED);
+        return gameId.get();
+    }
+}
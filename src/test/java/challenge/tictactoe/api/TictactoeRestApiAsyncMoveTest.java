@@ -0,0 +1,96 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.GameDto;
+import challenge.tictactoe.persistance.GameRepository;
+import challenge.utils.RestApiUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.allow-bean-definition-overriding=true"})
+@ActiveProfiles("test")
+@Tag("rest-api-test")
+public class TictactoeRestApiAsyncMoveTest {
+
+    @Autowired
+    WebTestClient client;
+    RestApiUtils restApiUtils;
+    @Autowired
+    private GameRepository gameRepository;
+
+    @BeforeEach
+    public void init() {
+        restApiUtils = new RestApiUtils(client);
+        gameRepository.deleteAll().block();
+    }
+
+    @Test
+    void testMoveIsAcknowledgedBeforeReplyOfAi() {
+        String id = createGame();
+
+        GameDto acknowledged = restApiUtils.makeMoveAsync(id, MoveEntity.builder().x(1).y(1).build(), OK)
+                .returnResult().getResponseBody();
+        assertEquals(1, acknowledged.getMoves().size());
+        assertEquals(GameStatus.IN_PROGRESS, acknowledged.getStatus());
+        assertEquals(GameWinner.AI, acknowledged.getActiveTurn());
+
+        GameDto replied = restApiUtils.waitForMove(id, 1, OK).returnResult().getResponseBody();
+        assertEquals(2, replied.getMoves().size());
+        assertEquals(GameWinner.PLAYER, replied.getActiveTurn());
+        assertFalse(replied.getMoves().get(1).getX() == 1 && replied.getMoves().get(1).getY() == 1);
+    }
+
+    /**
+     * AI never loses on 3x3, the game ends with its win or with the last move of the player
+     */
+    @Test
+    void testGameIsPlayedWithAcknowledgedMoves() {
+        String id = createGame();
+        GameDto game = restApiUtils.getGameAtMove(id, 0, OK).returnResult().getResponseBody();
+
+        while (!GameStatus.FINISHED.equals(game.getStatus())) {
+            int moves = game.getMoves() != null ? game.getMoves().size() : 0;
+            GameDto acknowledged = restApiUtils.makeMoveAsync(id, freeCell(game), OK)
+                    .returnResult().getResponseBody();
+            assertEquals(moves + 1, acknowledged.getMoves().size());
+            game = GameStatus.FINISHED.equals(acknowledged.getStatus())
+                    ? acknowledged
+                    : restApiUtils.waitForMove(id, moves + 1, OK).returnResult().getResponseBody();
+        }
+        assertNotEquals(GameWinner.PLAYER, game.getWinner());
+        assertNull(game.getActiveTurn());
+    }
+
+    private static MoveEntity freeCell(GameDto game) {
+        for (int cell = 0; cell < 9; cell++) {
+            int x = cell / 3;
+            int y = cell % 3;
+            if (game.getMoves() == null || game.getMoves().stream()
+                    .noneMatch(move -> move.getX() == x && move.getY() == y))
+                return MoveEntity.builder().x(x).y(y).build();
+        }
+        throw new IllegalStateException("Board is full");
+    }
+
+    private String createGame() {
+        AtomicReference<String> id = new AtomicReference<>();
+        restApiUtils.createNewGameWithAi(OK)
+                .jsonPath("$.id").value(value -> id.set(value.toString()));
+        return id.get();
+    }
+}
@@ -0,0 +1,133 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.persistance.GameRepository;
+import challenge.tictactoe.persistance.MoveRepository;
+import challenge.tictactoe.service.GameCache;
+import challenge.utils.RestApiUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Changes made by another node, simulated by writing to the DB directly,
+ * reach the cache of this node through the change stream of a single node replica set
+ */
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {
+                "spring.main.allow-bean-definition-overriding=true",
+                "spring.mongodb.embedded.storage.repl-set-name=rs0",
+                "tictactoe.cache.coherence.enabled=true"})
+@ActiveProfiles("test")
+@Tag("rest-api-test")
+@Slf4j
+class TictactoeRestApiCoherenceTest {
+
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Autowired
+    WebTestClient client;
+    RestApiUtils restApiUtils;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private MoveRepository moveRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private GameCache gameCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void clean() {
+        restApiUtils = new RestApiUtils(client);
+        gameRepository.deleteAll().block();
+        moveRepository.deleteAll().block();
+        await(() -> !gameCache.isSuspended());
+    }
+
+    @Test
+    void remoteChangeInvalidatesCachedGameTest() {
+        String gameId = startGame();
+        assertNotNull(gameCache.get(gameId));
+
+        // Another node finishes the game
+        GameEntity game = gameRepository.findById(gameId).block();
+        game.setStatus(GameStatus.FINISHED);
+        mongoTemplate.updateFirst(GameDocuments.versionOf(gameId, game.getVersion()),
+                        GameDocuments.updateOf(game),
+                        GameEntity.class)
+                .block();
+        await(() -> gameCache.get(gameId) == null);
+        restApiUtils.getAndVerify(gameId, OK)
+                .jsonPath("$.status").isEqualTo(GameStatus.FINISHED);
+        assertTrue(meterRegistry.get("tictactoe.games.coherence.lag").timer().count() > 0);
+        log.info("Invalidation lag: {} ms", meterRegistry.get("tictactoe.games.coherence.lag").timer()
+                .max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void remoteDeleteInvalidatesCachedGameTest() {
+        String gameId = startGame();
+        gameRepository.deleteById(gameId).block();
+        await(() -> gameCache.get(gameId) == null);
+    }
+
+    @Test
+    void ownChangeKeepsCachedGameTest() {
+        String gameId = startGame();
+        double lagCount = meterRegistry.get("tictactoe.games.coherence.lag").timer().count();
+        restApiUtils.makeMove(gameId, MoveEntity.builder().x(0).y(0).build(), OK);
+        // The change of this node comes back through the stream
+        await(() -> meterRegistry.get("tictactoe.games.coherence.lag").timer().count() > lagCount);
+        GameEntity cached = gameCache.get(gameId);
+        assertNotNull(cached);
+        assertEquals(2, cached.getMoves().size());
+    }
+
+    private String startGame() {
+        AtomicReference<String> gameId = new AtomicReference<>();
+        restApiUtils.createNewGameWithPerson(OK)
+                .jsonPath("$.id").value(id -> gameId.set(id.toString()));
+        restApiUtils.makeMove(gameId.get(), MoveEntity.builder().x(1).y(1).build(), OK);
+        return gameId.get();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition wasn't met in time");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
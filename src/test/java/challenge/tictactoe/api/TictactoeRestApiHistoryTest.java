@@ -0,0 +1,142 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameDocuments;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.GameEvents;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.GameDto;
+import challenge.tictactoe.persistance.GameStore;
+import challenge.utils.RestApiUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {
+                "spring.main.allow-bean-definition-overriding=true",
+                "tictactoe.store.events.snapshot-every=8"})
+@ActiveProfiles({"test", "store-events"})
+@Tag("rest-api-test")
+public class TictactoeRestApiHistoryTest {
+
+    @Autowired
+    WebTestClient client;
+    RestApiUtils restApiUtils;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+    @Autowired
+    private GameStore gameStore;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void init() {
+        restApiUtils = new RestApiUtils(client);
+        mongoTemplate.dropCollection(GameEvents.EVENTS).block();
+        mongoTemplate.dropCollection(GameEvents.SNAPSHOTS).block();
+    }
+
+    /**
+     * Rows of the 15x15 board are filled one after another, with an odd row length
+     * the players alternate in rows and columns so nobody wins the first rows
+     */
+    @Test
+    void testLongGameIsReadFromSnapshot() {
+        int moves = 40;
+        String id = createGame();
+        for (int i = 0; i < moves; i++) {
+            restApiUtils.makeMove(id, move(i), OK)
+                    .jsonPath("$.status").isEqualTo(GameStatus.IN_PROGRESS)
+                    .jsonPath("$.moves.length()").isEqualTo(i + 1);
+        }
+
+        restApiUtils.getAndVerify(id, OK)
+                .jsonPath("$.moves.length()").isEqualTo(moves)
+                .jsonPath("$.moves[39].x").isEqualTo(2)
+                .jsonPath("$.moves[39].y").isEqualTo(9)
+                .jsonPath("$.activeTurn").isEqualTo(GameWinner.PLAYER_1);
+        // One snapshot of the new game and one every 8 moves, the latest has all moves
+        assertEquals(1 + moves / 8, mongoTemplate.count(query(where(GameDocuments.ID)
+                .gte(GameEvents.key(id, 0)).lt(GameEvents.endKey(id))), GameEvents.SNAPSHOTS).block());
+        assertEquals(moves, mongoTemplate.count(query(where(GameDocuments.ID)
+                .gte(GameEvents.key(id, 0)).lt(GameEvents.endKey(id))), GameEvents.EVENTS).block());
+        assertTrue(meterRegistry.get("tictactoe.store.events.replayed").summary().max() < 8);
+    }
+
+    @Test
+    void testGameIsReadAtMove() {
+        String id = createGame();
+        for (int i = 0; i < 20; i++) {
+            restApiUtils.makeMove(id, move(i), OK);
+        }
+
+        GameDto created = restApiUtils.getGameAtMove(id, 0, OK).returnResult().getResponseBody();
+        assertEquals(GameStatus.CREATED, created.getStatus());
+        assertEquals(GameWinner.PLAYER_1, created.getActiveTurn());
+        assertEquals(0, created.getMoves().size());
+
+        GameDto past = restApiUtils.getGameAtMove(id, 17, OK).returnResult().getResponseBody();
+        assertEquals(GameStatus.IN_PROGRESS, past.getStatus());
+        assertEquals(GameWinner.PLAYER_2, past.getActiveTurn());
+        assertEquals(17, past.getMoves().size());
+        assertEquals(1, past.getMoves().get(16).getX());
+        assertEquals(1, past.getMoves().get(16).getY());
+        assertEquals(GameWinner.PLAYER_1, past.getMoves().get(16).getPlayedBy());
+
+        assertEquals(20, restApiUtils.getGameAtMove(id, 20, OK).returnResult().getResponseBody().getMoves().size());
+        restApiUtils.getGameAtMove(id, 21, BAD_REQUEST);
+        restApiUtils.getGameAtMove(id, -1, BAD_REQUEST);
+        restApiUtils.getGameAtMove("6356705f775641388748dd46", 0, NOT_FOUND);
+    }
+
+    @Test
+    void testOnlyOneUpdateOfVersionIsSaved() {
+        String id = createGame();
+        GameEntity first = gameStore.findById(id).block();
+        GameEntity second = first.copy();
+        first.getMoves().add(MoveEntity.builder().number(1).playedBy(GameWinner.PLAYER_1).x(0).y(0).build());
+        second.getMoves().add(MoveEntity.builder().number(1).playedBy(GameWinner.PLAYER_1).x(1).y(1).build());
+
+        assertNotNull(gameStore.update(first).block());
+        assertNull(gameStore.update(second).block());
+        GameEntity stored = gameStore.findById(id).block();
+        assertEquals(1L, stored.getVersion());
+        assertEquals(0, stored.getMoves().get(0).getX());
+
+        restApiUtils.deleteGame(id, OK);
+        assertNull(gameStore.findById(id).block());
+    }
+
+    private String createGame() {
+        AtomicReference<String> id = new AtomicReference<>();
+        restApiUtils.createNewGameWithPerson(15, 5, OK)
+                .jsonPath("$.id").value(value -> id.set(value.toString()));
+        return id.get();
+    }
+
+    private static MoveEntity move(int i) {
+        return MoveEntity.builder()
+                .x(i / 15)
+                .y(i % 15)
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.persistance.GameRepository;
+import challenge.tictactoe.persistance.MoveRepository;
+import challenge.tictactoe.service.GameMigrationService;
+import challenge.utils.RestApiUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Games stored in the shared 'moves' collection are migrated into 'games'
+ */
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.allow-bean-definition-overriding=true"})
+@ActiveProfiles("test")
+@Tag("rest-api-test")
+class TictactoeRestApiMigrationTest {
+
+    @Autowired
+    WebTestClient client;
+    RestApiUtils restApiUtils;
+
+    @Autowired
+    private GameRepository gameRepository;
+
+    @Autowired
+    private MoveRepository moveRepository;
+
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+
+    @Autowired
+    private GameMigrationService gameMigration;
+
+    @BeforeEach
+    public void clean() {
+        restApiUtils = new RestApiUtils(client);
+        gameRepository.deleteAll().block();
+        moveRepository.deleteAll().block();
+    }
+
+    @Test
+    void legacyGameIsMigratedOnDemandTest() {
+        String gameId = createLegacyGame();
+        restApiUtils.getAndVerify(gameId, OK)
+                .jsonPath("$.id").isEqualTo(gameId)
+                .jsonPath("$.status").isEqualTo(GameStatus.IN_PROGRESS)
+                .jsonPath("$.moves.length()").isEqualTo(2)
+                .jsonPath("$.moves[0].x").isEqualTo(1)
+                .jsonPath("$.moves[1].playedBy").isEqualTo(GameWinner.AI);
+        assertEquals(2, gameRepository.findById(gameId).block().getMoves().size());
+        assertEquals(0, moveRepository.count().block());
+
+        // Migrated game is played as any other
+        restApiUtils.makeMove(gameId, MoveEntity.builder().x(0).y(1).build(), OK)
+                .jsonPath("$.moves.length()").isEqualTo(4);
+    }
+
+    @Test
+    void allLegacyGamesAreMigratedTest() {
+        String first = createLegacyGame();
+        String second = createLegacyGame();
+        assertEquals(2, gameMigration.migrateAll().block());
+        assertEquals(0, moveRepository.count().block());
+        assertEquals(2, gameRepository.findById(first).block().getMoves().size());
+        assertEquals(2, gameRepository.findById(second).block().getMoves().size());
+        // Nothing is left to migrate
+        assertEquals(0, gameMigration.migrateAll().block());
+    }
+
+    @Test
+    void gameClaimedByAnotherMigrationIsLeftToItTest() {
+        String gameId = createLegacyGame();
+        claim(gameId, new Date());
+        assertEquals(0, gameMigration.migrateAll().block());
+        assertEquals(3, moveRepository.count().block());
+        assertNull(gameRepository.findById(gameId).block());
+
+        // The claim of a migration which didn't finish in time is taken over
+        claim(gameId, new Date(System.currentTimeMillis() - Duration.ofHours(1).toMillis()));
+        assertEquals(1, gameMigration.migrateAll().block());
+        assertEquals(0, moveRepository.count().block());
+        assertEquals(2, gameRepository.findById(gameId).block().getMoves().size());
+    }
+
+    private void claim(String gameId, Date claimedAt) {
+        mongoTemplate.updateFirst(query(where("_id").is(new ObjectId(gameId))),
+                        new Update().set("migrationClaim", "other").set("migrationClaimedAt", claimedAt), "moves")
+                .block();
+    }
+
+    private String createLegacyGame() {
+        // Stored as older versions did, with the field names of the entity
+        Document game = mongoTemplate.insert(new Document()
+                        .append("status", GameStatus.IN_PROGRESS)
+                        .append("winner", GameWinner.NOT_DEFINED_YET)
+                        .append("activeTurn", GameWinner.PLAYER)
+                        .append("gameType", GameType.AGAINST_AI), "moves")
+                .block();
+        String gameId = game.getObjectId("_id").toHexString();
+        moveRepository.saveAll(List.of(
+                        MoveEntity.builder().gameId(gameId).number(2).x(0).y(0).playedBy(GameWinner.AI).build(),
+                        MoveEntity.builder().gameId(gameId).number(1).x(1).y(1).playedBy(GameWinner.PLAYER).build()))
+                .blockLast();
+        return gameId;
+    }
+}
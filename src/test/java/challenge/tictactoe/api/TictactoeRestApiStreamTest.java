@@ -0,0 +1,151 @@
+package challenge.tictactoe.api;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.GameUpdateDto;
+import challenge.tictactoe.persistance.GameRepository;
+import challenge.utils.RestApiUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.OK;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        properties = {"spring.main.allow-bean-definition-overriding=true"})
+@ActiveProfiles("test")
+@Tag("rest-api-test")
+public class TictactoeRestApiStreamTest {
+
+    @Autowired
+    WebTestClient client;
+    RestApiUtils restApiUtils;
+    @Autowired
+    private GameRepository gameRepository;
+
+    @BeforeEach
+    public void init() {
+        restApiUtils = new RestApiUtils(client);
+        gameRepository.deleteAll().block();
+    }
+
+    @Test
+    void testMovesOfOpponentArePushed() {
+        String id = createGame();
+
+        StepVerifier.create(stream(id, null))
+                .assertNext(event -> {
+                    assertEquals("0", event.id());
+                    assertEquals(GameType.AGAINST_HUMAN, event.data().getGameType());
+                    assertEquals(GameStatus.CREATED, event.data().getStatus());
+                })
+                .then(() -> restApiUtils.makeMove(id, MoveEntity.builder().x(1).y(1).build(), OK))
+                .assertNext(event -> {
+                    assertEquals("1", event.id());
+                    GameUpdateDto update = event.data();
+                    assertEquals(1, update.getMoves().size());
+                    assertEquals(1, update.getMoves().get(0).getX());
+                    assertEquals(GameWinner.PLAYER_2, update.getActiveTurn());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void testReconnectingClientGetsMissedMoves() {
+        String id = createGame();
+        restApiUtils.makeMove(id, MoveEntity.builder().x(0).y(0).build(), OK);
+        restApiUtils.makeMove(id, MoveEntity.builder().x(1).y(0).build(), OK);
+        restApiUtils.makeMove(id, MoveEntity.builder().x(0).y(1).build(), OK);
+
+        StepVerifier.create(stream(id, 1))
+                .assertNext(event -> {
+                    assertEquals("3", event.id());
+                    assertEquals(2, event.data().getMoves().size());
+                    assertEquals(1, event.data().getMoves().get(0).getX());
+                })
+                .then(() -> restApiUtils.makeMove(id, MoveEntity.builder().x(1).y(1).build(), OK))
+                .assertNext(event -> assertEquals("4", event.id()))
+                .then(() -> restApiUtils.makeMove(id, MoveEntity.builder().x(0).y(2).build(), OK))
+                .assertNext(event -> {
+                    assertEquals(GameStatus.FINISHED, event.data().getStatus());
+                    assertEquals(GameWinner.PLAYER_1, event.data().getWinner());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void testSpectatorsGetSnapshotsOfGame() {
+        String id = createGame();
+        restApiUtils.makeMove(id, MoveEntity.builder().x(0).y(0).build(), OK);
+
+        StepVerifier.create(client.get()
+                        .uri(uriBuilder -> uriBuilder
+                                .path("/api/v1/tictactoe/watch")
+                                .queryParam("gameId", id)
+                                .build())
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .exchange()
+                        .expectStatus().isOk()
+                        .returnResult(new ParameterizedTypeReference<ServerSentEvent<GameUpdateDto>>() {
+                        })
+                        .getResponseBody()
+                        .filter(event -> event.data() != null))
+                .assertNext(event -> {
+                    assertEquals("1", event.id());
+                    assertEquals("snapshot", event.event());
+                    assertEquals(1, event.data().getMoves().size());
+                })
+                .then(() -> restApiUtils.makeMove(id, MoveEntity.builder().x(1).y(1).build(), OK))
+                .assertNext(event -> {
+                    assertEquals("2", event.id());
+                    assertEquals(2, event.data().getMoves().size());
+                    assertEquals(GameType.AGAINST_HUMAN, event.data().getGameType());
+                })
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+
+    private Flux<ServerSentEvent<GameUpdateDto>> stream(String gameId, Integer lastEventId) {
+        return client.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/api/v1/tictactoe/stream")
+                        .queryParam("gameId", gameId)
+                        .build())
+                .headers(headers -> {
+                    if (lastEventId != null)
+                        headers.set("Last-Event-ID", lastEventId.toString());
+                })
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<GameUpdateDto>>() {
+                })
+                .getResponseBody()
+                .filter(event -> event.data() != null);
+    }
+
+    private String createGame() {
+        AtomicReference<String> id = new AtomicReference<>();
+        restApiUtils.createNewGameWithPerson(OK)
+                .jsonPath("$.id").value(value -> id.set(value.toString()));
+        return id.get();
+    }
+}
@@ -79,10 +79,48 @@ class TictactoeRestApiWithAiTest {
                                             .number(0)
                                             .playedBy(GameWinner.PLAYER)
                                             .build(), BAD_REQUEST)
-                            .jsonPath("$.message").isEqualTo(ErrorMessages.OUT_OF_RANGE);
+                            .jsonPath("$.message").isEqualTo(String.format(ErrorMessages.OUT_OF_RANGE, 2));
                 });
     }
 
+    @Test
+    void makeMovesOnBigBoardTest() {
+        restApiUtils.createNewGameWithAi(7, 4, OK)
+                .jsonPath("$.id").isNotEmpty()
+                .jsonPath("$.status").isEqualTo(GameStatus.CREATED)
+                .jsonPath("$.boardSize").isEqualTo(7)
+                .jsonPath("$.winLength").isEqualTo(4)
+                .jsonPath("$.id").value(id -> {
+                    restApiUtils.makeMove(id.toString(),
+                                    MoveEntity.builder()
+                                            .gameId(id.toString())
+                                            .x(6)
+                                            .y(6)
+                                            .number(0)
+                                            .playedBy(GameWinner.PLAYER)
+                                            .build(), OK)
+                            .jsonPath("$.status").isEqualTo(GameStatus.IN_PROGRESS)
+                            .jsonPath("$.activeTurn").isEqualTo(GameWinner.PLAYER)
+                            .jsonPath("$.moves.length()").isEqualTo(2);
+                    restApiUtils.makeMove(id.toString(),
+                                    MoveEntity.builder()
+                                            .gameId(id.toString())
+                                            .x(7)
+                                            .y(0)
+                                            .number(0)
+                                            .playedBy(GameWinner.PLAYER)
+                                            .build(), BAD_REQUEST)
+                            .jsonPath("$.message").isEqualTo(String.format(ErrorMessages.OUT_OF_RANGE, 6));
+                });
+    }
+
+    @Test
+    void createGameWithInvalidBoardTest() {
+        restApiUtils.createNewGameWithAi(16, 5, BAD_REQUEST);
+        restApiUtils.createNewGameWithAi(5, 6, BAD_REQUEST);
+        restApiUtils.createNewGameWithAi(5, 2, BAD_REQUEST);
+    }
+
     @Test
     void getInvalidGameObjectTest() {
         restApiUtils.getAndVerify("9999", HttpStatus.NOT_FOUND);
@@ -163,6 +201,25 @@ class TictactoeRestApiWithAiTest {
                 });
     }
 
+    /**
+     * Game in progress is served from the cache of the node, the DB isn't read
+     */
+    @Test
+    void getCachedGameTest() {
+        restApiUtils.createNewGameWithAi(OK)
+                .jsonPath("$.id").value(id -> {
+                    restApiUtils.makeMove(id.toString(), MoveEntity.builder().x(1).y(1).build(), OK);
+                    // Removed behind the back of the cache
+                    gameRepository.deleteById(id.toString()).block();
+                    restApiUtils.getAndVerify(id.toString(), OK)
+                            .jsonPath("$.id").isEqualTo(id.toString())
+                            .jsonPath("$.moves.length()").isEqualTo(2);
+                    // Deleted through the API it's gone from the cache as well
+                    restApiUtils.deleteGame(id.toString(), OK);
+                    restApiUtils.getAndVerify(id.toString(), HttpStatus.NOT_FOUND);
+                });
+    }
+
     @Test
     void deleteValidGameTest() {
         restApiUtils.createNewGameWithAi(OK)
@@ -18,7 +18,9 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.OK;
 
 @SpringBootTest(
@@ -114,6 +116,43 @@ public class TictactoeRestApiWithHumanTest {
     }
 
 
+    /**
+     * | X | X | ? |
+     * | O | O |   |
+     * |   |   |   |
+     */
+    @Test
+    void testHintPersonAgainstPerson() {
+        List<List<Integer>> moves = List.of(
+                List.of(0, 0),
+                List.of(1, 0),
+                List.of(0, 1),
+                List.of(1, 1));
+        restApiUtils.createNewGameWithPerson(OK)
+                .jsonPath("$.id").value(id -> {
+                    for (int i = 0; i < moves.size(); i++) {
+                        restApiUtils.makeMove(id.toString(),
+                                MoveEntity.builder()
+                                        .gameId(id.toString())
+                                        .x(moves.get(i).get(0))
+                                        .y(moves.get(i).get(1))
+                                        .number(i + 1)
+                                        .playedBy(i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2)
+                                        .build(), OK);
+                    }
+                    restApiUtils.getHint(id.toString(), OK)
+                            .value(hint -> {
+                                assertEquals(id.toString(), hint.getGameId());
+                                assertEquals(GameWinner.PLAYER_1, hint.getActiveTurn());
+                                assertEquals(0, hint.getX());
+                                assertEquals(2, hint.getY());
+                                assertNull(hint.getScores()[0][0]);
+                                assertTrue(hint.getScores()[0][2] > hint.getScores()[2][2]);
+                            });
+                });
+        restApiUtils.getHint("6356705f775641388748dd46", NOT_FOUND);
+    }
+
     @Test
     void testDrawGamePersonAgainstPerson() {
         List<List<Integer>> moves1 = List.of(
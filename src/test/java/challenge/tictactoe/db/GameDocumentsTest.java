@@ -0,0 +1,176 @@
+package challenge.tictactoe.db;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.config.MongoConfig;
+import challenge.utils.GameUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+@Slf4j
+class GameDocumentsTest {
+
+    @Test
+    void testGameIsReadAsWritten() {
+        GameEntity game = game(GameType.AGAINST_AI, 3, GameWinner.PLAYER, GameWinner.AI, GameWinner.PLAYER);
+        game.setActiveTurn(GameWinner.AI);
+
+        GameEntity read = GameDocuments.read(GameDocuments.write(game));
+
+        assertEquals(game.getId(), read.getId());
+        assertEquals(GameStatus.IN_PROGRESS, read.getStatus());
+        assertEquals(GameWinner.NOT_DEFINED_YET, read.getWinner());
+        assertEquals(GameWinner.AI, read.getActiveTurn());
+        assertEquals(GameType.AGAINST_AI, read.getGameType());
+        assertEquals(3, read.getBoardSize());
+        assertEquals(7L, read.getVersion());
+        assertEquals(3, read.getMoves().size());
+        for (int i = 0; i < 3; i++) {
+            MoveEntity expected = game.getMoves().get(i);
+            MoveEntity move = read.getMoves().get(i);
+            assertEquals(i + 1, move.getNumber());
+            assertEquals(game.getId(), move.getGameId());
+            assertEquals(expected.getPlayedBy(), move.getPlayedBy());
+            assertEquals(expected.getX(), move.getX());
+            assertEquals(expected.getY(), move.getY());
+        }
+    }
+
+    @Test
+    void testConvertersAreUsedByMongoConverter() {
+        MongoCustomConversions conversions = new MongoConfig().mongoCustomConversions();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        GameEntity game = game(GameType.AGAINST_HUMAN, 3, GameWinner.PLAYER_1, GameWinner.PLAYER_2);
+
+        Document document = new Document();
+        converter.write(game, document);
+        assertEquals(Integer.valueOf(1), document.getInteger(GameDocuments.TYPE));
+        assertFalse(document.containsKey("moves"));
+        GameEntity read = converter.read(GameEntity.class, document);
+        assertEquals(GameWinner.PLAYER_2, read.getMoves().get(1).getPlayedBy());
+    }
+
+    @Test
+    void testFinishedGameHasNoTurn() {
+        GameEntity game = game(GameType.AGAINST_HUMAN, 3, GameWinner.PLAYER_1);
+        game.setStatus(GameStatus.FINISHED);
+        game.setWinner(GameWinner.DRAW);
+        game.setActiveTurn(null);
+
+        Document document = GameDocuments.write(game);
+        assertFalse(document.containsKey(GameDocuments.TURN));
+        GameEntity read = GameDocuments.read(document);
+        assertNull(read.getActiveTurn());
+        assertEquals(GameWinner.DRAW, read.getWinner());
+        assertEquals(GameWinner.PLAYER_1, read.getMoves().get(0).getPlayedBy());
+    }
+
+    @Test
+    void testVerboseGameIsRead() {
+        Document document = new Document("_id", new ObjectId())
+                .append("status", GameStatus.IN_PROGRESS)
+                .append("winner", GameWinner.NOT_DEFINED_YET)
+                .append("activeTurn", GameWinner.PLAYER_2)
+                .append("gameType", GameType.AGAINST_HUMAN)
+                .append("boardSize", 3)
+                .append("winLength", 3)
+                .append("version", 1L)
+                .append("moves", List.of(new Document("number", 1).append("playedBy", GameWinner.PLAYER_1)
+                        .append("x", 1).append("y", 2)));
+
+        GameEntity read = GameDocuments.read(document);
+
+        assertEquals(document.getObjectId("_id").toHexString(), read.getId());
+        assertEquals(GameWinner.PLAYER_2, read.getActiveTurn());
+        assertEquals(1L, read.getVersion());
+        assertEquals(1, read.getMoves().size());
+        assertEquals(2, read.getMoves().get(0).getY());
+        assertEquals(1L, GameDocuments.versionOf(document));
+    }
+
+    @Test
+    void testUnknownNameIsRejected() {
+        GameEntity game = game(GameType.AGAINST_AI, 3);
+        game.setStatus("PAUSED");
+        assertThrows(IllegalArgumentException.class, () -> GameDocuments.write(game));
+    }
+
+    @Test
+    void testBoardOfLargeGame() {
+        GameBoard board = new GameBoard(15);
+        board.play(0, 0, true);
+        board.play(14, 14, false);
+        board.play(7, 3, true);
+        assertThrows(IllegalArgumentException.class, () -> board.play(7, 3, false));
+
+        GameBoard decoded = GameBoard.decode(15, board.encodeFirst(), board.encodeSecond(), board.encodeOrder());
+        assertEquals(3, decoded.getMoveCount());
+        assertTrue(decoded.isUsed(14, 14));
+        assertFalse(decoded.isUsed(14, 13));
+        assertFalse(decoded.isFirst(1));
+        assertEquals(7, decoded.xOf(2));
+        assertEquals(3, decoded.yOf(2));
+    }
+
+    @Test
+    void testCompactDocumentSize() {
+        String[] players = new String[100];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2;
+        }
+        GameEntity game = game(GameType.AGAINST_HUMAN, 15, players);
+        List<Document> moves = new ArrayList<>();
+        for (MoveEntity move : game.getMoves()) {
+            moves.add(new Document("number", move.getNumber()).append("playedBy", move.getPlayedBy())
+                    .append("gameId", move.getGameId()).append("x", move.getX()).append("y", move.getY()));
+        }
+        Document verbose = new Document("_id", new ObjectId(game.getId()))
+                .append("status", game.getStatus())
+                .append("winner", game.getWinner())
+                .append("activeTurn", game.getActiveTurn())
+                .append("gameType", game.getGameType())
+                .append("boardSize", game.getBoardSize())
+                .append("winLength", game.getWinLength())
+                .append("moves", moves)
+                .append("version", game.getVersion());
+
+        int verboseSize = sizeOf(verbose);
+        int compactSize = sizeOf(GameDocuments.write(game));
+        log.info("Game of 100 moves on 15x15: {} bytes verbose, {} bytes compact", verboseSize, compactSize);
+        assertTrue(compactSize * 10 < verboseSize);
+    }
+
+    private static int sizeOf(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+    private static GameEntity game(String gameType, int size, String... players) {
+        GameEntity game = GameUtils.newGame(ObjectId.get().toHexString(), gameType, size);
+        for (String player : players) {
+            GameUtils.play(game, player);
+        }
+        game.setStatus(GameStatus.IN_PROGRESS);
+        game.setVersion(7L);
+        return game;
+    }
+}
@@ -0,0 +1,108 @@
+package challenge.tictactoe.db;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.utils.GameUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static challenge.utils.GameUtils.finish;
+import static challenge.utils.GameUtils.play;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameEventsTest {
+
+    @Test
+    void testGameIsReplayedFromSnapshotAndEvents() {
+        GameEntity game = newGame(GameType.AGAINST_AI);
+        Document snapshot = GameEvents.snapshotOf(game);
+        List<Document> events = new ArrayList<>();
+        // Player and AI moves are saved together
+        for (int i = 0; i < 3; i++) {
+            int base = game.getMoves().size();
+            play(game, GameWinner.PLAYER);
+            play(game, GameWinner.AI);
+            game.setUpdatedAt(Instant.ofEpochMilli(1_000 * i));
+            events.add(GameEvents.eventOf(game, base));
+        }
+
+        GameEntity read = GameEvents.replay(game.getId(), snapshot, events, Integer.MAX_VALUE);
+        assertEquals(game.getId(), read.getId());
+        assertEquals(6L, read.getVersion());
+        assertEquals(6, read.getMoves().size());
+        assertEquals(GameWinner.AI, read.getMoves().get(5).getPlayedBy());
+        assertEquals(1, read.getMoves().get(5).getX());
+        assertEquals(2, read.getMoves().get(5).getY());
+        assertEquals(game.getId(), read.getMoves().get(5).getGameId());
+        assertEquals(GameWinner.PLAYER, read.getActiveTurn());
+        assertEquals(Instant.ofEpochMilli(2_000), read.getUpdatedAt());
+
+        // After the player's move of the second event, before the AI's answer
+        GameEntity past = GameEvents.replay(game.getId(), snapshot, events, 3);
+        assertEquals(3, past.getMoves().size());
+        assertEquals(GameStatus.IN_PROGRESS, past.getStatus());
+        assertEquals(GameWinner.AI, past.getActiveTurn());
+    }
+
+    @Test
+    void testEventsBeforeSnapshotAreSkipped() {
+        GameEntity game = newGame(GameType.AGAINST_HUMAN);
+        List<Document> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int base = game.getMoves().size();
+            play(game, i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2);
+            events.add(GameEvents.eventOf(game, base));
+        }
+        GameEntity atThree = GameEvents.atMove(game, 3);
+        Document snapshot = GameEvents.snapshotOf(atThree);
+        assertEquals(GameEvents.key(game.getId(), 3), snapshot.getString(GameDocuments.ID));
+
+        GameEntity read = GameEvents.replay(game.getId(), snapshot, events, Integer.MAX_VALUE);
+        assertEquals(5, read.getMoves().size());
+        assertEquals(GameWinner.PLAYER_1, read.getMoves().get(4).getPlayedBy());
+        assertEquals(GameWinner.PLAYER_2, read.getActiveTurn());
+    }
+
+    @Test
+    void testGameAtMove() {
+        GameEntity game = newGame(GameType.AGAINST_HUMAN);
+        for (int i = 0; i < 5; i++) {
+            play(game, i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2);
+        }
+        finish(game, GameWinner.PLAYER_1);
+
+        GameEntity created = GameEvents.atMove(game, 0);
+        assertEquals(GameStatus.CREATED, created.getStatus());
+        assertEquals(GameWinner.PLAYER_1, created.getActiveTurn());
+        assertEquals(0, created.getMoves().size());
+
+        GameEntity past = GameEvents.atMove(game, 4);
+        assertEquals(GameStatus.IN_PROGRESS, past.getStatus());
+        assertEquals(GameWinner.NOT_DEFINED_YET, past.getWinner());
+        assertEquals(GameWinner.PLAYER_1, past.getActiveTurn());
+        assertEquals(4, past.getMoves().size());
+        assertEquals(5, game.getMoves().size());
+
+        assertSame(game, GameEvents.atMove(game, 5));
+        assertSame(game, GameEvents.atMove(game, 6));
+    }
+
+    @Test
+    void testKeysSortByMoves() {
+        String id = ObjectId.get().toHexString();
+        assertTrue(GameEvents.key(id, 9).compareTo(GameEvents.key(id, 10)) < 0);
+        assertTrue(GameEvents.key(id, GameEvents.MAX_NUMBER).compareTo(GameEvents.endKey(id)) < 0);
+    }
+
+    private static GameEntity newGame(String gameType) {
+        return GameUtils.newGame(ObjectId.get().toHexString(), gameType, 3);
+    }
+}
@@ -0,0 +1,241 @@
+package challenge.tictactoe.logic;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static challenge.utils.BoardUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+@Slf4j
+class HeuristicGameEngineTest {
+
+    private static final long TIME_BUDGET_MILLIS = 200;
+
+    HeuristicGameEngine engine7x7 = new HeuristicGameEngine(7, 4, TIME_BUDGET_MILLIS);
+
+    /**
+     * AI completes its own line instead of blocking
+     * |   |   |   |   |
+     * | O | O | O | ? |
+     * | X | X | X |   |
+     */
+    @Test
+    void testAiCompletesWinningLine() {
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        moves.add(createMove(3, 0));
+        moves.add(createAiMove(2, 0));
+        moves.add(createMove(3, 1));
+        moves.add(createAiMove(2, 1));
+        moves.add(createMove(3, 2));
+        moves.add(createAiMove(2, 2));
+        moves.add(createMove(5, 5));
+        engine7x7.processAndGenerareteNextMove(game, moves);
+        assertEquals(GameStatus.FINISHED, game.getStatus());
+        assertEquals(GameWinner.AI, game.getWinner());
+        MoveEntity lastMove = moves.get(moves.size() - 1);
+        assertEquals(2, lastMove.getX());
+        assertEquals(3, lastMove.getY());
+    }
+
+    /**
+     * An open three of the player has to be blocked on one of its ends
+     */
+    @Test
+    void testAiBlocksOpenThree() {
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        moves.add(createMove(3, 2));
+        moves.add(createAiMove(0, 0));
+        moves.add(createMove(3, 3));
+        moves.add(createAiMove(6, 6));
+        moves.add(createMove(3, 4));
+        engine7x7.processAndGenerareteNextMove(game, moves);
+        MoveEntity lastMove = moves.get(moves.size() - 1);
+        assertEquals(GameStatus.IN_PROGRESS, game.getStatus());
+        assertEquals(3, lastMove.getX());
+        assertTrue(lastMove.getY() == 1 || lastMove.getY() == 5);
+    }
+
+    /**
+     * Gomoku board: the first reply has to be found within the time budget
+     */
+    @Test
+    void testGomokuMoveRespectsTimeBudget() {
+        HeuristicGameEngine gomoku = new HeuristicGameEngine(15, 5, TIME_BUDGET_MILLIS);
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        long time = makeMoveWithoutAssertion(moves, game, gomoku, 7, 7);
+        log.info("15x15 move took {} ms, {}", time / 1_000_000, gomoku.getStats());
+        assertEquals(2, moves.size());
+        assertEquals(GameStatus.IN_PROGRESS, game.getStatus());
+        MoveEntity lastMove = moves.get(1);
+        assertTrue(Math.abs(lastMove.getX() - 7) <= 1 && Math.abs(lastMove.getY() - 7) <= 1);
+        assertTrue(time < TIME_BUDGET_MILLIS * 3 * 1_000_000);
+        assertTrue(gomoku.getStats().getNodes() > 0);
+    }
+
+    @Test
+    void testAiStartsInTheCenter() {
+        HeuristicGameEngine gomoku = new HeuristicGameEngine(15, 5, TIME_BUDGET_MILLIS);
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        gomoku.processAndGenerareteNextMove(game, moves);
+        assertEquals(1, moves.size());
+        assertEquals(7, moves.get(0).getX());
+        assertEquals(7, moves.get(0).getY());
+    }
+
+    @Test
+    void testTwoPlayersWinnerIsDetected() {
+        HeuristicGameEngine engine = new HeuristicGameEngine(5, 4, true);
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            moves.add(createPlayerMove(i, i, GameWinner.PLAYER_1));
+            moves.add(createPlayerMove(0, 4 - i, GameWinner.PLAYER_2));
+            engine.validateNextMove(game, moves);
+            assertEquals(GameStatus.IN_PROGRESS, game.getStatus());
+            assertEquals(GameWinner.NOT_DEFINED_YET, game.getWinner());
+        }
+        moves.add(createPlayerMove(3, 3, GameWinner.PLAYER_1));
+        engine.validateNextMove(game, moves);
+        assertEquals(GameStatus.FINISHED, game.getStatus());
+        assertEquals(GameWinner.PLAYER_1, game.getWinner());
+        assertNull(game.getActiveTurn());
+    }
+
+    /**
+     * 4x4 with 4 in a row is a draw with correct play on both sides
+     */
+    @Test
+    void testAiVsAiOnSmallBoardEndsInDraw() {
+        HeuristicGameEngine engine = new HeuristicGameEngine(4, 4, TIME_BUDGET_MILLIS);
+        GameEntity gameAi1 = createNewGame();
+        GameEntity gameAi2 = createNewGame();
+        List<MoveEntity> movesAi1 = new ArrayList<>();
+        List<MoveEntity> movesAi2 = new ArrayList<>();
+        engine.processAndGenerareteNextMove(gameAi1, movesAi1);
+        while (!gameAi2.getStatus().equals(GameStatus.FINISHED)) {
+            MoveEntity lastAi1 = movesAi1.get(movesAi1.size() - 1);
+            makeMoveWithoutAssertion(movesAi2, gameAi2, engine, lastAi1.getX(), lastAi1.getY());
+            if (gameAi2.getStatus().equals(GameStatus.FINISHED))
+                break;
+            MoveEntity lastAi2 = movesAi2.get(movesAi2.size() - 1);
+            makeMoveWithoutAssertion(movesAi1, gameAi1, engine, lastAi2.getX(), lastAi2.getY());
+        }
+        assertEquals(GameWinner.DRAW, gameAi2.getWinner());
+        assertEquals(16, movesAi2.size());
+    }
+
+    /**
+     * Winning cell has the best score, every empty cell is scored
+     * |   |   |   |   |
+     * | O | O | O | ? |
+     * | X | X | X |   |
+     */
+    @Test
+    void testEvaluateMoves() {
+        byte[] cells = new byte[49];
+        cells[7] = cells[8] = cells[9] = PositionAnalysis.TO_MOVE;
+        cells[14] = cells[15] = cells[16] = PositionAnalysis.OPPONENT;
+        int[] scores = engine7x7.evaluateMoves(cells);
+        int best = 0;
+        for (int cell = 1; cell < scores.length; cell++) {
+            if (scores[cell] > scores[best]) best = cell;
+        }
+        assertEquals(10, best);
+        assertEquals(PositionAnalysis.NO_SCORE, scores[7]);
+        assertEquals(PositionAnalysis.NO_SCORE, scores[14]);
+        assertNotEquals(PositionAnalysis.NO_SCORE, scores[21]);
+        assertNotEquals(PositionAnalysis.NO_SCORE, scores[48]);
+        assertTrue(scores[10] > scores[48]);
+    }
+
+    @Test
+    void testParallelSearchFindsWinAndBlock() {
+        SearchPool searchPool = new SearchPool(4);
+        HeuristicGameEngine parallelEngine = new HeuristicGameEngine(7, 4, TIME_BUDGET_MILLIS, searchPool);
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        moves.add(createMove(3, 2));
+        moves.add(createAiMove(0, 0));
+        moves.add(createMove(3, 3));
+        moves.add(createAiMove(6, 6));
+        moves.add(createMove(3, 4));
+        parallelEngine.processAndGenerareteNextMove(game, moves);
+        MoveEntity lastMove = moves.get(moves.size() - 1);
+        assertEquals(3, lastMove.getX());
+        assertTrue(lastMove.getY() == 1 || lastMove.getY() == 5);
+        searchPool.shutdown();
+    }
+
+    @Test
+    void testPoolIsSharedByConcurrentSearches() {
+        SearchPool searchPool = new SearchPool(8);
+        assertEquals(4, searchPool.getMaxSearches());
+        assertEquals(2, searchPool.getWorkersPerSearch());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(searchPool.tryAcquire());
+        }
+        // Further searches run sequentially
+        assertFalse(searchPool.tryAcquire());
+        searchPool.release();
+        assertTrue(searchPool.tryAcquire());
+        searchPool.shutdown();
+
+        SearchPool exclusive = new SearchPool(8, 1);
+        assertEquals(8, exclusive.getWorkersPerSearch());
+        exclusive.shutdown();
+    }
+
+    /**
+     * Fixed depth search of the same positions with 1, 2, 4... threads.
+     * Speedup depends on the cores of the machine, the test only logs it.
+     */
+    @Test
+    void testParallelSearchSpeedup() {
+        int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        benchmarkParallelSearch(4, 4, 10, maxThreads);
+        benchmarkParallelSearch(5, 4, 7, maxThreads);
+    }
+
+    private void benchmarkParallelSearch(int boardSize, int winLength, int depth, int maxThreads) {
+        List<MoveEntity> moves = new ArrayList<>();
+        moves.add(createMove(1, 1));
+        long sequentialTime = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            SearchPool searchPool = threads > 1 ? new SearchPool(threads, 1) : null;
+            HeuristicGameEngine engine = new HeuristicGameEngine(boardSize, winLength, TIME_BUDGET_MILLIS, searchPool);
+            long start = System.nanoTime();
+            int cell = engine.findBestMove(engine.positionOf(moves), Long.MAX_VALUE, depth);
+            long time = System.nanoTime() - start;
+            if (threads == 1) sequentialTime = time;
+            log.info("{}x{} depth {}: {} threads, {} ms, speedup {}, {} nodes",
+                    boardSize, boardSize, depth, threads, time / 1_000_000,
+                    String.format("%.2f", (double) sequentialTime / time), engine.getStats().getNodes());
+            assertTrue(cell >= 0 && cell < boardSize * boardSize && cell != boardSize + 1);
+            assertEquals(1, engine.getStats().getSearches());
+            if (searchPool != null) searchPool.shutdown();
+        }
+    }
+
+    private static MoveEntity createAiMove(int x, int y) {
+        return createPlayerMove(x, y, GameWinner.AI);
+    }
+
+    private static MoveEntity createPlayerMove(int x, int y, String player) {
+        MoveEntity move = createMove(x, y);
+        move.setPlayedBy(player);
+        return move;
+    }
+}
@@ -0,0 +1,128 @@
+package challenge.tictactoe.logic;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static challenge.utils.BoardUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+@Slf4j
+class MonteCarloGameEngineTest {
+
+    private static final long TIME_BUDGET_MILLIS = 200;
+
+    MonteCarloGameEngine gomoku = new MonteCarloGameEngine(15, 5, TIME_BUDGET_MILLIS, 0, null);
+
+    @Test
+    void testAiCompletesWinningLine() {
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        for (int y = 3; y < 7; y++) {
+            moves.add(createMove(5, y));
+            moves.add(createAiMove(7, y));
+        }
+        moves.add(createMove(10, 10));
+        gomoku.processAndGenerareteNextMove(game, moves);
+        MoveEntity lastMove = moves.get(moves.size() - 1);
+        assertEquals(GameStatus.FINISHED, game.getStatus());
+        assertEquals(GameWinner.AI, game.getWinner());
+        assertEquals(7, lastMove.getX());
+        assertTrue(lastMove.getY() == 2 || lastMove.getY() == 7);
+    }
+
+    @Test
+    void testAiBlocksFour() {
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        for (int y = 3; y < 7; y++) {
+            moves.add(createMove(5, y));
+            moves.add(createAiMove(y * 2, 12));
+        }
+        gomoku.processAndGenerareteNextMove(game, moves);
+        MoveEntity lastMove = moves.get(moves.size() - 1);
+        assertEquals(GameStatus.IN_PROGRESS, game.getStatus());
+        assertEquals(5, lastMove.getX());
+        assertTrue(lastMove.getY() == 2 || lastMove.getY() == 7);
+    }
+
+    @Test
+    void testMoveRespectsTimeBudget() {
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        makeMoveWithoutAssertion(moves, game, gomoku, 7, 7);
+        long time = makeMoveWithoutAssertion(moves, game, gomoku, 7, 8);
+        log.info("15x15 Monte Carlo move took {} ms, {}", time / 1_000_000, gomoku.getStats());
+        assertEquals(4, moves.size());
+        assertTrue(time < TIME_BUDGET_MILLIS * 3 * 1_000_000);
+        assertTrue(gomoku.getStats().getNodes() > 0);
+    }
+
+    /**
+     * With a playout limit the move costs a fixed amount of work, whatever the time budget
+     */
+    @Test
+    void testPlayoutLimit() {
+        MonteCarloGameEngine engine = new MonteCarloGameEngine(9, 5, 60_000, 500, null);
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        makeMoveWithoutAssertion(moves, game, engine, 4, 4);
+        makeMoveWithoutAssertion(moves, game, engine, 3, 3);
+        assertEquals(2, engine.getStats().getSearches());
+        assertEquals(1000, engine.getStats().getNodes());
+    }
+
+    @Test
+    void testTreeParallelPlayouts() {
+        SearchPool searchPool = new SearchPool(4);
+        MonteCarloGameEngine engine = new MonteCarloGameEngine(11, 5, 60_000, 2000, searchPool);
+        GameEntity game = createNewGame();
+        List<MoveEntity> moves = new ArrayList<>();
+        makeMoveWithoutAssertion(moves, game, engine, 5, 5);
+        makeMoveWithoutAssertion(moves, game, engine, 5, 6);
+        MoveEntity lastMove = moves.get(moves.size() - 1);
+        assertEquals(4, moves.size());
+        // Playouts only consider cells next to existing markers
+        assertTrue(moves.subList(0, 3).stream().anyMatch(move ->
+                Math.abs(lastMove.getX() - move.getX()) <= 1 && Math.abs(lastMove.getY() - move.getY()) <= 1));
+        assertEquals(2 * 2000, engine.getStats().getNodes());
+        assertTrue(engine.getStats().getEntries() > 0);
+        searchPool.shutdown();
+    }
+
+    @Test
+    void testAiVsAiFinishes() {
+        MonteCarloGameEngine engine = new MonteCarloGameEngine(6, 4, 20, 0, null);
+        GameEntity gameAi1 = createNewGame();
+        GameEntity gameAi2 = createNewGame();
+        List<MoveEntity> movesAi1 = new ArrayList<>();
+        List<MoveEntity> movesAi2 = new ArrayList<>();
+        engine.processAndGenerareteNextMove(gameAi1, movesAi1);
+        while (!gameAi1.getStatus().equals(GameStatus.FINISHED)
+                && !gameAi2.getStatus().equals(GameStatus.FINISHED)) {
+            MoveEntity lastAi1 = movesAi1.get(movesAi1.size() - 1);
+            makeMoveWithoutAssertion(movesAi2, gameAi2, engine, lastAi1.getX(), lastAi1.getY());
+            if (gameAi2.getStatus().equals(GameStatus.FINISHED))
+                break;
+            MoveEntity lastAi2 = movesAi2.get(movesAi2.size() - 1);
+            makeMoveWithoutAssertion(movesAi1, gameAi1, engine, lastAi2.getX(), lastAi2.getY());
+        }
+        assertTrue(movesAi2.size() <= 36);
+        assertNotEquals(GameWinner.NOT_DEFINED_YET, gameAi2.getStatus().equals(GameStatus.FINISHED) ?
+                gameAi2.getWinner() : gameAi1.getWinner());
+    }
+
+    private static MoveEntity createAiMove(int x, int y) {
+        MoveEntity move = createMove(x, y);
+        move.setPlayedBy(GameWinner.AI);
+        return move;
+    }
+}
@@ -0,0 +1,206 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.utils.GameUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameArchiveTest {
+
+    @TempDir
+    Path dir;
+    GameArchive archive;
+
+    @AfterEach
+    void close() throws IOException {
+        archive.close();
+    }
+
+    @Test
+    void testArchivedGameIsRead() throws IOException {
+        archive = open(1024 * 1024);
+        GameEntity game = finishedGame();
+        archive.append(List.of(game, finishedGame()));
+
+        GameEntity read = archive.find(game.getId()).block();
+        assertNotNull(read);
+        assertEquals(game.getId(), read.getId());
+        assertEquals(GameStatus.FINISHED, read.getStatus());
+        assertEquals(GameWinner.PLAYER_1, read.getWinner());
+        assertEquals(game.getUpdatedAt(), read.getUpdatedAt());
+        assertEquals(5, read.getMoves().size());
+        assertEquals(GameWinner.PLAYER_2, read.getMoves().get(1).getPlayedBy());
+        assertNull(archive.find(ObjectId.get().toHexString()).block());
+    }
+
+    @Test
+    void testArchiveIsReopened() throws IOException {
+        archive = open(1024 * 1024);
+        GameEntity kept = finishedGame();
+        GameEntity deleted = finishedGame();
+        archive.append(List.of(kept, deleted));
+        assertTrue(archive.delete(deleted.getId()));
+        archive.close();
+
+        archive = open(1024 * 1024);
+        assertEquals(1, archive.size());
+        assertNotNull(archive.find(kept.getId()).block());
+        assertFalse(archive.contains(deleted.getId()));
+        // New games go after the existing ones
+        GameEntity added = finishedGame();
+        archive.append(List.of(added));
+        assertNotNull(archive.find(added.getId()).block());
+        assertNotNull(archive.find(kept.getId()).block());
+    }
+
+    @Test
+    void testIndexIsCompactedWhenReopened() throws IOException {
+        archive = open(1024 * 1024);
+        GameEntity kept = finishedGame();
+        GameEntity deleted = finishedGame();
+        archive.append(List.of(kept, deleted));
+        // Not archived, nothing is written
+        assertFalse(archive.delete(ObjectId.get().toHexString()));
+        Path index = dir.resolve(GameArchive.INDEX_FILE);
+        long twoEntries = Files.size(index);
+        assertTrue(archive.delete(deleted.getId()));
+        archive.close();
+
+        archive = open(1024 * 1024);
+        assertEquals(twoEntries / 2, Files.size(index));
+        assertNotNull(archive.find(kept.getId()).block());
+        assertNull(archive.find(deleted.getId()).block());
+    }
+
+    @Test
+    void testIncompleteIndexEntryIsDropped() throws IOException {
+        archive = open(1024 * 1024);
+        GameEntity game = finishedGame();
+        archive.append(List.of(game));
+        archive.close();
+        Path index = dir.resolve(GameArchive.INDEX_FILE);
+        long size = Files.size(index);
+        // A crash while the index entry of another game was written
+        Files.write(index, new byte[]{0, 24, '6', '3'}, StandardOpenOption.APPEND);
+
+        archive = open(1024 * 1024);
+        assertEquals(size, Files.size(index));
+        GameEntity added = finishedGame();
+        archive.append(List.of(added));
+        archive.close();
+
+        archive = open(1024 * 1024);
+        assertEquals(2, archive.size());
+        assertNotNull(archive.find(game.getId()).block());
+        assertNotNull(archive.find(added.getId()).block());
+    }
+
+    @Test
+    void testReaderSeesGamesArchivedAfterItsStart() throws IOException {
+        archive = open(100);
+        GameEntity before = finishedGame();
+        archive.append(List.of(before));
+        GameArchive reader = open(false, 100);
+        try {
+            assertTrue(reader.contains(before.getId()));
+            GameEntity after = finishedGame();
+            archive.append(List.of(after, finishedGame()));
+            assertFalse(reader.contains(after.getId()));
+
+            assertEquals(after.getId(), reader.find(after.getId()).block().getId());
+            assertEquals(3, reader.size());
+            assertThrows(IllegalStateException.class, () -> reader.append(List.of(finishedGame())));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void testGameDeletedByReaderIsGoneForArchiver() throws IOException {
+        archive = open(1024 * 1024);
+        GameEntity game = finishedGame();
+        archive.append(List.of(game));
+        GameArchive reader = open(false, 1024 * 1024);
+        try {
+            assertTrue(reader.delete(game.getId()));
+            assertNull(archive.find(game.getId()).block());
+            // Already deleted by the reader
+            assertFalse(archive.delete(game.getId()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    void testSecondArchiverFailsToOpen() throws IOException {
+        archive = open(1024 * 1024);
+        assertThrows(IllegalStateException.class, () -> open(1024 * 1024));
+        archive.append(List.of(finishedGame()));
+        assertEquals(1, archive.size());
+    }
+
+    @Test
+    void testSegmentsAreRolled() throws IOException {
+        archive = open(100);
+        List<GameEntity> games = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            GameEntity game = finishedGame();
+            games.add(game);
+            archive.append(List.of(game));
+        }
+        List<Path> segments = Files.list(dir)
+                .filter(path -> path.getFileName().toString().endsWith(".seg"))
+                .collect(Collectors.toList());
+        assertTrue(segments.size() > 1);
+        for (GameEntity game : games) {
+            assertEquals(game.getId(), archive.find(game.getId()).block().getId());
+        }
+        try (FileChannel channel = FileChannel.open(segments.get(0))) {
+            assertTrue(channel.size() < 300);
+        }
+    }
+
+    private GameArchive open(long segmentSize) throws IOException {
+        return open(true, segmentSize);
+    }
+
+    private GameArchive open(boolean archiver, long segmentSize) throws IOException {
+        GameArchive archive = new GameArchive(true, archiver, dir, segmentSize, new SimpleMeterRegistry());
+        archive.open();
+        return archive;
+    }
+
+    private static GameEntity finishedGame() {
+        GameEntity game = GameUtils.newGame(ObjectId.get().toHexString(), GameType.AGAINST_HUMAN, 3);
+        int[][] cells = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 2}};
+        for (int i = 0; i < cells.length; i++) {
+            GameUtils.play(game, i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2, cells[i][0], cells[i][1]);
+        }
+        GameUtils.finish(game, GameWinner.PLAYER_1);
+        Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+        game.setVersion(5L);
+        game.setCreatedAt(now);
+        game.setUpdatedAt(now);
+        return game;
+    }
+}
@@ -0,0 +1,178 @@
+package challenge.tictactoe.persistance;
+
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.utils.GameStoreBenchmark;
+import challenge.utils.GameUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DuplicateKeyException;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static challenge.utils.GameUtils.play;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameStoreTest {
+
+    @TempDir
+    Path dir;
+    List<LogGameStore> opened = new ArrayList<>();
+
+    @AfterEach
+    void close() throws IOException {
+        for (LogGameStore store : opened) {
+            store.close();
+        }
+    }
+
+    @Test
+    void testInMemoryStore() {
+        testStore(new InMemoryGameStore());
+    }
+
+    @Test
+    void testLogStore() throws IOException {
+        testStore(open(true, 1024 * 1024));
+    }
+
+    @Test
+    void testConcurrentUpdatesOfInMemoryStore() {
+        testConcurrentUpdates(new InMemoryGameStore());
+    }
+
+    @Test
+    void testConcurrentUpdatesOfLogStore() throws IOException {
+        testConcurrentUpdates(open(false, 1024 * 1024));
+    }
+
+    @Test
+    void testLogIsReplayed() throws IOException {
+        LogGameStore store = open(true, 1024 * 1024);
+        GameEntity kept = store.insert(newGame()).block();
+        GameEntity deleted = store.insert(newGame()).block();
+        play(kept, GameWinner.PLAYER_1);
+        store.update(kept).block();
+        store.deleteById(deleted.getId()).block();
+        store.close();
+
+        LogGameStore reopened = open(true, 1024 * 1024);
+        assertEquals(1, reopened.size());
+        GameEntity read = reopened.findById(kept.getId()).block();
+        assertNotNull(read);
+        assertEquals(1L, read.getVersion());
+        assertEquals(1, read.getMoves().size());
+        assertNull(reopened.findById(deleted.getId()).block());
+    }
+
+    @Test
+    void testIncompleteRecordIsDropped() throws IOException {
+        LogGameStore store = open(true, 1024 * 1024);
+        GameEntity game = store.insert(newGame()).block();
+        store.close();
+        Path log = dir.resolve(LogGameStore.LOG_FILE);
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 0, 0, 1, 0, 42, 42}));
+        }
+
+        LogGameStore reopened = open(true, 1024 * 1024);
+        assertNotNull(reopened.findById(game.getId()).block());
+        assertEquals(size, Files.size(log));
+        GameEntity next = reopened.insert(newGame()).block();
+        reopened.close();
+        assertNotNull(open(true, 1024 * 1024).findById(next.getId()).block());
+    }
+
+    @Test
+    void testLogIsCompacted() throws IOException {
+        LogGameStore store = open(false, 4 * 1024);
+        GameEntity game = store.insert(newGame()).block();
+        for (int i = 0; i < 9; i++) {
+            play(game, i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2);
+            game = store.update(game).block();
+        }
+        for (int i = 0; i < 50; i++) {
+            store.deleteById(store.insert(newGame()).block().getId()).block();
+        }
+        assertTrue(store.logSize() < 4 * 1024, "Log wasn't compacted, " + store.logSize() + " bytes");
+        store.close();
+
+        LogGameStore reopened = open(false, 4 * 1024);
+        assertEquals(1, reopened.size());
+        assertEquals(9, reopened.findById(game.getId()).block().getMoves().size());
+        assertFalse(Files.exists(dir.resolve(LogGameStore.LOG_FILE + ".compact")));
+    }
+
+    @Test
+    void saveMovesInStoresBenchmark() throws IOException {
+        long[] memory = GameStoreBenchmark.run("in-memory", new InMemoryGameStore(), 200, 8, 64);
+        long[] unsynced = GameStoreBenchmark.run("log",
+                open(dir.resolve("unsynced"), false, 64 * 1024 * 1024), 200, 8, 64);
+        long[] synced = GameStoreBenchmark.run("log with fsync",
+                open(dir.resolve("synced"), true, 64 * 1024 * 1024), 50, 8, 64);
+        assertTrue(memory[0] > 0 && unsynced[0] > 0 && synced[0] > 0);
+    }
+
+    private void testStore(GameStore store) {
+        GameEntity game = store.insert(newGame()).block();
+        assertNotNull(game.getId());
+        assertEquals(0L, game.getVersion());
+        assertThrows(DuplicateKeyException.class, () -> store.insert(game).block());
+
+        GameEntity read = store.findById(game.getId()).block();
+        play(read, GameWinner.PLAYER_1);
+        assertEquals(0, store.findById(game.getId()).block().getMoves().size(), "Store shares its games");
+
+        GameEntity updated = store.update(read).block();
+        assertEquals(1L, updated.getVersion());
+        assertEquals(1, store.findById(game.getId()).block().getMoves().size());
+        assertNull(store.update(read).block(), "Update of an old version was applied");
+
+        store.deleteById(game.getId()).block();
+        assertNull(store.findById(game.getId()).block());
+        assertNull(store.update(updated).block());
+    }
+
+    private void testConcurrentUpdates(GameStore store) {
+        GameEntity game = store.insert(newGame()).block();
+        long saved = Flux.range(0, 16)
+                .flatMap(i -> {
+                    GameEntity copy = game.copy();
+                    play(copy, GameWinner.PLAYER_1);
+                    return store.update(copy);
+                }, 16)
+                .count()
+                .block();
+        assertEquals(1, saved);
+        assertEquals(1L, store.findById(game.getId()).block().getVersion());
+    }
+
+    private LogGameStore open(boolean sync, long compactMinBytes) throws IOException {
+        return open(dir, sync, compactMinBytes);
+    }
+
+    private LogGameStore open(Path dir, boolean sync, long compactMinBytes) throws IOException {
+        LogGameStore store = new LogGameStore(dir, sync, compactMinBytes, new SimpleMeterRegistry());
+        store.open();
+        opened.add(store);
+        return store;
+    }
+
+    private static GameEntity newGame() {
+        return GameUtils.newGame(null, GameType.AGAINST_HUMAN, 3);
+    }
+}
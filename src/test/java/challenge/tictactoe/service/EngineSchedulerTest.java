@@ -0,0 +1,87 @@
+package challenge.tictactoe.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("component-test")
+class EngineSchedulerTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    EngineScheduler engineScheduler = new EngineScheduler(1, 1, 200, meterRegistry);
+
+    @AfterEach
+    void shutdown() {
+        engineScheduler.shutdown();
+    }
+
+    @Test
+    void testTaskRunsOnEngineThread() {
+        StepVerifier.create(engineScheduler.submit(() -> Thread.currentThread().getName()))
+                .expectNext("engine-1")
+                .verifyComplete();
+        assertEquals(1, meterRegistry.timer("tictactoe.engine.queue.wait").count());
+    }
+
+    /**
+     * One call is running, one is queued, the third has to be rejected right away
+     */
+    @Test
+    void testFullQueueFailsFast() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Mono<Integer> running = engineScheduler.submit(() -> {
+            started.countDown();
+            release.await();
+            return 1;
+        }).cache();
+        running.subscribe();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        Mono<Integer> queued = engineScheduler.submit(() -> 2).cache();
+        queued.subscribe();
+        assertEquals(1, engineScheduler.getQueueDepth());
+        assertEquals(1.0, meterRegistry.get("tictactoe.engine.queue.depth").gauge().value());
+
+        StepVerifier.create(engineScheduler.submit(() -> 3))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException
+                        && ((ResponseStatusException) e).getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+        release.countDown();
+        StepVerifier.create(running).expectNext(1).verifyComplete();
+        StepVerifier.create(queued).expectNext(2).verifyComplete();
+        assertEquals(1.0, meterRegistry.counter("tictactoe.engine.rejected").count());
+    }
+
+    /**
+     * A call which waited in the queue longer than allowed is not computed
+     */
+    @Test
+    void testExpiredCallIsRejected() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        engineScheduler.submit(() -> {
+            started.countDown();
+            Thread.sleep(400);
+            return 1;
+        }).subscribe();
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        StepVerifier.create(engineScheduler.submit(() -> 2))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException
+                        && ((ResponseStatusException) e).getStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify(Duration.ofSeconds(2));
+        assertTrue(meterRegistry.timer("tictactoe.engine.queue.wait")
+                .max(TimeUnit.MILLISECONDS) >= 200);
+    }
+}
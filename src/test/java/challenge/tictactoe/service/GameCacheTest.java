@@ -0,0 +1,113 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.utils.GameUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameCacheTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameCache gameCache = new GameCache(true, 100, 60_000, meterRegistry);
+
+    @Test
+    void testCachedGameCantBeChangedByCallers() {
+        gameCache.put(game("1", GameStatus.IN_PROGRESS));
+        GameEntity first = gameCache.get("1");
+        first.getMoves().add(MoveEntity.builder().x(2).y(2).number(2).build());
+        first.setStatus(GameStatus.FINISHED);
+
+        GameEntity second = gameCache.get("1");
+        assertNotSame(first, second);
+        assertEquals(1, second.getMoves().size());
+        assertEquals(GameStatus.IN_PROGRESS, second.getStatus());
+    }
+
+    @Test
+    void testFinishedGameIsRemoved() {
+        gameCache.put(game("1", GameStatus.IN_PROGRESS));
+        gameCache.put(game("1", GameStatus.FINISHED));
+        assertNull(gameCache.get("1"));
+        assertEquals(1.0, meterRegistry.get("tictactoe.games.cache.removals")
+                .tag("reason", "finished").counter().count());
+        // Finished games aren't cached at all
+        gameCache.put(game("2", GameStatus.FINISHED));
+        assertNull(gameCache.get("2"));
+    }
+
+    @Test
+    void testHitAndMissMetrics() {
+        assertNull(gameCache.get("1"));
+        gameCache.put(game("1", GameStatus.CREATED));
+        assertNotNull(gameCache.get("1"));
+        assertNotNull(gameCache.get("1"));
+        assertEquals(2.0, meterRegistry.get("cache.gets").tag("cache", "tictactoe.games")
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "tictactoe.games")
+                .tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void testRemovedGame() {
+        gameCache.put(game("1", GameStatus.IN_PROGRESS));
+        gameCache.remove("1", "conflict");
+        assertNull(gameCache.get("1"));
+    }
+
+    @Test
+    void testChangedGameIsInvalidatedUnlessCachedVersionIsNewer() {
+        gameCache.put(game("1", GameStatus.IN_PROGRESS));
+        // Change made by this node, cached already
+        gameCache.invalidate("1", 1L);
+        assertNotNull(gameCache.get("1"));
+        // Change made by another node
+        gameCache.invalidate("1", 2L);
+        assertNull(gameCache.get("1"));
+        gameCache.put(game("1", GameStatus.IN_PROGRESS));
+        // Unknown version
+        gameCache.invalidate("1", null);
+        assertNull(gameCache.get("1"));
+        assertEquals(2.0, meterRegistry.get("tictactoe.games.cache.removals")
+                .tag("reason", "remote").counter().count());
+    }
+
+    @Test
+    void testSuspendedCacheIsNotUsed() {
+        gameCache.put(game("1", GameStatus.IN_PROGRESS));
+        gameCache.suspend();
+        assertNull(gameCache.get("1"));
+        gameCache.put(game("2", GameStatus.IN_PROGRESS));
+        assertEquals(1.0, meterRegistry.get("tictactoe.games.cache.suspended").gauge().value());
+
+        gameCache.resume();
+        // Nothing cached before or during the suspension is served
+        assertNull(gameCache.get("1"));
+        assertNull(gameCache.get("2"));
+        gameCache.put(game("1", GameStatus.IN_PROGRESS));
+        assertNotNull(gameCache.get("1"));
+    }
+
+    @Test
+    void testDisabledCache() {
+        GameCache disabled = new GameCache(false, 100, 60_000, meterRegistry);
+        disabled.put(game("1", GameStatus.IN_PROGRESS));
+        assertNull(disabled.get("1"));
+    }
+
+    private static GameEntity game(String id, String status) {
+        GameEntity game = GameUtils.newGame(id, GameType.AGAINST_AI, 3);
+        GameUtils.play(game, GameWinner.PLAYER, 1, 1);
+        game.setStatus(status);
+        game.setVersion(1L);
+        return game;
+    }
+}
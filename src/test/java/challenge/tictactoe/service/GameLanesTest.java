@@ -0,0 +1,115 @@
+package challenge.tictactoe.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@Tag("component-test")
+class GameLanesTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testOperationsOfOneGameRunOneByOne() {
+        GameLanes gameLanes = new GameLanes(1000, meterRegistry);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> results = Flux.range(0, 200)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> gameLanes.submit("1", () -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    return Mono.delay(Duration.ofMillis(1))
+                            .doOnNext(e -> running.decrementAndGet())
+                            .thenReturn(i);
+                }))
+                .sequential()
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        assertEquals(200, results.size());
+        assertEquals(1, maxRunning.get());
+        assertEquals(0, gameLanes.activeLanes());
+    }
+
+    @Test
+    void testSubmissionOrderIsKept() {
+        GameLanes gameLanes = new GameLanes(16, meterRegistry);
+        Sinks.One<Integer> first = Sinks.one();
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        gameLanes.submit("1", first::asMono).subscribe(order::add);
+        for (int i = 2; i <= 5; i++) {
+            int value = i;
+            gameLanes.submit("1", () -> Mono.just(value)).subscribe(order::add);
+        }
+        assertEquals(List.of(), order);
+        first.tryEmitValue(1);
+        assertEquals(List.of(1, 2, 3, 4, 5), order);
+    }
+
+    @Test
+    void testGamesRunInParallel() {
+        GameLanes gameLanes = new GameLanes(16, meterRegistry);
+        Sinks.One<String> blocked = Sinks.one();
+        gameLanes.submit("1", blocked::asMono).subscribe();
+        StepVerifier.create(gameLanes.submit("2", () -> Mono.just("2")))
+                .expectNext("2")
+                .verifyComplete();
+        assertEquals(1, gameLanes.activeLanes());
+        blocked.tryEmitValue("1");
+        assertEquals(0, gameLanes.activeLanes());
+    }
+
+    /**
+     * One operation is running, one is waiting, the third has to be rejected right away
+     */
+    @Test
+    void testLaneDepthIsBounded() {
+        GameLanes gameLanes = new GameLanes(2, meterRegistry);
+        Sinks.One<Integer> blocked = Sinks.one();
+        Mono<Integer> running = gameLanes.submit("1", blocked::asMono).cache();
+        running.subscribe();
+        Mono<Integer> waiting = gameLanes.submit("1", () -> Mono.just(2)).cache();
+        waiting.subscribe();
+
+        StepVerifier.create(gameLanes.submit("1", () -> Mono.just(3)))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException
+                        && ((ResponseStatusException) e).getStatus() == HttpStatus.TOO_MANY_REQUESTS)
+                .verify();
+        assertEquals(1.0, meterRegistry.get("tictactoe.lanes.rejected").counter().count());
+
+        blocked.tryEmitValue(1);
+        StepVerifier.create(waiting).expectNext(2).verifyComplete();
+        // Lane is free again
+        StepVerifier.create(gameLanes.submit("1", () -> Mono.just(4))).expectNext(4).verifyComplete();
+        assertEquals(0, gameLanes.activeLanes());
+    }
+
+    @Test
+    void testFailedOperationStartsTheNextOne() {
+        GameLanes gameLanes = new GameLanes(16, meterRegistry);
+        StepVerifier.create(gameLanes.submit("1", () -> Mono.error(new IllegalStateException("failed"))))
+                .verifyError(IllegalStateException.class);
+        StepVerifier.create(gameLanes.submit("1", () -> {
+                    throw new IllegalStateException("thrown");
+                }))
+                .verifyError(IllegalStateException.class);
+        StepVerifier.create(gameLanes.submit("1", Mono::empty)).verifyComplete();
+        StepVerifier.create(gameLanes.submit("1", () -> Mono.just(1))).expectNext(1).verifyComplete();
+        assertEquals(0, gameLanes.activeLanes());
+    }
+}
@@ -0,0 +1,217 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.dto.GameDto;
+import challenge.tictactoe.dto.GameUpdateDto;
+import challenge.tictactoe.dto.MoveDto;
+import challenge.tictactoe.mapper.MoveMapperImpl;
+import challenge.utils.FakeGameStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static challenge.utils.GameUtils.finish;
+import static challenge.utils.GameUtils.play;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+@Tag("component-test")
+class GamePlayServiceTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameUpdates gameUpdates = new GameUpdates(new MoveMapperImpl(), 4, meterRegistry);
+    FakeGameStore store = new FakeGameStore(gameUpdates);
+    AtomicInteger ids = new AtomicInteger();
+    GameStreamService streams = new GameStreamService(store::find, gameUpdates, 60_000, 64, 1_000);
+    GamePlayService play = new GamePlayService(new FakeGames(), gameUpdates, 16, meterRegistry);
+
+    @Test
+    void testGameAgainstAiIsPlayedWithIncrementalStates() {
+        Sinks.Many<String> frames = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(play.play(frames.asFlux()))
+                .then(() -> frames.tryEmitNext("ai t1"))
+                .expectNext("c t1 g1 3 3 " + GameWinner.PLAYER)
+                .then(() -> frames.tryEmitNext("m g1 1 1"))
+                .expectNext("s g1 2 IN_PROGRESS NOT_DEFINED_YET PLAYER 1,1 0,0")
+                .then(() -> frames.tryEmitNext("m g1 2 2 3"))
+                .expectNext("s g1 4 IN_PROGRESS NOT_DEFINED_YET PLAYER 2,2 0,1")
+                .then(frames::tryEmitComplete)
+                .verifyComplete();
+        assertEquals(0, meterRegistry.get("tictactoe.play.connections").gauge().value());
+        assertEquals(3, meterRegistry.get("tictactoe.play.frames.received").counter().count());
+        assertEquals(3, meterRegistry.get("tictactoe.play.frames.sent").counter().count());
+    }
+
+    @Test
+    void testFailedFramesAreAnsweredWithErrors() {
+        Sinks.Many<String> frames = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(play.play(frames.asFlux()))
+                .then(() -> frames.tryEmitNext("x g1"))
+                .expectNext("e g1 400 Unknown frame x")
+                .then(() -> frames.tryEmitNext("m g1 one 1"))
+                .expectNext("e g1 400 Malformed frame m g1 one 1")
+                .then(() -> frames.tryEmitNext("m"))
+                .expectNext("e - 400 Malformed frame m")
+                .then(() -> frames.tryEmitNext("m g9 1 1"))
+                .expectNext("e g9 404 Game g9 was not found")
+                .then(() -> frames.tryEmitNext("ai t1 3"))
+                .expectNextCount(1)
+                .then(() -> frames.tryEmitNext("m g1 5 5"))
+                .expectNext("e g1 400 Cell 5 5 is out of the board")
+                .then(frames::tryEmitComplete)
+                .verifyComplete();
+    }
+
+    @Test
+    void testFollowerGetsMovesOfOtherPlayerOnce() {
+        Sinks.Many<String> frames = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(play.play(frames.asFlux()))
+                .then(() -> frames.tryEmitNext("person t1"))
+                .expectNext("c t1 g1 3 3 " + GameWinner.PLAYER_1)
+                .then(() -> frames.tryEmitNext("f g1"))
+                .then(() -> frames.tryEmitNext("m g1 0 0"))
+                .expectNext("s g1 1 IN_PROGRESS NOT_DEFINED_YET PLAYER_2 0,0")
+                // Move of the other player from another connection
+                .then(() -> move("g1", 1, 1))
+                .expectNext("s g1 2 IN_PROGRESS NOT_DEFINED_YET PLAYER_1 1,1")
+                .then(() -> frames.tryEmitNext("u g1"))
+                .then(() -> frames.tryEmitNext("m g1 0 1"))
+                .expectNext("s g1 3 IN_PROGRESS NOT_DEFINED_YET PLAYER_2 0,1")
+                .then(() -> move("g1", 2, 2))
+                .then(() -> frames.tryEmitNext("f g1"))
+                .expectNext("s g1 4 IN_PROGRESS NOT_DEFINED_YET PLAYER_1 2,2")
+                .then(frames::tryEmitComplete)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+    }
+
+    @Test
+    void testFinishedGameIsForgotten() {
+        Sinks.Many<String> frames = Sinks.many().unicast().onBackpressureBuffer();
+
+        StepVerifier.create(play.play(frames.asFlux()))
+                .then(() -> frames.tryEmitNext("ai t1"))
+                .expectNextCount(1)
+                .then(() -> frames.tryEmitNext("m g1 1 1"))
+                .expectNext("s g1 2 IN_PROGRESS NOT_DEFINED_YET PLAYER 1,1 0,0")
+                .then(() -> frames.tryEmitNext("m g1 0 1"))
+                .expectNext("s g1 4 IN_PROGRESS NOT_DEFINED_YET PLAYER 0,1 0,2")
+                .then(() -> frames.tryEmitNext("m g1 1 0"))
+                .expectNext("s g1 6 IN_PROGRESS NOT_DEFINED_YET PLAYER 1,0 1,2")
+                .then(() -> frames.tryEmitNext("m g1 2 0"))
+                .expectNext("s g1 8 IN_PROGRESS NOT_DEFINED_YET PLAYER 2,0 2,1")
+                .then(() -> frames.tryEmitNext("m g1 2 2"))
+                .expectNext("s g1 9 FINISHED DRAW - 2,2")
+                // The connection doesn't know the game anymore, a follow gets all of it
+                .then(() -> frames.tryEmitNext("f g1"))
+                .expectNext("s g1 9 FINISHED DRAW - 1,1 0,0 0,1 0,2 1,0 1,2 2,0 2,1 2,2")
+                .then(frames::tryEmitComplete)
+                .verifyComplete();
+    }
+
+    @Test
+    void testManyGamesArePlayedOverOneConnection() {
+        int count = 200;
+        Flux<String> frames = Flux.concat(
+                Flux.range(0, count).map(i -> "ai t" + i),
+                Flux.range(1, count).map(i -> "m g" + i + " 1 1"),
+                Flux.range(1, count).map(i -> "m g" + i + " 2 2"));
+
+        List<String> answers = play.play(frames.delayElements(Duration.ofMillis(1)))
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        assertEquals(3 * count, answers.size());
+        Map<String, List<String>> states = answers.stream()
+                .filter(frame -> frame.startsWith("s "))
+                .collect(Collectors.groupingBy(frame -> frame.split(" ")[1]));
+        assertEquals(count, states.size());
+        states.values().forEach(game -> {
+            assertEquals(2, game.size());
+            assertTrue(game.stream().anyMatch(frame -> frame.endsWith(" 4 IN_PROGRESS NOT_DEFINED_YET PLAYER 2,2 0,1")),
+                    game.toString());
+        });
+    }
+
+    private void move(String gameId, int x, int y) {
+        new FakeGames().move(gameId, MoveDto.builder().x(x).y(y).build()).block();
+    }
+
+    /**
+     * Games on a 3x3 board, AI plays the first free cell
+     */
+    private class FakeGames implements GamePlayService.Games {
+
+        @Override
+        public Mono<GameDto> create(String player, String gameType, Integer boardSize, Integer winLength) {
+            GameEntity game = store.create("g" + ids.incrementAndGet(), gameType, 3);
+            game.setActiveTurn(player);
+            return Mono.just(GameDto.builder()
+                    .id(game.getId())
+                    .status(game.getStatus())
+                    .activeTurn(player)
+                    .boardSize(3)
+                    .winLength(3)
+                    .build());
+        }
+
+        @Override
+        public Mono<GameEntity> move(String gameId, MoveDto move) {
+            return Mono.defer(() -> {
+                GameEntity game = store.get(gameId);
+                if (game == null)
+                    return Mono.error(FakeGameStore.notFound(gameId));
+                if (move.getX() > 2 || move.getY() > 2)
+                    return Mono.error(new ResponseStatusException(BAD_REQUEST,
+                            "Cell " + move.getX() + " " + move.getY() + " is out of the board"));
+                synchronized (game) {
+                    GameEntity updated = game.copy();
+                    int base = updated.getMoves().size();
+                    boolean ai = GameType.AGAINST_AI.equals(updated.getGameType());
+                    String player = ai ? GameWinner.PLAYER
+                            : base % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2;
+                    play(updated, player, move.getX(), move.getY());
+                    if (ai) {
+                        for (int cell = 0; cell < 9; cell++) {
+                            int x = cell / 3;
+                            int y = cell % 3;
+                            if (updated.getMoves().stream().noneMatch(m -> m.getX() == x && m.getY() == y)) {
+                                play(updated, GameWinner.AI, x, y);
+                                break;
+                            }
+                        }
+                    }
+                    if (updated.getMoves().size() == 9) {
+                        // Nobody wins in these games, a full board is a draw
+                        finish(updated, GameWinner.DRAW);
+                    }
+                    store.save(updated, base);
+                    return Mono.just(updated);
+                }
+            }).subscribeOn(Schedulers.parallel());
+        }
+
+        @Override
+        public Flux<GameUpdateDto> updates(String gameId, Integer after) {
+            return streams.updates(gameId, after);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.db.GameDocuments;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameRetentionServiceTest {
+
+    Instant now = Instant.parse("2022-11-20T12:00:00Z");
+
+    @Test
+    void testExpiredGames() {
+        Document query = service(24, 720).expiredGames(now).getQueryObject();
+        List<Document> expired = query.getList("$or", Document.class);
+        assertEquals(4, expired.size());
+
+        Date finishedBefore = Date.from(now.minus(Duration.ofHours(24)));
+        assertEquals(new Document("$lt", finishedBefore), expired.get(0).get(GameDocuments.FINISHED_AT));
+        assertEquals(new Document("$lt", new ObjectId(Long.toHexString(finishedBefore.getTime() / 1000) + "0000000000000000")), expired.get(1).get("_id"));
+        assertEquals(2, expired.get(1).get(GameDocuments.STATUS));
+
+        Date idleBefore = Date.from(now.minus(Duration.ofHours(720)));
+        assertEquals(new Document("$lt", idleBefore), expired.get(2).get(GameDocuments.UPDATED_AT));
+        assertEquals(new Document("$lt", new ObjectId(Long.toHexString(idleBefore.getTime() / 1000) + "0000000000000000")), expired.get(3).get("_id"));
+        assertEquals(new Document("$exists", false), expired.get(3).get(GameDocuments.UPDATED_AT));
+    }
+
+    @Test
+    void testZeroTtlKeepsGames() {
+        List<Document> expired = service(0, 720).expiredGames(now).getQueryObject()
+                .getList("$or", Document.class);
+        assertEquals(2, expired.size());
+        assertFalse(expired.get(0).containsKey(GameDocuments.FINISHED_AT));
+
+        // Nothing matches when both are off
+        Document query = service(0, 0).expiredGames(now).getQueryObject();
+        assertEquals(new Document("_id", new Document("$exists", false)), query);
+    }
+
+    @Test
+    void testPurgedGamesAreStillExpired() {
+        List<Object> ids = List.of(new ObjectId(), new ObjectId());
+        List<Document> conditions = service(24, 720).expiredGames(now, ids).getQueryObject()
+                .getList("$and", Document.class);
+        assertEquals(2, conditions.size());
+        assertEquals(new Document("_id", new Document("$in", ids)), conditions.get(0));
+        assertEquals(service(24, 720).expiredGames(now).getQueryObject(), conditions.get(1));
+    }
+
+    private GameRetentionService service(long finishedTtlHours, long idleTtlHours) {
+        return new GameRetentionService(null, null, null, new SimpleMeterRegistry(),
+                finishedTtlHours, idleTtlHours, true, true, 600_000, 100, 1000, 16);
+    }
+}
@@ -0,0 +1,68 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.mapper.MoveMapperImpl;
+import challenge.utils.FakeGameStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Heap used by spectators which don't take anything after the first snapshot. Run locally,
+ * the result depends on the JVM and the collector so it's only logged
+ */
+@Slf4j
+public class GameSpectatorsBenchmark {
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GameUpdates gameUpdates = new GameUpdates(new MoveMapperImpl(), 4, meterRegistry);
+        FakeGameStore store = new FakeGameStore(gameUpdates);
+        GameStreamService streams = new GameStreamService(store::find, gameUpdates, 60_000, 4, 1_000);
+        GameSpectators spectators = new GameSpectators(streams::updates, new ObjectMapper(), 60_000, meterRegistry);
+
+        GameEntity game = store.create("1", GameType.AGAINST_AI, 15);
+        List<BaseSubscriber<byte[]>> subscribers = new ArrayList<>(count);
+        long before = usedHeap();
+        for (int i = 0; i < count; i++) {
+            subscribers.add(spectators.watch("1").subscribeWith(firstSnapshotOnly()));
+        }
+        long joined = usedHeap();
+        for (int i = 0; i < 100; i++) {
+            store.save(game, i % 2 == 0 ? GameWinner.PLAYER : GameWinner.AI);
+        }
+        long played = usedHeap();
+
+        log.info("Spectators: {} bytes per spectator, heap grew by {} bytes per move",
+                (joined - before) / count, (played - joined) / 100);
+        subscribers.forEach(BaseSubscriber::dispose);
+    }
+
+    private static BaseSubscriber<byte[]> firstSnapshotOnly() {
+        return new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
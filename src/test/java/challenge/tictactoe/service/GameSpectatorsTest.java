@@ -0,0 +1,196 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.mapper.MoveMapperImpl;
+import challenge.utils.FakeGameStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameSpectatorsTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameUpdates gameUpdates = new GameUpdates(new MoveMapperImpl(), 4, meterRegistry);
+    FakeGameStore store = new FakeGameStore(gameUpdates);
+    GameStreamService streams = new GameStreamService(store::find, gameUpdates, 60_000, 4, 1_000);
+    GameSpectators spectators = new GameSpectators(streams::updates, new ObjectMapper(), 60_000, meterRegistry);
+
+    @Test
+    void testSpectatorsShareGameAndBytes() {
+        GameEntity game = store.create("1", GameType.AGAINST_AI, 15);
+        store.save(game, GameWinner.AI);
+        List<byte[]> first = new ArrayList<>();
+        List<byte[]> second = new ArrayList<>();
+        var one = spectators.watch("1").subscribe(first::add);
+        var two = spectators.watch("1").subscribe(second::add);
+        assertEquals(1, meterRegistry.get("tictactoe.spectators.games").gauge().value());
+        assertEquals(2, meterRegistry.get("tictactoe.spectators.count").gauge().value());
+        assertEquals(1, meterRegistry.get("tictactoe.updates.followers").gauge().value());
+
+        store.save(game, GameWinner.PLAYER);
+        assertEquals(2, first.size());
+        assertEquals(2, second.size());
+        assertSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+        assertEquals(1, store.reads());
+        assertEquals(2, meterRegistry.get("tictactoe.spectators.frames").counter().count());
+        String event = new String(first.get(1), StandardCharsets.UTF_8);
+        assertTrue(event.startsWith("id:2\nevent:snapshot\ndata:{"), event);
+        assertTrue(event.endsWith("}\n\n"), event);
+        assertTrue(event.contains("\"gameType\":\"" + GameType.AGAINST_AI + "\""), event);
+        assertTrue(event.contains("\"playedBy\":\"" + GameWinner.AI + "\""), event);
+
+        one.dispose();
+        assertEquals(1, meterRegistry.get("tictactoe.spectators.count").gauge().value());
+        two.dispose();
+        assertEquals(0, meterRegistry.get("tictactoe.spectators.games").gauge().value());
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+    }
+
+    @Test
+    void testSlowSpectatorSkipsToLatestSnapshot() {
+        GameEntity game = store.create("1", GameType.AGAINST_AI, 15);
+
+        StepVerifier.create(spectators.watch("1"), 1)
+                .assertNext(event -> assertTrue(text(event).startsWith("id:0\n")))
+                .then(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        store.save(game, i % 2 == 0 ? GameWinner.PLAYER : GameWinner.AI);
+                    }
+                })
+                // The snapshot taken by the stream before the spectator asked for it, then the latest one
+                .thenRequest(2)
+                .assertNext(event -> assertTrue(text(event).startsWith("id:1\n"), text(event)))
+                .assertNext(event -> {
+                    assertTrue(text(event).startsWith("id:5\n"), text(event));
+                    assertTrue(text(event).contains("\"number\":5,"), text(event));
+                })
+                .then(() -> {
+                    game.setStatus(GameStatus.FINISHED);
+                    game.setWinner(GameWinner.PLAYER);
+                    store.save(game, GameWinner.PLAYER);
+                })
+                .thenRequest(1)
+                .assertNext(event -> assertTrue(text(event).contains("\"status\":\"FINISHED\""), text(event)))
+                .verifyComplete();
+        assertEquals(0, meterRegistry.get("tictactoe.spectators.games").gauge().value());
+    }
+
+    @Test
+    void testSpectatorOfFinishedGameGetsLastSnapshot() {
+        GameEntity game = store.create("1", GameType.AGAINST_AI, 15);
+        game.setStatus(GameStatus.FINISHED);
+        game.setWinner(GameWinner.DRAW);
+        store.save(game, GameWinner.PLAYER);
+
+        StepVerifier.create(spectators.watch("1"))
+                .assertNext(event -> assertTrue(text(event).contains("\"winner\":\"DRAW\""), text(event)))
+                .verifyComplete();
+    }
+
+    @Test
+    void testDeletedGameEndsStream() {
+        store.create("1", GameType.AGAINST_AI, 15);
+
+        StepVerifier.create(spectators.watch("1"))
+                .expectNextCount(1)
+                .then(() -> gameUpdates.close("1"))
+                .verifyComplete();
+        assertEquals(0, meterRegistry.get("tictactoe.spectators.games").gauge().value());
+    }
+
+    @Test
+    void testUnknownGameFails() {
+        StepVerifier.create(spectators.watch("2"))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        assertEquals(0, meterRegistry.get("tictactoe.spectators.games").gauge().value());
+    }
+
+    @Test
+    void testSpectatorsHaveHeartbeats() {
+        store.create("1", GameType.AGAINST_AI, 15);
+
+        StepVerifier.withVirtualTime(() -> new GameSpectators(streams::updates, new ObjectMapper(), 15_000,
+                        meterRegistry).watch("1"))
+                .expectNextCount(1)
+                .thenAwait(Duration.ofSeconds(30))
+                .assertNext(event -> assertSame(GameSpectators.HEARTBEAT, event))
+                .assertNext(event -> assertSame(GameSpectators.HEARTBEAT, event))
+                .thenCancel()
+                .verify();
+    }
+
+    /**
+     * Spectators which don't take anything after the first snapshot hold references to
+     * frames of the broadcast, each written once, and skip to the latest one
+     */
+    @Test
+    void testSpectatorsHoldSharedFrames() {
+        int count = 1_000;
+        GameEntity game = store.create("1", GameType.AGAINST_AI, 15);
+        List<List<byte[]>> received = new ArrayList<>(count);
+        List<BaseSubscriber<byte[]>> subscribers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<byte[]> events = new ArrayList<>();
+            received.add(events);
+            subscribers.add(spectators.watch("1").subscribeWith(spectator(events)));
+        }
+        for (int i = 0; i < 100; i++) {
+            store.save(game, i % 2 == 0 ? GameWinner.PLAYER : GameWinner.AI);
+        }
+        // One frame per snapshot however many spectators there are
+        assertEquals(101, meterRegistry.get("tictactoe.spectators.frames").counter().count());
+
+        subscribers.forEach(subscriber -> subscriber.request(2));
+        List<byte[]> first = received.get(0);
+        assertEquals(3, first.size());
+        assertTrue(text(first.get(2)).startsWith("id:100\n"), text(first.get(2)));
+        for (List<byte[]> events : received) {
+            assertEquals(first.size(), events.size());
+            for (int i = 0; i < events.size(); i++) {
+                assertSame(first.get(i), events.get(i));
+            }
+        }
+        subscribers.forEach(BaseSubscriber::dispose);
+        assertEquals(0, meterRegistry.get("tictactoe.spectators.games").gauge().value());
+    }
+
+    /**
+     * Spectator which takes the first snapshot only until it requests more
+     */
+    private static BaseSubscriber<byte[]> spectator(List<byte[]> events) {
+        return new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(1);
+            }
+
+            @Override
+            protected void hookOnNext(byte[] event) {
+                events.add(event);
+            }
+        };
+    }
+
+    private static String text(byte[] event) {
+        return new String(event, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,208 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.mapper.MoveMapperImpl;
+import challenge.utils.FakeGameStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static challenge.utils.GameUtils.play;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameStreamServiceTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameUpdates gameUpdates = new GameUpdates(new MoveMapperImpl(), 4, meterRegistry);
+    FakeGameStore store = new FakeGameStore(gameUpdates);
+    GameStreamService streams = new GameStreamService(store::find, gameUpdates, 60_000, 2, 1_000);
+
+    @Test
+    void testFollowerGetsGameAndItsMoves() {
+        GameEntity game = store.create("1", GameType.AGAINST_HUMAN, 3);
+        play(game, GameWinner.PLAYER_1);
+
+        StepVerifier.create(streams.updates("1", null))
+                .assertNext(update -> {
+                    assertEquals(1, update.getNumber());
+                    assertEquals(1, update.getMoves().size());
+                    assertEquals(GameType.AGAINST_HUMAN, update.getGameType());
+                    assertEquals(3, update.getBoardSize());
+                })
+                .then(() -> store.save(game, GameWinner.PLAYER_2))
+                .assertNext(update -> {
+                    assertEquals(2, update.getNumber());
+                    assertEquals(1, update.getMoves().size());
+                    assertEquals(2, update.getMoves().get(0).getNumber());
+                    assertEquals(GameWinner.PLAYER_1, update.getActiveTurn());
+                    assertNull(update.getGameType());
+                })
+                .then(() -> {
+                    game.setStatus(GameStatus.FINISHED);
+                    game.setWinner(GameWinner.PLAYER_1);
+                    store.save(game, GameWinner.PLAYER_1);
+                })
+                .assertNext(update -> assertEquals(GameStatus.FINISHED, update.getStatus()))
+                .verifyComplete();
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+        assertEquals(1, store.reads());
+    }
+
+    @Test
+    void testReconnectingFollowerGetsMissedMovesOnly() {
+        GameEntity game = store.create("1", GameType.AGAINST_HUMAN, 3);
+        for (int i = 0; i < 4; i++) {
+            play(game, i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2);
+        }
+
+        StepVerifier.create(streams.updates("1", 2))
+                .assertNext(update -> {
+                    assertEquals(4, update.getNumber());
+                    assertEquals(2, update.getMoves().size());
+                    assertEquals(3, update.getMoves().get(0).getNumber());
+                    assertNull(update.getGameType());
+                })
+                .thenCancel()
+                .verify();
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+    }
+
+    @Test
+    void testMissedUpdatesAreReadFromGame() {
+        GameEntity game = store.create("1", GameType.AGAINST_HUMAN, 3);
+
+        StepVerifier.create(streams.updates("1", null))
+                .assertNext(update -> assertEquals(0, update.getNumber()))
+                .then(() -> {
+                    // Saved by another node, this node didn't see the first move
+                    play(game, GameWinner.PLAYER_1);
+                    store.save(game, GameWinner.PLAYER_2);
+                })
+                .assertNext(update -> {
+                    assertEquals(2, update.getNumber());
+                    assertEquals(2, update.getMoves().size());
+                })
+                .thenCancel()
+                .verify();
+        assertEquals(2, store.reads());
+    }
+
+    @Test
+    void testGameChangedByAnotherNodeIsReadAgain() {
+        GameEntity game = store.create("1", GameType.AGAINST_HUMAN, 3);
+
+        StepVerifier.create(streams.updates("1", null))
+                .assertNext(update -> assertEquals(0, update.getNumber()))
+                .then(() -> {
+                    // Saved by another node and signalled by the change stream
+                    play(game, GameWinner.PLAYER_1);
+                    gameUpdates.changed("1");
+                })
+                .assertNext(update -> {
+                    assertEquals(1, update.getNumber());
+                    assertEquals(1, update.getMoves().size());
+                })
+                // A change already sent isn't sent again
+                .then(() -> gameUpdates.changedAll())
+                .then(() -> store.save(game, GameWinner.PLAYER_2))
+                .assertNext(update -> assertEquals(2, update.getNumber()))
+                .thenCancel()
+                .verify();
+        assertEquals(3, store.reads());
+    }
+
+    @Test
+    void testUpdatesOfGameArePublishedOnce() {
+        GameEntity game = store.create("1", GameType.AGAINST_HUMAN, 3);
+        AtomicInteger first = new AtomicInteger();
+        AtomicInteger second = new AtomicInteger();
+        var one = streams.updates("1", null).subscribe(update -> first.incrementAndGet());
+        var two = streams.updates("1", null).subscribe(update -> second.incrementAndGet());
+        assertEquals(1, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+        assertEquals(2, meterRegistry.get("tictactoe.updates.followers").gauge().value());
+
+        store.save(game, GameWinner.PLAYER_1);
+        assertEquals(2, first.get());
+        assertEquals(2, second.get());
+        assertEquals(1, meterRegistry.get("tictactoe.updates.published").counter().count());
+
+        one.dispose();
+        assertEquals(1, meterRegistry.get("tictactoe.updates.followers").gauge().value());
+        gameUpdates.close("1");
+        assertTrue(two.isDisposed());
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+    }
+
+    @Test
+    void testSlowFollowerFails() {
+        GameEntity game = store.create("1", GameType.AGAINST_HUMAN, 3);
+
+        StepVerifier.create(streams.updates("1", null), 1)
+                .assertNext(update -> assertEquals(0, update.getNumber()))
+                .then(() -> {
+                    for (int i = 0; i < 4; i++) {
+                        store.save(game, i % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2);
+                    }
+                })
+                .thenRequest(10)
+                .expectNextCount(2)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+    }
+
+    @Test
+    void testStreamHasHeartbeats() {
+        store.create("1", GameType.AGAINST_HUMAN, 3);
+
+        StepVerifier.withVirtualTime(() -> streams.stream("1", null))
+                .assertNext(event -> {
+                    assertEquals("0", event.id());
+                    assertEquals("update", event.event());
+                })
+                .thenAwait(Duration.ofMinutes(2))
+                .assertNext(event -> assertEquals("heartbeat", event.comment()))
+                .assertNext(event -> assertEquals("heartbeat", event.comment()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void testNextMoveIsAwaited() {
+        GameEntity game = store.create("1", GameType.AGAINST_HUMAN, 3);
+        play(game, GameWinner.PLAYER_1);
+
+        StepVerifier.create(streams.awaitMove("1", 0))
+                .verifyComplete();
+        StepVerifier.create(streams.awaitMove("1", 1))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .then(() -> store.save(game, GameWinner.PLAYER_2))
+                .verifyComplete();
+        // No move comes within the poll timeout
+        long started = System.nanoTime();
+        StepVerifier.create(streams.awaitMove("1", 2))
+                .verifyComplete();
+        assertTrue(System.nanoTime() - started >= Duration.ofMillis(1_000).toNanos());
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+    }
+
+    @Test
+    void testUnknownGameFails() {
+        StepVerifier.create(streams.stream("2", null))
+                .expectError(ResponseStatusException.class)
+                .verify();
+        assertEquals(0, meterRegistry.get("tictactoe.updates.channels").gauge().value());
+    }
+}
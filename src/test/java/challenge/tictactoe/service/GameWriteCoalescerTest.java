@@ -0,0 +1,163 @@
+package challenge.tictactoe.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class GameWriteCoalescerTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    List<Integer> batches = new CopyOnWriteArrayList<>();
+    GameWriteCoalescer coalescer;
+
+    @AfterEach
+    void shutdown() {
+        if (coalescer != null)
+            coalescer.shutdown();
+    }
+
+    @Test
+    void testConcurrentWritesAreSentInOneBatch() {
+        coalescer = coalescer(models -> Mono.just(
+                BulkWriteResult.acknowledged(1, 2, 0, 2, List.of(), List.of())), null);
+
+        List<Mono<Boolean>> writes = List.of(
+                coalescer.write("1", insert("1"), null),
+                coalescer.write("2", update("2"), game -> true),
+                coalescer.write("3", update("3"), game -> true));
+
+        StepVerifier.create(Flux.merge(writes))
+                .expectNext(true, true, true)
+                .verifyComplete();
+        assertEquals(List.of(3), batches);
+        assertEquals(3.0, meterRegistry.get("tictactoe.storage.batch.size").summary().totalAmount());
+    }
+
+    @Test
+    void testErrorIsReturnedToItsOwnWrite() {
+        coalescer = coalescer(models -> Mono.error(new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)),
+                null, new ServerAddress(), Set.of())), null);
+
+        Mono<Boolean> first = coalescer.write("1", insert("1"), null);
+        Mono<Boolean> second = coalescer.write("2", insert("2"), null);
+        Mono<Boolean> third = coalescer.write("3", insert("3"), null);
+
+        StepVerifier.create(Flux.merge(first.map(saved -> "1:" + saved),
+                                second.map(saved -> "2:" + saved)
+                                        .onErrorResume(DuplicateKeyException.class, e -> Mono.just("2:duplicate")),
+                                third.map(saved -> "3:" + saved))
+                        .collectList())
+                .assertNext(results -> assertTrue(results.containsAll(List.of("1:true", "2:duplicate", "3:true"))))
+                .verifyComplete();
+        assertEquals(List.of(3), batches);
+    }
+
+    @Test
+    void testUnmatchedUpdateIsCheckedAgainstStoredGame() {
+        coalescer = coalescer(models -> Mono.just(
+                        BulkWriteResult.acknowledged(0, models.size() - 1, 0, models.size() - 1, List.of(), List.of())),
+                ids -> Flux.fromIterable(ids).map(id -> new Document("_id", id).append("saved", !"2".equals(id))));
+
+        Mono<Boolean> first = coalescer.write("1", update("1"), game -> game.getBoolean("saved"));
+        Mono<Boolean> second = coalescer.write("2", update("2"), game -> game.getBoolean("saved"));
+
+        StepVerifier.create(Flux.merge(first.map(saved -> "1:" + saved), second.map(saved -> "2:" + saved))
+                        .collectList())
+                .assertNext(results -> assertTrue(results.containsAll(List.of("1:true", "2:false"))))
+                .verifyComplete();
+    }
+
+    @Test
+    void testFailedBulkWriteFailsEveryWrite() {
+        coalescer = coalescer(models -> Mono.error(new IllegalStateException("down")), null);
+
+        Mono<Boolean> first = coalescer.write("1", insert("1"), null);
+        Mono<Boolean> second = coalescer.write("2", update("2"), game -> true);
+
+        StepVerifier.create(Flux.mergeDelayError(2, first, second))
+                .verifyErrorSatisfies(e -> {
+                    List<Throwable> errors = Exceptions.unwrapMultiple(e);
+                    assertEquals(2, errors.size());
+                    errors.forEach(error -> assertInstanceOf(IllegalStateException.class, error));
+                });
+    }
+
+    @Test
+    void testConcurrentFlushesAreBounded() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        coalescer = new GameWriteCoalescer(models -> Mono.defer(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    return Mono.delay(Duration.ofMillis(20))
+                            .thenReturn(BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()))
+                            .doOnTerminate(inFlight::decrementAndGet);
+                }), null, new MongoExceptionTranslator(), null, true, 1, 1, 2, meterRegistry);
+
+        List<Mono<Boolean>> writes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            writes.add(coalescer.write(String.valueOf(i), insert(String.valueOf(i)), null));
+        }
+
+        StepVerifier.create(Flux.merge(writes).count())
+                .expectNext(8L)
+                .verifyComplete();
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    void testDisabledCoalescerStartsNothing() {
+        coalescer = new GameWriteCoalescer(models -> Mono.error(new IllegalStateException("unexpected")),
+                null, new MongoExceptionTranslator(), null, false, 16, 50, 4, meterRegistry);
+
+        assertFalse(coalescer.isEnabled());
+        StepVerifier.create(coalescer.write("1", insert("1"), null))
+                .verifyError(IllegalStateException.class);
+        assertEquals(0, meterRegistry.get("tictactoe.storage.batch.flush").timer().count());
+    }
+
+    private GameWriteCoalescer coalescer(Function<List<WriteModel<Document>>, Mono<BulkWriteResult>> bulkWrite,
+                                         Function<List<Object>, Flux<Document>> findByIds) {
+        return new GameWriteCoalescer(models -> {
+            batches.add(models.size());
+            return bulkWrite.apply(new ArrayList<>(models));
+        }, findByIds, new MongoExceptionTranslator(), null, true, 16, 50, 4, meterRegistry);
+    }
+
+    private static WriteModel<Document> insert(String id) {
+        return new InsertOneModel<>(new Document("_id", id));
+    }
+
+    private static WriteModel<Document> update(String id) {
+        return new UpdateOneModel<>(new Document("_id", id), new Document("$inc", new Document("version", 1)));
+    }
+}
@@ -0,0 +1,91 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.HintDto;
+import challenge.utils.GameUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+class HintServiceTest {
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameEngineProvider engineProvider = new GameEngineProvider(1000, 1, 0, 10, 0, 20);
+    EngineScheduler engineScheduler = new EngineScheduler(1, 16, 10_000, meterRegistry);
+    HintService hintService = new HintService(null, engineProvider, engineScheduler, meterRegistry, 100);
+
+    @AfterEach
+    void shutdown() {
+        engineScheduler.shutdown();
+        engineProvider.shutdown();
+    }
+
+    /**
+     * | X | X |   |
+     * | O | O |   |
+     * |   |   |   |
+     * Player to move wins at 0, 2
+     */
+    @Test
+    void testHintOfClassicGame() {
+        GameEntity game = game("1");
+        HintDto hint = hintService.getHint(game, List.of(
+                move(0, 0, GameWinner.PLAYER_1),
+                move(1, 0, GameWinner.PLAYER_2),
+                move(0, 1, GameWinner.PLAYER_1),
+                move(1, 1, GameWinner.PLAYER_2))).block();
+        assertNotNull(hint);
+        assertEquals("1", hint.getGameId());
+        assertEquals(GameWinner.PLAYER_1, hint.getActiveTurn());
+        assertEquals(3, hint.getBoardSize());
+        assertEquals(0, hint.getX());
+        assertEquals(2, hint.getY());
+        assertNull(hint.getScores()[0][0]);
+        assertNull(hint.getScores()[1][1]);
+        assertTrue(hint.getScores()[0][2] > 0);
+        assertTrue(hint.getScores()[2][2] < 0);
+    }
+
+    @Test
+    void testHintsAreCachedByPosition() {
+        List<MoveEntity> moves = List.of(move(1, 1, GameWinner.PLAYER_1));
+        GameEntity first = game("1");
+        first.setActiveTurn(GameWinner.PLAYER_2);
+        GameEntity second = game("2");
+        second.setActiveTurn(GameWinner.PLAYER_2);
+        HintDto firstHint = hintService.getHint(first, moves).block();
+        HintDto secondHint = hintService.getHint(second, moves).block();
+        assertEquals("2", secondHint.getGameId());
+        assertArrayEquals(firstHint.getScores(), secondHint.getScores());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "tictactoe.hints")
+                .tag("result", "miss").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "tictactoe.hints")
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    private static GameEntity game(String id) {
+        GameEntity game = GameUtils.newGame(id, GameType.AGAINST_HUMAN, 3);
+        game.setStatus(GameStatus.IN_PROGRESS);
+        return game;
+    }
+
+    private static MoveEntity move(int x, int y, String playedBy) {
+        return MoveEntity.builder()
+                .gameId("1")
+                .x(x)
+                .y(y)
+                .playedBy(playedBy)
+                .build();
+    }
+}
@@ -0,0 +1,193 @@
+package challenge.tictactoe.service;
+
+import challenge.tictactoe.constant.ErrorMessages;
+import challenge.tictactoe.constant.Outcome;
+import challenge.tictactoe.dto.AnalysisDto;
+import challenge.tictactoe.dto.PositionDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("component-test")
+@Slf4j
+class PositionAnalysisServiceTest {
+
+    /**
+     * Positions per second which the analysis of all 3x3 positions has to exceed
+     */
+    private static final double MIN_THROUGHPUT = 2000;
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    GameEngineProvider engineProvider = new GameEngineProvider(1000, 1, 0, 10, 0, 20);
+    EngineScheduler engineScheduler = new EngineScheduler(0, 1024, 10_000, meterRegistry);
+    PositionAnalysisService analysisService =
+            new PositionAnalysisService(engineProvider, engineScheduler, meterRegistry, 0, 10);
+
+    @AfterEach
+    void shutdown() {
+        engineScheduler.shutdown();
+        engineProvider.shutdown();
+    }
+
+    @Test
+    void testClassicPositions() {
+        List<AnalysisDto> results = analysisService.analyze(Flux.just(
+                        position("win", "XX./OO./..."),
+                        position("block", "X../.O./..X"),
+                        position("draw", "XOX/XOO/OXX"),
+                        PositionDto.builder().id("lost").board("OOO/XX./X..").toMove("X").build(),
+                        position("empty", ".../.../...")))
+                .collectList()
+                .block();
+        assertEquals(5, results.size());
+
+        assertEquals("win", results.get(0).getId());
+        assertEquals("X", results.get(0).getToMove());
+        assertEquals(0, results.get(0).getX());
+        assertEquals(2, results.get(0).getY());
+        assertEquals(Outcome.WIN, results.get(0).getOutcome());
+
+        assertEquals("O", results.get(1).getToMove());
+        assertEquals(Outcome.DRAW, results.get(1).getOutcome());
+
+        assertEquals(Outcome.DRAW, results.get(2).getOutcome());
+        assertNull(results.get(2).getX());
+
+        assertEquals(Outcome.LOSS, results.get(3).getOutcome());
+        assertNull(results.get(3).getX());
+
+        assertEquals(Outcome.DRAW, results.get(4).getOutcome());
+        assertEquals(0, results.get(4).getScore());
+    }
+
+    @Test
+    void testInvalidPositionsDoNotStopTheBatch() {
+        List<AnalysisDto> results = analysisService.analyze(Flux.just(
+                        position("short", "XO."),
+                        position("letters", "XA./.../..."),
+                        position("turn", "XX./.../..."),
+                        position("valid", "X../.../...")))
+                .collectList()
+                .block();
+        assertEquals(4, results.size());
+        assertEquals(String.format(ErrorMessages.INVALID_POSITION, 3, 15, 3), results.get(0).getError());
+        assertEquals(String.format(ErrorMessages.INVALID_POSITION, 3, 15, 3), results.get(1).getError());
+        assertEquals(String.format(ErrorMessages.INVALID_TURN, "O"), results.get(2).getError());
+        assertNull(results.get(3).getError());
+        assertEquals(1, results.get(3).getX());
+        assertEquals(1, results.get(3).getY());
+    }
+
+    @Test
+    void testBigBoardPosition() {
+        AnalysisDto result = analysisService.analyze(
+                        PositionDto.builder()
+                                .id("gomoku")
+                                .board("X.....X/......./......./..OOO../......./......./X.....X")
+                                .winLength(4)
+                                .build())
+                .block();
+        assertNotNull(result);
+        assertEquals(7, result.getBoardSize());
+        assertEquals("O", result.getToMove());
+        assertEquals(Outcome.WIN, result.getOutcome());
+        assertEquals(3, result.getX());
+        assertTrue(result.getY() == 1 || result.getY() == 5);
+    }
+
+    /**
+     * Moves of other games keep the only engine thread and its whole queue busy for a while,
+     * positions of the batch wait for the engine instead of failing
+     */
+    @Test
+    void testBatchWaitsForBusyEngine() {
+        EngineScheduler busyScheduler = new EngineScheduler(1, 2, 10_000, meterRegistry);
+        PositionAnalysisService busyService =
+                new PositionAnalysisService(engineProvider, busyScheduler, meterRegistry, 0, 10);
+        for (int i = 0; i < 3; i++) {
+            busyScheduler.submit(() -> {
+                Thread.sleep(50);
+                return 0;
+            }).subscribe();
+        }
+        assertNotNull(busyService.analyze(position("single", "X../.../...")).block().getError());
+
+        List<PositionDto> positions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            positions.add(position(String.valueOf(i), "X../.../..."));
+        }
+        List<AnalysisDto> results = busyService.analyze(Flux.fromIterable(positions))
+                .collectList()
+                .block();
+        assertEquals(20, results.size());
+        results.forEach(result -> assertNull(result.getError(), result.getError()));
+        assertTrue(meterRegistry.counter("tictactoe.engine.rejected").count() > 0);
+        busyScheduler.shutdown();
+    }
+
+    /**
+     * Every reachable 3x3 position with both players to move, results keep the order
+     */
+    @Test
+    void testThroughput() {
+        List<PositionDto> positions = new ArrayList<>();
+        for (String board : getReachableBoards()) {
+            positions.add(position(String.valueOf(positions.size()), board));
+        }
+        // Warm up the engine and the scheduler threads
+        analysisService.analyze(Flux.fromIterable(positions)).blockLast();
+
+        long start = System.nanoTime();
+        List<AnalysisDto> results = analysisService.analyze(Flux.fromIterable(positions))
+                .collectList()
+                .block();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double throughput = positions.size() / seconds;
+        log.info("Analyzed {} positions in {} ms: {} positions/second",
+                positions.size(), (long) (seconds * 1000), (long) throughput);
+
+        assertEquals(positions.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(String.valueOf(i), results.get(i).getId());
+            assertNull(results.get(i).getError());
+        }
+        assertEquals(2.0 * positions.size(), meterRegistry.counter("tictactoe.analysis.positions").count());
+        assertTrue(throughput > MIN_THROUGHPUT);
+    }
+
+    private static PositionDto position(String id, String board) {
+        return PositionDto.builder()
+                .id(id)
+                .board(board)
+                .build();
+    }
+
+    private static Set<String> getReachableBoards() {
+        Set<String> boards = new LinkedHashSet<>();
+        collectBoards(new char[]{'.', '.', '.', '.', '.', '.', '.', '.', '.'}, 'X', boards);
+        return boards;
+    }
+
+    private static void collectBoards(char[] board, char toMove, Set<String> boards) {
+        if (!boards.add(new String(board)))
+            return;
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] != '.')
+                continue;
+            board[i] = toMove;
+            collectBoards(board, toMove == 'X' ? 'O' : 'X', boards);
+            board[i] = '.';
+        }
+    }
+}
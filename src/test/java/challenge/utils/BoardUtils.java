@@ -4,7 +4,7 @@ import challenge.tictactoe.constant.GameStatus;
 import challenge.tictactoe.constant.GameWinner;
 import challenge.tictactoe.db.GameEntity;
 import challenge.tictactoe.db.MoveEntity;
-import challenge.tictactoe.logic.TictactoeGameEngine;
+import challenge.tictactoe.logic.GameEngine;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,7 +41,7 @@ public class BoardUtils {
 
     public static long makeMoveWithoutAssertion(List<MoveEntity> moves,
                                                 GameEntity game,
-                                                TictactoeGameEngine engine,
+                                                GameEngine engine,
                                                 int x, int y) {
         moves.add(createMove(x, y));
         long start = System.nanoTime();
@@ -52,7 +52,7 @@ public class BoardUtils {
 
     public static void makeIntermediateMoveAndAssert(List<MoveEntity> moves,
                                                      GameEntity game,
-                                                     TictactoeGameEngine engine,
+                                                     GameEngine engine,
                                                      int x, int y) {
         moves.add(createMove(x, y));
         engine.processAndGenerareteNextMove(game, moves);
@@ -63,7 +63,7 @@ public class BoardUtils {
 
     public static void makeFinalMoveAndAssert(List<MoveEntity> moves,
                                               GameEntity game,
-                                              TictactoeGameEngine engine,
+                                              GameEngine engine,
                                               int x, int y) {
         moves.add(createMove(x, y));
         engine.processAndGenerareteNextMove(game, moves);
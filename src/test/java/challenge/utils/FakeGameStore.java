@@ -0,0 +1,76 @@
+package challenge.utils;
+
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.service.GameUpdates;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static challenge.tictactoe.constant.ErrorMessages.GAME_NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Games kept in memory in place of the DB, saved moves are published like the service does
+ */
+public class FakeGameStore {
+
+    private final Map<String, GameEntity> games = new ConcurrentHashMap<>();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final GameUpdates gameUpdates;
+
+    public FakeGameStore(GameUpdates gameUpdates) {
+        this.gameUpdates = gameUpdates;
+    }
+
+    /**
+     * Store a new game, changes of the returned game are seen by the next read
+     */
+    public GameEntity create(String id, String gameType, int boardSize) {
+        GameEntity game = GameUtils.newGame(id, gameType, boardSize);
+        games.put(id, game);
+        return game;
+    }
+
+    public GameEntity get(String id) {
+        return games.get(id);
+    }
+
+    /**
+     * Read a copy of a game as it's read from the DB
+     */
+    public Mono<GameEntity> find(String id) {
+        return Mono.defer(() -> {
+            reads.incrementAndGet();
+            GameEntity game = games.get(id);
+            return game != null ? Mono.just(game.copy()) : Mono.error(notFound(id));
+        });
+    }
+
+    public int reads() {
+        return reads.get();
+    }
+
+    /**
+     * Add a move and publish it as the service does after saving it
+     */
+    public void save(GameEntity game, String player) {
+        int base = game.getMoves().size();
+        GameUtils.play(game, player);
+        save(game, base);
+    }
+
+    /**
+     * Store a game with moves after base and publish them
+     */
+    public void save(GameEntity game, int base) {
+        games.put(game.getId(), game);
+        gameUpdates.publish(game, base);
+    }
+
+    public static ResponseStatusException notFound(String id) {
+        return new ResponseStatusException(NOT_FOUND, String.format(GAME_NOT_FOUND, id));
+    }
+}
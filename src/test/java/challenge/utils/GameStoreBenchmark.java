@@ -0,0 +1,66 @@
+package challenge.utils;
+
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.persistance.GameStore;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Same load for every game store: games are created, then moves are appended to every game,
+ * the moves of one game one after another and the games in parallel
+ */
+@Slf4j
+public class GameStoreBenchmark {
+
+    /**
+     * @return writes per second and p99 latency in microseconds
+     */
+    public static long[] run(String name, GameStore store, int games, int movesPerGame, int concurrency) {
+        List<String> ids = Flux.range(0, games)
+                .flatMap(i -> store.insert(GameUtils.newGame(null, GameType.AGAINST_HUMAN, 3)), concurrency)
+                .map(GameEntity::getId)
+                .collectList()
+                .block();
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        Flux.fromIterable(ids)
+                .flatMap(id -> store.findById(id)
+                        .flatMapMany(game -> Flux.range(0, movesPerGame)
+                                .concatMap(number -> {
+                                    long saveStart = System.nanoTime();
+                                    GameUtils.play(game, number % 2 == 0 ? GameWinner.PLAYER_1 : GameWinner.PLAYER_2);
+                                    return store.update(game)
+                                            .switchIfEmpty(Mono.error(() -> new AssertionError(
+                                                    "Game " + id + " wasn't updated")))
+                                            .doOnNext(saved -> {
+                                                latencies.add(System.nanoTime() - saveStart);
+                                                game.setVersion(saved.getVersion());
+                                            });
+                                })), concurrency)
+                .blockLast();
+        long elapsed = System.nanoTime() - start;
+
+        GameEntity game = store.findById(ids.get(0)).block();
+        assertNotNull(game);
+        assertEquals(movesPerGame, game.getMoves().size());
+        assertEquals(movesPerGame, game.getVersion());
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long p99 = sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1) / 1_000;
+        long throughput = sorted.size() * 1_000_000_000L / elapsed;
+        log.info("{}: {} writes/s, p99 {} us", name, throughput, p99);
+        return new long[]{throughput, p99};
+    }
+}
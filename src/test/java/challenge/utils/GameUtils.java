@@ -0,0 +1,73 @@
+package challenge.utils;
+
+import challenge.tictactoe.constant.GameStatus;
+import challenge.tictactoe.constant.GameType;
+import challenge.tictactoe.constant.GameWinner;
+import challenge.tictactoe.db.GameEntity;
+import challenge.tictactoe.db.MoveEntity;
+
+import java.util.ArrayList;
+
+public class GameUtils {
+
+    /**
+     * @param id null for a game the store gives an id to
+     */
+    public static GameEntity newGame(String id, String gameType, int boardSize) {
+        return GameEntity.builder()
+                .id(id)
+                .status(GameStatus.CREATED)
+                .winner(GameWinner.NOT_DEFINED_YET)
+                .activeTurn(GameType.AGAINST_AI.equals(gameType) ? GameWinner.PLAYER : GameWinner.PLAYER_1)
+                .gameType(gameType)
+                .boardSize(boardSize)
+                .winLength(boardSize == 3 ? 3 : 5)
+                .moves(new ArrayList<>())
+                .version(0L)
+                .build();
+    }
+
+    /**
+     * Play the next cell in row order
+     */
+    public static void play(GameEntity game, String player) {
+        int number = game.getMoves().size();
+        play(game, player, number / game.getBoardSize(), number % game.getBoardSize());
+    }
+
+    /**
+     * Add a move and pass the turn, the status of a finished game stays
+     */
+    public static void play(GameEntity game, String player, int x, int y) {
+        game.getMoves().add(MoveEntity.builder()
+                .number(game.getMoves().size() + 1)
+                .gameId(game.getId())
+                .playedBy(player)
+                .x(x)
+                .y(y)
+                .build());
+        if (!GameStatus.FINISHED.equals(game.getStatus())) {
+            game.setStatus(GameStatus.IN_PROGRESS);
+            game.setActiveTurn(nextTurn(player));
+        }
+    }
+
+    public static void finish(GameEntity game, String winner) {
+        game.setStatus(GameStatus.FINISHED);
+        game.setWinner(winner);
+        game.setActiveTurn(null);
+    }
+
+    public static String nextTurn(String player) {
+        switch (player) {
+            case GameWinner.PLAYER:
+                return GameWinner.AI;
+            case GameWinner.AI:
+                return GameWinner.PLAYER;
+            case GameWinner.PLAYER_1:
+                return GameWinner.PLAYER_2;
+            default:
+                return GameWinner.PLAYER_1;
+        }
+    }
+}
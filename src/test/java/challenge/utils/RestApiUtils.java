@@ -1,7 +1,12 @@
 package challenge.utils;
 
 import challenge.tictactoe.db.MoveEntity;
+import challenge.tictactoe.dto.AnalysisDto;
+import challenge.tictactoe.dto.GameDto;
+import challenge.tictactoe.dto.HintDto;
+import challenge.tictactoe.dto.MoveDto;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.BodyInserters;
 
@@ -51,6 +56,20 @@ public class RestApiUtils {
                 .expectBody();
     }
 
+    public WebTestClient.BodyContentSpec createNewGameWithAi(int boardSize, int winLength, HttpStatus expectedStatus) {
+        return client.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(API_ENDPOINT + "/ai")
+                        .queryParam("boardSize", boardSize)
+                        .queryParam("winLength", winLength)
+                        .build())
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(expectedStatus)
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody();
+    }
+
     public WebTestClient.BodyContentSpec createNewGameWithPerson(HttpStatus expectedStatus) {
         return client.get()
                 .uri(API_ENDPOINT + "/person")
@@ -61,6 +80,35 @@ public class RestApiUtils {
                 .expectBody();
     }
 
+    public WebTestClient.BodyContentSpec createNewGameWithPerson(int boardSize, int winLength,
+                                                                 HttpStatus expectedStatus) {
+        return client.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(API_ENDPOINT + "/person")
+                        .queryParam("boardSize", boardSize)
+                        .queryParam("winLength", winLength)
+                        .build())
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(expectedStatus)
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody();
+    }
+
+    public WebTestClient.BodySpec<GameDto, ?> getGameAtMove(String gameId, int moveNumber,
+                                                            HttpStatus expectedStatus) {
+        return client.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(API_ENDPOINT + "/history")
+                        .queryParam("gameId", gameId)
+                        .queryParam("moveNumber", moveNumber)
+                        .build())
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(expectedStatus)
+                .expectBody(GameDto.class);
+    }
+
     public WebTestClient.BodyContentSpec makeMoveWithoutExpectedStatus(String gameId, MoveEntity move) {
         return client.post()
                 .uri(uriBuilder -> uriBuilder
@@ -87,4 +135,72 @@ public class RestApiUtils {
                 .expectHeader().contentType(APPLICATION_JSON)
                 .expectBody();
     }
+
+    public WebTestClient.BodySpec<GameDto, ?> makeMoveAsync(String gameId, MoveEntity move,
+                                                            HttpStatus expectedStatus) {
+        return client.post()
+                .uri(uriBuilder -> uriBuilder
+                        .path(API_ENDPOINT)
+                        .queryParam("gameId", gameId)
+                        .queryParam("async", true)
+                        .build())
+                .accept(APPLICATION_JSON)
+                .body(BodyInserters.fromValue(move))
+                .exchange()
+                .expectStatus().isEqualTo(expectedStatus)
+                .expectBody(GameDto.class);
+    }
+
+    public WebTestClient.BodySpec<GameDto, ?> waitForMove(String gameId, int moveNumber,
+                                                          HttpStatus expectedStatus) {
+        return client.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(API_ENDPOINT + "/next")
+                        .queryParam("gameId", gameId)
+                        .queryParam("moveNumber", moveNumber)
+                        .build())
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(expectedStatus)
+                .expectBody(GameDto.class);
+    }
+
+    public HttpStatus makeMoveAndGetStatus(String gameId, MoveDto move) {
+        return client.post()
+                .uri(uriBuilder -> uriBuilder
+                        .path(API_ENDPOINT)
+                        .queryParam("gameId", gameId)
+                        .build())
+                .accept(APPLICATION_JSON)
+                .body(BodyInserters.fromValue(move))
+                .exchange()
+                .returnResult(String.class)
+                .getStatus();
+    }
+
+    public WebTestClient.BodySpec<HintDto, ?> getHint(String gameId, HttpStatus expectedStatus) {
+        return client.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path(API_ENDPOINT + "/hint")
+                        .queryParam("gameId", gameId)
+                        .build())
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(expectedStatus)
+                .expectBody(HintDto.class);
+    }
+
+    public WebTestClient.ListBodySpec<AnalysisDto> analyzePositions(String body,
+                                                                    MediaType contentType,
+                                                                    MediaType accept) {
+        return client.post()
+                .uri(API_ENDPOINT + "/analysis")
+                .contentType(contentType)
+                .accept(accept)
+                .body(BodyInserters.fromValue(body))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(accept)
+                .expectBodyList(AnalysisDto.class);
+    }
 }